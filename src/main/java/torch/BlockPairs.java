@@ -0,0 +1,164 @@
+package torch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The blocks of two lists of records, paired by key, with oversized blocks split. A block whose
+ * pair count exceeds the pair budget is split by the records' secondary blocking keys (see {@link
+ * RecordSchema#subBlockingKey}), and only records that agree on both keys are paired. This caps
+ * the cost of a single popular blocking key, at the price of missing pairs in that block that
+ * disagree on the secondary key. Blocks are left whole if the schemas have no sub-blocking
+ * fields, and are flagged in the {@link BlockReport} either way.
+ *
+ * <p>The key of a sub-block is the blocking key and the secondary key separated by
+ * <code>'\0'</code>.
+ */
+public class BlockPairs {
+
+    public final static long DEFAULT_PAIR_BUDGET = 1L << 24;
+
+    /**
+     * Blocks both lists, splitting blocks with more than <code>pairBudget</code> pairs.
+     */
+    public static BlockPairs block(IRecordIterator list1, IRecordIterator list2, long pairBudget)
+        throws RecordIteratorException
+    {
+        if (pairBudget < 1)
+            throw new IllegalArgumentException("'pairBudget' must be positive");
+
+        Map<String, List<Record>> blocks1 = Record.block(list1);
+        Map<String, List<Record>> blocks2 = Record.block(list2);
+        BlockPairs pairs = new BlockPairs(pairBudget);
+
+        for (Map.Entry<String, List<Record>> e: blocks1.entrySet()) {
+            List<Record> block2 = blocks2.get(e.getKey());
+
+            if (block2 != null)
+                pairs.add(e.getKey(), e.getValue(), block2);
+        }
+
+        return pairs;
+    }
+
+    /**
+     * Blocks both lists, splitting blocks with more than {@link #DEFAULT_PAIR_BUDGET} pairs.
+     */
+    public static BlockPairs block(IRecordIterator list1, IRecordIterator list2)
+        throws RecordIteratorException
+    {
+        return block(list1, list2, DEFAULT_PAIR_BUDGET);
+    }
+
+    /**
+     * Returns the keys of the blocks that will be compared.
+     */
+    public Set<String> keys() {
+        return Collections.unmodifiableSet(_blocks1.keySet());
+    }
+
+    /**
+     * Returns the records from the first list in the block with the given key.
+     */
+    public List<Record> block1(String key) {
+        return _blocks1.get(key);
+    }
+
+    /**
+     * Returns the records from the second list in the block with the given key.
+     */
+    public List<Record> block2(String key) {
+        return _blocks2.get(key);
+    }
+
+    /**
+     * Returns the number of pairs that will be compared.
+     */
+    public long nPairs() {
+        return _report.pairs();
+    }
+
+    /**
+     * Returns the block size statistics.
+     */
+    public BlockReport report() {
+        return _report;
+    }
+
+    private BlockPairs(long pairBudget) {
+        _blocks1 = new LinkedHashMap<>();
+        _blocks2 = new HashMap<>();
+        _report = new BlockReport(pairBudget);
+    }
+
+    private void add(String key, List<Record> block1, List<Record> block2) {
+        long pairs = (long)block1.size() * block2.size();
+
+        if (pairs <= _report.pairBudget()) {
+            _blocks1.put(key, block1);
+            _blocks2.put(key, block2);
+            _report.add(pairs);
+            return;
+        }
+
+        if (!block1.get(0).schema().hasSubBlockingKey() ||
+            !block2.get(0).schema().hasSubBlockingKey())
+        {
+            _blocks1.put(key, block1);
+            _blocks2.put(key, block2);
+            _report.add(new BlockReport.Entry(key, block1.size(), block2.size(), pairs, 0, pairs));
+            return;
+        }
+
+        Map<String, List<Record>> sub1 = split(block1);
+        Map<String, List<Record>> sub2 = split(block2);
+        long pairsAfterSplit = 0;
+        long maxPairs = 0;
+        int nSubBlocks = 0;
+
+        for (Map.Entry<String, List<Record>> e: sub1.entrySet()) {
+            List<Record> subBlock2 = sub2.get(e.getKey());
+
+            if (subBlock2 == null)
+                continue;
+
+            String subKey = key + '\0' + e.getKey();
+            _blocks1.put(subKey, e.getValue());
+            _blocks2.put(subKey, subBlock2);
+
+            long subPairs = (long)e.getValue().size() * subBlock2.size();
+            pairsAfterSplit += subPairs;
+            maxPairs = Math.max(maxPairs, subPairs);
+            nSubBlocks++;
+        }
+
+        _report.add(new BlockReport.Entry(key, block1.size(), block2.size(), pairsAfterSplit,
+                                          nSubBlocks, maxPairs));
+    }
+
+    private static Map<String, List<Record>> split(List<Record> block) {
+        LinkedHashMap<String, List<Record>> map = new LinkedHashMap<>();
+
+        for (Record rec: block) {
+            String key = rec.subBlockingKey();
+            List<Record> subBlock = map.get(key);
+
+            if (subBlock == null) {
+                subBlock = new ArrayList<>();
+                map.put(key, subBlock);
+            }
+
+            subBlock.add(rec);
+        }
+
+        return map;
+    }
+
+    private final Map<String, List<Record>> _blocks1, _blocks2;
+    private final BlockReport _report;
+}
@@ -0,0 +1,205 @@
+package torch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Block size statistics collected by {@link BlockPairs}. The report lists every block whose pair
+ * count exceeded the pair budget, how it was split, and a histogram of block pair counts by power
+ * of two.
+ */
+public class BlockReport {
+
+    /**
+     * A block whose pair count exceeded the budget.
+     */
+    public static class Entry {
+
+        /**
+         * Returns the blocking key.
+         */
+        public String key() {
+            return _key;
+        }
+
+        /**
+         * Returns the number of records in the block from the first list.
+         */
+        public int size1() {
+            return _size1;
+        }
+
+        /**
+         * Returns the number of records in the block from the second list.
+         */
+        public int size2() {
+            return _size2;
+        }
+
+        /**
+         * Returns the number of candidate pairs in the block.
+         */
+        public long pairs() {
+            return (long)_size1 * _size2;
+        }
+
+        /**
+         * Returns the number of candidate pairs left after splitting by the secondary key. This is
+         * the same as {@link #pairs} if the block couldn't be split.
+         */
+        public long pairsAfterSplit() {
+            return _pairsAfterSplit;
+        }
+
+        /**
+         * Returns the number of sub-blocks the block was split into, or 0 if it wasn't split.
+         */
+        public int nSubBlocks() {
+            return _nSubBlocks;
+        }
+
+        /**
+         * Returns the number of pairs in the largest sub-block, or in the block itself if it
+         * wasn't split.
+         */
+        public long maxSubBlockPairs() {
+            return _maxSubBlockPairs;
+        }
+
+        Entry(String key, int size1, int size2, long pairsAfterSplit, int nSubBlocks,
+              long maxSubBlockPairs)
+        {
+            _key = key;
+            _size1 = size1;
+            _size2 = size2;
+            _pairsAfterSplit = pairsAfterSplit;
+            _nSubBlocks = nSubBlocks;
+            _maxSubBlockPairs = maxSubBlockPairs;
+        }
+
+        private final String _key;
+        private final int _size1, _size2;
+        private final long _pairsAfterSplit, _maxSubBlockPairs;
+        private final int _nSubBlocks;
+    }
+
+    /**
+     * Returns the pair budget blocks were checked against.
+     */
+    public long pairBudget() {
+        return _pairBudget;
+    }
+
+    /**
+     * Returns the number of blocking keys shared by both lists.
+     */
+    public int nBlocks() {
+        return _nBlocks;
+    }
+
+    /**
+     * Returns the number of candidate pairs before oversized blocks were split.
+     */
+    public long pairsBeforeSplit() {
+        return _pairsBeforeSplit;
+    }
+
+    /**
+     * Returns the number of candidate pairs that will be compared.
+     */
+    public long pairs() {
+        return _pairs;
+    }
+
+    /**
+     * Returns the number of pairs in the largest block that will be compared.
+     */
+    public long maxBlockPairs() {
+        return _maxBlockPairs;
+    }
+
+    /**
+     * Returns the blocks that exceeded the pair budget, largest first.
+     */
+    public List<Entry> oversized() {
+        return Collections.unmodifiableList(_oversized);
+    }
+
+    /**
+     * Returns the number of blocks with between <code>2^i</code> and <code>2^(i+1) - 1</code>
+     * pairs at index <code>i</code>. Block sizes are taken before splitting.
+     */
+    public long[] histogram() {
+        return _histogram;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder();
+        b.append(String.format("Blocks: %,d%n", _nBlocks));
+        b.append(String.format("Pairs: %,d (%,d before splitting)%n", _pairs, _pairsBeforeSplit));
+        b.append(String.format("Largest block: %,d pairs%n", _maxBlockPairs));
+        b.append(String.format("Pair budget: %,d%n", _pairBudget));
+
+        if (!_oversized.isEmpty()) {
+            b.append(String.format("%nOversized blocks:%n"));
+            b.append(String.format("%-24s%10s%10s%16s%16s%12s%n",
+                                   "key", "size1", "size2", "pairs", "after split", "sub-blocks"));
+
+            for (Entry e: _oversized) {
+                b.append(String.format("%-24s%10d%10d%16d%16d%12d%n",
+                                       e.key(), e.size1(), e.size2(), e.pairs(),
+                                       e.pairsAfterSplit(), e.nSubBlocks()));
+            }
+        }
+
+        b.append(String.format("%nPairs per block:%n"));
+        for (int i = 0; i < _histogram.length; i++) {
+            if (_histogram[i] > 0)
+                b.append(String.format("%16d+%12d%n", 1L << i, _histogram[i]));
+        }
+
+        return b.toString();
+    }
+
+    BlockReport(long pairBudget) {
+        _pairBudget = pairBudget;
+        _oversized = new ArrayList<>();
+        _histogram = new long[64];
+    }
+
+    /**
+     * Records a block that was compared whole.
+     */
+    void add(long pairs) {
+        _nBlocks++;
+        _pairsBeforeSplit += pairs;
+        _pairs += pairs;
+        _maxBlockPairs = Math.max(_maxBlockPairs, pairs);
+        _histogram[63 - Long.numberOfLeadingZeros(pairs)]++;
+    }
+
+    /**
+     * Records a block that exceeded the pair budget.
+     */
+    void add(Entry e) {
+        _nBlocks++;
+        _pairsBeforeSplit += e.pairs();
+        _pairs += e.pairsAfterSplit();
+        _maxBlockPairs = Math.max(_maxBlockPairs, e.maxSubBlockPairs());
+        _histogram[63 - Long.numberOfLeadingZeros(e.pairs())]++;
+
+        int i = _oversized.size();
+        while (i > 0 && _oversized.get(i - 1).pairs() < e.pairs())
+            i--;
+
+        _oversized.add(i, e);
+    }
+
+    private final long _pairBudget;
+    private final List<Entry> _oversized;
+    private final long[] _histogram;
+    private int _nBlocks;
+    private long _pairsBeforeSplit, _pairs, _maxBlockPairs;
+}
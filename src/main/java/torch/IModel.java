@@ -11,6 +11,12 @@ public interface IModel {
      */
     public double matchScore(Record rec1, Record rec2);
 
+    /**
+     * Computes the match score for a comparison pattern, given as an index returned by
+     * {@link RecordComparator#compareIndex}.
+     */
+    public double matchScore(int patternIndex);
+
     /**
      * Returns the underlying record comparator. The interface assumes that the
      * match score is actually a function of the comparison pattern returned by
@@ -0,0 +1,13 @@
+package torch;
+
+/**
+ * Computes the key by which records are ordered for sorted-neighborhood blocking.
+ *
+ * @see SortedNeighborhood
+ */
+public interface ISortKey {
+    /**
+     * Returns the sort key of <code>rec</code>.
+     */
+    public String sortKey(Record rec);
+}
@@ -0,0 +1,89 @@
+package torch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Two lists of records blocked once for each blocking pass of their schemas. A pair of records is
+ * a candidate if it shares a block in any pass, and it belongs to the first pass in which it does
+ * (see {@link #owns}). Visiting each pass's blocks and skipping pairs that a pass doesn't own
+ * yields every candidate pair exactly once, without keeping a set of the pairs already seen.
+ *
+ * @see RecordSchema#nBlockingPasses
+ */
+public class MultiPassBlocks {
+
+    /**
+     * Reads both lists and blocks the first list for every pass. The two schemas must have the
+     * same number of blocking passes.
+     */
+    public static MultiPassBlocks block(IRecordIterator list1, IRecordIterator list2)
+        throws RecordIteratorException
+    {
+        List<Record> records1 = new ArrayList<>();
+        List<Record> records2 = new ArrayList<>();
+
+        Record rec;
+        while ((rec = list1.next()) != null)
+            records1.add(rec);
+
+        while ((rec = list2.next()) != null)
+            records2.add(rec);
+
+        if (records1.isEmpty() || records2.isEmpty())
+            return new MultiPassBlocks(new ArrayList<Map<String, List<Record>>>(), records2);
+
+        int nPasses = records1.get(0).schema().nBlockingPasses();
+        if (records2.get(0).schema().nBlockingPasses() != nPasses)
+            throw new IllegalArgumentException("Schemas have different numbers of blocking passes");
+
+        List<Map<String, List<Record>>> passes = new ArrayList<>(nPasses);
+        for (int p = 0; p < nPasses; p++)
+            passes.add(Record.block(new RecordIterator(records1), p));
+
+        return new MultiPassBlocks(passes, records2);
+    }
+
+    /**
+     * Returns true if <code>pass</code> is the first blocking pass in which the two records share
+     * a blocking key. The records are assumed to share a key in <code>pass</code>.
+     */
+    public static boolean owns(int pass, Record rec1, Record rec2) {
+        for (int p = 0; p < pass; p++)
+            if (rec1.blockingKey(p).equals(rec2.blockingKey(p)))
+                return false;
+
+        return true;
+    }
+
+    /**
+     * Returns the number of blocking passes.
+     */
+    public int nPasses() {
+        return _passes.size();
+    }
+
+    /**
+     * Returns the blocks of the first list for the given pass.
+     */
+    public Map<String, List<Record>> blocks(int pass) {
+        return _passes.get(pass);
+    }
+
+    /**
+     * Returns the records of the second list.
+     */
+    public List<Record> records() {
+        return _records;
+    }
+
+    private MultiPassBlocks(List<Map<String, List<Record>>> passes, List<Record> records) {
+        _passes = passes;
+        _records = Collections.unmodifiableList(records);
+    }
+
+    private final List<Map<String, List<Record>>> _passes;
+    private final List<Record> _records;
+}
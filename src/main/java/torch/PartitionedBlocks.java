@@ -0,0 +1,205 @@
+package torch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Two lists of records split into partitions on disk by blocking key. Every record with a given
+ * blocking key lands in the same partition of its list, so pairs that share a block are always in
+ * partitions with the same index, and each partition can be blocked and compared on its own. Only
+ * one partition of the first list needs to be in memory at a time, so lists larger than the heap
+ * can be blocked.
+ *
+ * <p>Partition files are deleted by {@link #close}.
+ */
+public class PartitionedBlocks implements Closeable {
+
+    /**
+     * Splits both lists into <code>nPartitions</code> partition files in <code>dir</code>, or in
+     * the default temporary directory if <code>dir</code> is null.
+     *
+     * @throws RecordIteratorException if a list can't be read or a partition can't be written.
+     */
+    public static PartitionedBlocks partition(IRecordIterator list1, IRecordIterator list2,
+                                              int nPartitions, File dir)
+        throws RecordIteratorException
+    {
+        if (nPartitions < 1)
+            throw new IllegalArgumentException("'nPartitions' must be positive");
+
+        PartitionedBlocks blocks = new PartitionedBlocks(nPartitions);
+        boolean done = false;
+
+        try {
+            blocks.spill(0, list1, dir);
+            blocks.spill(1, list2, dir);
+            done = true;
+        }
+        catch (IOException e) {
+            throw new RecordIteratorException("There was a problem writing a partition", e);
+        }
+        finally {
+            if (!done)
+                blocks.close();
+        }
+
+        return blocks;
+    }
+
+    /**
+     * Returns the number of partitions in each list.
+     */
+    public int nPartitions() {
+        return _counts[0].length;
+    }
+
+    /**
+     * Returns the number of records in partition <code>p</code> of <code>list</code>, which is
+     * either 1 or 2.
+     */
+    public int size(int list, int p) {
+        return _counts[list - 1][p];
+    }
+
+    /**
+     * Reads partition <code>p</code> of the first list and blocks it.
+     *
+     * @see Record#block
+     */
+    public Map<String, List<Record>> blocks(int p)
+        throws RecordIteratorException
+    {
+        return Record.block(iterator(0, p));
+    }
+
+    /**
+     * Returns an iterator over partition <code>p</code> of the second list. Records are read from
+     * disk as the iterator advances.
+     */
+    public IRecordIterator records(int p)
+        throws RecordIteratorException
+    {
+        return iterator(1, p);
+    }
+
+    /**
+     * Deletes the partition files.
+     */
+    @Override
+    public void close() {
+        for (File[] files: _files)
+            for (File file: files)
+                if (file != null)
+                    file.delete();
+    }
+
+    private PartitionedBlocks(int nPartitions) {
+        _files = new File[2][nPartitions];
+        _counts = new int[2][nPartitions];
+        _schemas = new RecordSchema[2];
+    }
+
+    private void spill(int side, IRecordIterator list, File dir)
+        throws IOException, RecordIteratorException
+    {
+        int n = nPartitions();
+        DataOutputStream[] out = new DataOutputStream[n];
+
+        try {
+            for (int p = 0; p < n; p++) {
+                _files[side][p] = File.createTempFile("torch", ".part", dir);
+                out[p] = new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(_files[side][p])));
+            }
+
+            Record rec;
+            while ((rec = list.next()) != null) {
+                if (_schemas[side] == null)
+                    _schemas[side] = rec.schema();
+                else if (rec.schema() != _schemas[side])
+                    throw new IllegalArgumentException("Records must all have the same schema");
+
+                int p = partition(rec.blockingKey(), n);
+                RecordIO.write(out[p], rec);
+                _counts[side][p]++;
+            }
+        }
+        finally {
+            for (DataOutputStream s: out)
+                if (s != null)
+                    s.close();
+        }
+    }
+
+    private IRecordIterator iterator(final int side, final int p)
+        throws RecordIteratorException
+    {
+        final File file = _files[side][p];
+        final RecordSchema schema = _schemas[side];
+        final int count = _counts[side][p];
+
+        if (count == 0) {
+            return new IRecordIterator() {
+                @Override
+                public Record next() {
+                    return null;
+                }
+            };
+        }
+
+        final DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        }
+        catch (IOException e) {
+            throw new RecordIteratorException("There was a problem reading from the file: " +
+                                              file, e);
+        }
+
+        return new IRecordIterator() {
+            @Override
+            public Record next()
+                throws RecordIteratorException
+            {
+                if (_read == count)
+                    return null;
+
+                try {
+                    Record rec = RecordIO.read(in, schema);
+
+                    if (++_read == count)
+                        in.close();
+
+                    return rec;
+                }
+                catch (IOException e) {
+                    throw new RecordIteratorException(
+                            "There was a problem reading from the file: " + file, e);
+                }
+            }
+
+            private int _read = 0;
+        };
+    }
+
+    private static int partition(String key, int nPartitions) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return (h & 0x7fffffff) % nPartitions;
+    }
+
+    private final File[][] _files;
+    private final int[][] _counts;
+    private final RecordSchema[] _schemas;
+}
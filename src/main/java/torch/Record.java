@@ -22,6 +22,18 @@ public class Record {
      */
     public static Map<String, List<Record>> block(IRecordIterator list) 
         throws RecordIteratorException
+    {
+        return block(list, 0);
+    }
+
+    /**
+     * Perform blocking on a list of <code>Record</code> using the blocking key for the given
+     * blocking pass.
+     *
+     * @see RecordSchema#nBlockingPasses
+     */
+    public static Map<String, List<Record>> block(IRecordIterator list, int pass)
+        throws RecordIteratorException
     {
         HashMap<String, List<Record>> map = new HashMap<>();
 
@@ -30,7 +42,7 @@ public class Record {
 
         Record rec;
         while ((rec = list.next()) != null)
-            acc.add(rec.blockingKey(), rec);
+            acc.add(rec.blockingKey(pass), rec);
 
         return map;
     }
@@ -46,7 +58,25 @@ public class Record {
      * Return the blocking key.
      */
     public String blockingKey() {
-        return _blockingKey;
+        return blockingKey(0);
+    }
+
+    /**
+     * Return the blocking key for the given blocking pass. Pass 0 is the usual blocking key.
+     *
+     * @see RecordSchema#nBlockingPasses
+     */
+    public String blockingKey(int pass) {
+        return _blockingKeys[pass];
+    }
+
+    /**
+     * Return the secondary blocking key, which is used to split oversized blocks.
+     *
+     * @see RecordSchema#subBlockingKey
+     */
+    public String subBlockingKey() {
+        return _schema.subBlockingKey(this);
     }
 
     /**
@@ -82,14 +112,35 @@ public class Record {
      * Construct a new <code>Record</code> from the given values.
      */
     protected Record(RecordSchema schema, String blockingKey, String seq, String id, Field[] fields) 
+    {
+        this(schema, new String[] {blockingKey}, seq, id, fields);
+    }
+
+    /**
+     * Construct a new <code>Record</code> with one blocking key for each blocking pass.
+     */
+    protected Record(RecordSchema schema, String[] blockingKeys, String seq, String id,
+                     Field[] fields)
     {
         _schema = schema;
-        _blockingKey = blockingKey;
+        _blockingKeys = blockingKeys;
         _seq = seq;
         _id = id;
         _fields = Arrays.copyOf(fields, fields.length);
     }
 
+    /**
+     * Construct a <code>Record</code> that stores no values of its own. Subclasses that use this
+     * constructor must override every accessor except {@link #schema}.
+     */
+    protected Record(RecordSchema schema) {
+        _schema = schema;
+        _blockingKeys = null;
+        _seq = null;
+        _id = null;
+        _fields = null;
+    }
+
     /**
      * Two <code>Record</code>s are equal if they have the same schema, id, blocking key, and
      * fields.
@@ -104,14 +155,14 @@ public class Record {
         if (_schema != rec.schema())
             return false;
 
-        if (!_id.equals(rec.id()))
+        if (!id().equals(rec.id()))
             return false;
 
-        if (!_blockingKey.equals(rec.blockingKey()))
+        if (!blockingKey().equals(rec.blockingKey()))
             return false;
 
-        for (int i = 0; i < _fields.length; i++)
-            if (!_fields[i].equals(rec.field(i)))
+        for (int i = 0; i < nFields(); i++)
+            if (!field(i).equals(rec.field(i)))
                 return false;
 
         return true;
@@ -120,17 +171,22 @@ public class Record {
     @Override
     public String toString() {
         StringBuilder b = new StringBuilder();
-        b.append("Key: " + _blockingKey + ", ");
+        b.append("Key: " + blockingKey() + ", ");
 
         if (_schema.hasId())
-            b.append("ID: " + _id + ", ");
+            b.append("ID: " + id() + ", ");
+
+        Field[] fields = new Field[nFields()];
+        for (int i = 0; i < fields.length; i++)
+            fields[i] = field(i);
 
-        b.append("Fields: " + Arrays.toString(_fields));
+        b.append("Fields: " + Arrays.toString(fields));
         return b.toString();
     }
 
     private final RecordSchema _schema;
-    private final String _blockingKey, _seq;
+    private final String[] _blockingKeys;
+    private final String _seq;
     private final String _id;
     private final Field[] _fields;
 }
@@ -1,9 +1,12 @@
 package torch;
 
+import torch.comparators.CachingComparator;
 import torch.comparators.ExactComparator;
+import torch.comparators.StringComparator;
 
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
 
 /**
  * An object which computes the matching pattern betwen two {@link Record}s.
@@ -63,6 +66,21 @@ public class RecordComparator {
             return this;
         }
 
+        /**
+         * Adds a comparator to the field with the given <code>name</code>, and remembers up to
+         * <code>cacheSize</code> of its results. A <code>cacheSize</code> of zero adds the
+         * comparator without a cache. An {@link ExactComparator} is never cached, since comparing
+         * is cheaper than a lookup.
+         *
+         * @see torch.comparators.CachingComparator
+         */
+        public Builder compare(String name, IFieldComparator cmp, int cacheSize) {
+            if (cacheSize > 0 && cmp.getClass() != ExactComparator.class)
+                cmp = new CachingComparator(cmp, cacheSize);
+
+            return compare(name, cmp);
+        }
+
         /**
          * Indicates whether the <code>RecordComparator</code> should handle blank values.
          */
@@ -98,35 +116,20 @@ public class RecordComparator {
      */
     public int[] compare(Record rec1, Record rec2) {
         int[] pattern = new int[_nComparators];
+        ValuePool pool = sharedPool(rec1, rec2);
 
-        for (int i = 0; i < pattern.length; i++) {
-            int index1 = _fieldIndex1[i];
-            int index2 = _fieldIndex2[i];
-            Field field1 = rec1.field(index1);
-            Field field2 = rec2.field(index2);
+        if (pool != null) {
+            RecordTable.Row row1 = (RecordTable.Row)rec1;
+            RecordTable.Row row2 = (RecordTable.Row)rec2;
 
-            // short circuit evaluation if either of the fields is blank
-            if (field1.empty() || field2.empty()) {
-                pattern[i] = 0;
-                continue;
+            for (int i = 0; i < pattern.length; i++) {
+                int code1 = row1.code(_fieldIndex1[i]);
+                int code2 = row2.code(_fieldIndex2[i]);
+                pattern[i] = level(i, pool, code1, code2);
             }
-
-            IFieldComparator cmp = _comparators[i];
-
-            // short circuit evaluation if exact match
-            if (field1.stringValue().equals(field2.stringValue())) {
-                pattern[i] = cmp.nLevels() - 1 + _levelOffset;
-                continue;
-            }
-
-            // if you've made it this far and you're using ExactComparator, then you disagree
-            if (cmp.getClass() == ExactComparator.class) {
-                pattern[i] = _levelOffset;
-                continue;
-            }
-
-            pattern[i] = 
-                _comparators[i].compare(rec1.field(index1), rec2.field(index2)) + _levelOffset;
+        } else {
+            for (int i = 0; i < pattern.length; i++)
+                pattern[i] = level(i, rec1, rec2);
         }
 
         return pattern;
@@ -135,15 +138,164 @@ public class RecordComparator {
     /**
      * Same as {@link #compare} but returns the comparison pattern as an <code>int</code>. The
      * <code>int</code> value is a number between 0 and <code>nPatterns() - 1</code>, and it can be
-     * converted to an array by calling <code>patternFor(int)</code>.
+     * converted to an array by calling <code>patternFor(int)</code>. Unlike {@link #compare} this
+     * method doesn't allocate.
      *
      * @see #nPatterns
      * @see #patternFor
      */
     public int compareIndex(Record rec1, Record rec2) {
-        int[] pattern = compare(rec1, rec2);
+        int index = 0;
+        ValuePool pool = sharedPool(rec1, rec2);
 
-        return patternIndex(pattern);
+        if (pool != null) {
+            RecordTable.Row row1 = (RecordTable.Row)rec1;
+            RecordTable.Row row2 = (RecordTable.Row)rec2;
+
+            for (int i = 0; i < _nComparators; i++) {
+                int code1 = row1.code(_fieldIndex1[i]);
+                int code2 = row2.code(_fieldIndex2[i]);
+                index += level(i, pool, code1, code2) * _steps[i];
+            }
+        } else {
+            for (int i = 0; i < _nComparators; i++)
+                index += level(i, rec1, rec2) * _steps[i];
+        }
+
+        return index;
+    }
+
+    /**
+     * Same as {@link #compareIndex(Record, Record)}, but compares the fields in the order of
+     * <code>bound</code> and returns -1 as soon as the pair's score is certain to be below the
+     * bound's cutoff. Otherwise the pattern index is returned. The bound must have been made
+     * for this comparator.
+     *
+     * @see ScoreBound
+     */
+    public int compareIndex(Record rec1, Record rec2, ScoreBound bound) {
+        int[] order = bound.order();
+        double[][] fieldScores = bound.fieldScores();
+        double threshold = bound.threshold();
+
+        int index = 0;
+        double score = 0.0;
+        ValuePool pool = sharedPool(rec1, rec2);
+
+        for (int n = 0; n < _nComparators; n++) {
+            int i = order[n];
+            int level;
+
+            if (pool != null) {
+                int code1 = ((RecordTable.Row)rec1).code(_fieldIndex1[i]);
+                int code2 = ((RecordTable.Row)rec2).code(_fieldIndex2[i]);
+                level = level(i, pool, code1, code2);
+            } else {
+                level = level(i, rec1, rec2);
+            }
+
+            double contribution = fieldScores[i][level];
+
+            // a pattern with a -infinity or NaN contribution can't reach a finite cutoff
+            if (!(contribution > Double.NEGATIVE_INFINITY) && threshold > Double.NEGATIVE_INFINITY)
+                return -1;
+
+            index += level * _steps[i];
+            score += contribution;
+
+            if (score + bound.maxRest(n + 1) < threshold)
+                return -1;
+        }
+
+        return index;
+    }
+
+    /**
+     * Compares each of <code>block[from]</code>, ..., <code>block[to - 1]</code> to
+     * <code>rec2</code>, and writes the pattern index for <code>block[from + i]</code> to
+     * <code>patterns[i]</code>.
+     *
+     * @see #compareIndex(Record, Record)
+     */
+    public void compareIndex(Record[] block, int from, int to, Record rec2, int[] patterns) {
+        compareIndex(block, from, to, rec2, patterns, 0);
+    }
+
+    /**
+     * Same as {@link #compareIndex(Record[], int, int, Record, int[])}, but writes the pattern
+     * index for <code>block[from + i]</code> to <code>patterns[offset + i]</code>, so the indices
+     * for several blocks can be laid out in one array.
+     */
+    public void compareIndex(Record[] block, int from, int to, Record rec2, int[] patterns,
+                             int offset)
+    {
+        for (int i = from; i < to; i++)
+            patterns[offset + i - from] = compareIndex(block[i], rec2);
+    }
+
+    /**
+     * Compares each record in <code>block</code> to <code>rec2</code>, and writes the pattern
+     * indices to <code>patterns</code> in iteration order. <code>patterns</code> should have room
+     * for at least <code>block.size()</code> values.
+     *
+     * @see #compareIndex(Record, Record)
+     */
+    public void compareIndex(List<Record> block, Record rec2, int[] patterns) {
+        int i = 0;
+        for (Record rec1: block)
+            patterns[i++] = compareIndex(rec1, rec2);
+    }
+
+    /**
+     * Computes the level of the <code>i</code>th comparison between two records.
+     */
+    private int level(int i, Record rec1, Record rec2) {
+        Field field1 = rec1.field(_fieldIndex1[i]);
+        Field field2 = rec2.field(_fieldIndex2[i]);
+
+        // short circuit evaluation if either of the fields is blank
+        if (field1.empty() || field2.empty())
+            return 0;
+
+        // short circuit evaluation if exact match
+        if (field1.stringValue().equals(field2.stringValue()))
+            return _levels[i] - 1;
+
+        // if you've made it this far and you're using ExactComparator, then you disagree
+        if (_exact[i])
+            return _levelOffset;
+
+        return _comparators[i].compare(field1, field2) + _levelOffset;
+    }
+
+    /**
+     * Computes the level of the <code>i</code>th comparison between two values coded in the same
+     * pool. Same as {@link #level(int, Record, Record)}, but equal values are detected by
+     * comparing codes.
+     */
+    private int level(int i, ValuePool pool, int code1, int code2) {
+        if (pool.empty(code1) || pool.empty(code2))
+            return 0;
+
+        if (code1 == code2)
+            return _levels[i] - 1;
+
+        if (_exact[i])
+            return _levelOffset;
+
+        return _comparators[i].compare(pool.field(code1), pool.field(code2)) + _levelOffset;
+    }
+
+    /**
+     * Returns the field pool shared by two records, or <code>null</code> unless both are
+     * {@link RecordTable} rows whose tables code their fields in the same pool.
+     */
+    private static ValuePool sharedPool(Record rec1, Record rec2) {
+        if (!(rec1 instanceof RecordTable.Row) || !(rec2 instanceof RecordTable.Row))
+            return null;
+
+        ValuePool pool = ((RecordTable.Row)rec1).table().pool();
+        return (pool == ((RecordTable.Row)rec2).table().pool()) ? pool : null;
     }
 
     /**
@@ -188,6 +340,22 @@ public class RecordComparator {
         return _levels[_compareFieldIndex.get(name)];
     }
 
+    /**
+     * The comparator used for the <code>i</code>th field comparison.
+     */
+    public IFieldComparator comparator(int i) {
+        return _comparators[i];
+    }
+
+    /**
+     * Returns the indexes of the field comparisons from the cheapest to the most expensive, as
+     * estimated from their comparators: exact comparisons first and string similarities last,
+     * otherwise in field order.
+     */
+    public int[] costOrder() {
+        return _costOrder;
+    }
+
     /**
      * The names of fields that are examined by this record comparator.
      */
@@ -230,6 +398,38 @@ public class RecordComparator {
         return index;
     }
 
+    /**
+     * Returns a 64-bit fingerprint of the structure of this comparator: the compared fields, the
+     * class and number of levels of each field comparator, and whether blanks are handled. Two
+     * comparators with the same fingerprint produce the same pattern indexes for the same
+     * comparison results, so counts and models made with one can be used with the other. Settings
+     * internal to a field comparator, such as string similarity thresholds, are not part of the
+     * fingerprint.
+     */
+    public long fingerprint() {
+        StringBuilder b = new StringBuilder();
+        b.append(_handleBlanks);
+
+        for (int i = 0; i < _nComparators; i++) {
+            IFieldComparator cmp = _comparators[i];
+            if (cmp instanceof CachingComparator)
+                cmp = ((CachingComparator)cmp).comparator();
+
+            b.append('\0').append(_compareFields[i]);
+            b.append('\0').append(cmp.getClass().getName());
+            b.append('\0').append(_levels[i]);
+        }
+
+        // 64-bit FNV-1a
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < b.length(); i++) {
+            h ^= b.charAt(i);
+            h *= 0x100000001b3L;
+        }
+
+        return h;
+    }
+
     /**
      * Returns the fields in the given <code>Record</code> that would be used in a comparison.
      *
@@ -270,6 +470,7 @@ public class RecordComparator {
         _fieldIndex2 = new int[_nComparators];
         _levels = new int[_nComparators];
         _steps = new int[_nComparators];
+        _exact = new boolean[_nComparators];
 
         _steps[0] = 1;
         int nPatterns = 1;
@@ -282,22 +483,51 @@ public class RecordComparator {
             if (i > 0)
                 _steps[i] = _steps[i - 1] * _levels[i - 1];
 
+            IFieldComparator cmp = _comparators[i];
+            if (cmp instanceof CachingComparator)
+                cmp = ((CachingComparator)cmp).comparator();
+
+            // exact comparisons are inlined, bypassing any cache in front of them
+            _exact[i] = (cmp.getClass() == ExactComparator.class);
             _fieldIndex1[i] = schema1.fieldIndex(compareFields[i]);
             _fieldIndex2[i] = schema2.fieldIndex(compareFields[i]);
         }
 
         _nPatterns = nPatterns;
+        _costOrder = new int[_nComparators];
+
+        int n = 0;
+        for (int cost = 0; cost <= 2; cost++)
+            for (int i = 0; i < _nComparators; i++)
+                if (cost(i) == cost)
+                    _costOrder[n++] = i;
 
         _compareFieldIndex = new HashMap<>();
         for (int i = 0; i < _compareFields.length; i++)
             _compareFieldIndex.put(_compareFields[i], i);
     }
 
+    /**
+     * Returns a rough rank of the cost of the <code>i</code>th comparison: 0 for exact, 2 for
+     * string similarity, and 1 for anything else.
+     */
+    private int cost(int i) {
+        IFieldComparator cmp = _comparators[i];
+        if (cmp instanceof CachingComparator)
+            cmp = ((CachingComparator)cmp).comparator();
+
+        if (_exact[i] || cmp instanceof ExactComparator)
+            return 0;
+
+        return (cmp instanceof StringComparator) ? 2 : 1;
+    }
+
     private final RecordSchema _schema1, _schema2;
     private final String[] _compareFields;
     private final HashMap<String, Integer> _compareFieldIndex;
     private final int _nComparators, _nPatterns, _levelOffset;
-    private final int[] _fieldIndex1, _fieldIndex2, _levels, _steps;
+    private final int[] _fieldIndex1, _fieldIndex2, _levels, _steps, _costOrder;
     private final IFieldComparator[] _comparators;
+    private final boolean[] _exact;
     private final boolean _handleBlanks;
 }
@@ -0,0 +1,72 @@
+package torch;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads and writes records in the binary format used for spill files. A record is written as its
+ * blocking keys, sequence value, ID, and fields.
+ */
+class RecordIO {
+
+    static void write(DataOutputStream out, Record rec)
+        throws IOException
+    {
+        int nKeys = rec.schema().nBlockingPasses();
+        for (int p = 0; p < nKeys; p++)
+            writeString(out, rec.blockingKey(p));
+
+        writeString(out, rec.seq());
+        writeString(out, rec.id());
+
+        out.writeInt(rec.nFields());
+        for (int i = 0; i < rec.nFields(); i++)
+            writeString(out, rec.field(i).stringValue());
+    }
+
+    static Record read(DataInputStream in, RecordSchema schema)
+        throws IOException
+    {
+        String[] keys = new String[schema.nBlockingPasses()];
+        for (int p = 0; p < keys.length; p++)
+            keys[p] = readString(in);
+
+        String seq = readString(in);
+        String id = readString(in);
+
+        Field[] fields = new Field[in.readInt()];
+        for (int i = 0; i < fields.length; i++)
+            fields[i] = new Field(readString(in));
+
+        return new Record(schema, keys, seq, id, fields);
+    }
+
+    // writeUTF is limited to 64K, so strings are written as a length and UTF-8 bytes
+    static void writeString(DataOutputStream out, String s)
+        throws IOException
+    {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    static String readString(DataInputStream in)
+        throws IOException
+    {
+        int n = in.readInt();
+        if (n < 0)
+            return null;
+
+        byte[] bytes = new byte[n];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private RecordIO() {}
+}
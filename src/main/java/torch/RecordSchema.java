@@ -28,8 +28,48 @@ public class RecordSchema
      */
     public RecordSchema(String[] columns, String[] blockingFields, String seqField, String idField) 
     {
+        this(columns, blockingFields, new String[0], seqField, idField);
+    }
+
+    /**
+     * Constructs a new <code>RecordSchema</code> with the given columns, blocking fields,
+     * sub-blocking fields, and ID fields. The sub-blocking fields make up a secondary blocking key
+     * that is used to split blocks that are too large to compare in full (see {@link
+     * BlockPairs}). Unlike blocking fields, sub-blocking fields remain <code>Record</code> fields.
+     *
+     * @param subBlockingFields an array of sub-blocking field names, should be a subset of the
+     * <code>Record</code> fields.
+     *
+     * @throws IllegalArgumentException if <code>subBlockingFields</code> contains a name that
+     * isn't a <code>Record</code> field.
+     */
+    public RecordSchema(String[] columns, String[] blockingFields, String[] subBlockingFields,
+                        String seqField, String idField)
+    {
+        this(columns, new String[][] {blockingFields}, subBlockingFields, seqField, idField);
+    }
+
+    /**
+     * Constructs a new <code>RecordSchema</code> with several blocking passes. Each entry in
+     * <code>blockingPasses</code> lists the fields of one blocking key, and records are blocked
+     * once for each key (see {@link MultiPassBlocks}). The fields of the first pass are removed
+     * from the <code>Record</code> fields as usual; columns used only by later passes remain
+     * <code>Record</code> fields, so they can also be compared.
+     *
+     * @throws IllegalArgumentException if there are no blocking passes.
+     */
+    public RecordSchema(String[] columns, String[][] blockingPasses, String[] subBlockingFields,
+                        String seqField, String idField)
+    {
+        if (blockingPasses.length == 0)
+            throw new IllegalArgumentException("at least one blocking pass is required");
+
+        String[] blockingFields = blockingPasses[0];
+
         _columns = columns;
         _blockingFields = blockingFields;
+        _blockingPasses = blockingPasses;
+        _subBlockingFields = subBlockingFields;
         _seqField = seqField;
         _idField = idField;
         _hasId = (idField != null);
@@ -47,6 +87,13 @@ public class RecordSchema
             fields.remove(name);
         }
 
+        for (String[] pass: blockingPasses) {
+            for (String name: pass) {
+                if (_columnIndex.get(name) == null)
+                    throw new IllegalArgumentException("no such column (blocking): " + name);
+            }
+        }
+
         if (_seqField == null) {
             _seqValue = 0;
         } else {
@@ -67,6 +114,15 @@ public class RecordSchema
         i = 0;
         for (String name: fields)
             _fieldIndex.put(name, i++);
+
+        _subBlockingIndex = new int[subBlockingFields.length];
+        for (int k = 0; k < subBlockingFields.length; k++) {
+            if (_fieldIndex.get(subBlockingFields[k]) == null)
+                throw new IllegalArgumentException("no such field (sub-blocking): " +
+                                                   subBlockingFields[k]);
+
+            _subBlockingIndex[k] = _fieldIndex.get(subBlockingFields[k]);
+        }
     }
 
     /**
@@ -83,11 +139,16 @@ public class RecordSchema
         for (int i = 0; i < _columns.length; i++)
             map.put(_columns[i], columns[i]);
 
-        StringBuilder blockingKey = new StringBuilder();
+        String[] blockingKeys = new String[_blockingPasses.length];
         Field[] fields = new Field[_fields.length];
 
-        for (String name: _blockingFields)
-            blockingKey.append(map.get(name));
+        for (int p = 0; p < blockingKeys.length; p++) {
+            StringBuilder blockingKey = new StringBuilder();
+            for (String name: _blockingPasses[p])
+                blockingKey.append(map.get(name));
+
+            blockingKeys[p] = blockingKey.toString();
+        }
 
         String id = null;
 
@@ -104,7 +165,7 @@ public class RecordSchema
         for (int i = 0; i < _fields.length; i++)
             fields[i] = new Field(map.get(_fields[i]));
 
-        return new Record(this, blockingKey.toString(), seq, id, fields);
+        return new Record(this, blockingKeys, seq, id, fields);
     }
 
     /**
@@ -129,6 +190,43 @@ public class RecordSchema
         return _columnIndex.get(name);
     }
 
+    /**
+     * Returns the number of fields in a <code>Record</code> with this schema.
+     */
+    public int nFields() {
+        return _fields.length;
+    }
+
+    /**
+     * Returns the number of blocking keys in a <code>Record</code> with this schema.
+     */
+    public int nBlockingPasses() {
+        return _blockingPasses.length;
+    }
+
+    /**
+     * Returns whether this <code>RecordSchema</code> has any sub-blocking fields.
+     */
+    public boolean hasSubBlockingKey() {
+        return _subBlockingIndex.length > 0;
+    }
+
+    /**
+     * Returns the secondary blocking key of a record with this schema, constructed by appending
+     * its sub-blocking fields. Returns an empty <code>String</code> if there are no sub-blocking
+     * fields.
+     */
+    public String subBlockingKey(Record rec) {
+        if (_subBlockingIndex.length == 1)
+            return rec.field(_subBlockingIndex[0]).stringValue();
+
+        StringBuilder key = new StringBuilder();
+        for (int i: _subBlockingIndex)
+            key.append(rec.field(i).stringValue());
+
+        return key.toString();
+    }
+
     /**
      * Returns whether this <code>RecordSchema</code> has any ID fields.
      */
@@ -137,7 +235,9 @@ public class RecordSchema
     }
 
     private final HashMap<String, Integer> _columnIndex, _fieldIndex;
-    private final String[] _columns, _fields, _blockingFields;
+    private final String[] _columns, _fields, _blockingFields, _subBlockingFields;
+    private final String[][] _blockingPasses;
+    private final int[] _subBlockingIndex;
     private final String _idField, _seqField;
     private final boolean _hasId;
     private int _seqValue;
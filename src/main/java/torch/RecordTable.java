@@ -0,0 +1,259 @@
+package torch;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A column-oriented store of {@link Record}s. Each field is kept as an <code>int[]</code> column
+ * of codes into a {@link ValuePool}, and the blocking key, sequence value, and ID are kept as code
+ * columns into pools of their own. A table holds a handful of <code>int</code>s per record
+ * instead of a <code>Field</code> object graph.
+ *
+ * <p>Records are read back through {@link Row} views, which are <code>Record</code>s and can be
+ * used anywhere a <code>Record</code> can. When both records being compared are rows of tables
+ * that share a field pool, {@link RecordComparator} compares their codes instead of their
+ * strings.
+ */
+public class RecordTable {
+
+    /**
+     * A lightweight view of one row of a <code>RecordTable</code>.
+     */
+    public static class Row extends Record {
+
+        /**
+         * Returns the table this row belongs to.
+         */
+        public RecordTable table() {
+            return _table;
+        }
+
+        /**
+         * Returns the index of this row in its table.
+         */
+        public int row() {
+            return _row;
+        }
+
+        /**
+         * Returns the field pool code of the <code>i</code>th field in this row.
+         */
+        public int code(int i) {
+            return _table._fields[i][_row];
+        }
+
+        @Override
+        public Field field(int i) {
+            return _table._pool.field(_table._fields[i][_row]);
+        }
+
+        @Override
+        public String blockingKey(int pass) {
+            return _table._keyPool.field(_table._keys[pass][_row]).stringValue();
+        }
+
+        @Override
+        public String seq() {
+            return _table._seqPool.value(_table._seqs[_row]);
+        }
+
+        @Override
+        public String id() {
+            int code = _table._ids[_row];
+            return (code < 0) ? null : _table._idPool.value(code);
+        }
+
+        @Override
+        public int nFields() {
+            return _table._fields.length;
+        }
+
+        private Row(RecordTable table, int row) {
+            super(table._schema);
+            _table = table;
+            _row = row;
+        }
+
+        private final RecordTable _table;
+        private final int _row;
+    }
+
+    /**
+     * Loads every record in <code>list</code> into a new table whose fields are coded in
+     * <code>pool</code>.
+     */
+    public static RecordTable load(RecordSchema schema, ValuePool pool, IRecordIterator list)
+        throws RecordIteratorException
+    {
+        RecordTable table = new RecordTable(schema, pool);
+
+        Record rec;
+        while ((rec = list.next()) != null)
+            table.add(rec);
+
+        table.trim();
+        return table;
+    }
+
+    /**
+     * Loads every record in <code>list</code> into a new table with its own field pool.
+     */
+    public static RecordTable load(RecordSchema schema, IRecordIterator list)
+        throws RecordIteratorException
+    {
+        return load(schema, new ValuePool(), list);
+    }
+
+    /**
+     * Constructs an empty table for records with the given schema. Fields are coded in
+     * <code>pool</code>; use the same pool for two tables to compare their rows by code.
+     */
+    public RecordTable(RecordSchema schema, ValuePool pool) {
+        _schema = schema;
+        _pool = pool;
+        _keyPool = new ValuePool();
+        _seqPool = new ValuePool();
+        _idPool = new ValuePool();
+
+        int capacity = 1024;
+        _fields = new int[schema.nFields()][capacity];
+        _keys = new int[schema.nBlockingPasses()][capacity];
+        _seqs = new int[capacity];
+        _ids = new int[capacity];
+    }
+
+    /**
+     * Constructs an empty table with its own field pool.
+     */
+    public RecordTable(RecordSchema schema) {
+        this(schema, new ValuePool());
+    }
+
+    /**
+     * Appends a record to the table.
+     *
+     * @throws IllegalArgumentException if the record's schema isn't the table's schema.
+     */
+    public void add(Record rec) {
+        if (rec.schema() != _schema)
+            throw new IllegalArgumentException("Unknown record schema");
+
+        if (_size == _seqs.length) {
+            int capacity = Math.max(1024, 2 * _size);
+            for (int i = 0; i < _fields.length; i++)
+                _fields[i] = Arrays.copyOf(_fields[i], capacity);
+
+            for (int p = 0; p < _keys.length; p++)
+                _keys[p] = Arrays.copyOf(_keys[p], capacity);
+
+            _seqs = Arrays.copyOf(_seqs, capacity);
+            _ids = Arrays.copyOf(_ids, capacity);
+        }
+
+        for (int i = 0; i < _fields.length; i++)
+            _fields[i][_size] = _pool.intern(rec.field(i).stringValue());
+
+        for (int p = 0; p < _keys.length; p++)
+            _keys[p][_size] = _keyPool.intern(rec.blockingKey(p));
+
+        _seqs[_size] = _seqPool.intern(rec.seq());
+        _ids[_size] = (rec.id() == null) ? -1 : _idPool.intern(rec.id());
+        _size++;
+    }
+
+    /**
+     * Releases unused capacity in the columns.
+     */
+    public void trim() {
+        for (int i = 0; i < _fields.length; i++)
+            _fields[i] = Arrays.copyOf(_fields[i], _size);
+
+        for (int p = 0; p < _keys.length; p++)
+            _keys[p] = Arrays.copyOf(_keys[p], _size);
+
+        _seqs = Arrays.copyOf(_seqs, _size);
+        _ids = Arrays.copyOf(_ids, _size);
+    }
+
+    /**
+     * Returns a view of the <code>i</code>th row.
+     */
+    public Row row(int i) {
+        if (i < 0 || i >= _size)
+            throw new IndexOutOfBoundsException("No such row: " + i);
+
+        return new Row(this, i);
+    }
+
+    /**
+     * Returns an iterator over views of every row, in the order they were added.
+     */
+    public IRecordIterator iterator() {
+        return new IRecordIterator() {
+            @Override
+            public Record next() {
+                return (_next < _size) ? new Row(RecordTable.this, _next++) : null;
+            }
+
+            private int _next = 0;
+        };
+    }
+
+    /**
+     * Perform blocking on the rows of this table. This is the same as calling
+     * {@link Record#block} on {@link #iterator}, but groups rows by their blocking key codes, so
+     * each distinct key is decoded only once.
+     */
+    public Map<String, List<Record>> block() {
+        int[] sizes = new int[_keyPool.size()];
+        for (int i = 0; i < _size; i++)
+            sizes[_keys[0][i]]++;
+
+        Record[][] blocks = new Record[sizes.length][];
+        for (int k = 0; k < blocks.length; k++)
+            blocks[k] = new Record[sizes[k]];
+
+        Arrays.fill(sizes, 0);
+        for (int i = 0; i < _size; i++) {
+            int k = _keys[0][i];
+            blocks[k][sizes[k]++] = new Row(this, i);
+        }
+
+        HashMap<String, List<Record>> map = new HashMap<>();
+        for (int k = 0; k < blocks.length; k++) {
+            if (blocks[k].length > 0)
+                map.put(_keyPool.field(k).stringValue(), Arrays.asList(blocks[k]));
+        }
+
+        return map;
+    }
+
+    /**
+     * Returns the number of rows in the table.
+     */
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * Returns the schema of the records in this table.
+     */
+    public RecordSchema schema() {
+        return _schema;
+    }
+
+    /**
+     * Returns the pool in which field values are coded.
+     */
+    public ValuePool pool() {
+        return _pool;
+    }
+
+    private final RecordSchema _schema;
+    private final ValuePool _pool, _keyPool, _seqPool, _idPool;
+    private final int[][] _fields, _keys;
+    private int[] _seqs, _ids;
+    private int _size;
+}
@@ -0,0 +1,107 @@
+package torch;
+
+/**
+ * The bounds that let {@link RecordComparator#compareIndex(Record, Record, ScoreBound)} stop
+ * comparing a pair as soon as its match score can't reach a cutoff. The score must be a sum of
+ * one contribution per field, as for a mixture model under conditional independence. Fields are
+ * compared cheapest first, in the comparator's {@link RecordComparator#costOrder}, and after each
+ * one the score so far plus the largest contribution the remaining fields could add is compared
+ * to the cutoff.
+ *
+ * <p>The score of a pattern may be summed in another order than the bound, so the two can differ
+ * by rounding. A pair is only given up on if its bound is below the cutoff by more than a
+ * tolerance far larger than any rounding error, so no pair scoring at least the cutoff is ever
+ * given up on.
+ *
+ * <p>A level whose m weight is 0 in some class contributes an infinite or NaN score. Such
+ * contributions are left out of the tolerance and the largest contributions, and a pair is given
+ * up on as soon as a field contributes -infinity or NaN, since its score then can't reach a
+ * finite cutoff. With a cutoff of -infinity no pair is given up on.
+ */
+public class ScoreBound {
+
+    /**
+     * Constructs bounds for pairs compared by <code>cmp</code>.
+     *
+     * @param fieldScores the contribution of each level of each field to the score, indexed by
+     * field and level.
+     * @throws IllegalArgumentException if <code>fieldScores</code> doesn't match the comparator.
+     */
+    public ScoreBound(RecordComparator cmp, double[][] fieldScores, double cutoff) {
+        int nComparators = cmp.nComparators();
+
+        if (fieldScores.length != nComparators)
+            throw new IllegalArgumentException("fieldScores.length incompatible with comparator");
+
+        for (int k = 0; k < nComparators; k++) {
+            if (fieldScores[k].length != cmp.nLevels(k)) {
+                String msg = String.format("fieldScores[%d].length incompatible with comparator", k);
+                throw new IllegalArgumentException(msg);
+            }
+        }
+
+        _fieldScores = fieldScores;
+        _cutoff = cutoff;
+        _order = cmp.costOrder();
+        _maxRest = new double[nComparators + 1];
+
+        double magnitude = 1.0;
+        for (int n = nComparators - 1; n >= 0; n--) {
+            double max = Double.NEGATIVE_INFINITY;
+            for (double score: fieldScores[_order[n]]) {
+                if (score > max)
+                    max = score;
+
+                if (!Double.isInfinite(score) && !Double.isNaN(score))
+                    magnitude += Math.abs(score);
+            }
+
+            // a field that can only contribute -infinity or NaN makes every pair hopeless, and
+            // -infinity + infinity would be NaN, which never compares below the threshold
+            if (max == Double.NEGATIVE_INFINITY || _maxRest[n + 1] == Double.NEGATIVE_INFINITY)
+                _maxRest[n] = Double.NEGATIVE_INFINITY;
+            else
+                _maxRest[n] = _maxRest[n + 1] + max;
+        }
+
+        _threshold = cutoff - TOLERANCE * magnitude;
+    }
+
+    public double cutoff() {
+        return _cutoff;
+    }
+
+    /**
+     * Returns the fields in the order they are compared.
+     */
+    int[] order() {
+        return _order;
+    }
+
+    double[][] fieldScores() {
+        return _fieldScores;
+    }
+
+    /**
+     * Returns the largest total contribution of the fields from the <code>n</code>th in the
+     * order on.
+     */
+    double maxRest(int n) {
+        return _maxRest[n];
+    }
+
+    /**
+     * Returns the value the bound is compared to, slightly below the cutoff.
+     */
+    double threshold() {
+        return _threshold;
+    }
+
+    // relative to the sum of the magnitudes of the contributions
+    private final static double TOLERANCE = 1e-9;
+
+    private final double[][] _fieldScores;
+    private final double _cutoff, _threshold;
+    private final int[] _order;
+    private final double[] _maxRest;
+}
@@ -0,0 +1,485 @@
+package torch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorted-neighborhood candidate generation, an alternative to blocking with {@link Record#block}.
+ * Both lists are merged into one sequence ordered by a sort key, and every record is paired with
+ * the records from the other list among the <code>window - 1</code> records before it. Records
+ * whose keys differ slightly, such as by a typo, still end up near each other, and the number of
+ * pairs grows linearly with the size of the lists.
+ *
+ * <p>Records are sorted in memory in runs of <code>runSize</code>; if the lists don't fit in one
+ * run, sorted runs are spilled to disk and merged. The merged sequence is cut into segments of
+ * <code>segmentSize</code> records, each of which carries the tail of the previous segment so that
+ * its pairs can be compared independently of other segments, for example on separate threads.
+ * Ties in the sort key are broken by list and then by position in the list, so the order of pairs
+ * is deterministic.
+ */
+public class SortedNeighborhood {
+
+    public final static int DEFAULT_WINDOW = 10;
+    public final static int DEFAULT_RUN_SIZE = 1 << 20;
+    public final static int DEFAULT_SEGMENT_SIZE = 1 << 16;
+
+    /**
+     * Sorts records by their blocking key.
+     */
+    public final static ISortKey BLOCKING_KEY = new ISortKey() {
+        @Override
+        public String sortKey(Record rec) {
+            return rec.blockingKey();
+        }
+    };
+
+    /**
+     * Returns a sort key that appends the values of the named fields. Both lists' schemas must
+     * have fields with these names.
+     */
+    public static ISortKey fields(final String... names) {
+        return new ISortKey() {
+            @Override
+            public String sortKey(Record rec) {
+                StringBuilder key = new StringBuilder();
+                for (String name: names)
+                    key.append(rec.field(rec.schema().fieldIndex(name)).stringValue());
+
+                return key.toString();
+            }
+        };
+    }
+
+    public static class Builder {
+
+        public Builder() {
+            _sortKey = BLOCKING_KEY;
+            _window = DEFAULT_WINDOW;
+            _runSize = DEFAULT_RUN_SIZE;
+            _segmentSize = DEFAULT_SEGMENT_SIZE;
+            _tempDir = null;
+            _nThreads = Runtime.getRuntime().availableProcessors();
+        }
+
+        public Builder sortKey(ISortKey key) {
+            _sortKey = key;
+            return this;
+        }
+
+        public Builder window(int w) {
+            _window = w;
+            return this;
+        }
+
+        public Builder runSize(int n) {
+            _runSize = n;
+            return this;
+        }
+
+        public Builder segmentSize(int n) {
+            _segmentSize = n;
+            return this;
+        }
+
+        public Builder tempDir(File dir) {
+            _tempDir = dir;
+            return this;
+        }
+
+        public Builder nThreads(int n) {
+            _nThreads = n;
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException if the window is smaller than 2, or any of the sizes
+         * aren't positive.
+         */
+        public SortedNeighborhood build() {
+            if (_window < 2)
+                throw new IllegalArgumentException("'window' must be at least 2");
+            if (_runSize < 1 || _segmentSize < 1 || _nThreads < 1)
+                throw new IllegalArgumentException("sizes must be positive");
+
+            return new SortedNeighborhood(this);
+        }
+
+        private ISortKey _sortKey;
+        private int _window, _runSize, _segmentSize, _nThreads;
+        private File _tempDir;
+    }
+
+    /**
+     * A contiguous stretch of the merged sequence and the candidate pairs whose later record lies
+     * in it.
+     */
+    public static class Segment {
+
+        /**
+         * Returns the number of candidate pairs.
+         */
+        public int nPairs() {
+            return _nPairs;
+        }
+
+        /**
+         * Returns the record from the first list in the <code>k</code>th pair.
+         */
+        public Record record1(int k) {
+            return _records[_pairs1[k]];
+        }
+
+        /**
+         * Returns the record from the second list in the <code>k</code>th pair.
+         */
+        public Record record2(int k) {
+            return _records[_pairs2[k]];
+        }
+
+        private Segment(Record[] records, int[] pairs1, int[] pairs2, int nPairs) {
+            _records = records;
+            _pairs1 = pairs1;
+            _pairs2 = pairs2;
+            _nPairs = nPairs;
+        }
+
+        private final Record[] _records;
+        private final int[] _pairs1, _pairs2;
+        private final int _nPairs;
+    }
+
+    /**
+     * The segments of one sorted-neighborhood pass over two lists. Closing it deletes any spilled
+     * runs; this happens automatically once the last segment has been read.
+     */
+    public class Segments implements Closeable {
+
+        /**
+         * Returns the next segment, or null if there are no more.
+         */
+        public Segment next()
+            throws RecordIteratorException
+        {
+            if (_source == null)
+                return null;
+
+            int start = _tail.size();
+            ArrayList<Entry> entries = new ArrayList<>(start + _segmentSize);
+            entries.addAll(_tail);
+
+            try {
+                Entry e;
+                while (entries.size() - start < _segmentSize && (e = _source.next()) != null)
+                    entries.add(e);
+            }
+            catch (IOException e) {
+                close();
+                throw new RecordIteratorException("There was a problem reading a sorted run", e);
+            }
+
+            if (entries.size() == start) {
+                close();
+                return null;
+            }
+
+            int n = entries.size();
+            Record[] records = new Record[n];
+            int[] sides = new int[n];
+            for (int i = 0; i < n; i++) {
+                records[i] = entries.get(i).record;
+                sides[i] = entries.get(i).side;
+            }
+
+            int[] pairs1 = new int[n];
+            int[] pairs2 = new int[n];
+            int nPairs = 0;
+
+            for (int j = start; j < n; j++) {
+                for (int i = Math.max(0, j - _window + 1); i < j; i++) {
+                    if (sides[i] == sides[j])
+                        continue;
+
+                    if (nPairs == pairs1.length) {
+                        pairs1 = Arrays.copyOf(pairs1, 2 * nPairs);
+                        pairs2 = Arrays.copyOf(pairs2, 2 * nPairs);
+                    }
+
+                    pairs1[nPairs] = (sides[i] == 0) ? i : j;
+                    pairs2[nPairs] = (sides[i] == 0) ? j : i;
+                    nPairs++;
+                }
+            }
+
+            _tail = new ArrayList<>(entries.subList(Math.max(0, n - _window + 1), n));
+            return new Segment(records, pairs1, pairs2, nPairs);
+        }
+
+        /**
+         * Deletes any spilled runs.
+         */
+        @Override
+        public void close() {
+            if (_source != null) {
+                _source.close();
+                _source = null;
+            }
+        }
+
+        private Segments(Source source) {
+            _source = source;
+            _tail = new ArrayList<>();
+        }
+
+        private Source _source;
+        private List<Entry> _tail;
+    }
+
+    /**
+     * Sorts both lists and returns their segments.
+     */
+    public Segments segments(IRecordIterator list1, IRecordIterator list2)
+        throws RecordIteratorException
+    {
+        ArrayList<Entry> run = new ArrayList<>();
+        MergeSource merge = new MergeSource();
+        IRecordIterator[] lists = {list1, list2};
+        long ordinal = 0;
+
+        try {
+            for (int side = 0; side < 2; side++) {
+                Record rec;
+                while ((rec = lists[side].next()) != null) {
+                    if (merge.schemas[side] == null)
+                        merge.schemas[side] = rec.schema();
+
+                    run.add(new Entry(_sortKey.sortKey(rec), side, ordinal++, rec));
+
+                    if (run.size() == _runSize) {
+                        merge.spill(run, _tempDir);
+                        run.clear();
+                    }
+                }
+            }
+
+            if (merge.runs.isEmpty()) {
+                Collections.sort(run, ORDER);
+                return new Segments(new ListSource(run));
+            }
+
+            if (!run.isEmpty())
+                merge.spill(run, _tempDir);
+
+            merge.open();
+            return new Segments(merge);
+        }
+        catch (IOException e) {
+            merge.close();
+            throw new RecordIteratorException("There was a problem writing a sorted run", e);
+        }
+        catch (RecordIteratorException e) {
+            merge.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the window size.
+     */
+    public int window() {
+        return _window;
+    }
+
+    /**
+     * Returns the number of threads to use when comparing segments.
+     */
+    public int nThreads() {
+        return _nThreads;
+    }
+
+    private SortedNeighborhood(Builder b) {
+        _sortKey = b._sortKey;
+        _window = b._window;
+        _runSize = b._runSize;
+        _segmentSize = b._segmentSize;
+        _tempDir = b._tempDir;
+        _nThreads = b._nThreads;
+    }
+
+    private static class Entry {
+        Entry(String key, int side, long ordinal, Record record) {
+            this.key = key;
+            this.side = side;
+            this.ordinal = ordinal;
+            this.record = record;
+        }
+
+        final String key;
+        final int side;
+        final long ordinal;
+        final Record record;
+    }
+
+    private final static Comparator<Entry> ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry e1, Entry e2) {
+            int c = e1.key.compareTo(e2.key);
+            if (c != 0)
+                return c;
+
+            // ordinals are assigned to the first list before the second
+            return Long.compare(e1.ordinal, e2.ordinal);
+        }
+    };
+
+    private interface Source {
+        Entry next() throws IOException;
+        void close();
+    }
+
+    private static class ListSource implements Source {
+        ListSource(List<Entry> entries) {
+            _entries = entries;
+        }
+
+        @Override
+        public Entry next() {
+            return (_next < _entries.size()) ? _entries.get(_next++) : null;
+        }
+
+        @Override
+        public void close() {}
+
+        private final List<Entry> _entries;
+        private int _next = 0;
+    }
+
+    /**
+     * A k-way merge of sorted runs on disk.
+     */
+    private static class MergeSource implements Source {
+
+        void spill(List<Entry> run, File dir)
+            throws IOException
+        {
+            Collections.sort(run, ORDER);
+
+            File file = File.createTempFile("torch", ".run", dir);
+            runs.add(new Run(file, run.size()));
+
+            try (DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(new FileOutputStream(file))))
+            {
+                for (Entry e: run) {
+                    RecordIO.writeString(out, e.key);
+                    out.writeByte(e.side);
+                    out.writeLong(e.ordinal);
+                    RecordIO.write(out, e.record);
+                }
+            }
+        }
+
+        void open()
+            throws IOException
+        {
+            for (Run run: runs) {
+                run.in = new DataInputStream(new BufferedInputStream(
+                        new FileInputStream(run.file)));
+
+                if (run.advance(schemas))
+                    _queue.add(run);
+            }
+        }
+
+        @Override
+        public Entry next()
+            throws IOException
+        {
+            Run run = _queue.poll();
+            if (run == null)
+                return null;
+
+            Entry e = run.head;
+            if (run.advance(schemas))
+                _queue.add(run);
+
+            return e;
+        }
+
+        @Override
+        public void close() {
+            for (Run run: runs) {
+                try {
+                    if (run.in != null)
+                        run.in.close();
+                }
+                catch (IOException e) {
+                    // the file is deleted regardless
+                }
+
+                run.file.delete();
+            }
+
+            runs.clear();
+            _queue.clear();
+        }
+
+        final List<Run> runs = new ArrayList<>();
+        final RecordSchema[] schemas = new RecordSchema[2];
+
+        private final PriorityQueue<Run> _queue = new PriorityQueue<>(11, new Comparator<Run>() {
+            @Override
+            public int compare(Run r1, Run r2) {
+                return ORDER.compare(r1.head, r2.head);
+            }
+        });
+    }
+
+    private static class Run {
+        Run(File file, int size) {
+            this.file = file;
+            this.remaining = size;
+        }
+
+        /**
+         * Reads the next entry into <code>head</code>, returning false at the end of the run.
+         */
+        boolean advance(RecordSchema[] schemas)
+            throws IOException
+        {
+            if (remaining == 0) {
+                in.close();
+                head = null;
+                return false;
+            }
+
+            String key = RecordIO.readString(in);
+            int side = in.readByte();
+            long ordinal = in.readLong();
+            head = new Entry(key, side, ordinal, RecordIO.read(in, schemas[side]));
+            remaining--;
+            return true;
+        }
+
+        final File file;
+        DataInputStream in;
+        Entry head;
+        int remaining;
+    }
+
+    private final ISortKey _sortKey;
+    private final int _window, _runSize, _segmentSize, _nThreads;
+    private final File _tempDir;
+}
@@ -0,0 +1,93 @@
+package torch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * A block of records collapsed to the distinct values of their comparison fields. Records that
+ * agree on every field examined by a {@link RecordComparator} always produce the same comparison
+ * pattern, so only one representative of each distinct tuple needs to be compared. The number of
+ * records sharing a tuple is its weight.
+ */
+public class TupleBlock {
+
+    /**
+     * Collapses <code>block</code> into the distinct tuples of the fields compared by
+     * <code>cmp</code>. Tuples are numbered in the order they first appear in the block.
+     */
+    public static TupleBlock collapse(RecordComparator cmp, List<Record> block) {
+        LinkedHashMap<List<String>, List<Record>> groups = new LinkedHashMap<>();
+
+        for (Record rec: block) {
+            List<String> key = Arrays.asList(cmp.comparisonFields(rec));
+            List<Record> group = groups.get(key);
+
+            if (group == null) {
+                group = new ArrayList<>(1);
+                groups.put(key, group);
+            }
+
+            group.add(rec);
+        }
+
+        Record[] records = new Record[block.size()];
+        int[] offsets = new int[groups.size() + 1];
+        int i = 0;
+        int n = 0;
+
+        for (List<Record> group: groups.values()) {
+            for (Record rec: group)
+                records[n++] = rec;
+
+            offsets[++i] = n;
+        }
+
+        return new TupleBlock(records, offsets);
+    }
+
+    /**
+     * Returns the number of distinct tuples.
+     */
+    public int nTuples() {
+        return _offsets.length - 1;
+    }
+
+    /**
+     * Returns the number of records in the block.
+     */
+    public int nRecords() {
+        return _records.length;
+    }
+
+    /**
+     * Returns a record with the <code>i</code>th tuple of values.
+     */
+    public Record representative(int i) {
+        return _records[_offsets[i]];
+    }
+
+    /**
+     * Returns the number of records with the <code>i</code>th tuple of values.
+     */
+    public int weight(int i) {
+        return _offsets[i + 1] - _offsets[i];
+    }
+
+    /**
+     * Returns the <code>n</code>th record with the <code>i</code>th tuple of values, for
+     * <code>n</code> less than <code>weight(i)</code>.
+     */
+    public Record member(int i, int n) {
+        return _records[_offsets[i] + n];
+    }
+
+    private TupleBlock(Record[] records, int[] offsets) {
+        _records = records;
+        _offsets = offsets;
+    }
+
+    private final Record[] _records;
+    private final int[] _offsets;
+}
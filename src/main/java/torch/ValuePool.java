@@ -0,0 +1,203 @@
+package torch;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A deduplicated pool of <code>String</code> values, each identified by an <code>int</code>
+ * code. Two values in the same pool are equal exactly when their codes are equal. Values are
+ * stored back to back in a single byte array: values whose characters all fit in Latin-1 take one
+ * byte per character, and any other value takes two. The pool doesn't keep the
+ * <code>String</code>s it was given, only the bytes and an open-addressing hash table of codes.
+ *
+ * <p>Interning isn't thread-safe. Once a pool is fully loaded, lookups can be made from any
+ * number of threads.
+ */
+public class ValuePool {
+
+    /**
+     * Constructs a new empty pool.
+     */
+    public ValuePool() {
+        _bytes = new byte[1024];
+        _offsets = new int[65];
+        _hashes = new int[64];
+        _fields = new Field[64];
+        _table = new int[128];
+        _wide = new BitSet();
+        _empty = new BitSet();
+    }
+
+    /**
+     * Returns the code for <code>s</code>, adding it to the pool if it isn't already there.
+     */
+    public int intern(String s) {
+        int h = s.hashCode();
+        int mask = _table.length - 1;
+        int slot = mix(h) & mask;
+
+        int code;
+        while ((code = _table[slot] - 1) >= 0) {
+            if (_hashes[code] == h && matches(code, s))
+                return code;
+
+            slot = (slot + 1) & mask;
+        }
+
+        code = append(s, h);
+        _table[slot] = code + 1;
+
+        if (2 * _size > _table.length)
+            rehash();
+
+        return code;
+    }
+
+    /**
+     * Returns the value with the given code. A new <code>String</code> is decoded each time this
+     * method is called.
+     */
+    public String value(int code) {
+        int off = _offsets[code];
+        int len = _offsets[code + 1] - off;
+
+        if (!_wide.get(code))
+            return new String(_bytes, off, len, StandardCharsets.ISO_8859_1);
+
+        char[] chars = new char[len / 2];
+        for (int i = 0; i < chars.length; i++)
+            chars[i] = wideChar(off, i);
+
+        return new String(chars);
+    }
+
+    /**
+     * Returns a {@link Field} wrapping the value with the given code. The <code>Field</code> is
+     * created the first time it is requested and shared after that, so field comparators see one
+     * object per distinct value.
+     */
+    public Field field(int code) {
+        Field f = _fields[code];
+
+        if (f == null) {
+            f = new Field(value(code));
+            _fields[code] = f;
+        }
+
+        return f;
+    }
+
+    /**
+     * Returns true if the value with the given code is all whitespace characters.
+     *
+     * @see Field#empty
+     */
+    public boolean empty(int code) {
+        return _empty.get(code);
+    }
+
+    /**
+     * Returns the number of distinct values in the pool.
+     */
+    public int size() {
+        return _size;
+    }
+
+    private static int mix(int h) {
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return h;
+    }
+
+    /**
+     * Returns the <code>i</code>th character of a two-byte value starting at <code>off</code>.
+     */
+    private char wideChar(int off, int i) {
+        return (char)(((_bytes[off + 2 * i] & 0xff) << 8) | (_bytes[off + 2 * i + 1] & 0xff));
+    }
+
+    private boolean matches(int code, String s) {
+        int off = _offsets[code];
+        int len = _offsets[code + 1] - off;
+
+        if (_wide.get(code)) {
+            if (len != 2 * s.length())
+                return false;
+
+            for (int i = 0; i < s.length(); i++) {
+                if (wideChar(off, i) != s.charAt(i))
+                    return false;
+            }
+        } else {
+            if (len != s.length())
+                return false;
+
+            for (int i = 0; i < len; i++) {
+                if ((char)(_bytes[off + i] & 0xff) != s.charAt(i))
+                    return false;
+            }
+        }
+
+        return true;
+    }
+
+    private int append(String s, int h) {
+        boolean wide = false;
+        for (int i = 0; i < s.length() && !wide; i++)
+            wide = s.charAt(i) > 0xff;
+
+        int len = wide ? 2 * s.length() : s.length();
+        int off = _offsets[_size];
+
+        if (off + len > _bytes.length)
+            _bytes = Arrays.copyOf(_bytes, Math.max(off + len, 2 * _bytes.length));
+
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (wide) {
+                _bytes[off + 2 * i] = (byte)(c >>> 8);
+                _bytes[off + 2 * i + 1] = (byte)c;
+            } else {
+                _bytes[off + i] = (byte)c;
+            }
+        }
+
+        int code = _size++;
+
+        if (_size >= _hashes.length) {
+            _hashes = Arrays.copyOf(_hashes, 2 * _hashes.length);
+            _fields = Arrays.copyOf(_fields, 2 * _fields.length);
+            _offsets = Arrays.copyOf(_offsets, _hashes.length + 1);
+        }
+
+        _hashes[code] = h;
+        _offsets[code + 1] = off + len;
+        _wide.set(code, wide);
+        _empty.set(code, s.trim().isEmpty());
+
+        return code;
+    }
+
+    private void rehash() {
+        int[] table = new int[2 * _table.length];
+        int mask = table.length - 1;
+
+        for (int code = 0; code < _size; code++) {
+            int slot = mix(_hashes[code]) & mask;
+            while (table[slot] != 0)
+                slot = (slot + 1) & mask;
+
+            table[slot] = code + 1;
+        }
+
+        _table = table;
+    }
+
+    private byte[] _bytes;
+    private int[] _offsets, _hashes, _table;
+    private Field[] _fields;
+    private final BitSet _wide, _empty;
+    private int _size;
+}
@@ -0,0 +1,161 @@
+package torch.comparators;
+
+import torch.Field;
+import torch.IFieldComparator;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A comparator that remembers the results of another comparator. Results are kept in a
+ * direct-mapped table with a fixed number of slots: each pair of values hashes to one slot, and a
+ * new result replaces whatever was in its slot. Slots hold immutable entries, so the cache can be
+ * shared by any number of scoring threads without locking.
+ *
+ * <p>Use this for expensive comparators on fields whose values repeat a lot, such as
+ * {@link StringComparator} on names.
+ */
+public class CachingComparator implements IFieldComparator {
+
+    public final static int DEFAULT_CAPACITY = 1 << 16;
+
+    /**
+     * Constructs a cache in front of <code>cmp</code> with room for <code>capacity</code> results,
+     * rounded up to a power of two.
+     */
+    public CachingComparator(IFieldComparator cmp, int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("'capacity' must be positive");
+
+        int n = Integer.highestOneBit(capacity);
+        if (n < capacity)
+            n <<= 1;
+
+        _cmp = cmp;
+        _mask = n - 1;
+        _entries = new AtomicReferenceArray<>(n);
+        _counts = new AtomicLongArray(N_STRIPES * STRIPE_WIDTH);
+    }
+
+    /**
+     * Constructs a cache in front of <code>cmp</code> with the default capacity.
+     */
+    public CachingComparator(IFieldComparator cmp) {
+        this(cmp, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Returns the cached result for the two values, comparing them with the underlying comparator
+     * if they aren't in the cache.
+     */
+    @Override
+    public int compare(Field field1, Field field2) {
+        String value1 = field1.stringValue();
+        String value2 = field2.stringValue();
+        int slot = hash(value1, value2) & _mask;
+        int stripe = STRIPE_WIDTH * (int)(Thread.currentThread().getId() & (N_STRIPES - 1));
+
+        Entry e = _entries.get(slot);
+        if (e != null && e.matches(value1, value2)) {
+            _counts.incrementAndGet(stripe + HITS);
+            return e.level;
+        }
+
+        int level = _cmp.compare(field1, field2);
+        Entry old = _entries.getAndSet(slot, new Entry(value1, value2, level));
+
+        _counts.incrementAndGet(stripe + MISSES);
+        if (old != null)
+            _counts.incrementAndGet(stripe + EVICTIONS);
+
+        return level;
+    }
+
+    @Override
+    public int nLevels() {
+        return _cmp.nLevels();
+    }
+
+    /**
+     * Returns the comparator whose results are cached.
+     */
+    public IFieldComparator comparator() {
+        return _cmp;
+    }
+
+    /**
+     * Returns the number of slots in the cache.
+     */
+    public int capacity() {
+        return _mask + 1;
+    }
+
+    /**
+     * Returns the number of comparisons answered from the cache.
+     */
+    public long hits() {
+        return total(HITS);
+    }
+
+    /**
+     * Returns the number of comparisons passed on to the underlying comparator.
+     */
+    public long misses() {
+        return total(MISSES);
+    }
+
+    /**
+     * Returns the number of cached results that were replaced by a newer result.
+     */
+    public long evictions() {
+        return total(EVICTIONS);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CachingComparator(hits: %d, misses: %d, evictions: %d)",
+                             hits(), misses(), evictions());
+    }
+
+    private static int hash(String value1, String value2) {
+        int h = 31 * value1.hashCode() + value2.hashCode();
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return h;
+    }
+
+    private long total(int counter) {
+        long n = 0;
+        for (int i = 0; i < N_STRIPES; i++)
+            n += _counts.get(STRIPE_WIDTH * i + counter);
+
+        return n;
+    }
+
+    private static class Entry {
+        Entry(String value1, String value2, int level) {
+            this.value1 = value1;
+            this.value2 = value2;
+            this.level = level;
+        }
+
+        boolean matches(String v1, String v2) {
+            return (value1 == v1 || value1.equals(v1)) && (value2 == v2 || value2.equals(v2));
+        }
+
+        final String value1, value2;
+        final int level;
+    }
+
+    // Counters are striped by thread so that scoring threads don't all contend on one cache line.
+    // Each stripe is padded out to 128 bytes.
+    private final static int N_STRIPES = 16;
+    private final static int STRIPE_WIDTH = 16;
+    private final static int HITS = 0, MISSES = 1, EVICTIONS = 2;
+
+    private final IFieldComparator _cmp;
+    private final int _mask;
+    private final AtomicReferenceArray<Entry> _entries;
+    private final AtomicLongArray _counts;
+}
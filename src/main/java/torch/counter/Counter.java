@@ -1,19 +1,49 @@
 package torch.counter;
 
+import torch.BlockPairs;
 import torch.IRecordIterator;
+import torch.MultiPassBlocks;
+import torch.PartitionedBlocks;
 import torch.Record;
 import torch.RecordComparator;
+import torch.SortedNeighborhood;
+import torch.TupleBlock;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.SortedMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * An object that counts occurences of record comparison patterns
  */
 public class Counter {
 
+    /**
+     * The number of <code>list2</code> records handed to a thread at a time when counting on
+     * several threads.
+     */
+    public final static int CHUNK_SIZE = 4096;
+
     /**
      * Count the comparison patterns for blocked pairs in the two lists.
      */
@@ -30,15 +60,264 @@ public class Counter {
             if (!blocks.containsKey(key)) {
                 continue;
             } else {
-                List<Record> thisBlock = blocks.get(key);
-                for (Record otherRec: thisBlock)
-                    inc.add(otherRec, rec);
+                inc.add(blocks.get(key), rec);
+            }
+        }
+
+        return inc.toCounter();
+    }
+
+    /**
+     * Count the comparison patterns for blocked pairs in the two lists on <code>nThreads</code>
+     * threads. Records from <code>list2</code> are handed to the threads in chunks, and each
+     * thread counts into its own stripe of one {@link IncrementalCounter}. The result is the same
+     * as {@link #count(RecordComparator, IRecordIterator, IRecordIterator)}.
+     */
+    public static Counter count(RecordComparator cmp, IRecordIterator list1, IRecordIterator list2,
+                                int nThreads)
+        throws torch.RecordIteratorException
+    {
+        final IncrementalCounter inc = new IncrementalCounter(cmp);
+        final Map<String, List<Record>> blocks = Record.block(list1);
+
+        forEachChunk(list2, nThreads, new ChunkTask() {
+            @Override
+            void run(List<Record> chunk) {
+                for (Record rec: chunk) {
+                    List<Record> block = blocks.get(rec.blockingKey());
+
+                    if (block != null)
+                        inc.add(block, rec);
+                }
+            }
+        });
+
+        return inc.toCounter();
+    }
+
+    /**
+     * Estimate the counts of comparison patterns for blocked pairs in the two lists from a
+     * sample of the pairs in each block. Both lists are blocked. The returned counter has the
+     * number of pairs sampled with each pattern in {@link #nonzeroCounts}, and the estimated
+     * number of pairs, with its sampling variance, in {@link #nonzeroWeights} and {@link
+     * #nonzeroVariances}.
+     *
+     * @see PairSampler
+     */
+    public static Counter count(RecordComparator cmp, IRecordIterator list1, IRecordIterator list2,
+                                PairSampler sampler)
+        throws torch.RecordIteratorException
+    {
+        Map<String, List<Record>> blocks1 = Record.block(list1);
+        Map<String, List<Record>> blocks2 = Record.block(list2);
+        PatternWeights weights = new PatternWeights(cmp.nPatterns());
+        Random rng = sampler.random();
+
+        // visit blocks in a fixed order so that a seed always draws the same sample
+        for (String key: new TreeSet<>(blocks2.keySet())) {
+            List<Record> block1 = blocks1.get(key);
+
+            if (block1 != null)
+                sampler.sample(rng, cmp, block1, blocks2.get(key), weights);
+        }
+
+        return weights.toCounter(cmp);
+    }
+
+    /**
+     * Count the comparison patterns for blocked pairs in the two lists. If <code>collapse</code>
+     * is true, both lists are blocked and each side of a block is collapsed to its distinct
+     * comparison tuples, so that each distinct pair of tuples is compared only once. The result is
+     * the same either way.
+     *
+     * @see TupleBlock
+     */
+    public static Counter count(RecordComparator cmp, IRecordIterator list1, IRecordIterator list2,
+                                boolean collapse)
+        throws torch.RecordIteratorException
+    {
+        if (!collapse)
+            return count(cmp, list1, list2);
+
+        IncrementalCounter inc = new IncrementalCounter(cmp);
+        Map<String, List<Record>> blocks1 = Record.block(list1);
+        Map<String, List<Record>> blocks2 = Record.block(list2);
+
+        for (Map.Entry<String, List<Record>> e: blocks2.entrySet()) {
+            List<Record> block1 = blocks1.get(e.getKey());
+
+            if (block1 != null)
+                inc.add(TupleBlock.collapse(cmp, block1), TupleBlock.collapse(cmp, e.getValue()));
+        }
+
+        return inc.toCounter();
+    }
+
+    /**
+     * Count the comparison patterns for the pairs in <code>blocks</code>, in which oversized
+     * blocks may have been split.
+     *
+     * @see BlockPairs
+     */
+    public static Counter count(RecordComparator cmp, BlockPairs blocks) {
+        IncrementalCounter inc = new IncrementalCounter(cmp);
+
+        for (String key: blocks.keys()) {
+            List<Record> block1 = blocks.block1(key);
+
+            for (Record rec: blocks.block2(key))
+                inc.add(block1, rec);
+        }
+
+        return inc.toCounter();
+    }
+
+    /**
+     * Count the comparison patterns for the pairs that share a block in any blocking pass. Each
+     * pair is counted once, in the first pass in which its records share a block.
+     *
+     * @see MultiPassBlocks
+     */
+    public static Counter count(RecordComparator cmp, MultiPassBlocks blocks) {
+        IncrementalCounter inc = new IncrementalCounter(cmp);
+
+        for (int p = 0; p < blocks.nPasses(); p++) {
+            Map<String, List<Record>> pass = blocks.blocks(p);
+
+            for (Record rec: blocks.records()) {
+                List<Record> block = pass.get(rec.blockingKey(p));
+
+                if (block == null)
+                    continue;
+
+                if (p == 0) {
+                    inc.add(block, rec);
+                    continue;
+                }
+
+                for (Record otherRec: block)
+                    if (MultiPassBlocks.owns(p, otherRec, rec))
+                        inc.add(otherRec, rec);
             }
         }
 
         return inc.toCounter();
     }
 
+    /**
+     * Count the comparison patterns for blocked pairs in partitioned lists. Partitions are
+     * blocked and counted one at a time on each of <code>nThreads</code> threads, so at most
+     * <code>nThreads</code> partitions of the first list are in memory at once. At most
+     * <code>2 * nThreads</code> partitions are submitted but not yet merged, so the counts held
+     * don't grow with the number of partitions. The result is the same as counting the
+     * unpartitioned lists.
+     *
+     * @see PartitionedBlocks
+     */
+    public static Counter count(final RecordComparator cmp, final PartitionedBlocks partitions,
+                                int nThreads)
+        throws torch.RecordIteratorException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        LinkedList<Future<IncrementalCounter>> results = new LinkedList<>();
+        IncrementalCounter inc = new IncrementalCounter(cmp);
+
+        try {
+            for (int p = 0; p < partitions.nPartitions(); p++) {
+                final int partition = p;
+
+                results.add(executor.submit(new Callable<IncrementalCounter>() {
+                    @Override
+                    public IncrementalCounter call()
+                        throws torch.RecordIteratorException
+                    {
+                        IncrementalCounter counts = new IncrementalCounter(cmp);
+                        Map<String, List<Record>> blocks = partitions.blocks(partition);
+                        IRecordIterator list2 = partitions.records(partition);
+
+                        Record rec;
+                        while ((rec = list2.next()) != null) {
+                            List<Record> block = blocks.get(rec.blockingKey());
+
+                            if (block != null)
+                                counts.add(block, rec);
+                        }
+
+                        return counts;
+                    }
+                }));
+
+                if (results.size() >= 2 * nThreads)
+                    inc.add(results.removeFirst().get());
+            }
+
+            while (!results.isEmpty())
+                inc.add(results.removeFirst().get());
+
+            return inc.toCounter();
+        }
+        catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new torch.RecordIteratorException("Interrupted while counting", e);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Count the comparison patterns for the candidate pairs of a sorted-neighborhood pass over the
+     * two lists. Segments are counted on {@link SortedNeighborhood#nThreads} threads, with a few
+     * segments per thread in memory at a time.
+     */
+    public static Counter count(final RecordComparator cmp, SortedNeighborhood sn,
+                                IRecordIterator list1, IRecordIterator list2)
+        throws torch.RecordIteratorException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(sn.nThreads());
+        LinkedList<Future<IncrementalCounter>> results = new LinkedList<>();
+        IncrementalCounter inc = new IncrementalCounter(cmp);
+
+        try (SortedNeighborhood.Segments segments = sn.segments(list1, list2)) {
+            SortedNeighborhood.Segment segment;
+            while ((segment = segments.next()) != null) {
+                final SortedNeighborhood.Segment s = segment;
+
+                results.add(executor.submit(new Callable<IncrementalCounter>() {
+                    @Override
+                    public IncrementalCounter call() {
+                        IncrementalCounter counts = new IncrementalCounter(cmp);
+                        for (int k = 0; k < s.nPairs(); k++)
+                            counts.add(s.record1(k), s.record2(k));
+
+                        return counts;
+                    }
+                }));
+
+                if (results.size() >= 2 * sn.nThreads())
+                    inc.add(results.removeFirst().get());
+            }
+
+            while (!results.isEmpty())
+                inc.add(results.removeFirst().get());
+
+            return inc.toCounter();
+        }
+        catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new torch.RecordIteratorException("Interrupted while counting", e);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
     /**
      * Counts truth patterns. This method uses blocking to bring together pairs, and so
      * may not count every true match. Both list schemas should have ID fields.
@@ -75,37 +354,359 @@ public class Counter {
         return new Counter[] {trueMatch.toCounter(), trueNonmatch.toCounter()};
     }
 
-    public Counter(RecordComparator cmp, SortedMap<Integer, Integer> countMap) {
-        _cmp = cmp;
-        _countMap = countMap;
+    /**
+     * Counts truth patterns on <code>nThreads</code> threads. The result is the same as {@link
+     * #countTruth(RecordComparator, IRecordIterator, IRecordIterator)}.
+     */
+    public static Counter[] countTruth(RecordComparator cmp, IRecordIterator list1,
+                                       IRecordIterator list2, int nThreads)
+        throws torch.RecordIteratorException
+    {
+        final IncrementalCounter trueMatch = new IncrementalCounter(cmp);
+        final IncrementalCounter trueNonmatch = new IncrementalCounter(cmp);
+        final Map<String, List<Record>> blocks = Record.block(list1);
 
-        // compact the counts into an array
+        forEachChunk(list2, nThreads, new ChunkTask() {
+            @Override
+            void run(List<Record> chunk) {
+                for (Record rec: chunk) {
+                    List<Record> block = blocks.get(rec.blockingKey());
 
-        _nonzeroCounts = new int[_countMap.size()];
-        _nonzeroPatterns = new int[_countMap.size()][cmp.nComparators()];
-        _nonzeroPatternIndex = new int[_countMap.size()];
-        int insertIndex = 0;
+                    if (block == null)
+                        continue;
 
-        int total = 0;
-        int maxCount = 0;
-        for (Integer ix: _countMap.keySet()) {
-            _nonzeroPatternIndex[insertIndex] = ix;
-            int thisCount = _countMap.get(ix);
-            _nonzeroCounts[insertIndex] = thisCount;
-            total += thisCount;
+                    for (Record otherRec: block) {
+                        if (rec.id().equals(otherRec.id()))
+                            trueMatch.add(otherRec, rec);
+                        else
+                            trueNonmatch.add(otherRec, rec);
+                    }
+                }
+            }
+        });
+
+        return new Counter[] {trueMatch.toCounter(), trueNonmatch.toCounter()};
+    }
+
+    /**
+     * Work done on a chunk of records by {@link #forEachChunk}.
+     */
+    private abstract static class ChunkTask {
+        abstract void run(List<Record> chunk);
+    }
+
+    /**
+     * Reads <code>list</code> in chunks of {@link #CHUNK_SIZE} records and runs <code>task</code>
+     * on each chunk on a pool of <code>nThreads</code> threads, returning once every chunk is
+     * done. Only a few chunks per thread are read ahead.
+     */
+    private static void forEachChunk(IRecordIterator list, int nThreads, final ChunkTask task)
+        throws torch.RecordIteratorException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        LinkedList<Future<?>> results = new LinkedList<>();
 
-            if (thisCount > maxCount)
-                maxCount = thisCount;
+        try {
+            List<Record> chunk = new ArrayList<>(CHUNK_SIZE);
+            Record rec;
 
-            int[] pattern = cmp.patternFor(ix);
-            for (int k = 0; k < pattern.length; k++)
-                _nonzeroPatterns[insertIndex][k] = pattern[k];
+            do {
+                rec = list.next();
+                if (rec != null)
+                    chunk.add(rec);
 
-            insertIndex++;
+                if (chunk.size() == CHUNK_SIZE || (rec == null && !chunk.isEmpty())) {
+                    final List<Record> c = chunk;
+                    results.add(executor.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            task.run(c);
+                        }
+                    }));
+
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                }
+
+                if (results.size() >= 2 * nThreads)
+                    results.removeFirst().get();
+            } while (rec != null);
+
+            while (!results.isEmpty())
+                results.removeFirst().get();
+        }
+        catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new torch.RecordIteratorException("Interrupted while counting", e);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void writeVarLong(DataOutput out, long v)
+        throws IOException
+    {
+        while ((v & ~0x7fL) != 0) {
+            out.writeByte((int)(v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte((int)v);
+    }
+
+    private static long readVarLong(DataInput in)
+        throws IOException
+    {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (long)(b & 0x7f) << shift;
+
+            if ((b & 0x80) == 0)
+                return v;
+        }
+
+        throw new IOException("Malformed variable-length integer");
+    }
+
+    private static int[] patternIndexes(SortedMap<Integer, Long> countMap) {
+        int[] patternIndexes = new int[countMap.size()];
+        int i = 0;
+        for (Integer ix: countMap.keySet())
+            patternIndexes[i++] = ix;
+
+        return patternIndexes;
+    }
+
+    private static long[] counts(SortedMap<Integer, Long> countMap) {
+        long[] counts = new long[countMap.size()];
+        int i = 0;
+        for (Long n: countMap.values())
+            counts[i++] = n;
+
+        return counts;
+    }
+
+    private static torch.RecordIteratorException unwrap(ExecutionException e) {
+        if (e.getCause() instanceof torch.RecordIteratorException)
+            return (torch.RecordIteratorException)e.getCause();
+        if (e.getCause() instanceof RuntimeException)
+            throw (RuntimeException)e.getCause();
+        if (e.getCause() instanceof Error)
+            throw (Error)e.getCause();
+
+        return new torch.RecordIteratorException("There was a problem counting", e.getCause());
+    }
+
+    /**
+     * Constructs a counter from a map of pattern indexes to counts.
+     */
+    public Counter(RecordComparator cmp, SortedMap<Integer, Long> countMap) {
+        this(cmp, patternIndexes(countMap), counts(countMap));
+    }
+
+    /**
+     * Constructs a counter from parallel arrays of pattern indexes, in ascending order, and their
+     * nonzero counts. The arrays are not copied.
+     */
+    Counter(RecordComparator cmp, int[] patternIndexes, long[] counts) {
+        this(cmp, patternIndexes, counts, null, null);
+    }
+
+    /**
+     * Constructs a counter of sampled pairs, in which each pattern has a weighted count and the
+     * variance of that count in addition to the number of pairs sampled. If
+     * <code>weights</code> is null, the counts are exact.
+     */
+    Counter(RecordComparator cmp, int[] patternIndexes, long[] counts, double[] weights,
+            double[] variances)
+    {
+        _cmp = cmp;
+        _nonzeroPatternIndex = patternIndexes;
+        _nonzeroCounts = counts;
+        _nonzeroPatterns = new int[counts.length][];
+        _sampled = (weights != null);
+
+        if (weights == null) {
+            weights = new double[counts.length];
+            variances = new double[counts.length];
+            for (int i = 0; i < counts.length; i++)
+                weights[i] = counts[i];
+        }
+
+        _nonzeroWeights = weights;
+        _nonzeroVariances = variances;
+
+        long total = 0;
+        long maxCount = 0;
+        double totalWeight = 0.0;
+        double totalVariance = 0.0;
+        for (int i = 0; i < counts.length; i++) {
+            total += counts[i];
+            totalWeight += weights[i];
+            totalVariance += variances[i];
+
+            if (counts[i] > maxCount)
+                maxCount = counts[i];
+
+            _nonzeroPatterns[i] = cmp.patternFor(patternIndexes[i]);
         }
 
         _total = total;
         _maxCount = maxCount;
+        _totalWeight = totalWeight;
+        _totalVariance = totalVariance;
+    }
+
+    /**
+     * Reads a counter written by {@link #write} for use with <code>cmp</code>.
+     *
+     * @throws IllegalArgumentException if the counter was made with a comparator whose {@link
+     * RecordComparator#fingerprint} differs from that of <code>cmp</code>.
+     * @throws IOException if the input isn't a counter or can't be read.
+     */
+    public static Counter read(RecordComparator cmp, DataInput in)
+        throws IOException
+    {
+        if (in.readInt() != MAGIC)
+            throw new IOException("Not a pattern count file");
+
+        int version = in.readInt();
+        if (version < 1 || version > VERSION)
+            throw new IOException("Unsupported pattern count version: " + version);
+
+        if (in.readLong() != cmp.fingerprint())
+            throw new IllegalArgumentException("Counts were made with a different comparator");
+
+        boolean sampled = (version >= 2) && in.readBoolean();
+        int n = in.readInt();
+        int[] patternIndexes = new int[n];
+        long[] counts = new long[n];
+        double[] weights = sampled ? new double[n] : null;
+        double[] variances = sampled ? new double[n] : null;
+        int ix = -1;
+
+        for (int i = 0; i < n; i++) {
+            ix += (int)readVarLong(in);
+            if (ix >= cmp.nPatterns())
+                throw new IOException("Pattern index out of range: " + ix);
+
+            patternIndexes[i] = ix;
+            counts[i] = readVarLong(in);
+
+            if (sampled) {
+                weights[i] = in.readDouble();
+                variances[i] = in.readDouble();
+            }
+        }
+
+        return new Counter(cmp, patternIndexes, counts, weights, variances);
+    }
+
+    /**
+     * Reads a counter saved by {@link #save} for use with <code>cmp</code>.
+     */
+    public static Counter load(RecordComparator cmp, String filename)
+        throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(
+                 new BufferedInputStream(new FileInputStream(filename))))
+        {
+            return read(cmp, in);
+        }
+    }
+
+    /**
+     * Writes this counter in a compact binary format: a header with the comparator's fingerprint,
+     * then each nonzero pattern index as a variable-length delta from the previous one, followed
+     * by its count as a variable-length integer, and, for sampled counters, its weight and
+     * variance.
+     */
+    public void write(DataOutput out)
+        throws IOException
+    {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(_cmp.fingerprint());
+        out.writeBoolean(_sampled);
+        out.writeInt(_nonzeroCounts.length);
+
+        int ix = -1;
+        for (int i = 0; i < _nonzeroCounts.length; i++) {
+            writeVarLong(out, _nonzeroPatternIndex[i] - ix);
+            writeVarLong(out, _nonzeroCounts[i]);
+            ix = _nonzeroPatternIndex[i];
+
+            if (_sampled) {
+                out.writeDouble(_nonzeroWeights[i]);
+                out.writeDouble(_nonzeroVariances[i]);
+            }
+        }
+    }
+
+    /**
+     * Writes this counter to the named file.
+     *
+     * @see #write
+     */
+    public void save(String filename)
+        throws IOException
+    {
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(filename))))
+        {
+            write(out);
+        }
+    }
+
+    /**
+     * Returns a new counter with the sum of the counts in this counter and <code>other</code>.
+     * Merging is associative and commutative, so counters for separate shards of the data can be
+     * merged in any order. Weights and variances are summed too, so a sampled counter merged with
+     * another counter is sampled.
+     *
+     * @throws IllegalArgumentException if the counters' comparators have different fingerprints.
+     */
+    public Counter merge(Counter other) {
+        if (other._cmp != _cmp && other._cmp.fingerprint() != _cmp.fingerprint())
+            throw new IllegalArgumentException("Counts were made with a different comparator");
+
+        int[] ix1 = _nonzeroPatternIndex, ix2 = other._nonzeroPatternIndex;
+        long[] n1 = _nonzeroCounts, n2 = other._nonzeroCounts;
+        double[] w1 = _nonzeroWeights, w2 = other._nonzeroWeights;
+        double[] v1 = _nonzeroVariances, v2 = other._nonzeroVariances;
+        int[] patternIndexes = new int[ix1.length + ix2.length];
+        long[] counts = new long[patternIndexes.length];
+        double[] weights = new double[patternIndexes.length];
+        double[] variances = new double[patternIndexes.length];
+        int i = 0, j = 0, k = 0;
+
+        for (; i < ix1.length || j < ix2.length; k++) {
+            if (j == ix2.length || (i < ix1.length && ix1[i] < ix2[j])) {
+                patternIndexes[k] = ix1[i];
+                counts[k] = n1[i];
+                weights[k] = w1[i];
+                variances[k] = v1[i++];
+            } else if (i == ix1.length || ix2[j] < ix1[i]) {
+                patternIndexes[k] = ix2[j];
+                counts[k] = n2[j];
+                weights[k] = w2[j];
+                variances[k] = v2[j++];
+            } else {
+                patternIndexes[k] = ix1[i];
+                counts[k] = n1[i] + n2[j];
+                weights[k] = w1[i] + w2[j];
+                variances[k] = v1[i++] + v2[j++];
+            }
+        }
+
+        if (!_sampled && !other._sampled)
+            return new Counter(_cmp, Arrays.copyOf(patternIndexes, k), Arrays.copyOf(counts, k));
+
+        return new Counter(_cmp, Arrays.copyOf(patternIndexes, k), Arrays.copyOf(counts, k),
+                           Arrays.copyOf(weights, k), Arrays.copyOf(variances, k));
     }
 
     /**
@@ -118,7 +719,7 @@ public class Counter {
     /**
      * Returns the total number of individuals counted.
      */
-    public int total() {
+    public long total() {
         return _total;
     }
 
@@ -127,10 +728,50 @@ public class Counter {
      * corresponding to the number of times a certain pattern was observed. The <code>i</code>th
      * entry corresponds to the <code>i</code>th pattern in {@link #nonzeroPatterns}.
      */
-    public int[] nonzeroCounts() {
+    public long[] nonzeroCounts() {
         return _nonzeroCounts;
     }
 
+    /**
+     * Returns the weighted nonzero counts. For an exact counter these are the same as {@link
+     * #nonzeroCounts}. For a sampled counter, each entry is the estimated number of candidate
+     * pairs with the corresponding pattern, which need not be an integer.
+     */
+    public double[] nonzeroWeights() {
+        return _nonzeroWeights;
+    }
+
+    /**
+     * Returns the sampling variance of each entry in {@link #nonzeroWeights}. These are all zero
+     * for an exact counter.
+     */
+    public double[] nonzeroVariances() {
+        return _nonzeroVariances;
+    }
+
+    /**
+     * Returns the sum of the weighted counts, the estimated number of candidate pairs.
+     */
+    public double totalWeight() {
+        return _totalWeight;
+    }
+
+    /**
+     * Returns the sampling variance of {@link #totalWeight}.
+     */
+    public double totalVariance() {
+        return _totalVariance;
+    }
+
+    /**
+     * Returns true if the counts are estimated from a sample of pairs.
+     *
+     * @see PairSampler
+     */
+    public boolean sampled() {
+        return _sampled;
+    }
+
     /**
      * Returns an array of patterns that were observed at least once. The number of times the
      * <code>i</code>th pattern was observed is given by the <code>i</code>th entry in {@link
@@ -140,9 +781,20 @@ public class Counter {
         return _nonzeroPatterns;
     }
 
+    /**
+     * Returns the index of each pattern that was observed at least once, in ascending order. The
+     * <code>i</code>th entry is the index of the <code>i</code>th pattern in {@link
+     * #nonzeroPatterns}.
+     *
+     * @see RecordComparator#patternFor
+     */
+    public int[] nonzeroPatternIndexes() {
+        return _nonzeroPatternIndex;
+    }
+
     public String toString() {
         int countWidth = 4;
-        int n = _maxCount;
+        long n = _maxCount;
         while (n > 0) {
             countWidth++;
             n /= 10;
@@ -154,6 +806,21 @@ public class Counter {
         String fmtTitle = "%-" + patternWidth + "s%" + countWidth + "s%n";
         String fmt = "%-" + patternWidth + "s%" + countWidth + "d%n";
 
+        if (_sampled) {
+            fmtTitle = "%-" + patternWidth + "s%" + countWidth + "s%16s%16s%n";
+            fmt = "%-" + patternWidth + "s%" + countWidth + "d%16.1f%16.1f%n";
+
+            builder.append(String.format(fmtTitle, "pattern", "count", "weight", "variance"));
+
+            for (int i = 0; i < _nonzeroPatterns.length; i++) {
+                builder.append(String.format(fmt, Arrays.toString(_nonzeroPatterns[i]),
+                                             _nonzeroCounts[i], _nonzeroWeights[i],
+                                             _nonzeroVariances[i]));
+            }
+
+            return builder.toString();
+        }
+
         builder.append(String.format(fmtTitle, "pattern", "count"));
 
         for (int i = 0; i < _nonzeroPatterns.length; i++)
@@ -162,9 +829,15 @@ public class Counter {
         return builder.toString();
     }
 
+    private final static int MAGIC = 0x54434e54; // "TCNT"
+    private final static int VERSION = 2;
+
     private final RecordComparator _cmp;
-    private final SortedMap<Integer, Integer> _countMap;
-    private final int[] _nonzeroCounts, _nonzeroPatternIndex;
+    private final long[] _nonzeroCounts;
+    private final int[] _nonzeroPatternIndex;
     private final int[][] _nonzeroPatterns;
-    private final int _maxCount, _total;
+    private final double[] _nonzeroWeights, _nonzeroVariances;
+    private final long _maxCount, _total;
+    private final double _totalWeight, _totalVariance;
+    private final boolean _sampled;
 }
@@ -2,15 +2,18 @@ package torch.counter;
 
 import torch.Record;
 import torch.RecordComparator;
-import torch.util.AccumulatorMap;
-import torch.util.IntAccumulator;
-import torch.util.P;
+import torch.TupleBlock;
 
-import java.util.TreeMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * A utility class to build up a <code>Counter</code> incrementally from record
  * comparisons.
+ *
+ * <p>Tallies are kept in primitive tables (see {@link PatternCounts}), one per thread that adds
+ * to the counter, so several threads can add comparisons at once without contending. The tables
+ * are merged by {@link #toCounter}, which must not run concurrently with <code>add</code>.
  */
 public class IncrementalCounter {
 
@@ -21,18 +24,72 @@ public class IncrementalCounter {
      */
     public IncrementalCounter(RecordComparator cmp) {
         _cmp = cmp;
-
-        TreeMap<Integer, P<Integer>> map = new TreeMap<>();
-        _acc = new AccumulatorMap<>(map, IntAccumulator.INSTANCE);
-    } 
+        _stripes = new CopyOnWriteArrayList<>();
+        _stripe = new ThreadLocal<Stripe>() {
+            @Override
+            protected Stripe initialValue() {
+                Stripe s = new Stripe(_cmp.nPatterns());
+                _stripes.add(s);
+                return s;
+            }
+        };
+    }
 
     /**
      * Compute the comparison pattern between the two records and increment the tally
      * for the result.
      */
     public void add(Record rec1, Record rec2) {
-        Integer pattern = _cmp.compareIndex(rec1, rec2);
-        _acc.add(pattern, 1);
+        _stripe.get().counts.add(_cmp.compareIndex(rec1, rec2), 1);
+    }
+
+    /**
+     * Compare every record in <code>block</code> to <code>rec2</code> and increment the tally for
+     * each result.
+     */
+    public void add(List<Record> block, Record rec2) {
+        Stripe s = _stripe.get();
+
+        if (s.patterns.length < block.size())
+            s.patterns = new int[Math.max(block.size(), 2 * s.patterns.length)];
+
+        _cmp.compareIndex(block, rec2, s.patterns);
+
+        for (int i = 0; i < block.size(); i++)
+            s.counts.add(s.patterns[i], 1);
+    }
+
+    /**
+     * Compare every tuple in <code>block1</code> to every tuple in <code>block2</code>, and
+     * increment the tally for each result by the number of record pairs with those tuples.
+     */
+    public void add(TupleBlock block1, TupleBlock block2) {
+        PatternCounts counts = _stripe.get().counts;
+
+        for (int j = 0; j < block2.nTuples(); j++) {
+            Record rec2 = block2.representative(j);
+            long weight2 = block2.weight(j);
+
+            for (int i = 0; i < block1.nTuples(); i++) {
+                int pattern = _cmp.compareIndex(block1.representative(i), rec2);
+                counts.add(pattern, block1.weight(i) * weight2);
+            }
+        }
+    }
+
+    /**
+     * Adds the tallies of <code>other</code>, which must use the same comparator, to this
+     * counter.
+     */
+    public void add(IncrementalCounter other) {
+        if (other._cmp != _cmp)
+            throw new IllegalArgumentException("Counters use different comparators");
+        if (other == this)
+            throw new IllegalArgumentException("Can't add a counter to itself");
+
+        PatternCounts counts = _stripe.get().counts;
+        for (Stripe s: other._stripes)
+            s.counts.addTo(counts);
     }
 
     /**
@@ -40,15 +97,35 @@ public class IncrementalCounter {
      * <code>IncrementalCounter</code>.
      */
     public Counter toCounter() {
-        TreeMap<Integer, P<Integer>> map = (TreeMap<Integer, P<Integer>>)_acc.map();
-        TreeMap<Integer, Integer> imap = new TreeMap<>();
+        PatternCounts total;
+
+        if (_stripes.size() == 1) {
+            total = _stripes.get(0).counts;
+        } else {
+            total = new PatternCounts(_cmp.nPatterns());
+            for (Stripe s: _stripes)
+                s.counts.addTo(total);
+        }
+
+        int[] patterns = total.patterns();
+        long[] counts = new long[patterns.length];
+        for (int i = 0; i < patterns.length; i++)
+            counts[i] = total.get(patterns[i]);
+
+        return new Counter(_cmp, patterns, counts);
+    }
 
-        for (Integer k: map.keySet())
-            imap.put(k, map.get(k).value);
+    private static class Stripe {
+        Stripe(int nPatterns) {
+            counts = new PatternCounts(nPatterns);
+            patterns = new int[64];
+        }
 
-        return new Counter(_cmp, imap);
+        final PatternCounts counts;
+        int[] patterns;
     }
 
     private final RecordComparator _cmp;
-    private final AccumulatorMap<Integer, Integer, P<Integer>> _acc;
+    private final List<Stripe> _stripes;
+    private final ThreadLocal<Stripe> _stripe;
 }
@@ -0,0 +1,143 @@
+package torch.counter;
+
+import torch.Record;
+import torch.RecordComparator;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Draws a Bernoulli sample of the candidate pairs in each block, for estimating pattern counts
+ * without comparing every pair. A block with <code>m</code> pairs is sampled with inclusion
+ * probability
+ *
+ * <pre>
+ *     p(m) = min(1, max(minPerBlock / m, min(rate, maxPerBlock / m)))
+ * </pre>
+ *
+ * so that every block contributes about <code>rate * m</code> pairs, but at least
+ * <code>minPerBlock</code> (or all of them) and at most about <code>maxPerBlock</code>. Small
+ * blocks are always represented and a few huge blocks can't dominate the sample. Each sampled
+ * pair is weighted by <code>1 / p</code>, so the weighted counts are unbiased (Horvitz-Thompson)
+ * estimates of the full counts, and the variance of each estimate is accumulated alongside.
+ *
+ * <p>Pairs are chosen by skipping ahead a geometrically distributed number of pairs at a time, so
+ * the cost of sampling a block is proportional to the size of the sample, not of the block.
+ *
+ * @see Counter#count(RecordComparator, torch.IRecordIterator, torch.IRecordIterator, PairSampler)
+ */
+public class PairSampler {
+
+    public final static double DEFAULT_RATE = 0.01;
+    public final static long DEFAULT_MIN_PER_BLOCK = 100;
+    public final static long DEFAULT_MAX_PER_BLOCK = 1000000;
+
+    public static class Builder {
+
+        public Builder() {
+            _rate = DEFAULT_RATE;
+            _minPerBlock = DEFAULT_MIN_PER_BLOCK;
+            _maxPerBlock = DEFAULT_MAX_PER_BLOCK;
+            _seed = System.nanoTime();
+        }
+
+        public Builder rate(double rate) {
+            _rate = rate;
+            return this;
+        }
+
+        public Builder minPerBlock(long n) {
+            _minPerBlock = n;
+            return this;
+        }
+
+        public Builder maxPerBlock(long n) {
+            _maxPerBlock = n;
+            return this;
+        }
+
+        public Builder seed(long seed) {
+            _seed = seed;
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException if the rate isn't in (0, 1], or the per-block limits
+         * are inconsistent.
+         */
+        public PairSampler build() {
+            if (!(_rate > 0 && _rate <= 1))
+                throw new IllegalArgumentException("'rate' must be in (0, 1]");
+            if (_minPerBlock < 0 || _maxPerBlock < 1 || _minPerBlock > _maxPerBlock)
+                throw new IllegalArgumentException("invalid per-block sample sizes");
+
+            return new PairSampler(this);
+        }
+
+        private double _rate;
+        private long _minPerBlock, _maxPerBlock, _seed;
+    }
+
+    /**
+     * Returns the inclusion probability of each pair in a block with <code>m</code> pairs.
+     */
+    public double probability(long m) {
+        double p = Math.min(_rate, (double)_maxPerBlock / m);
+        p = Math.max(p, (double)_minPerBlock / m);
+        return Math.min(1.0, p);
+    }
+
+    /**
+     * Samples the pairs of <code>block1</code> and <code>block2</code>, compares them, and adds
+     * their weighted patterns to <code>weights</code>.
+     */
+    void sample(Random rng, RecordComparator cmp, List<Record> block1, List<Record> block2,
+                PatternWeights weights)
+    {
+        int n1 = block1.size();
+        long m = (long)n1 * block2.size();
+        double p = probability(m);
+        double weight = 1.0 / p;
+        double variance = (1.0 - p) / (p * p);
+
+        // index the blocks by position; Record.block returns linked lists
+        Record[] recs1 = block1.toArray(new Record[n1]);
+        Record[] recs2 = block2.toArray(new Record[block2.size()]);
+        double logq = Math.log1p(-p);
+
+        for (long t = skip(rng, p, logq); t < m; t += 1 + skip(rng, p, logq)) {
+            int pattern = cmp.compareIndex(recs1[(int)(t % n1)], recs2[(int)(t / n1)]);
+            weights.add(pattern, weight, variance);
+        }
+    }
+
+    /**
+     * Returns the number of pairs to skip before the next sampled pair, which is geometrically
+     * distributed with success probability <code>p</code>.
+     */
+    private static long skip(Random rng, double p, double logq) {
+        if (p >= 1.0)
+            return 0;
+
+        double u = 1.0 - rng.nextDouble();
+        double s = Math.floor(Math.log(u) / logq);
+        return (s >= Long.MAX_VALUE / 2) ? Long.MAX_VALUE / 2 : (long)s;
+    }
+
+    /**
+     * Returns a new random number generator seeded with this sampler's seed.
+     */
+    Random random() {
+        return new Random(_seed);
+    }
+
+    private PairSampler(Builder b) {
+        _rate = b._rate;
+        _minPerBlock = b._minPerBlock;
+        _maxPerBlock = b._maxPerBlock;
+        _seed = b._seed;
+    }
+
+    private final double _rate;
+    private final long _minPerBlock, _maxPerBlock, _seed;
+}
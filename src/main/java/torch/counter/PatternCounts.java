@@ -0,0 +1,142 @@
+package torch.counter;
+
+import java.util.Arrays;
+
+/**
+ * Tallies of comparison pattern indexes. Pattern spaces of up to {@link #MAX_DENSE_PATTERNS} are
+ * counted in a dense <code>long[]</code> indexed by pattern; larger ones in an open-addressing
+ * hash table of primitive keys and counts. Not thread-safe.
+ */
+class PatternCounts {
+
+    final static int MAX_DENSE_PATTERNS = 1 << 18;
+
+    PatternCounts(int nPatterns) {
+        this(nPatterns, MAX_DENSE_PATTERNS);
+    }
+
+    PatternCounts(int nPatterns, int maxDensePatterns) {
+        if (nPatterns <= maxDensePatterns) {
+            _dense = new long[nPatterns];
+            _keys = null;
+            _values = null;
+        } else {
+            _dense = null;
+            _keys = new int[64];
+            _values = new long[64];
+            Arrays.fill(_keys, EMPTY);
+        }
+    }
+
+    /**
+     * Adds <code>n</code> to the tally for <code>pattern</code>.
+     */
+    void add(int pattern, long n) {
+        if (_dense != null) {
+            _dense[pattern] += n;
+            return;
+        }
+
+        int mask = _keys.length - 1;
+        int slot = mix(pattern) & mask;
+
+        while (_keys[slot] != EMPTY) {
+            if (_keys[slot] == pattern) {
+                _values[slot] += n;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        _keys[slot] = pattern;
+        _values[slot] = n;
+
+        if (++_size > _keys.length / 2)
+            rehash();
+    }
+
+    /**
+     * Adds every tally in this table to <code>other</code>.
+     */
+    void addTo(PatternCounts other) {
+        if (_dense != null) {
+            for (int i = 0; i < _dense.length; i++)
+                if (_dense[i] != 0)
+                    other.add(i, _dense[i]);
+        } else {
+            for (int slot = 0; slot < _keys.length; slot++)
+                if (_keys[slot] != EMPTY)
+                    other.add(_keys[slot], _values[slot]);
+        }
+    }
+
+    /**
+     * Returns the patterns with nonzero tallies, in ascending order.
+     */
+    int[] patterns() {
+        int[] patterns;
+        int n = 0;
+
+        if (_dense != null) {
+            patterns = new int[_dense.length];
+            for (int i = 0; i < _dense.length; i++)
+                if (_dense[i] != 0)
+                    patterns[n++] = i;
+        } else {
+            patterns = new int[_size];
+            for (int slot = 0; slot < _keys.length; slot++)
+                if (_keys[slot] != EMPTY && _values[slot] != 0)
+                    patterns[n++] = _keys[slot];
+
+            Arrays.sort(patterns, 0, n);
+        }
+
+        return Arrays.copyOf(patterns, n);
+    }
+
+    /**
+     * Returns the tally for <code>pattern</code>.
+     */
+    long get(int pattern) {
+        if (_dense != null)
+            return _dense[pattern];
+
+        int mask = _keys.length - 1;
+        int slot = mix(pattern) & mask;
+
+        while (_keys[slot] != EMPTY) {
+            if (_keys[slot] == pattern)
+                return _values[slot];
+            slot = (slot + 1) & mask;
+        }
+
+        return 0;
+    }
+
+    private void rehash() {
+        int[] keys = _keys;
+        long[] values = _values;
+
+        _keys = new int[2 * keys.length];
+        _values = new long[2 * keys.length];
+        _size = 0;
+        Arrays.fill(_keys, EMPTY);
+
+        for (int slot = 0; slot < keys.length; slot++)
+            if (keys[slot] != EMPTY)
+                add(keys[slot], values[slot]);
+    }
+
+    private static int mix(int h) {
+        h *= 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    // pattern indexes are never negative
+    private final static int EMPTY = -1;
+
+    private final long[] _dense;
+    private int[] _keys;
+    private long[] _values;
+    private int _size;
+}
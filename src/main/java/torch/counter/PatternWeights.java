@@ -0,0 +1,94 @@
+package torch.counter;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Weighted tallies of sampled comparison patterns. For each pattern this keeps the number of
+ * sampled pairs, the sum of their inverse-probability weights, and the sum of their variance
+ * contributions. Dense for pattern spaces of up to {@link PatternCounts#MAX_DENSE_PATTERNS},
+ * hashed otherwise. Not thread-safe.
+ */
+class PatternWeights {
+
+    PatternWeights(int nPatterns) {
+        if (nPatterns <= PatternCounts.MAX_DENSE_PATTERNS) {
+            _counts = new long[nPatterns];
+            _weights = new double[nPatterns];
+            _variances = new double[nPatterns];
+            _sparse = null;
+        } else {
+            _counts = null;
+            _weights = null;
+            _variances = null;
+            _sparse = new HashMap<>();
+        }
+    }
+
+    void add(int pattern, double weight, double variance) {
+        if (_counts != null) {
+            _counts[pattern]++;
+            _weights[pattern] += weight;
+            _variances[pattern] += variance;
+            return;
+        }
+
+        double[] w = _sparse.get(pattern);
+        if (w == null) {
+            w = new double[3];
+            _sparse.put(pattern, w);
+        }
+
+        w[0]++;
+        w[1] += weight;
+        w[2] += variance;
+    }
+
+    /**
+     * Returns a counter with the sampled counts, weights, and variances.
+     */
+    Counter toCounter(torch.RecordComparator cmp) {
+        int n = 0;
+        int[] patterns;
+
+        if (_counts != null) {
+            patterns = new int[_counts.length];
+            for (int i = 0; i < _counts.length; i++)
+                if (_counts[i] != 0)
+                    patterns[n++] = i;
+        } else {
+            patterns = new int[_sparse.size()];
+            for (Integer i: _sparse.keySet())
+                patterns[n++] = i;
+
+            Arrays.sort(patterns);
+        }
+
+        patterns = Arrays.copyOf(patterns, n);
+        long[] counts = new long[n];
+        double[] weights = new double[n];
+        double[] variances = new double[n];
+
+        for (int i = 0; i < n; i++) {
+            int ix = patterns[i];
+
+            if (_counts != null) {
+                counts[i] = _counts[ix];
+                weights[i] = _weights[ix];
+                variances[i] = _variances[ix];
+            } else {
+                double[] w = _sparse.get(ix);
+                counts[i] = (long)w[0];
+                weights[i] = w[1];
+                variances[i] = w[2];
+            }
+        }
+
+        return new Counter(cmp, patterns, counts, weights, variances);
+    }
+
+    private final long[] _counts;
+    private final double[] _weights, _variances;
+    private final Map<Integer, double[]> _sparse;
+}
@@ -34,6 +34,8 @@ public class DelimitedFileSchema
             _header = false;
             _columns = new LinkedList<>(); 
             _blockingFields = new LinkedList<>(); 
+            _subBlockingFields = new LinkedList<>();
+            _blockingPasses = new LinkedList<>();
             _seqField = null;
             _idField = null;
             _blankIndicator = BLANK_INDICATOR;
@@ -73,6 +75,27 @@ public class DelimitedFileSchema
             return this;
         }
 
+        /**
+         * Adds a blocking pass with the given blocking fields. The fields given to
+         * <code>blockingField</code> make up the first pass.
+         */
+        public Builder blockingPass(String... names) {
+            _blockingPasses.add(names);
+            return this;
+        }
+
+        public Builder subBlockingField(String name) {
+            _subBlockingFields.add(name);
+            return this;
+        }
+
+        public Builder subBlockingFields(String... names) {
+            for (String name: names)
+                _subBlockingFields.add(name);
+
+            return this;
+        }
+
         public Builder seqField(String name) {
             _seqField = name;
             return this;
@@ -90,8 +113,14 @@ public class DelimitedFileSchema
 
         public DelimitedFileSchema build() {
             String[] columns = _columns.toArray(new String[0]);
-            String[] blockingFields = _blockingFields.toArray(new String[0]);
-            RecordSchema schema = new RecordSchema(columns, blockingFields, _seqField, _idField);
+            String[][] blockingPasses = new String[_blockingPasses.size() + 1][];
+            blockingPasses[0] = _blockingFields.toArray(new String[0]);
+            for (int i = 1; i < blockingPasses.length; i++)
+                blockingPasses[i] = _blockingPasses.get(i - 1);
+
+            String[] subBlockingFields = _subBlockingFields.toArray(new String[0]);
+            RecordSchema schema =
+                new RecordSchema(columns, blockingPasses, subBlockingFields, _seqField, _idField);
 
             CSVStrategy strategy = 
                 new CSVStrategy(_delimiter, QUOTE_CHAR, COMMENT_CHAR, _header, IGNORE_EMPTY_LINES);
@@ -101,7 +130,8 @@ public class DelimitedFileSchema
 
         private char _delimiter;
         private boolean _header;
-        private final LinkedList<String> _columns, _blockingFields;
+        private final LinkedList<String> _columns, _blockingFields, _subBlockingFields;
+        private final LinkedList<String[]> _blockingPasses;
         private String _seqField, _idField, _blankIndicator;
     }
 
@@ -19,6 +19,8 @@ public class FixedWidthFileSchema implements IRecordLoader
         public Builder() {
             _columns = new LinkedList<>();
             _blockingFields = new LinkedList<>();
+            _subBlockingFields = new LinkedList<>();
+            _blockingPasses = new LinkedList<>();
             _columnStart = new LinkedList<>();
             _columnOff = new LinkedList<>();
             _seqField = null;
@@ -27,8 +29,14 @@ public class FixedWidthFileSchema implements IRecordLoader
 
         public FixedWidthFileSchema build() {
             String[] columns = _columns.toArray(new String[0]);
-            String[] blockingFields = _blockingFields.toArray(new String[0]);
-            RecordSchema schema = new RecordSchema(columns, blockingFields, _seqField, _idField);
+            String[][] blockingPasses = new String[_blockingPasses.size() + 1][];
+            blockingPasses[0] = _blockingFields.toArray(new String[0]);
+            for (int i = 1; i < blockingPasses.length; i++)
+                blockingPasses[i] = _blockingPasses.get(i - 1);
+
+            String[] subBlockingFields = _subBlockingFields.toArray(new String[0]);
+            RecordSchema schema =
+                new RecordSchema(columns, blockingPasses, subBlockingFields, _seqField, _idField);
 
             int[] columnStart = new int[_columnStart.size()];
             int[] columnOff = new int[_columnStart.size()];
@@ -59,6 +67,27 @@ public class FixedWidthFileSchema implements IRecordLoader
             return this;
         }
 
+        /**
+         * Adds a blocking pass with the given blocking fields. The fields given to
+         * <code>blockingField</code> make up the first pass.
+         */
+        public Builder blockingPass(String... names) {
+            _blockingPasses.add(names);
+            return this;
+        }
+
+        public Builder subBlockingField(String name) {
+            _subBlockingFields.add(name);
+            return this;
+        }
+
+        public Builder subBlockingFields(String... names) {
+            for (String name: names)
+                _subBlockingFields.add(name);
+
+            return this;
+        }
+
         public Builder seqField(String name) {
             _seqField = name;
             return this;
@@ -70,7 +99,8 @@ public class FixedWidthFileSchema implements IRecordLoader
             return this;
         }
 
-        private final LinkedList<String> _columns, _blockingFields;
+        private final LinkedList<String> _columns, _blockingFields, _subBlockingFields;
+        private final LinkedList<String[]> _blockingPasses;
         private final LinkedList<Integer> _columnStart, _columnOff;
         private String _seqField, _idField;
     }
@@ -0,0 +1,304 @@
+package torch.matcher;
+
+import torch.Record;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A formatter that passes pairs to another formatter on a background thread, so that scoring
+ * doesn't wait for output. Pairs scoring at least the cutoff are collected in batches, and a
+ * batch is queued for the writer thread when it is full, or when any pair, even one below the
+ * cutoff, is formatted more than <code>maxDelayMillis</code> after the batch was started. A
+ * fixed number of batches circulate between the two threads, so when the writer falls behind,
+ * {@link #format} waits for it rather than buffering without bound. Whenever the writer runs out
+ * of batches it flushes the other formatter, if that is {@link Flushable}.
+ *
+ * <p>An exception thrown by the other formatter on the writer thread is rethrown, wrapped in a
+ * <code>FormatterException</code>, by the next call to {@link #format}, {@link #flush}, or
+ * {@link #close}. Pairs are passed on in the order they were formatted. Call {@link #close} to
+ * pass on the pairs still buffered and stop the writer thread.
+ */
+public class AsyncFormatter
+    implements IMatchingFormatter, AutoCloseable
+{
+
+    public final static int DEFAULT_BATCH_SIZE = 4096;
+    public final static int DEFAULT_BATCHES = 8;
+    public final static long DEFAULT_MAX_DELAY_MILLIS = 1000;
+
+    /**
+     * Constructs a formatter that passes pairs scoring at least <code>cutoff</code> to
+     * <code>formatter</code> on a background thread.
+     *
+     * @param batchSize the number of pairs in a batch.
+     * @param nBatches the number of batches, at least 2, that can be filled or waiting at once.
+     * @param maxDelayMillis the longest a pair waits in a partly filled batch while more pairs
+     * are formatted.
+     */
+    public AsyncFormatter(IMatchingFormatter formatter, double cutoff, int batchSize,
+                          int nBatches, long maxDelayMillis)
+    {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("'batchSize' must be positive");
+
+        if (nBatches < 2)
+            throw new IllegalArgumentException("'nBatches' must be at least 2");
+
+        _formatter = formatter;
+        _cutoff = cutoff;
+        _maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        _free = new ArrayBlockingQueue<>(nBatches);
+        _full = new ArrayBlockingQueue<>(nBatches + 1);
+
+        for (int i = 1; i < nBatches; i++)
+            _free.add(new Batch(batchSize));
+
+        _batch = new Batch(batchSize);
+        _thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, "torch-async-formatter");
+        _thread.setDaemon(true);
+        _thread.start();
+    }
+
+    /**
+     * Constructs a formatter with the default batch size, number of batches, and delay.
+     */
+    public AsyncFormatter(IMatchingFormatter formatter, double cutoff) {
+        this(formatter, cutoff, DEFAULT_BATCH_SIZE, DEFAULT_BATCHES, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    @Override
+    public synchronized void format(Record rec1, Record rec2, double score)
+        throws torch.FormatterException
+    {
+        if (score >= _cutoff) {
+            checkError();
+            ensureOpen();
+
+            if (_batch.n == 0) {
+                _batch.startNanos = System.nanoTime();
+                _untilClock = CLOCK_INTERVAL;
+            }
+
+            _batch.add(rec1, rec2, score);
+
+            if (_batch.isFull()) {
+                handOff();
+                return;
+            }
+        }
+
+        // most pairs are below the cutoff, so the age of a partly filled batch is checked
+        // whatever the score, reading the clock only every CLOCK_INTERVAL pairs
+        if (_batch.n > 0 && --_untilClock <= 0) {
+            _untilClock = CLOCK_INTERVAL;
+
+            if (System.nanoTime() - _batch.startNanos > _maxDelayNanos) {
+                checkError();
+                ensureOpen();
+                handOff();
+            }
+        }
+    }
+
+    /**
+     * Queues the pairs buffered so far and waits until the other formatter has been passed them
+     * and has been flushed.
+     */
+    public synchronized void flush()
+        throws torch.FormatterException
+    {
+        checkError();
+        ensureOpen();
+
+        if (_batch.n > 0)
+            handOff();
+
+        _full.add(FLUSH);
+        try {
+            _flushed.acquire();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while flushing", e);
+        }
+
+        checkError();
+    }
+
+    /**
+     * Passes on the pairs still buffered, flushes the other formatter, and stops the writer
+     * thread. Closing a closed formatter does nothing.
+     */
+    @Override
+    public synchronized void close()
+        throws torch.FormatterException
+    {
+        if (_closed)
+            return;
+
+        _closed = true;
+        if (_batch.n > 0)
+            _full.add(_batch);
+
+        _full.add(END);
+
+        try {
+            _thread.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while closing", e);
+        }
+
+        checkError();
+    }
+
+    /**
+     * A batch of pairs, stored in arrays that are reused once the writer is done with them.
+     */
+    private static class Batch {
+        Batch(int capacity) {
+            rec1 = new Record[capacity];
+            rec2 = new Record[capacity];
+            scores = new double[capacity];
+        }
+
+        void add(Record r1, Record r2, double score) {
+            rec1[n] = r1;
+            rec2[n] = r2;
+            scores[n] = score;
+            n++;
+        }
+
+        boolean isFull() {
+            return n == scores.length;
+        }
+
+        void clear() {
+            for (int i = 0; i < n; i++) {
+                rec1[i] = null;
+                rec2[i] = null;
+            }
+
+            n = 0;
+        }
+
+        final Record[] rec1, rec2;
+        final double[] scores;
+        int n;
+        long startNanos;
+    }
+
+    /**
+     * Queues the current batch for the writer and takes a free batch, waiting for the writer to
+     * free one if need be.
+     */
+    private void handOff()
+        throws torch.FormatterException
+    {
+        _full.add(_batch);
+        _batch = take(_free);
+        checkError();
+    }
+
+    /**
+     * Passes batches to the other formatter until the end is queued. After a failure, batches
+     * are freed without being passed on, so the scoring thread never waits for a dead writer.
+     */
+    private void write() {
+        while (true) {
+            Batch batch = _full.poll();
+
+            if (batch == null) {
+                flushFormatter();
+                batch = take(_full);
+            }
+
+            if (batch == END)
+                break;
+
+            if (batch == FLUSH) {
+                flushFormatter();
+                _flushed.release();
+                continue;
+            }
+
+            if (_error == null) {
+                try {
+                    for (int i = 0; i < batch.n; i++)
+                        _formatter.format(batch.rec1[i], batch.rec2[i], batch.scores[i]);
+                }
+                catch (torch.FormatterException | RuntimeException | Error e) {
+                    _error = e;
+                }
+            }
+
+            batch.clear();
+            _free.add(batch);
+        }
+
+        flushFormatter();
+    }
+
+    private void flushFormatter() {
+        if (_error != null || !(_formatter instanceof Flushable))
+            return;
+
+        try {
+            ((Flushable)_formatter).flush();
+        }
+        catch (IOException | RuntimeException | Error e) {
+            _error = e;
+        }
+    }
+
+    private void checkError()
+        throws torch.FormatterException
+    {
+        Throwable error = _error;
+        if (error != null)
+            throw new torch.FormatterException("There was a problem formatting the output", error);
+    }
+
+    private void ensureOpen() {
+        if (_closed)
+            throw new IllegalStateException("formatter is closed");
+    }
+
+    private static Batch take(BlockingQueue<Batch> queue) {
+        try {
+            return queue.take();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the writer", e);
+        }
+    }
+
+    private final static int CLOCK_INTERVAL = 256;
+
+    // queued after the last batch to stop the writer, and to have it flush
+    private final static Batch END = new Batch(0);
+    private final static Batch FLUSH = new Batch(0);
+
+    private final IMatchingFormatter _formatter;
+    private final double _cutoff;
+    private final long _maxDelayNanos;
+    private final BlockingQueue<Batch> _free, _full;
+    private final Thread _thread;
+    private final Semaphore _flushed = new Semaphore(0);
+    private volatile Throwable _error;
+    private Batch _batch;
+    private int _untilClock;
+    private boolean _closed;
+}
@@ -0,0 +1,138 @@
+package torch.matcher;
+
+import torch.Record;
+import torch.RecordComparator;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A formatter that writes each pair scoring at least the cutoff as a fixed-width binary row: the
+ * sequence values of the two records as <code>long</code>s, the score, and the pattern index.
+ * Field values are not written; {@link ResultMaterializer} joins them back in for the rows that
+ * are read. A row takes 28 bytes, against the score, sequence values and every comparison field
+ * of both records as text in the CSV written by {@link DefaultFormatter}.
+ *
+ * <p>The rows follow a header with the fingerprint of the record comparator, so that they are
+ * only read back with a comparator that produces the same pattern indexes. Sequence values must
+ * be integers. The pattern index of each pair is taken from the matching algorithm when it passes
+ * it on, as {@link DefaultMatchingAlgo} and {@link ParallelMatchingAlgo} do, and is otherwise
+ * computed again for each pair that is written.
+ *
+ * @see BinaryResultReader
+ */
+public class BinaryFormatter
+    implements IPatternFormatter, Flushable, Closeable
+{
+
+    /**
+     * The length in bytes of a row.
+     */
+    public final static int ROW_BYTES = 28;
+
+    /**
+     * Constructs a formatter that writes to <code>out</code>.
+     */
+    public BinaryFormatter(OutputStream out, RecordComparator cmp, double cutoff)
+        throws torch.FormatterException
+    {
+        _out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        _cmp = cmp;
+        _cutoff = cutoff;
+
+        try {
+            _out.writeInt(MAGIC);
+            _out.writeInt(VERSION);
+            _out.writeLong(cmp.fingerprint());
+        }
+        catch (IOException e) {
+            throw new torch.FormatterException("There was a problem formatting the output", e);
+        }
+    }
+
+    /**
+     * Constructs a formatter that writes to the named file.
+     */
+    public BinaryFormatter(String filename, RecordComparator cmp, double cutoff)
+        throws IOException, torch.FormatterException
+    {
+        this(new FileOutputStream(filename), cmp, cutoff);
+    }
+
+    /**
+     * Writes the pair if its score is at least the cutoff, comparing the records again to find
+     * the pattern index.
+     *
+     * @throws torch.FormatterException if a sequence value isn't an integer, or the pair can't
+     * be written.
+     */
+    @Override
+    public void format(Record rec1, Record rec2, double score)
+        throws torch.FormatterException
+    {
+        if (score >= _cutoff)
+            format(rec1, rec2, score, _cmp.compareIndex(rec1, rec2));
+    }
+
+    /**
+     * Writes the pair if its score is at least the cutoff.
+     *
+     * @throws torch.FormatterException if a sequence value isn't an integer, or the pair can't
+     * be written.
+     */
+    @Override
+    public void format(Record rec1, Record rec2, double score, int patternIndex)
+        throws torch.FormatterException
+    {
+        if (!(score >= _cutoff))
+            return;
+
+        try {
+            _out.writeLong(seq(rec1));
+            _out.writeLong(seq(rec2));
+            _out.writeDouble(score);
+            _out.writeInt(patternIndex);
+        }
+        catch (IOException e) {
+            throw new torch.FormatterException("There was a problem formatting the output", e);
+        }
+    }
+
+    @Override
+    public void flush()
+        throws IOException
+    {
+        _out.flush();
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        _out.close();
+    }
+
+    private static long seq(Record rec)
+        throws torch.FormatterException
+    {
+        try {
+            return Long.parseLong(rec.seq());
+        }
+        catch (NumberFormatException e) {
+            String msg = String.format("Sequence value is not an integer: '%s'", rec.seq());
+            throw new torch.FormatterException(msg, e);
+        }
+    }
+
+    final static int MAGIC = 0x54524553; // "TRES"
+    final static int VERSION = 1;
+
+    private final DataOutputStream _out;
+    private final RecordComparator _cmp;
+    private final double _cutoff;
+}
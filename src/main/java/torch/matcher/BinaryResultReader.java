@@ -0,0 +1,101 @@
+package torch.matcher;
+
+import torch.RecordComparator;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the rows written by {@link BinaryFormatter} one at a time. After {@link #next} returns
+ * true, the accessors return the fields of the current row.
+ */
+public class BinaryResultReader
+    implements Closeable
+{
+
+    /**
+     * Constructs a reader for rows written with a comparator like <code>cmp</code>.
+     *
+     * @throws IllegalArgumentException if the rows were written with a comparator whose {@link
+     * RecordComparator#fingerprint} differs from that of <code>cmp</code>.
+     * @throws IOException if the input isn't a result file or can't be read.
+     */
+    public BinaryResultReader(InputStream in, RecordComparator cmp)
+        throws IOException
+    {
+        _in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+
+        if (_in.readInt() != BinaryFormatter.MAGIC)
+            throw new IOException("Not a binary result file");
+
+        int version = _in.readInt();
+        if (version != BinaryFormatter.VERSION)
+            throw new IOException("Unsupported binary result version: " + version);
+
+        if (_in.readLong() != cmp.fingerprint())
+            throw new IllegalArgumentException("Results were made with a different comparator");
+    }
+
+    /**
+     * Constructs a reader for the named file.
+     */
+    public BinaryResultReader(String filename, RecordComparator cmp)
+        throws IOException
+    {
+        this(new FileInputStream(filename), cmp);
+    }
+
+    /**
+     * Reads the next row, and returns false if there are no more.
+     *
+     * @throws IOException if the input ends in the middle of a row or can't be read.
+     */
+    public boolean next()
+        throws IOException
+    {
+        try {
+            _seq1 = _in.readLong();
+        }
+        catch (EOFException e) {
+            return false;
+        }
+
+        _seq2 = _in.readLong();
+        _score = _in.readDouble();
+        _patternIndex = _in.readInt();
+        return true;
+    }
+
+    public long seq1() {
+        return _seq1;
+    }
+
+    public long seq2() {
+        return _seq2;
+    }
+
+    public double score() {
+        return _score;
+    }
+
+    public int patternIndex() {
+        return _patternIndex;
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        _in.close();
+    }
+
+    private final DataInputStream _in;
+    private long _seq1, _seq2;
+    private double _score;
+    private int _patternIndex;
+}
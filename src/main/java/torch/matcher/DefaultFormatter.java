@@ -3,6 +3,8 @@ package torch.matcher;
 import torch.Record;
 import torch.RecordComparator;
 
+import java.io.Flushable;
+import java.io.IOException;
 import java.io.Writer;
 
 import com.googlecode.jcsv.CSVStrategy;
@@ -11,11 +13,25 @@ import com.googlecode.jcsv.writer.internal.CSVColumnJoinerImpl;
 import com.googlecode.jcsv.writer.internal.CSVWriterBuilder;
 
 public class DefaultFormatter 
-    implements IMatchingFormatter
+    implements IMatchingFormatter, Flushable
 {
 
+    /**
+     * Constructs a formatter that writes pairs scoring at least <code>cutoff</code> and flushes
+     * the writer after each one.
+     */
     public DefaultFormatter(Writer writer, RecordComparator cmp, double cutoff) 
         throws torch.FormatterException
+    {
+        this(writer, cmp, cutoff, true);
+    }
+
+    /**
+     * Constructs a formatter that writes pairs scoring at least <code>cutoff</code>. Unless
+     * <code>autoFlush</code> is true, the writer is only flushed by {@link #flush}.
+     */
+    public DefaultFormatter(Writer writer, RecordComparator cmp, double cutoff, boolean autoFlush)
+        throws torch.FormatterException
     {
         MatchRecordEntryConverter converter = new MatchRecordEntryConverter(cmp);
         CSVColumnJoinerImpl joiner = new CSVColumnJoinerImpl();
@@ -39,6 +55,7 @@ public class DefaultFormatter
             .build();
 
         _cutoff = cutoff;
+        _autoFlush = autoFlush;
     }
 
     @Override
@@ -48,7 +65,8 @@ public class DefaultFormatter
         if (score >= _cutoff) {
             try {
                 _csvWriter.write(new MatchRecord(rec1, rec2, score));
-                _csvWriter.flush();
+                if (_autoFlush)
+                    _csvWriter.flush();
             }
             catch (java.io.IOException e) {
                 throw new torch.FormatterException("There was a problem formatting the output", e);
@@ -56,6 +74,14 @@ public class DefaultFormatter
         }
     }
 
+    @Override
+    public void flush()
+        throws IOException
+    {
+        _csvWriter.flush();
+    }
+
     private final CSVWriter<MatchRecord> _csvWriter;
     private final double _cutoff;
+    private final boolean _autoFlush;
 }
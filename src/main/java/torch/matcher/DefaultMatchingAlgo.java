@@ -1,9 +1,17 @@
 package torch.matcher;
 
+import torch.BlockPairs;
 import torch.IModel;
 import torch.IRecordIterator;
+import torch.MultiPassBlocks;
+import torch.PartitionedBlocks;
 import torch.Record;
+import torch.RecordComparator;
+import torch.ScoreBound;
+import torch.SortedNeighborhood;
+import torch.TupleBlock;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -19,26 +27,114 @@ public class DefaultMatchingAlgo
      * <code>model</code> and output results to the formatter.
      */
     public DefaultMatchingAlgo(IModel model, IMatchingFormatter formatter) {
+        this(model, formatter, false);
+    }
+
+    /**
+     * Constructs a matching algorithm that will compare records using the given
+     * <code>model</code> and output results to the formatter. If <code>collapse</code> is true,
+     * blocks are collapsed to their distinct comparison tuples, each distinct pair of tuples is
+     * scored once, and the score is passed to the formatter for every pair of records with those
+     * tuples. The formatter sees the same pairs and scores either way, but not in the same order.
+     *
+     * @see TupleBlock
+     */
+    public DefaultMatchingAlgo(IModel model, IMatchingFormatter formatter, boolean collapse) {
+        this(model, formatter, collapse, null);
+    }
+
+    /**
+     * Constructs a matching algorithm that gives up on each pair as soon as <code>bound</code>
+     * shows it can't score at least the bound's cutoff, comparing the fields cheapest first.
+     * Such pairs are counted by {@link #nPruned} and not passed to the formatter, so the
+     * formatter sees the same pairs scoring at least the cutoff as without the bound. The
+     * score of a pair that isn't given up on is computed by the model as usual. Blocks are not
+     * collapsed.
+     *
+     * @see torch.model.MixtureModel#scoreBound
+     */
+    public DefaultMatchingAlgo(IModel model, IMatchingFormatter formatter, ScoreBound bound) {
+        this(model, formatter, false, bound);
+    }
+
+    private DefaultMatchingAlgo(IModel model, IMatchingFormatter formatter, boolean collapse,
+                                ScoreBound bound)
+    {
         _model = model;
+        _cmp = model.recordComparator();
         _formatter = formatter;
+        _patternFormatter =
+            (formatter instanceof IPatternFormatter) ? (IPatternFormatter)formatter : null;
+        _collapse = collapse;
+        _bound = bound;
+        _patterns = new int[64];
     }
 
     /**
      * Computes match scores for the two lists. First <code>list1</code> is blocked, then each
-     * record in <code>list2</code> is compared to all records in the corresponding block.
+     * record in <code>list2</code> is compared to all records in the corresponding block. When
+     * collapsing, <code>list2</code> is blocked as well, and both sides of each block are
+     * collapsed.
      */
     @Override
     public void computeScores(IRecordIterator list1, IRecordIterator list2)
         throws torch.FormatterException, torch.RecordIteratorException
     {
-        computeScores(Record.block(list1), list2);
+        if (!_collapse) {
+            computeScores(Record.block(list1), list2);
+            return;
+        }
+
+        _startTime = System.currentTimeMillis();
+        _nComparisons = 0;
+        _nPruned = 0;
+
+        Map<String, List<Record>> blocks1 = Record.block(list1);
+        Map<String, List<Record>> blocks2 = Record.block(list2);
+
+        for (Map.Entry<String, List<Record>> e: blocks2.entrySet()) {
+            List<Record> block1 = blocks1.get(e.getKey());
+
+            if (block1 != null)
+                score(TupleBlock.collapse(_cmp, block1), TupleBlock.collapse(_cmp, e.getValue()));
+        }
+
+        _endTime = System.currentTimeMillis();
     }
 
+    /**
+     * Computes match scores between the records in <code>list</code> and the given blocks. When
+     * collapsing, only the blocks are collapsed.
+     */
     public void computeScores(Map<String, List<Record>> blocks, IRecordIterator list)
         throws torch.FormatterException, torch.RecordIteratorException
     {
         _startTime = System.currentTimeMillis();
         _nComparisons = 0;
+        _nPruned = 0;
+
+        if (_collapse) {
+            HashMap<String, TupleBlock> tuples = new HashMap<>();
+
+            Record rec;
+            while ((rec = list.next()) != null) {
+                String key = rec.blockingKey();
+                TupleBlock block = tuples.get(key);
+
+                if (block == null) {
+                    if (!blocks.containsKey(key))
+                        continue;
+
+                    block = TupleBlock.collapse(_cmp, blocks.get(key));
+                    tuples.put(key, block);
+                }
+
+                score(block, rec);
+            }
+
+            _endTime = System.currentTimeMillis();
+            return;
+        }
 
         Record rec;
         while ((rec = list.next()) != null) {
@@ -47,9 +143,24 @@ public class DefaultMatchingAlgo
             if (!blocks.containsKey(key)) {
                 continue;
             } else {
-                for (Record otherRec: blocks.get(key)) {
-                    double score = _model.matchScore(otherRec, rec);
-                    _formatter.format(otherRec, rec, score);
+                List<Record> block = blocks.get(key);
+
+                if (_bound != null) {
+                    for (Record otherRec: block)
+                        score(otherRec, rec);
+
+                    continue;
+                }
+
+                if (_patterns.length < block.size())
+                    _patterns = new int[Math.max(block.size(), 2 * _patterns.length)];
+
+                _cmp.compareIndex(block, rec, _patterns);
+
+                int i = 0;
+                for (Record otherRec: block) {
+                    int index = _patterns[i++];
+                    format(otherRec, rec, _model.matchScore(index), index);
                     _nComparisons++;
                 }
             }
@@ -59,13 +170,233 @@ public class DefaultMatchingAlgo
     }
 
     /**
-     * Returns the number of record comparisons that were performed.
+     * Scores one pair and passes the score to the formatter, unless the pair is given up on.
+     */
+    private void score(Record rec1, Record rec2)
+        throws torch.FormatterException
+    {
+        _nComparisons++;
+
+        int index = (_bound == null)
+            ? _cmp.compareIndex(rec1, rec2)
+            : _cmp.compareIndex(rec1, rec2, _bound);
+
+        if (index < 0)
+            _nPruned++;
+        else
+            format(rec1, rec2, _model.matchScore(index), index);
+    }
+
+    /**
+     * Passes a pair to the formatter, with its pattern index if the formatter wants it.
+     */
+    private void format(Record rec1, Record rec2, double score, int index)
+        throws torch.FormatterException
+    {
+        if (_patternFormatter != null)
+            _patternFormatter.format(rec1, rec2, score, index);
+        else
+            _formatter.format(rec1, rec2, score);
+    }
+
+    /**
+     * Scores each tuple in <code>block</code> against <code>rec</code> and passes the score to the
+     * formatter for every member of the tuple.
+     */
+    private void score(TupleBlock block, Record rec)
+        throws torch.FormatterException
+    {
+        for (int i = 0; i < block.nTuples(); i++) {
+            int index = _cmp.compareIndex(block.representative(i), rec);
+            double score = _model.matchScore(index);
+
+            for (int n = 0; n < block.weight(i); n++)
+                format(block.member(i, n), rec, score, index);
+
+            _nComparisons += block.weight(i);
+        }
+    }
+
+    /**
+     * Scores each pair of tuples in the two blocks and passes the score to the formatter for
+     * every pair of members.
+     */
+    private void score(TupleBlock block1, TupleBlock block2)
+        throws torch.FormatterException
+    {
+        for (int j = 0; j < block2.nTuples(); j++) {
+            Record rec2 = block2.representative(j);
+
+            for (int i = 0; i < block1.nTuples(); i++) {
+                int index = _cmp.compareIndex(block1.representative(i), rec2);
+                double score = _model.matchScore(index);
+
+                for (int m = 0; m < block2.weight(j); m++)
+                    for (int n = 0; n < block1.weight(i); n++)
+                        format(block1.member(i, n), block2.member(j, m), score, index);
+
+                _nComparisons += block1.weight(i) * (long)block2.weight(j);
+            }
+        }
+    }
+
+    /**
+     * Computes match scores for the pairs in <code>blocks</code>, in which oversized blocks may
+     * have been split.
+     *
+     * @see BlockPairs
+     */
+    public void computeScores(BlockPairs blocks)
+        throws torch.FormatterException
+    {
+        _startTime = System.currentTimeMillis();
+        _nComparisons = 0;
+        _nPruned = 0;
+
+        for (String key: blocks.keys()) {
+            List<Record> block1 = blocks.block1(key);
+            List<Record> block2 = blocks.block2(key);
+
+            if (_collapse) {
+                score(TupleBlock.collapse(_cmp, block1), TupleBlock.collapse(_cmp, block2));
+                continue;
+            }
+
+            if (_bound != null) {
+                for (Record rec: block2)
+                    for (Record otherRec: block1)
+                        score(otherRec, rec);
+
+                continue;
+            }
+
+            if (_patterns.length < block1.size())
+                _patterns = new int[Math.max(block1.size(), 2 * _patterns.length)];
+
+            for (Record rec: block2) {
+                _cmp.compareIndex(block1, rec, _patterns);
+
+                int i = 0;
+                for (Record otherRec: block1) {
+                    int index = _patterns[i++];
+                    format(otherRec, rec, _model.matchScore(index), index);
+                }
+
+                _nComparisons += block1.size();
+            }
+        }
+
+        _endTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Computes match scores for the pairs that share a block in any blocking pass. Each pair is
+     * scored once, in the first pass in which its records share a block. Blocks are not collapsed
+     * in this mode.
+     *
+     * @see MultiPassBlocks
+     */
+    public void computeScores(MultiPassBlocks blocks)
+        throws torch.FormatterException
+    {
+        _startTime = System.currentTimeMillis();
+        _nComparisons = 0;
+        _nPruned = 0;
+
+        for (int p = 0; p < blocks.nPasses(); p++) {
+            Map<String, List<Record>> pass = blocks.blocks(p);
+
+            for (Record rec: blocks.records()) {
+                List<Record> block = pass.get(rec.blockingKey(p));
+
+                if (block == null)
+                    continue;
+
+                for (Record otherRec: block) {
+                    if (p > 0 && !MultiPassBlocks.owns(p, otherRec, rec))
+                        continue;
+
+                    score(otherRec, rec);
+                }
+            }
+        }
+
+        _endTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Computes match scores for the candidate pairs of a sorted-neighborhood pass over the two
+     * lists. Pairs are scored one segment at a time, in sorted order.
+     *
+     * @see SortedNeighborhood
+     */
+    public void computeScores(SortedNeighborhood sn, IRecordIterator list1, IRecordIterator list2)
+        throws torch.FormatterException, torch.RecordIteratorException
+    {
+        _startTime = System.currentTimeMillis();
+        _nComparisons = 0;
+        _nPruned = 0;
+
+        try (SortedNeighborhood.Segments segments = sn.segments(list1, list2)) {
+            SortedNeighborhood.Segment segment;
+            while ((segment = segments.next()) != null) {
+                for (int k = 0; k < segment.nPairs(); k++)
+                    score(segment.record1(k), segment.record2(k));
+            }
+        }
+
+        _endTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Computes match scores for partitioned lists, blocking one partition of the first list at a
+     * time. The formatter sees the same pairs and scores as for the unpartitioned lists, grouped
+     * by partition.
+     *
+     * @see PartitionedBlocks
+     */
+    public void computeScores(PartitionedBlocks partitions)
+        throws torch.FormatterException, torch.RecordIteratorException
+    {
+        long startTime = System.currentTimeMillis();
+        long nComparisons = 0;
+        long nPruned = 0;
+
+        for (int p = 0; p < partitions.nPartitions(); p++) {
+            computeScores(partitions.blocks(p), partitions.records(p));
+            nComparisons += _nComparisons;
+            nPruned += _nPruned;
+        }
+
+        _startTime = startTime;
+        _nComparisons = nComparisons;
+        _nPruned = nPruned;
+    }
+
+    /**
+     * Returns the number of record pairs that were scored. When collapsing, this counts every
+     * pair that was passed to the formatter, not just the pairs of tuples that were compared.
      */
     @Override
-    public int nComparisons() {
+    public long nComparisons() {
         return _nComparisons;
     }
 
+    /**
+     * Returns the number of pairs that were given up on because they couldn't reach the
+     * bound's cutoff. These are counted by {@link #nComparisons} too.
+     */
+    public long nPruned() {
+        return _nPruned;
+    }
+
+    /**
+     * Returns true if pairs are given up on when they can't reach a cutoff.
+     */
+    boolean prunes() {
+        return _bound != null;
+    }
+
     /**
      * Returns the elapsed time in milliseconds.
      */
@@ -75,7 +406,12 @@ public class DefaultMatchingAlgo
     }
 
     private final IModel _model;
+    private final RecordComparator _cmp;
     private final IMatchingFormatter _formatter;
-    private int _nComparisons;
+    private final IPatternFormatter _patternFormatter;
+    private final boolean _collapse;
+    private final ScoreBound _bound;
+    private int[] _patterns;
+    private long _nComparisons, _nPruned;
     private long _startTime, _endTime;
 }
@@ -16,7 +16,7 @@ public interface IMatchingAlgorithm {
      * Returns the number of record comparisons that were performed during the last call to
      * <code>computeScores</code>.
      */
-    public int nComparisons();
+    public long nComparisons();
 
     /**
      * Returns the elapsed time in milliseconds of the last call to
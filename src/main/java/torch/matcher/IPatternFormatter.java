@@ -0,0 +1,16 @@
+package torch.matcher;
+
+import torch.Record;
+
+/**
+ * A formatter that is also passed the pattern index of each pair. {@link DefaultMatchingAlgo}
+ * and {@link ParallelMatchingAlgo} call {@link #format(Record, Record, double, int)} instead of
+ * {@link IMatchingFormatter#format} when the formatter implements this interface, handing on the
+ * index they computed the score from.
+ */
+public interface IPatternFormatter
+    extends IMatchingFormatter
+{
+    public void format(Record rec1, Record rec2, double score, int patternIndex)
+        throws torch.FormatterException;
+}
@@ -3,9 +3,11 @@ package torch.matcher;
 import torch.IModel;
 import torch.IRecordIterator;
 import torch.Record;
+import torch.model.MixtureModel;
 
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.TreeMap;
 
 /**
@@ -22,20 +24,117 @@ public class Matcher {
                              double cutoff) 
         throws java.io.IOException, torch.FormatterException, torch.RecordIteratorException
     {
-        FileWriter writer = new FileWriter(filename);
-        DefaultFormatter formatter = 
-            new DefaultFormatter(writer, model.recordComparator(), cutoff);
+        try (FileWriter writer = new FileWriter(filename);
+             AsyncFormatter formatter = csvFormatter(writer, model, cutoff))
+        {
+            // pairs that can't reach the cutoff aren't written anyway, so give up on them early
+            DefaultMatchingAlgo algo = (model instanceof MixtureModel)
+                ? new DefaultMatchingAlgo(model, formatter, ((MixtureModel)model).scoreBound(cutoff))
+                : new DefaultMatchingAlgo(model, formatter);
+            algo.computeScores(list1, list2);
+            printMatchingAlgoFinished(algo);
+        }
+    }
+
+    /**
+     * Performs matching on the given lists using a multi-threaded algorithm. Pairs are written in
+     * the same order as {@link #match(String, IModel, IRecordIterator, IRecordIterator, double)}.
+     */
+    public static void match(String filename, IModel model,
+                             IRecordIterator list1, IRecordIterator list2,
+                             double cutoff, int nThreads)
+        throws java.io.IOException, torch.FormatterException, torch.RecordIteratorException
+    {
+        try (FileWriter writer = new FileWriter(filename);
+             AsyncFormatter formatter = csvFormatter(writer, model, cutoff))
+        {
+            ParallelMatchingAlgo algo = new ParallelMatchingAlgo(model, formatter, nThreads);
+            algo.computeScores(list1, list2);
+            printMatchingAlgoFinished(algo);
+        }
+    }
 
-        DefaultMatchingAlgo algo = new DefaultMatchingAlgo(model, formatter);
-        algo.computeScores(list1, list2);
-        printMatchingAlgoFinished(algo);
+    /**
+     * Performs matching on the given lists using a multi-threaded algorithm, writing pairs in the
+     * compact binary format of {@link BinaryFormatter}. Use {@link ResultMaterializer} to join
+     * the records back in.
+     */
+    public static void matchBinary(String filename, IModel model,
+                                   IRecordIterator list1, IRecordIterator list2,
+                                   double cutoff, int nThreads)
+        throws java.io.IOException, torch.FormatterException, torch.RecordIteratorException
+    {
+        try (BinaryFormatter formatter =
+                 new BinaryFormatter(filename, model.recordComparator(), cutoff))
+        {
+            ParallelMatchingAlgo algo = new ParallelMatchingAlgo(model, formatter, nThreads);
+            algo.computeScores(list1, list2);
+            printMatchingAlgoFinished(algo);
+        }
     }
 
     /**
-     * Writes the number of records compared by <code>algo</code> and the elapsed time to stdout.
+     * Performs matching on the given lists, writing only the best <code>k</code> pairs with
+     * scores above the cutoff for each record in <code>list2</code>.
+     *
+     * @see TopKMatchingAlgo
+     */
+    public static void matchTopK(String filename, IModel model,
+                                 IRecordIterator list1, IRecordIterator list2,
+                                 double cutoff, int k)
+        throws java.io.IOException, torch.FormatterException, torch.RecordIteratorException
+    {
+        try (FileWriter writer = new FileWriter(filename);
+             AsyncFormatter formatter = csvFormatter(writer, model, cutoff))
+        {
+            TopKMatchingAlgo algo = new TopKMatchingAlgo(model, formatter, k);
+            algo.computeScores(list1, list2);
+            printMatchingAlgoFinished(algo);
+        }
+    }
+
+    /**
+     * Performs 1-to-1 link extraction on the given lists, writing each record in at most one
+     * pair with a score above the cutoff. Blocks are linked on <code>nThreads</code> threads.
+     *
+     * @param optimal if true, blocks are linked optimally, otherwise greedily.
+     * @see OneToOneMatchingAlgo
+     */
+    public static void matchOneToOne(String filename, IModel model,
+                                     IRecordIterator list1, IRecordIterator list2,
+                                     double cutoff, boolean optimal, int nThreads)
+        throws java.io.IOException, torch.FormatterException, torch.RecordIteratorException
+    {
+        try (FileWriter writer = new FileWriter(filename);
+             AsyncFormatter formatter = csvFormatter(writer, model, cutoff))
+        {
+            OneToOneMatchingAlgo algo =
+                new OneToOneMatchingAlgo(model, formatter, cutoff, optimal, nThreads);
+            algo.computeScores(list1, list2);
+            printMatchingAlgoFinished(algo);
+        }
+    }
+
+    /**
+     * Returns a formatter that writes pairs scoring at least <code>cutoff</code> to
+     * <code>writer</code> as CSV from a background thread. Closing it flushes the writer. The
+     * callers open it after the writer in one try-with-resources statement, so it's closed first,
+     * the writer is closed even if that fails, and a failure while matching isn't masked.
+     */
+    private static AsyncFormatter csvFormatter(Writer writer, IModel model, double cutoff)
+        throws torch.FormatterException
+    {
+        DefaultFormatter csv =
+            new DefaultFormatter(writer, model.recordComparator(), cutoff, false);
+        return new AsyncFormatter(csv, cutoff);
+    }
+
+    /**
+     * Writes the number of records compared by <code>algo</code> and the elapsed time to stdout,
+     * along with the number of pairs given up on if <code>algo</code> prunes them.
      */
     protected static void printMatchingAlgoFinished(IMatchingAlgorithm algo) {
-        int nComparisons = algo.nComparisons();
+        long nComparisons = algo.nComparisons();
         long elapsedTime = algo.elapsedTime();
         double dComparisons = -1.0;
         String unit = "milliseconds";
@@ -52,7 +151,11 @@ public class Matcher {
         }
 
         StringBuilder b = new StringBuilder();
-        b.append(String.format("Performed %,d comparisons in", nComparisons));
+        b.append(String.format("Performed %,d comparisons", nComparisons));
+        if (algo instanceof DefaultMatchingAlgo && ((DefaultMatchingAlgo)algo).prunes())
+            b.append(String.format(" (%,d pruned)", ((DefaultMatchingAlgo)algo).nPruned()));
+
+        b.append(" in");
         b.append(dComparisons > 0 ? String.format(" %.2f ", dComparisons) : 
                                     String.format(" %d ", nComparisons));
         b.append(unit).append("\n");
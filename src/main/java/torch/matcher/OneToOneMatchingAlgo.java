@@ -0,0 +1,341 @@
+package torch.matcher;
+
+import torch.IModel;
+import torch.IRecordIterator;
+import torch.PartitionedBlocks;
+import torch.Record;
+import torch.RecordComparator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A matching algorithm that extracts 1-to-1 links: each record is passed to the formatter in at
+ * most one pair, and only pairs scoring at least the cutoff are linked. Both lists are blocked,
+ * and since a record only pairs with records in its own block, each block is linked on its own,
+ * on one of <code>nThreads</code> threads. Only the pairs of the blocks being linked are held in
+ * memory, and the links of each block are passed to the formatter from the calling thread as
+ * soon as that block and the blocks before it are done, from best to worst.
+ *
+ * <p>In greedy mode the pairs of a block are taken from a priority queue in decreasing order of
+ * score, and a pair is linked if neither record has been linked yet. In optimal mode the links of
+ * a block maximize the sum of <code>score - cutoff</code> over the linked pairs, found by the
+ * Hungarian algorithm. Its cost grows with the cube of the block size, so blocks with more than
+ * <code>MAX_OPTIMAL_PAIRS</code> pairs are linked greedily even in optimal mode.
+ *
+ * <p><code>list1</code> is blocked in memory, and <code>list2</code> is read once and grouped by
+ * block, keeping only the records whose block is in <code>list1</code>. For lists too large for
+ * that, partition them with {@link PartitionedBlocks} so only one partition of each is held at a
+ * time. Greedy mode also holds every pair of a block that scores at least the cutoff in a heap,
+ * 16 bytes a pair, until the block is linked, so a large block with a low cutoff needs memory in
+ * proportion to its number of pairs.
+ */
+public class OneToOneMatchingAlgo
+    implements IMatchingAlgorithm
+{
+
+    /**
+     * The largest block, in pairs, that is linked optimally in optimal mode.
+     */
+    public final static int MAX_OPTIMAL_PAIRS = 1 << 16;
+
+    /**
+     * Constructs a matching algorithm that links pairs scoring at least <code>cutoff</code>.
+     *
+     * @param optimal if true, blocks are linked optimally, otherwise greedily.
+     * @throws IllegalArgumentException if the number of threads isn't positive, or the cutoff
+     * isn't finite in optimal mode.
+     */
+    public OneToOneMatchingAlgo(IModel model, IMatchingFormatter formatter, double cutoff,
+                                boolean optimal, int nThreads)
+    {
+        if (nThreads < 1)
+            throw new IllegalArgumentException("'nThreads' must be positive");
+
+        if (optimal && Double.isInfinite(cutoff))
+            throw new IllegalArgumentException("'cutoff' must be finite for optimal linking");
+
+        _model = model;
+        _cmp = model.recordComparator();
+        _formatter = formatter;
+        _cutoff = cutoff;
+        _optimal = optimal;
+        _nThreads = nThreads;
+    }
+
+    /**
+     * Constructs a greedy matching algorithm that uses one thread per available processor.
+     */
+    public OneToOneMatchingAlgo(IModel model, IMatchingFormatter formatter, double cutoff) {
+        this(model, formatter, cutoff, false, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Links the records in the two lists. First <code>list1</code> is blocked, then the records in
+     * <code>list2</code> are grouped by block as they are read.
+     */
+    @Override
+    public void computeScores(IRecordIterator list1, IRecordIterator list2)
+        throws torch.FormatterException, torch.RecordIteratorException
+    {
+        computeScores(Record.block(list1), list2);
+    }
+
+    /**
+     * Links the records in <code>list</code> with the given blocks. Records whose block isn't
+     * among <code>blocks</code> are dropped as they are read, and the others are grouped by block
+     * in the order their blocks first appear.
+     */
+    public void computeScores(Map<String, List<Record>> blocks, IRecordIterator list)
+        throws torch.FormatterException, torch.RecordIteratorException
+    {
+        LinkedHashMap<String, List<Record>> blocks2 = new LinkedHashMap<>();
+
+        Record rec;
+        while ((rec = list.next()) != null) {
+            String key = rec.blockingKey();
+
+            if (!blocks.containsKey(key))
+                continue;
+
+            List<Record> block = blocks2.get(key);
+            if (block == null) {
+                block = new ArrayList<>();
+                blocks2.put(key, block);
+            }
+
+            block.add(rec);
+        }
+
+        computeScores(blocks, blocks2);
+    }
+
+    /**
+     * Links partitioned lists, one partition at a time. Since a block lies in a single
+     * partition, the links are the same as for the unpartitioned lists, grouped by partition.
+     *
+     * @see PartitionedBlocks
+     */
+    public void computeScores(PartitionedBlocks partitions)
+        throws torch.FormatterException, torch.RecordIteratorException
+    {
+        long startTime = System.currentTimeMillis();
+        long nComparisons = 0;
+        long nLinks = 0;
+
+        for (int p = 0; p < partitions.nPartitions(); p++) {
+            computeScores(partitions.blocks(p), partitions.records(p));
+            nComparisons += _nComparisons;
+            nLinks += _nLinks;
+        }
+
+        _startTime = startTime;
+        _nComparisons = nComparisons;
+        _nLinks = nLinks;
+    }
+
+    /**
+     * Links the records in blocks with the same key. Blocks are done in the iteration order of
+     * <code>blocks2</code>.
+     */
+    public void computeScores(Map<String, List<Record>> blocks1,
+                              Map<String, List<Record>> blocks2)
+        throws torch.FormatterException
+    {
+        _startTime = System.currentTimeMillis();
+        _nComparisons = 0;
+        _nLinks = 0;
+
+        ExecutorService executor = Executors.newFixedThreadPool(_nThreads);
+        ArrayDeque<Future<Links>> pending = new ArrayDeque<>();
+
+        try {
+            for (Map.Entry<String, List<Record>> e: blocks2.entrySet()) {
+                final List<Record> block1 = blocks1.get(e.getKey());
+                final List<Record> block2 = e.getValue();
+
+                if (block1 == null)
+                    continue;
+
+                pending.add(executor.submit(new Callable<Links>() {
+                    @Override
+                    public Links call() {
+                        return link(block1, block2);
+                    }
+                }));
+
+                // bound the links waiting to be formatted
+                if (pending.size() >= 2 * _nThreads)
+                    format(pending.poll().get());
+            }
+
+            while (!pending.isEmpty())
+                format(pending.poll().get());
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof Error)
+                throw (Error)e.getCause();
+
+            throw (RuntimeException)e.getCause();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while linking", e);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        _endTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the number of record comparisons that were performed.
+     */
+    @Override
+    public long nComparisons() {
+        return _nComparisons;
+    }
+
+    /**
+     * Returns the number of links that were passed to the formatter.
+     */
+    public long nLinks() {
+        return _nLinks;
+    }
+
+    /**
+     * Returns the elapsed time in milliseconds.
+     */
+    @Override
+    public long elapsedTime() {
+        return _endTime - _startTime;
+    }
+
+    /**
+     * The links of one block, from best to worst.
+     */
+    private static class Links {
+        Links(List<Record> block1, List<Record> block2, int capacity, long nPairs) {
+            this.block1 = block1;
+            this.block2 = block2;
+            this.nPairs = nPairs;
+            rows = new int[capacity];
+            cols = new int[capacity];
+            scores = new double[capacity];
+        }
+
+        void add(int i, int j, double score) {
+            rows[n] = i;
+            cols[n] = j;
+            scores[n] = score;
+            n++;
+        }
+
+        final List<Record> block1, block2;
+        final long nPairs;
+        final int[] rows, cols;
+        final double[] scores;
+        int n;
+    }
+
+    private void format(Links links)
+        throws torch.FormatterException
+    {
+        for (int k = 0; k < links.n; k++) {
+            Record rec1 = links.block1.get(links.rows[k]);
+            Record rec2 = links.block2.get(links.cols[k]);
+            _formatter.format(rec1, rec2, links.scores[k]);
+        }
+
+        _nComparisons += links.nPairs;
+        _nLinks += links.n;
+    }
+
+    /**
+     * Scores every pair in the blocks and links them. A pair's code is its position in the order
+     * {@link DefaultMatchingAlgo} scores pairs, <code>j n1 + i</code> for
+     * <code>block1[i]</code> and <code>block2[j]</code>, and ties are broken by code.
+     */
+    private Links link(List<Record> block1, List<Record> block2) {
+        int n1 = block1.size();
+        int n2 = block2.size();
+        long nPairs = n1 * (long)n2;
+        Links links = new Links(block1, block2, Math.min(n1, n2), nPairs);
+        PairHeap heap = new PairHeap();
+
+        if (_optimal && nPairs <= MAX_OPTIMAL_PAIRS) {
+            double[][] scores = new double[n1][n2];
+            double[][] weights = new double[n1][n2];
+
+            for (int j = 0; j < n2; j++) {
+                Record rec = block2.get(j);
+                for (int i = 0; i < n1; i++) {
+                    double score = _model.matchScore(_cmp.compareIndex(block1.get(i), rec));
+                    scores[i][j] = score;
+                    weights[i][j] = (score >= _cutoff) ? score - _cutoff : 0.0;
+                }
+            }
+
+            int[] assign = OptimalAssignment.solve(weights);
+            for (int i = 0; i < n1; i++) {
+                int j = assign[i];
+                if (j >= 0 && scores[i][j] >= _cutoff)
+                    heap.add(scores[i][j], j * (long)n1 + i);
+            }
+
+            while (!heap.isEmpty()) {
+                long code = heap.peekCode();
+                links.add((int)(code % n1), (int)(code / n1), heap.peekScore());
+                heap.remove();
+            }
+
+            return links;
+        }
+
+        for (int j = 0; j < n2; j++) {
+            Record rec = block2.get(j);
+            for (int i = 0; i < n1; i++) {
+                double score = _model.matchScore(_cmp.compareIndex(block1.get(i), rec));
+                if (score >= _cutoff)
+                    heap.add(score, j * (long)n1 + i);
+            }
+        }
+
+        boolean[] linked1 = new boolean[n1];
+        boolean[] linked2 = new boolean[n2];
+
+        while (!heap.isEmpty() && links.n < links.rows.length) {
+            long code = heap.peekCode();
+            int i = (int)(code % n1);
+            int j = (int)(code / n1);
+
+            if (!linked1[i] && !linked2[j]) {
+                linked1[i] = true;
+                linked2[j] = true;
+                links.add(i, j, heap.peekScore());
+            }
+
+            heap.remove();
+        }
+
+        return links;
+    }
+
+    private final IModel _model;
+    private final RecordComparator _cmp;
+    private final IMatchingFormatter _formatter;
+    private final double _cutoff;
+    private final boolean _optimal;
+    private final int _nThreads;
+    private long _nComparisons, _nLinks;
+    private long _startTime, _endTime;
+}
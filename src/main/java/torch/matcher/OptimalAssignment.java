@@ -0,0 +1,106 @@
+package torch.matcher;
+
+import java.util.Arrays;
+
+/**
+ * Solves the assignment problem for a rectangular matrix of nonnegative weights with the
+ * Hungarian algorithm (Kuhn-Munkres, in the O(n^2 m) form with row and column potentials). The
+ * rows are assigned to distinct columns so that the sum of the weights of the assigned entries is
+ * as large as possible. An entry of weight 0 contributes nothing, so it can stand for a pair that
+ * must not be linked.
+ */
+class OptimalAssignment {
+
+    /**
+     * Returns, for each row of <code>weights</code>, the column it is assigned to, or -1 if there
+     * are more rows than columns and it is left out.
+     */
+    static int[] solve(double[][] weights) {
+        int nRows = weights.length;
+        int nCols = (nRows == 0) ? 0 : weights[0].length;
+
+        if (nRows <= nCols)
+            return solve(weights, nRows, nCols, false);
+
+        int[] colAssign = solve(weights, nCols, nRows, true);
+        int[] rowAssign = new int[nRows];
+        Arrays.fill(rowAssign, -1);
+
+        for (int j = 0; j < nCols; j++)
+            rowAssign[colAssign[j]] = j;
+
+        return rowAssign;
+    }
+
+    /**
+     * Assigns each of <code>n</code> rows to one of <code>m >= n</code> columns, minimizing the
+     * total negated weight. If <code>transpose</code> is true, row <code>i</code> and column
+     * <code>j</code> refer to <code>weights[j][i]</code>.
+     */
+    private static int[] solve(double[][] weights, int n, int m, boolean transpose) {
+        // 1-based, with row 0 and column 0 as the sentinels of the textbook version
+        double[] u = new double[n + 1];
+        double[] v = new double[m + 1];
+        int[] p = new int[m + 1];
+        int[] way = new int[m + 1];
+        double[] minv = new double[m + 1];
+        boolean[] used = new boolean[m + 1];
+
+        for (int i = 1; i <= n; i++) {
+            p[0] = i;
+            int j0 = 0;
+            Arrays.fill(minv, Double.POSITIVE_INFINITY);
+            Arrays.fill(used, false);
+
+            do {
+                used[j0] = true;
+                int i0 = p[j0];
+                double delta = Double.POSITIVE_INFINITY;
+                int j1 = 0;
+
+                for (int j = 1; j <= m; j++) {
+                    if (used[j])
+                        continue;
+
+                    double w = transpose ? weights[j - 1][i0 - 1] : weights[i0 - 1][j - 1];
+                    double cur = -w - u[i0] - v[j];
+                    if (cur < minv[j]) {
+                        minv[j] = cur;
+                        way[j] = j0;
+                    }
+
+                    if (minv[j] < delta) {
+                        delta = minv[j];
+                        j1 = j;
+                    }
+                }
+
+                for (int j = 0; j <= m; j++) {
+                    if (used[j]) {
+                        u[p[j]] += delta;
+                        v[j] -= delta;
+                    } else {
+                        minv[j] -= delta;
+                    }
+                }
+
+                j0 = j1;
+            } while (p[j0] != 0);
+
+            do {
+                int j1 = way[j0];
+                p[j0] = p[j1];
+                j0 = j1;
+            } while (j0 != 0);
+        }
+
+        int[] assign = new int[n];
+        for (int j = 1; j <= m; j++)
+            if (p[j] != 0)
+                assign[p[j] - 1] = j - 1;
+
+        return assign;
+    }
+
+    private OptimalAssignment() {}
+}
@@ -0,0 +1,120 @@
+package torch.matcher;
+
+import java.util.Arrays;
+
+/**
+ * A priority queue of scored pairs, each identified by a <code>long</code> code, that removes the
+ * pair with the highest score first. Among pairs with equal scores the one with the lower code is
+ * removed first. Pairs are stored in primitive arrays, and the queue is built in linear time once
+ * all the pairs have been added.
+ */
+class PairHeap {
+
+    PairHeap() {
+        _scores = new double[16];
+        _codes = new long[16];
+    }
+
+    /**
+     * Removes every pair.
+     */
+    void clear() {
+        _size = 0;
+        _heapified = false;
+    }
+
+    boolean isEmpty() {
+        return _size == 0;
+    }
+
+    /**
+     * Adds a pair. Pairs can't be added once pairs have been removed, until the queue is cleared.
+     */
+    void add(double score, long code) {
+        if (_heapified)
+            throw new IllegalStateException("pairs have already been removed");
+
+        if (_size == _scores.length) {
+            _scores = Arrays.copyOf(_scores, 2 * _size);
+            _codes = Arrays.copyOf(_codes, 2 * _size);
+        }
+
+        _scores[_size] = score;
+        _codes[_size] = code;
+        _size++;
+    }
+
+    /**
+     * Returns the score of the best pair.
+     */
+    double peekScore() {
+        heapify();
+        return _scores[0];
+    }
+
+    /**
+     * Returns the code of the best pair.
+     */
+    long peekCode() {
+        heapify();
+        return _codes[0];
+    }
+
+    /**
+     * Removes the best pair.
+     */
+    void remove() {
+        heapify();
+        _size--;
+        swap(0, _size);
+        siftDown(0);
+    }
+
+    private void heapify() {
+        if (_heapified)
+            return;
+
+        for (int i = _size / 2 - 1; i >= 0; i--)
+            siftDown(i);
+
+        _heapified = true;
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int best = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+
+            if (left < _size && better(left, best))
+                best = left;
+            if (right < _size && better(right, best))
+                best = right;
+
+            if (best == i)
+                return;
+
+            swap(i, best);
+            i = best;
+        }
+    }
+
+    private boolean better(int i, int j) {
+        return _scores[i] > _scores[j] || (_scores[i] == _scores[j] && _codes[i] < _codes[j]);
+    }
+
+    private void swap(int i, int j) {
+        double score = _scores[i];
+        _scores[i] = _scores[j];
+        _scores[j] = score;
+
+        long code = _codes[i];
+        _codes[i] = _codes[j];
+        _codes[j] = code;
+    }
+
+    private double[] _scores;
+    private long[] _codes;
+    private int _size;
+    private boolean _heapified;
+}
@@ -0,0 +1,358 @@
+package torch.matcher;
+
+import torch.IModel;
+import torch.IRecordIterator;
+import torch.PartitionedBlocks;
+import torch.Record;
+import torch.RecordComparator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A matching algorithm that scores blocked pairs on a fork-join pool. Records from
+ * <code>list2</code> are read in chunks, and the candidate pairs in a chunk are laid out in
+ * <code>list2</code> order, each <code>list2</code> record followed by every record in its block.
+ * The pairs are then split into tiles of at most <code>tileSize</code> pairs, so a tile covers a
+ * range of <code>list2</code> records crossed with a range of their blocks. A single oversized
+ * block is spread over many tiles instead of becoming a straggler.
+ *
+ * <p>In ordered mode the formatter is called from the calling thread after each chunk is scored,
+ * in exactly the order used by {@link DefaultMatchingAlgo}. In unordered mode each tile hands its
+ * pairs to the formatter as soon as it finishes, holding the formatter's monitor while it does
+ * so. Either way the formatter sees the same set of pairs as with the serial algorithm.
+ */
+public class ParallelMatchingAlgo
+    implements IMatchingAlgorithm
+{
+    /**
+     * The default maximum number of pairs scored by a single task.
+     */
+    public final static int TILE_SIZE = 1 << 14;
+
+    /**
+     * The number of pairs that are buffered before a chunk is scored.
+     */
+    public final static int CHUNK_SIZE = 1 << 22;
+
+    /**
+     * Constructs a matching algorithm that scores pairs on <code>nThreads</code> threads.
+     *
+     * @param ordered if true, pairs are passed to the formatter in the same order as
+     * {@link DefaultMatchingAlgo}, otherwise in whatever order they are scored.
+     * @param tileSize the maximum number of pairs scored by a single task.
+     */
+    public ParallelMatchingAlgo(IModel model, IMatchingFormatter formatter,
+                                int nThreads, boolean ordered, int tileSize)
+    {
+        if (nThreads < 1)
+            throw new IllegalArgumentException("'nThreads' must be positive");
+
+        if (tileSize < 1)
+            throw new IllegalArgumentException("'tileSize' must be positive");
+
+        _model = model;
+        _cmp = model.recordComparator();
+        _formatter = formatter;
+        _patternFormatter =
+            (formatter instanceof IPatternFormatter) ? (IPatternFormatter)formatter : null;
+        _nThreads = nThreads;
+        _ordered = ordered;
+        _tileSize = tileSize;
+    }
+
+    /**
+     * Constructs an ordered matching algorithm that scores pairs on <code>nThreads</code>
+     * threads.
+     */
+    public ParallelMatchingAlgo(IModel model, IMatchingFormatter formatter, int nThreads) {
+        this(model, formatter, nThreads, true, TILE_SIZE);
+    }
+
+    /**
+     * Constructs an ordered matching algorithm that uses one thread per available processor.
+     */
+    public ParallelMatchingAlgo(IModel model, IMatchingFormatter formatter) {
+        this(model, formatter, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Computes match scores for the two lists. First <code>list1</code> is blocked, then each
+     * record in <code>list2</code> is compared to all records in the corresponding block.
+     */
+    @Override
+    public void computeScores(IRecordIterator list1, IRecordIterator list2)
+        throws torch.FormatterException, torch.RecordIteratorException
+    {
+        computeScores(Record.block(list1), list2);
+    }
+
+    public void computeScores(Map<String, List<Record>> blocks, IRecordIterator list)
+        throws torch.FormatterException, torch.RecordIteratorException
+    {
+        _startTime = System.currentTimeMillis();
+        _nComparisons = 0;
+
+        // blocks are indexed by position while tiling, so copy them to arrays once
+        HashMap<String, Record[]> arrays = new HashMap<>();
+        for (Map.Entry<String, List<Record>> e: blocks.entrySet())
+            arrays.put(e.getKey(), e.getValue().toArray(new Record[0]));
+
+        ForkJoinPool pool = new ForkJoinPool(_nThreads);
+        Chunk chunk = new Chunk();
+
+        try {
+            Record rec;
+            while ((rec = list.next()) != null) {
+                Record[] block = arrays.get(rec.blockingKey());
+
+                if (block == null)
+                    continue;
+
+                chunk.add(rec, block);
+
+                if (chunk.nPairs >= CHUNK_SIZE) {
+                    score(pool, chunk);
+                    chunk.clear();
+                }
+            }
+
+            score(pool, chunk);
+        }
+        finally {
+            pool.shutdown();
+        }
+
+        _endTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Computes match scores for partitioned lists, blocking one partition of the first list at a
+     * time. The formatter sees the same pairs and scores as for the unpartitioned lists, grouped
+     * by partition. Pairs within a partition are scored in parallel.
+     *
+     * @see PartitionedBlocks
+     */
+    public void computeScores(PartitionedBlocks partitions)
+        throws torch.FormatterException, torch.RecordIteratorException
+    {
+        long startTime = System.currentTimeMillis();
+        long nComparisons = 0;
+
+        for (int p = 0; p < partitions.nPartitions(); p++) {
+            computeScores(partitions.blocks(p), partitions.records(p));
+            nComparisons += _nComparisons;
+        }
+
+        _startTime = startTime;
+        _nComparisons = nComparisons;
+    }
+
+    /**
+     * Returns the number of record comparisons that were performed.
+     */
+    @Override
+    public long nComparisons() {
+        return _nComparisons;
+    }
+
+    /**
+     * Returns the elapsed time in milliseconds.
+     */
+    @Override
+    public long elapsedTime() {
+        return _endTime - _startTime;
+    }
+
+    /**
+     * Scores every pair in the chunk and passes the results to the formatter.
+     */
+    private void score(ForkJoinPool pool, Chunk chunk)
+        throws torch.FormatterException
+    {
+        if (chunk.nPairs == 0)
+            return;
+
+        if (chunk.scores.length < chunk.nPairs) {
+            chunk.scores = new double[chunk.nPairs];
+            chunk.patterns = new int[chunk.nPairs];
+        }
+
+        AtomicReference<torch.FormatterException> error = new AtomicReference<>();
+        pool.invoke(new ScoreTask(chunk, 0, chunk.nPairs, error));
+
+        if (error.get() != null)
+            throw error.get();
+
+        if (_ordered) {
+            for (int i = 0; i < chunk.rec2.size(); i++) {
+                Record rec = chunk.rec2.get(i);
+                Record[] block = chunk.blocks.get(i);
+                int offset = chunk.offsets[i];
+
+                for (int j = 0; j < block.length; j++)
+                    format(chunk, block[j], rec, offset + j);
+            }
+        }
+
+        _nComparisons += chunk.nPairs;
+    }
+
+    /**
+     * Passes pair <code>p</code> of the chunk to the formatter, with its pattern index if the
+     * formatter wants it.
+     */
+    private void format(Chunk chunk, Record rec1, Record rec2, int p)
+        throws torch.FormatterException
+    {
+        if (_patternFormatter != null)
+            _patternFormatter.format(rec1, rec2, chunk.scores[p], chunk.patterns[p]);
+        else
+            _formatter.format(rec1, rec2, chunk.scores[p]);
+    }
+
+    /**
+     * A run of <code>list2</code> records and their blocks. Pair <code>p</code> of the chunk
+     * belongs to the <code>list2</code> record <code>i</code> with <code>offsets[i] &lt;= p &lt;
+     * offsets[i + 1]</code>.
+     */
+    private static class Chunk {
+        Chunk() {
+            rec2 = new ArrayList<>();
+            blocks = new ArrayList<>();
+            offsets = new int[1024];
+            scores = new double[0];
+            patterns = new int[0];
+        }
+
+        void add(Record rec, Record[] block) {
+            if (rec2.size() + 1 >= offsets.length)
+                offsets = java.util.Arrays.copyOf(offsets, 2 * offsets.length);
+
+            offsets[rec2.size()] = nPairs;
+            rec2.add(rec);
+            blocks.add(block);
+            nPairs += block.length;
+            offsets[rec2.size()] = nPairs;
+        }
+
+        void clear() {
+            rec2.clear();
+            blocks.clear();
+            nPairs = 0;
+        }
+
+        /**
+         * Returns the index of the <code>list2</code> record that owns pair <code>p</code>.
+         */
+        int owner(int p) {
+            int lo = 0;
+            int hi = rec2.size() - 1;
+
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if (offsets[mid] <= p)
+                    lo = mid;
+                else
+                    hi = mid - 1;
+            }
+
+            return lo;
+        }
+
+        final ArrayList<Record> rec2;
+        final ArrayList<Record[]> blocks;
+        int[] offsets;
+        double[] scores;
+        int[] patterns;
+        int nPairs;
+    }
+
+    /**
+     * Scores the pairs <code>from</code> (inclusive) to <code>to</code> (exclusive) of a chunk,
+     * splitting the range in half until it fits in a single tile.
+     */
+    private class ScoreTask extends RecursiveAction {
+        private final static long serialVersionUID = 1L;
+
+        ScoreTask(Chunk chunk, int from, int to,
+                  AtomicReference<torch.FormatterException> error)
+        {
+            _chunk = chunk;
+            _from = from;
+            _to = to;
+            _error = error;
+        }
+
+        @Override
+        protected void compute() {
+            if (_to - _from > _tileSize) {
+                int mid = (_from + _to) >>> 1;
+                invokeAll(new ScoreTask(_chunk, _from, mid, _error),
+                          new ScoreTask(_chunk, mid, _to, _error));
+                return;
+            }
+
+            Chunk c = _chunk;
+            int i = c.owner(_from);
+
+            for (int p = _from; p < _to; i++) {
+                Record rec = c.rec2.get(i);
+                Record[] block = c.blocks.get(i);
+                int offset = c.offsets[i];
+                int end = Math.min(_to, c.offsets[i + 1]);
+
+                _cmp.compareIndex(block, p - offset, end - offset, rec, c.patterns, p);
+
+                for (; p < end; p++)
+                    c.scores[p] = _model.matchScore(c.patterns[p]);
+            }
+
+            if (!_ordered)
+                emit(c.owner(_from));
+        }
+
+        private void emit(int i) {
+            Chunk c = _chunk;
+
+            synchronized (_formatter) {
+                // once the formatter has failed, don't hand it any more pairs
+                if (_error.get() != null)
+                    return;
+
+                try {
+                    for (int p = _from; p < _to; i++) {
+                        Record rec = c.rec2.get(i);
+                        Record[] block = c.blocks.get(i);
+                        int offset = c.offsets[i];
+                        int end = Math.min(_to, c.offsets[i + 1]);
+
+                        for (; p < end; p++)
+                            format(c, block[p - offset], rec, p);
+                    }
+                }
+                catch (torch.FormatterException e) {
+                    _error.compareAndSet(null, e);
+                }
+            }
+        }
+
+        private final Chunk _chunk;
+        private final int _from, _to;
+        private final AtomicReference<torch.FormatterException> _error;
+    }
+
+    private final IModel _model;
+    private final RecordComparator _cmp;
+    private final IMatchingFormatter _formatter;
+    private final IPatternFormatter _patternFormatter;
+    private final int _nThreads, _tileSize;
+    private final boolean _ordered;
+    private long _nComparisons;
+    private long _startTime, _endTime;
+}
@@ -0,0 +1,105 @@
+package torch.matcher;
+
+import torch.IRecordIterator;
+import torch.Record;
+import torch.RecordComparator;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Joins the records back into rows written by {@link BinaryFormatter}, so that the rows can be
+ * passed to another formatter, such as a {@link DefaultFormatter} writing the usual CSV. Only the
+ * rows that are asked for are materialized, and only their records are kept in memory.
+ */
+public class ResultMaterializer {
+
+    /**
+     * Passes each row of the named result file scoring at least <code>minScore</code> to
+     * <code>formatter</code>, with the records from the two lists whose sequence values it holds.
+     * The result file is read twice: once to find the sequence values needed, and once to
+     * format the rows after the lists have been read.
+     *
+     * @return the number of rows passed to the formatter.
+     * @throws torch.FormatterException if a row's record isn't in its list, or the formatter
+     * fails.
+     */
+    public static long materialize(String filename, RecordComparator cmp,
+                                   IRecordIterator list1, IRecordIterator list2,
+                                   double minScore, IMatchingFormatter formatter)
+        throws IOException, torch.FormatterException, torch.RecordIteratorException
+    {
+        Set<Long> seqs1 = new HashSet<>();
+        Set<Long> seqs2 = new HashSet<>();
+
+        try (BinaryResultReader reader = new BinaryResultReader(filename, cmp)) {
+            while (reader.next()) {
+                if (reader.score() >= minScore) {
+                    seqs1.add(reader.seq1());
+                    seqs2.add(reader.seq2());
+                }
+            }
+        }
+
+        Map<Long, Record> records1 = records(list1, seqs1);
+        Map<Long, Record> records2 = records(list2, seqs2);
+        long n = 0;
+
+        try (BinaryResultReader reader = new BinaryResultReader(filename, cmp)) {
+            while (reader.next()) {
+                if (!(reader.score() >= minScore))
+                    continue;
+
+                Record rec1 = record(records1, reader.seq1(), 1);
+                Record rec2 = record(records2, reader.seq2(), 2);
+                formatter.format(rec1, rec2, reader.score());
+                n++;
+            }
+        }
+
+        return n;
+    }
+
+    /**
+     * Returns the records in <code>list</code> whose sequence values are in <code>seqs</code>,
+     * by sequence value.
+     */
+    private static Map<Long, Record> records(IRecordIterator list, Set<Long> seqs)
+        throws torch.RecordIteratorException
+    {
+        Map<Long, Record> records = new HashMap<>();
+
+        Record rec;
+        while ((rec = list.next()) != null) {
+            Long seq;
+            try {
+                seq = Long.valueOf(rec.seq());
+            }
+            catch (NumberFormatException e) {
+                continue;
+            }
+
+            if (seqs.contains(seq))
+                records.put(seq, rec);
+        }
+
+        return records;
+    }
+
+    private static Record record(Map<Long, Record> records, long seq, int list)
+        throws torch.FormatterException
+    {
+        Record rec = records.get(seq);
+        if (rec == null) {
+            String msg = String.format("No record in list %d with sequence value %d", list, seq);
+            throw new torch.FormatterException(msg);
+        }
+
+        return rec;
+    }
+
+    private ResultMaterializer() {}
+}
@@ -0,0 +1,132 @@
+package torch.matcher;
+
+/**
+ * A bounded heap of <code>(score, index)</code> pairs that keeps the <code>k</code> pairs with
+ * the highest scores offered to it. Among pairs with equal scores the one with the lower index is
+ * kept. Pairs are stored in primitive arrays, so offering a pair doesn't allocate.
+ *
+ * <p>The heap is ordered so that its root is the worst pair kept, the one that the next better
+ * pair displaces.
+ */
+class TopKHeap {
+
+    TopKHeap(int k) {
+        if (k < 1)
+            throw new IllegalArgumentException("'k' must be positive");
+
+        _scores = new double[k];
+        _indexes = new int[k];
+    }
+
+    /**
+     * Removes every pair.
+     */
+    void clear() {
+        _size = 0;
+    }
+
+    int size() {
+        return _size;
+    }
+
+    boolean isFull() {
+        return _size == _scores.length;
+    }
+
+    /**
+     * Returns the lowest score kept. The heap must not be empty.
+     */
+    double minScore() {
+        return _scores[0];
+    }
+
+    /**
+     * Offers a pair, and returns true if it was kept.
+     */
+    boolean offer(double score, int index) {
+        if (_size < _scores.length) {
+            _scores[_size] = score;
+            _indexes[_size] = index;
+            siftUp(_size++);
+            return true;
+        }
+
+        if (!worse(_scores[0], _indexes[0], score, index))
+            return false;
+
+        _scores[0] = score;
+        _indexes[0] = index;
+        siftDown(0, _size);
+        return true;
+    }
+
+    /**
+     * Sorts the pairs kept from best to worst, so that {@link #score} and {@link #index} return
+     * them in that order. The heap must be cleared before more pairs are offered.
+     */
+    void sort() {
+        for (int n = _size - 1; n > 0; n--) {
+            swap(0, n);
+            siftDown(0, n);
+        }
+    }
+
+    double score(int i) {
+        return _scores[i];
+    }
+
+    int index(int i) {
+        return _indexes[i];
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!worse(_scores[i], _indexes[i], _scores[parent], _indexes[parent]))
+                return;
+
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i, int n) {
+        while (true) {
+            int worst = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+
+            if (left < n && worse(_scores[left], _indexes[left], _scores[worst], _indexes[worst]))
+                worst = left;
+            if (right < n && worse(_scores[right], _indexes[right], _scores[worst], _indexes[worst]))
+                worst = right;
+
+            if (worst == i)
+                return;
+
+            swap(i, worst);
+            i = worst;
+        }
+    }
+
+    private void swap(int i, int j) {
+        double score = _scores[i];
+        _scores[i] = _scores[j];
+        _scores[j] = score;
+
+        int index = _indexes[i];
+        _indexes[i] = _indexes[j];
+        _indexes[j] = index;
+    }
+
+    /**
+     * Returns true if the pair <code>(s1, i1)</code> ranks below <code>(s2, i2)</code>.
+     */
+    private static boolean worse(double s1, int i1, double s2, int i2) {
+        return s1 < s2 || (s1 == s2 && i1 > i2);
+    }
+
+    private final double[] _scores;
+    private final int[] _indexes;
+    private int _size;
+}
@@ -0,0 +1,140 @@
+package torch.matcher;
+
+import torch.IModel;
+import torch.IRecordIterator;
+import torch.Record;
+import torch.RecordComparator;
+import torch.model.MixtureModel;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A matching algorithm that passes only the best <code>k</code> pairs for each record in
+ * <code>list2</code> to the formatter. While a record's block is scored, the best pairs so far
+ * are kept in a bounded heap; when the block is done they are passed to the formatter from best
+ * to worst. Among pairs with equal scores, those earlier in the block are preferred, so the pairs
+ * passed to the formatter are the first <code>k</code> that {@link DefaultMatchingAlgo} would
+ * pass for the record after a stable sort by decreasing score.
+ *
+ * <p>Scoring a block stops early once <code>k</code> pairs have the highest score any pattern
+ * can have, since no later pair could displace them. For a {@link MixtureModel} that score comes
+ * from its score table; for other models it must be given, or there is no early stopping.
+ */
+public class TopKMatchingAlgo
+    implements IMatchingAlgorithm
+{
+
+    /**
+     * Constructs a matching algorithm that passes at most <code>k</code> pairs per
+     * <code>list2</code> record to the formatter.
+     */
+    public TopKMatchingAlgo(IModel model, IMatchingFormatter formatter, int k) {
+        this(model, formatter, k, (model instanceof MixtureModel)
+             ? ((MixtureModel)model).scoreTable().maxScore()
+             : Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Constructs a matching algorithm that passes at most <code>k</code> pairs per
+     * <code>list2</code> record to the formatter, and stops scoring a block once <code>k</code>
+     * pairs score at least <code>maxScore</code>.
+     */
+    public TopKMatchingAlgo(IModel model, IMatchingFormatter formatter, int k, double maxScore) {
+        _model = model;
+        _cmp = model.recordComparator();
+        _formatter = formatter;
+        _heap = new TopKHeap(k);
+        _maxScore = maxScore;
+    }
+
+    /**
+     * Computes match scores for the two lists. First <code>list1</code> is blocked, then each
+     * record in <code>list2</code> is compared to the records in the corresponding block.
+     */
+    @Override
+    public void computeScores(IRecordIterator list1, IRecordIterator list2)
+        throws torch.FormatterException, torch.RecordIteratorException
+    {
+        computeScores(Record.block(list1), list2);
+    }
+
+    /**
+     * Computes match scores between the records in <code>list</code> and the given blocks.
+     */
+    public void computeScores(Map<String, List<Record>> blocks, IRecordIterator list)
+        throws torch.FormatterException, torch.RecordIteratorException
+    {
+        _startTime = System.currentTimeMillis();
+        _nComparisons = 0;
+        _nSkipped = 0;
+
+        Record rec;
+        while ((rec = list.next()) != null) {
+            List<Record> block = blocks.get(rec.blockingKey());
+
+            if (block != null)
+                score(block, rec);
+        }
+
+        _endTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Scores <code>rec</code> against the records in <code>block</code> and passes the best pairs
+     * to the formatter.
+     */
+    private void score(List<Record> block, Record rec)
+        throws torch.FormatterException
+    {
+        _heap.clear();
+
+        int n = block.size();
+        for (int i = 0; i < n; i++) {
+            double score = _model.matchScore(_cmp.compareIndex(block.get(i), rec));
+            _heap.offer(score, i);
+            _nComparisons++;
+
+            if (_heap.isFull() && _heap.minScore() >= _maxScore) {
+                _nSkipped += n - i - 1;
+                break;
+            }
+        }
+
+        _heap.sort();
+        for (int i = 0; i < _heap.size(); i++)
+            _formatter.format(block.get(_heap.index(i)), rec, _heap.score(i));
+    }
+
+    /**
+     * Returns the number of record comparisons that were performed.
+     */
+    @Override
+    public long nComparisons() {
+        return _nComparisons;
+    }
+
+    /**
+     * Returns the number of pairs that were not scored because their record already had
+     * <code>k</code> pairs with the highest possible score.
+     */
+    public long nSkipped() {
+        return _nSkipped;
+    }
+
+    /**
+     * Returns the elapsed time in milliseconds.
+     */
+    @Override
+    public long elapsedTime() {
+        return _endTime - _startTime;
+    }
+
+    private final IModel _model;
+    private final RecordComparator _cmp;
+    private final IMatchingFormatter _formatter;
+    private final TopKHeap _heap;
+    private final double _maxScore;
+    private long _nComparisons, _nSkipped;
+    private long _startTime, _endTime;
+}
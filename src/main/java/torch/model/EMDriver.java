@@ -0,0 +1,260 @@
+package torch.model;
+
+import java.util.Arrays;
+
+/**
+ * Iterates an EM update until the stopping rule is satisfied, optionally accelerated by squared
+ * extrapolation (SQUAREM, Varadhan and Roland 2008). The parameters are the class weights and m
+ * weights of a mixture model, which the update changes in place.
+ *
+ * <p>An accelerated iteration runs two EM updates from the current weights
+ * <code>t0</code>, giving <code>t1</code> and <code>t2</code>, and extrapolates to
+ * <code>t0 - 2 a r + a^2 v</code>, where <code>r = t1 - t0</code>, <code>v = t2 - 2 t1 + t0</code>,
+ * and the step length <code>a = -|r| / |v|</code> is at most -1. The extrapolated weights are
+ * projected back onto the probability simplexes and stabilized by a third EM update. If that
+ * lowers the log-likelihood, the iteration falls back to the step length -1, for which the
+ * extrapolation is just <code>t2</code>, so the log-likelihood never decreases.
+ */
+class EMDriver {
+
+    /**
+     * The E and M steps of one EM update of the weights, and the observed-data log-likelihood of
+     * the current weights.
+     */
+    abstract static class Update {
+        abstract void estep();
+        abstract void mstep();
+        abstract double logLikelihood();
+    }
+
+    /**
+     * The phases that iterations are timed in, for {@link IFitListener#started}.
+     */
+    final static String[] PHASES = {"E step", "M step", "likelihood"};
+
+    EMDriver(double[] classWeights, double[][][] mWeights, EMOptions options) {
+        _classWeights = classWeights;
+        _mWeights = mWeights;
+        _options = options;
+
+        int n = classWeights.length;
+        for (double[][] m: mWeights)
+            for (double[] mk: m)
+                n += mk.length;
+
+        _nParameters = n;
+    }
+
+    /**
+     * Runs <code>update</code> until the fit converges or the maximum number of iterations is
+     * reached.
+     */
+    FitStatistics run(Update update) {
+        IFitListener listener = _options.listener();
+        long fitStart = System.nanoTime();
+        long[] phaseNanos = new long[PHASES.length];
+
+        int maxIter = _options.maxIterations();
+        double[] logLikelihoods = new double[Math.min(maxIter, 1024)];
+        long[] iterationNanos = new long[logLikelihoods.length];
+        double[] oldParams = new double[_nParameters];
+        double[] newParams = new double[_nParameters];
+        boolean converged = false;
+        int iter;
+
+        _nUpdates = 0;
+
+        double initialll = logLikelihood(update, phaseNanos);
+        double oldll = initialll;
+        double newll, delta;
+
+        listener.started(PHASES);
+
+        for (iter = 1; iter <= maxIter; iter++) {
+            long start = System.nanoTime();
+            Arrays.fill(phaseNanos, 0);
+            getParameters(oldParams);
+
+            if (_options.accelerate()) {
+                newll = squarem(update, oldParams, oldll, phaseNanos);
+            } else {
+                update(update, phaseNanos);
+                newll = logLikelihood(update, phaseNanos);
+            }
+
+            getParameters(newParams);
+            delta = newll - oldll;
+
+            if (iter > logLikelihoods.length) {
+                logLikelihoods = Arrays.copyOf(logLikelihoods, 2 * logLikelihoods.length);
+                iterationNanos = Arrays.copyOf(iterationNanos, logLikelihoods.length);
+            }
+
+            long end = System.nanoTime();
+            logLikelihoods[iter - 1] = newll;
+            iterationNanos[iter - 1] = end - start;
+            listener.iteration(iter, newll, delta, end - fitStart, phaseNanos);
+
+            double change = distance(oldParams, newParams) / norm(oldParams);
+            if (_options.stoppingRule().converged(iter, oldll, newll, change)) {
+                converged = true;
+                break;
+            }
+
+            oldll = newll;
+        }
+
+        int n = Math.min(iter, maxIter);
+        listener.finished(n, converged);
+        return new FitStatistics(initialll, Arrays.copyOf(logLikelihoods, n),
+                                 Arrays.copyOf(iterationNanos, n), _nUpdates, converged);
+    }
+
+    /**
+     * Runs one accelerated iteration from the weights <code>t0</code>, whose log-likelihood is
+     * <code>ll0</code>, and returns the log-likelihood of the new weights.
+     */
+    private double squarem(Update update, double[] t0, double ll0, long[] phaseNanos) {
+        double[] t1 = new double[_nParameters];
+        double[] t2 = new double[_nParameters];
+
+        update(update, phaseNanos);
+        getParameters(t1);
+        update(update, phaseNanos);
+        getParameters(t2);
+
+        double[] r = new double[_nParameters];
+        double[] v = new double[_nParameters];
+        for (int i = 0; i < _nParameters; i++) {
+            r[i] = t1[i] - t0[i];
+            v[i] = t2[i] - t1[i] - r[i];
+        }
+
+        double normV = norm(v);
+        if (normV == 0.0) {
+            // already at a fixed point
+            update(update, phaseNanos);
+            return logLikelihood(update, phaseNanos);
+        }
+
+        double alpha = Math.min(-1.0, -norm(r) / normV);
+        double ll = Double.NaN;
+
+        if (alpha < -1.0) {
+            double[] t = new double[_nParameters];
+            for (int i = 0; i < _nParameters; i++)
+                t[i] = t0[i] - 2 * alpha * r[i] + alpha * alpha * v[i];
+
+            setParameters(t);
+            project();
+            update(update, phaseNanos);
+            ll = logLikelihood(update, phaseNanos);
+        }
+
+        // safeguard: alpha = -1 extrapolates to t2, and an EM update from t2 can't do worse
+        if (!(ll >= ll0)) {
+            setParameters(t2);
+            update(update, phaseNanos);
+            ll = logLikelihood(update, phaseNanos);
+        }
+
+        return ll;
+    }
+
+    /**
+     * Runs one EM update, adding the time of each step to <code>phaseNanos</code>, and counts it.
+     */
+    private void update(Update update, long[] phaseNanos) {
+        _nUpdates++;
+
+        long t0 = System.nanoTime();
+        update.estep();
+        long t1 = System.nanoTime();
+        update.mstep();
+        long t2 = System.nanoTime();
+
+        phaseNanos[0] += t1 - t0;
+        phaseNanos[1] += t2 - t1;
+    }
+
+    private static double logLikelihood(Update update, long[] phaseNanos) {
+        long t0 = System.nanoTime();
+        double ll = update.logLikelihood();
+        phaseNanos[2] += System.nanoTime() - t0;
+
+        return ll;
+    }
+
+    /**
+     * Clips the weights to be positive and rescales them to sum to 1.
+     */
+    private void project() {
+        normalize(_classWeights);
+
+        for (double[][] m: _mWeights)
+            for (double[] mk: m)
+                normalize(mk);
+    }
+
+    private static void normalize(double[] p) {
+        double total = 0.0;
+        for (int i = 0; i < p.length; i++) {
+            if (!(p[i] > MIN_WEIGHT))
+                p[i] = MIN_WEIGHT;
+
+            total += p[i];
+        }
+
+        for (int i = 0; i < p.length; i++)
+            p[i] /= total;
+    }
+
+    private void getParameters(double[] params) {
+        int n = _classWeights.length;
+        System.arraycopy(_classWeights, 0, params, 0, n);
+
+        for (double[][] m: _mWeights) {
+            for (double[] mk: m) {
+                System.arraycopy(mk, 0, params, n, mk.length);
+                n += mk.length;
+            }
+        }
+    }
+
+    private void setParameters(double[] params) {
+        int n = _classWeights.length;
+        System.arraycopy(params, 0, _classWeights, 0, n);
+
+        for (double[][] m: _mWeights) {
+            for (double[] mk: m) {
+                System.arraycopy(params, n, mk, 0, mk.length);
+                n += mk.length;
+            }
+        }
+    }
+
+    private static double norm(double[] x) {
+        double s = 0.0;
+        for (double xi: x)
+            s += xi * xi;
+
+        return Math.sqrt(s);
+    }
+
+    private static double distance(double[] x, double[] y) {
+        double s = 0.0;
+        for (int i = 0; i < x.length; i++)
+            s += (x[i] - y[i]) * (x[i] - y[i]);
+
+        return Math.sqrt(s);
+    }
+
+    // extrapolated weights are kept away from 0, which EM could never leave
+    private final static double MIN_WEIGHT = 1e-12;
+
+    private final double[] _classWeights;
+    private final double[][][] _mWeights;
+    private final EMOptions _options;
+    private final int _nParameters;
+    private int _nUpdates;
+}
@@ -0,0 +1,271 @@
+package torch.model;
+
+import torch.RecordComparator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The pattern loops of an EM fit over unlabeled counts: the E step, the sufficient statistics of
+ * the M step, and the log-likelihood. Patterns are split into chunks of a fixed size, each with
+ * its own buffer of statistics, and the chunks are run on a pool of threads. Buffers are merged in
+ * chunk order, so the results are the same for any number of threads.
+ *
+ * <p>The engine reads the class and m weights from the arrays it was constructed with, which the
+ * caller updates in place between steps.
+ */
+class EMEngine {
+
+    final static int CHUNK_SIZE = 4096;
+
+    EMEngine(RecordComparator cmp, int[][] patterns, double[] counts, double[] classWeights,
+             double[][][] mWeights, int nThreads)
+    {
+        this(cmp, patterns, counts, classWeights, mWeights, nThreads, CHUNK_SIZE);
+    }
+
+    EMEngine(RecordComparator cmp, int[][] patterns, double[] counts, double[] classWeights,
+             double[][][] mWeights, int nThreads, int chunkSize)
+    {
+        _patterns = patterns;
+        _counts = counts;
+        _classWeights = classWeights;
+        _mWeights = mWeights;
+        _nClasses = classWeights.length;
+        _nComparators = cmp.nComparators();
+        _chunkSize = chunkSize;
+        _nChunks = (patterns.length + chunkSize - 1) / chunkSize;
+
+        _logClassWeights = new double[_nClasses];
+        _logMWeights = new double[_nClasses][_nComparators][];
+        for (int j = 0; j < _nClasses; j++)
+            for (int k = 0; k < _nComparators; k++)
+                _logMWeights[j][k] = new double[cmp.nLevels(k)];
+
+        _chunkMTotals = new double[_nChunks][_nClasses][_nComparators][];
+        _chunkClassTotals = new double[_nChunks][_nClasses];
+        _chunkLogLikelihoods = new double[_nChunks];
+        for (int c = 0; c < _nChunks; c++)
+            for (int j = 0; j < _nClasses; j++)
+                for (int k = 0; k < _nComparators; k++)
+                    _chunkMTotals[c][j][k] = new double[cmp.nLevels(k)];
+
+        int nWorkers = Math.min(nThreads, _nChunks);
+        _executor = (nWorkers > 1) ? Executors.newFixedThreadPool(nWorkers) : null;
+    }
+
+    /**
+     * Computes the conditional probability of each class given each pattern.
+     */
+    void estep(final double[][] expectedClass) {
+        forEachChunk(new ChunkTask() {
+            @Override
+            void run(int c, int lo, int hi) {
+                for (int i = lo; i < hi; i++) {
+                    double patternTotal = 0.0;
+
+                    for (int j = 0; j < _nClasses; j++) {
+                        double p = _classWeights[j];
+
+                        for (int k = 0; k < _nComparators; k++)
+                            p *= _mWeights[j][k][_patterns[i][k]];
+
+                        expectedClass[i][j] = p;
+                        patternTotal += p;
+                    }
+
+                    for (int j = 0; j < _nClasses; j++)
+                        expectedClass[i][j] /= patternTotal;
+                }
+            }
+        });
+    }
+
+    /**
+     * Fills <code>mTotals[j][k][x]</code> with the expected number of pairs in class
+     * <code>j</code> at level <code>x</code> of comparator <code>k</code>, and
+     * <code>classTotals[j]</code> with the expected number of pairs in class <code>j</code>.
+     */
+    void mstep(final double[][] expectedClass, double[][][] mTotals, double[] classTotals) {
+        forEachChunk(new ChunkTask() {
+            @Override
+            void run(int c, int lo, int hi) {
+                double[][][] m = _chunkMTotals[c];
+                double[] classTotal = _chunkClassTotals[c];
+
+                Arrays.fill(classTotal, 0.0);
+                for (int j = 0; j < _nClasses; j++)
+                    for (int k = 0; k < _nComparators; k++)
+                        Arrays.fill(m[j][k], 0.0);
+
+                for (int i = lo; i < hi; i++) {
+                    for (int j = 0; j < _nClasses; j++) {
+                        double d = expectedClass[i][j] * _counts[i];
+                        classTotal[j] += d;
+
+                        for (int k = 0; k < _nComparators; k++)
+                            m[j][k][_patterns[i][k]] += d;
+                    }
+                }
+            }
+        });
+
+        Arrays.fill(classTotals, 0.0);
+        for (int j = 0; j < _nClasses; j++)
+            for (int k = 0; k < _nComparators; k++)
+                Arrays.fill(mTotals[j][k], 0.0);
+
+        for (int c = 0; c < _nChunks; c++) {
+            for (int j = 0; j < _nClasses; j++) {
+                classTotals[j] += _chunkClassTotals[c][j];
+
+                for (int k = 0; k < _nComparators; k++) {
+                    double[] from = _chunkMTotals[c][j][k];
+                    double[] to = mTotals[j][k];
+
+                    for (int x = 0; x < to.length; x++)
+                        to[x] += from[x];
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the observed-data log-likelihood of the counts, the sum over patterns of the count
+     * times the log of the pattern's probability under the mixture. The logs of the current
+     * weights are taken once, and are then available from {@link #logClassWeights} and {@link
+     * #logMWeights}.
+     */
+    double logLikelihood() {
+        updateLogWeights();
+
+        forEachChunk(new ChunkTask() {
+            @Override
+            void run(int c, int lo, int hi) {
+                double[] logp = new double[_nClasses];
+                double ll = 0.0;
+
+                for (int i = lo; i < hi; i++) {
+                    if (_counts[i] == 0)
+                        continue;
+
+                    double max = Double.NEGATIVE_INFINITY;
+
+                    for (int j = 0; j < _nClasses; j++) {
+                        logp[j] = _logClassWeights[j];
+
+                        for (int k = 0; k < _nComparators; k++)
+                            logp[j] += _logMWeights[j][k][_patterns[i][k]];
+
+                        max = Math.max(max, logp[j]);
+                    }
+
+                    double total = 0.0;
+                    for (int j = 0; j < _nClasses; j++)
+                        total += Math.exp(logp[j] - max);
+
+                    ll += (max + Math.log(total)) * _counts[i];
+                }
+
+                _chunkLogLikelihoods[c] = ll;
+            }
+        });
+
+        double ll = 0.0;
+        for (int c = 0; c < _nChunks; c++)
+            ll += _chunkLogLikelihoods[c];
+
+        return ll;
+    }
+
+    /**
+     * Returns the logs of the class weights as of the last call to {@link #logLikelihood}.
+     */
+    double[] logClassWeights() {
+        return _logClassWeights;
+    }
+
+    /**
+     * Returns the logs of the m weights as of the last call to {@link #logLikelihood}.
+     */
+    double[][][] logMWeights() {
+        return _logMWeights;
+    }
+
+    /**
+     * Stops the engine's threads.
+     */
+    void close() {
+        if (_executor != null)
+            _executor.shutdownNow();
+    }
+
+    private void updateLogWeights() {
+        for (int j = 0; j < _nClasses; j++) {
+            _logClassWeights[j] = Math.log(_classWeights[j]);
+
+            for (int k = 0; k < _nComparators; k++)
+                for (int x = 0; x < _mWeights[j][k].length; x++)
+                    _logMWeights[j][k][x] = Math.log(_mWeights[j][k][x]);
+        }
+    }
+
+    /**
+     * Work done on the patterns from <code>lo</code> up to <code>hi</code>, which make up chunk
+     * <code>c</code>.
+     */
+    private abstract static class ChunkTask {
+        abstract void run(int c, int lo, int hi);
+    }
+
+    private void forEachChunk(final ChunkTask task) {
+        if (_executor == null) {
+            for (int c = 0; c < _nChunks; c++)
+                task.run(c, c * _chunkSize, Math.min(_patterns.length, (c + 1) * _chunkSize));
+
+            return;
+        }
+
+        List<Future<?>> results = new ArrayList<>(_nChunks);
+        for (int c = 0; c < _nChunks; c++) {
+            final int chunk = c;
+            results.add(_executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    task.run(chunk, chunk * _chunkSize,
+                             Math.min(_patterns.length, (chunk + 1) * _chunkSize));
+                }
+            }));
+        }
+
+        try {
+            for (Future<?> result: results)
+                result.get();
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof Error)
+                throw (Error)e.getCause();
+
+            throw (RuntimeException)e.getCause();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while fitting", e);
+        }
+    }
+
+    private final int[][] _patterns;
+    private final double[] _counts;
+    private final double[] _classWeights, _logClassWeights;
+    private final double[][][] _mWeights, _logMWeights;
+    private final int _nClasses, _nComparators, _chunkSize, _nChunks;
+    private final double[][][][] _chunkMTotals;
+    private final double[][] _chunkClassTotals;
+    private final double[] _chunkLogLikelihoods;
+    private final ExecutorService _executor;
+}
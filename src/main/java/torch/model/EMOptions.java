@@ -0,0 +1,128 @@
+package torch.model;
+
+/**
+ * Settings for fitting a mixture model by expectation maximization, shared by {@link
+ * UnsupervisedLearner} and {@link SemisupervisedLearner}.
+ */
+public class EMOptions {
+
+    public static class Builder {
+
+        public Builder() {
+            _nThreads = Runtime.getRuntime().availableProcessors();
+            _maxIterations = UnsupervisedLearner.MAX_ITER;
+            _stoppingRule = StoppingRules.absoluteLikelihood(UnsupervisedLearner.TOLERANCE);
+            _accelerate = false;
+            _listener = FitListeners.logging();
+        }
+
+        /**
+         * Constructs a builder with the settings of <code>options</code>.
+         */
+        public Builder(EMOptions options) {
+            _nThreads = options._nThreads;
+            _maxIterations = options._maxIterations;
+            _stoppingRule = options._stoppingRule;
+            _accelerate = options._accelerate;
+            _listener = options._listener;
+        }
+
+        /**
+         * Sets the number of threads used for the E and M steps. The fitted weights don't
+         * depend on it.
+         */
+        public Builder nThreads(int n) {
+            _nThreads = n;
+            return this;
+        }
+
+        public Builder maxIterations(int n) {
+            _maxIterations = n;
+            return this;
+        }
+
+        /**
+         * Sets the rule that decides when the fit has converged. The default stops when the
+         * log-likelihood changes by less than {@link UnsupervisedLearner#TOLERANCE}.
+         */
+        public Builder stoppingRule(IStoppingRule rule) {
+            _stoppingRule = rule;
+            return this;
+        }
+
+        /**
+         * Sets whether to accelerate EM by squared extrapolation (SQUAREM). Each accelerated
+         * iteration runs three EM updates, but typically far fewer iterations are needed. An
+         * extrapolation that would lower the likelihood is discarded in favor of the plain EM
+         * update, so the likelihood never decreases.
+         */
+        public Builder accelerate(boolean accelerate) {
+            _accelerate = accelerate;
+            return this;
+        }
+
+        /**
+         * Sets the listener that receives the fit's progress. The default logs to standard
+         * output at most once a second; use {@link FitListeners#NONE} for silence.
+         */
+        public Builder listener(IFitListener listener) {
+            _listener = listener;
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException if the number of threads or iterations isn't
+         * positive, or there is no stopping rule or listener.
+         */
+        public EMOptions build() {
+            if (_nThreads < 1)
+                throw new IllegalArgumentException("'nThreads' must be positive");
+            if (_maxIterations < 1)
+                throw new IllegalArgumentException("'maxIterations' must be positive");
+            if (_stoppingRule == null)
+                throw new IllegalArgumentException("'stoppingRule' is required");
+            if (_listener == null)
+                throw new IllegalArgumentException("'listener' is required");
+
+            return new EMOptions(this);
+        }
+
+        private int _nThreads, _maxIterations;
+        private IStoppingRule _stoppingRule;
+        private boolean _accelerate;
+        private IFitListener _listener;
+    }
+
+    public int nThreads() {
+        return _nThreads;
+    }
+
+    public int maxIterations() {
+        return _maxIterations;
+    }
+
+    public IStoppingRule stoppingRule() {
+        return _stoppingRule;
+    }
+
+    public boolean accelerate() {
+        return _accelerate;
+    }
+
+    public IFitListener listener() {
+        return _listener;
+    }
+
+    private EMOptions(Builder b) {
+        _nThreads = b._nThreads;
+        _maxIterations = b._maxIterations;
+        _stoppingRule = b._stoppingRule;
+        _accelerate = b._accelerate;
+        _listener = b._listener;
+    }
+
+    private final int _nThreads, _maxIterations;
+    private final IStoppingRule _stoppingRule;
+    private final boolean _accelerate;
+    private final IFitListener _listener;
+}
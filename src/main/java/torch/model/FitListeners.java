@@ -0,0 +1,91 @@
+package torch.model;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Standard fit listeners.
+ */
+public class FitListeners {
+
+    public final static long DEFAULT_LOG_INTERVAL_MILLIS = 1000;
+
+    /**
+     * A listener that ignores everything.
+     */
+    public final static IFitListener NONE = new IFitListener() {
+        @Override
+        public void started(String[] phases) {}
+
+        @Override
+        public void iteration(int iteration, double logLikelihood, double delta,
+                              long elapsedNanos, long[] phaseNanos) {}
+
+        @Override
+        public void finished(int nIterations, boolean converged) {}
+    };
+
+    /**
+     * Returns a listener that prints the first iteration, then at most one iteration every
+     * <code>intervalMillis</code>, and the last iteration, to <code>out</code>. Skipped
+     * iterations cost only a comparison.
+     */
+    public static IFitListener logging(final PrintStream out, long intervalMillis) {
+        final long interval = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+
+        return new IFitListener() {
+            @Override
+            public synchronized void started(String[] phases) {
+                out.format("%10s%16s%16s%12s%n", "iteration", "likelihood", "delta", "seconds");
+                _nextNanos = 0;
+            }
+
+            @Override
+            public synchronized void iteration(int iteration, double logLikelihood,
+                                               double delta, long elapsedNanos,
+                                               long[] phaseNanos)
+            {
+                _iteration = iteration;
+                _logLikelihood = logLikelihood;
+                _delta = delta;
+                _elapsedNanos = elapsedNanos;
+                _printed = false;
+
+                if (elapsedNanos >= _nextNanos) {
+                    print();
+                    _nextNanos = elapsedNanos + interval;
+                }
+            }
+
+            @Override
+            public synchronized void finished(int nIterations, boolean converged) {
+                if (!_printed)
+                    print();
+
+                if (!converged)
+                    out.format("stopped after %d iterations without converging%n", nIterations);
+            }
+
+            private void print() {
+                out.format("%10d%16.7f%16.7f%12.3f%n",
+                           _iteration, _logLikelihood, _delta, _elapsedNanos / 1e9);
+                _printed = true;
+            }
+
+            private int _iteration;
+            private double _logLikelihood, _delta;
+            private long _elapsedNanos, _nextNanos;
+            private boolean _printed = true;
+        };
+    }
+
+    /**
+     * Returns a listener that logs to standard output at most once every {@link
+     * #DEFAULT_LOG_INTERVAL_MILLIS}.
+     */
+    public static IFitListener logging() {
+        return logging(System.out, DEFAULT_LOG_INTERVAL_MILLIS);
+    }
+
+    private FitListeners() {}
+}
@@ -0,0 +1,103 @@
+package torch.model;
+
+import java.util.Arrays;
+
+/**
+ * A record of how an EM fit converged: the observed-data log-likelihood and running time of
+ * each iteration.
+ */
+public class FitStatistics {
+
+    /**
+     * Returns the number of iterations run.
+     */
+    public int nIterations() {
+        return _logLikelihoods.length;
+    }
+
+    /**
+     * Returns the number of EM updates run. This is the same as the number of iterations unless
+     * the fit was accelerated, in which case each iteration runs several updates.
+     */
+    public int nUpdates() {
+        return _nUpdates;
+    }
+
+    /**
+     * Returns true if the stopping rule was satisfied before the maximum number of iterations.
+     */
+    public boolean converged() {
+        return _converged;
+    }
+
+    /**
+     * Returns the log-likelihood after each iteration.
+     */
+    public double[] logLikelihoods() {
+        return Arrays.copyOf(_logLikelihoods, _logLikelihoods.length);
+    }
+
+    /**
+     * Returns the final log-likelihood.
+     */
+    public double logLikelihood() {
+        return (_logLikelihoods.length == 0) ?
+            _initialLogLikelihood : _logLikelihoods[_logLikelihoods.length - 1];
+    }
+
+    /**
+     * Returns the change in log-likelihood in the last iteration.
+     */
+    public double delta() {
+        int n = _logLikelihoods.length;
+        if (n == 0)
+            return 0.0;
+
+        return _logLikelihoods[n - 1] - ((n == 1) ? _initialLogLikelihood : _logLikelihoods[n - 2]);
+    }
+
+    /**
+     * Returns the running time of each iteration, in nanoseconds.
+     */
+    public long[] iterationNanos() {
+        return Arrays.copyOf(_iterationNanos, _iterationNanos.length);
+    }
+
+    /**
+     * Returns the mean running time of an iteration, in seconds.
+     */
+    public double secondsPerIteration() {
+        if (_iterationNanos.length == 0)
+            return 0.0;
+
+        long total = 0;
+        for (long t: _iterationNanos)
+            total += t;
+
+        return total / 1e9 / _iterationNanos.length;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d iterations (%d updates), %.3g s per iteration, " +
+                             "log-likelihood %.7f, delta %.7g%s",
+                             nIterations(), _nUpdates, secondsPerIteration(), logLikelihood(),
+                             delta(), _converged ? "" : ", not converged");
+    }
+
+    FitStatistics(double initialLogLikelihood, double[] logLikelihoods, long[] iterationNanos,
+                  int nUpdates, boolean converged)
+    {
+        _initialLogLikelihood = initialLogLikelihood;
+        _logLikelihoods = logLikelihoods;
+        _iterationNanos = iterationNanos;
+        _nUpdates = nUpdates;
+        _converged = converged;
+    }
+
+    private final double _initialLogLikelihood;
+    private final double[] _logLikelihoods;
+    private final long[] _iterationNanos;
+    private final int _nUpdates;
+    private final boolean _converged;
+}
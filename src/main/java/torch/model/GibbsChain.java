@@ -0,0 +1,188 @@
+package torch.model;
+
+import torch.RecordComparator;
+import torch.counter.Counter;
+import torch.util.Util;
+
+import java.util.Random;
+
+import cc.mallet.util.Randoms;
+
+/**
+ * One Markov chain of the Gibbs sampler for the posterior of a mixture model given a prior and
+ * pattern counts. Each step draws the number of pairs with each pattern in each class given the
+ * weights, then new weights given the class assignments. All randomness comes from the generator
+ * the chain was constructed with, so chains with independently seeded generators are independent.
+ */
+class GibbsChain {
+
+    /**
+     * Constructs a chain whose initial weights are drawn from the prior.
+     */
+    GibbsChain(Random rng, MixtureModelPrior prior, Counter counter) {
+        _prior = prior;
+        _cmp = counter.recordComparator();
+        _counts = counter.nonzeroCounts();
+        _patterns = counter.nonzeroPatterns();
+        _rng = rng;
+        _gammas = new Randoms();
+        _gammas.setSeed(rng.nextLong());
+
+        int nClasses = _prior.nClasses();
+        int nComparators = _cmp.nComparators();
+        _mWeights = new double[nClasses][nComparators][];
+        _mParam = new double[nClasses][nComparators][];
+        _logMWeights = new double[nClasses][nComparators][];
+
+        for (int j = 0; j < nClasses; j++) {
+            for (int k = 0; k < nComparators; k++) {
+                _mWeights[j][k] = new double[_cmp.nLevels(k)];
+                _mParam[j][k] = new double[_cmp.nLevels(k)];
+                _logMWeights[j][k] = new double[_cmp.nLevels(k)];
+            }
+        }
+
+        _classWeights = new double[nClasses];
+        _classParam = new double[nClasses];
+        _logClassWeights = new double[nClasses];
+        _classAssign = new long[_patterns.length][nClasses];
+        _classWeightsCond = new double[_patterns.length][nClasses];
+
+        drawWeights(_prior.multinomialWeightParameter(), _prior.classWeightParameter());
+        drawClasses();
+    }
+
+    /**
+     * Runs one sweep of the sampler.
+     */
+    void step() {
+        drawWeights();
+        drawClasses();
+    }
+
+    /**
+     * Returns the class weights of the current draw.
+     */
+    double[] classWeights() {
+        return _classWeights;
+    }
+
+    /**
+     * Returns the m weights of the current draw.
+     */
+    double[][][] mWeights() {
+        return _mWeights;
+    }
+
+    /**
+     * Draws the number of pairs with each pattern in each class, given the current weights. The
+     * pairs with a pattern are split among the classes by a single multinomial draw, so a sweep
+     * costs the same however many pairs there are. The class probabilities are computed from log
+     * weights, scaled by the largest, so a product of many small weights can't underflow to 0.
+     */
+    void drawClasses() {
+        int nClasses = _prior.nClasses();
+        int nComparators = _cmp.nComparators();
+
+        for (int j = 0; j < nClasses; j++) {
+            _logClassWeights[j] = Math.log(_classWeights[j]);
+
+            for (int k = 0; k < nComparators; k++)
+                for (int x = 0; x < _cmp.nLevels(k); x++)
+                    _logMWeights[j][k][x] = Math.log(_mWeights[j][k][x]);
+        }
+
+        for (int i = 0; i < _patterns.length; i++) {
+            double[] cond = _classWeightsCond[i];
+            double max = Double.NEGATIVE_INFINITY;
+
+            for (int j = 0; j < nClasses; j++) {
+                cond[j] = _logClassWeights[j];
+
+                for (int k = 0; k < nComparators; k++)
+                    cond[j] += _logMWeights[j][k][_patterns[i][k]];
+
+                max = Math.max(max, cond[j]);
+            }
+
+            double classTotal = 0.0;
+            for (int j = 0; j < nClasses; j++) {
+                // every class has probability 0 only if gamma draws of 0 made it so
+                cond[j] = (max == Double.NEGATIVE_INFINITY) ? 1.0 : Math.exp(cond[j] - max);
+                classTotal += cond[j];
+            }
+
+            for (int j = 0; j < nClasses; j++)
+                cond[j] /= classTotal;
+        }
+
+        for (int i = 0; i < _patterns.length; i++)
+            Util.sampleMultinomial(_rng, _counts[i], _classWeightsCond[i], _classAssign[i]);
+    }
+
+    /**
+     * Draw match weights from a Dirichlet distribution with the given parameter, in place.
+     */
+    private void drawWeights(double[][][] mParam, double[] classParam)
+    {
+        drawDirichlet(classParam, _classWeights);
+
+        for (int j = 0; j < _prior.nClasses(); j++)
+            for (int k = 0; k < _cmp.nComparators(); k++)
+                drawDirichlet(mParam[j][k], _mWeights[j][k]);
+    }
+
+    /**
+     * Draws from a Dirichlet distribution into <code>p</code> by normalizing independent gamma
+     * variates, as <code>cc.mallet.types.Dirichlet</code> does, without allocating.
+     */
+    private void drawDirichlet(double[] alpha, double[] p) {
+        double total = 0.0;
+        for (int x = 0; x < p.length; x++) {
+            p[x] = _gammas.nextGamma(alpha[x]);
+            total += p[x];
+        }
+
+        for (int x = 0; x < p.length; x++)
+            p[x] /= total;
+    }
+
+    /**
+     * Compute posterior parameters and draw new weights.
+     */
+    void drawWeights()
+    {
+        double[][][] mPrior = _prior.multinomialWeightParameter();
+        double[] classPrior = _prior.classWeightParameter();
+
+        System.arraycopy(classPrior, 0, _classParam, 0, classPrior.length);
+        for (int j = 0; j < _prior.nClasses(); j++) {
+            for (int k = 0; k < _cmp.nComparators(); k++) {
+                System.arraycopy(mPrior[j][k], 0, _mParam[j][k], 0, _cmp.nLevels(k));
+            }
+        }
+
+        for (int i = 0; i < _patterns.length; i++) {
+            for (int j = 0; j < _prior.nClasses(); j++) {
+                _classParam[j] += _classAssign[i][j];
+
+                for (int k = 0; k < _cmp.nComparators(); k++) {
+                    _mParam[j][k][_patterns[i][k]] += _classAssign[i][j];
+                }
+            }
+        }
+
+        drawWeights(_mParam, _classParam);
+    }
+
+    private final MixtureModelPrior _prior;
+    private final RecordComparator _cmp;
+    private final long[] _counts;
+    private final int[][] _patterns;
+    private final Random _rng;
+    private final Randoms _gammas;
+    private final double[][][] _mWeights, _mParam, _logMWeights;
+    private final double[] _classWeights, _classParam, _logClassWeights;
+    private final long[][] _classAssign;
+    private final double[][] _classWeightsCond;
+}
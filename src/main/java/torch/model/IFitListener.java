@@ -0,0 +1,35 @@
+package torch.model;
+
+/**
+ * Receives progress from a learner as it fits a model. Learners call the listener on the fitting
+ * thread, so an implementation should return quickly. A listener shared by fits that run
+ * concurrently, such as the starts of a {@link MultiStartLearner}, must be thread-safe.
+ *
+ * @see FitListeners
+ * @see RecordingFitListener
+ */
+public interface IFitListener {
+    /**
+     * Called before the first iteration with the names of the phases that each iteration's
+     * running time is broken down into.
+     */
+    public void started(String[] phases);
+
+    /**
+     * Called after each iteration.
+     *
+     * @param iteration The iteration number, starting from 1.
+     * @param logLikelihood The log-likelihood after the iteration, or NaN if the learner doesn't
+     * compute one.
+     * @param delta The change in log-likelihood, or NaN.
+     * @param elapsedNanos The time since the fit started.
+     * @param phaseNanos The time spent in each phase during this iteration.
+     */
+    public void iteration(int iteration, double logLikelihood, double delta, long elapsedNanos,
+                          long[] phaseNanos);
+
+    /**
+     * Called once the fit is done.
+     */
+    public void finished(int nIterations, boolean converged);
+}
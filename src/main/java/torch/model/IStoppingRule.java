@@ -0,0 +1,16 @@
+package torch.model;
+
+/**
+ * Decides when an EM fit has converged.
+ *
+ * @see StoppingRules
+ */
+public interface IStoppingRule {
+    /**
+     * Returns true if the fit should stop after <code>iteration</code>, in which the observed-data
+     * log-likelihood went from <code>oldLogLikelihood</code> to <code>newLogLikelihood</code> and
+     * the vector of weights changed by <code>parameterChange</code>, relative to its length.
+     */
+    public boolean converged(int iteration, double oldLogLikelihood, double newLogLikelihood,
+                             double parameterChange);
+}
@@ -0,0 +1,209 @@
+package torch.model;
+
+import java.util.Arrays;
+
+/**
+ * Convergence diagnostics for a scalar parameter sampled by several Markov chains: the split
+ * potential scale reduction factor (R-hat) and the effective sample size, as in Gelman et al.,
+ * <i>Bayesian Data Analysis</i>, 3rd ed., section 11.4-11.5. Each chain is split into halves, so
+ * that a chain that is still drifting shows up as disagreement between its halves. The
+ * autocovariances are computed for all lags at once with a fast Fourier transform, so the
+ * diagnostics of <code>m</code> chains of <code>n</code> draws cost O(m n log n).
+ */
+class McmcDiagnostics {
+
+    /**
+     * Returns the split R-hat of the first <code>n</code> draws of each chain. Values close to 1
+     * indicate the chains have mixed.
+     */
+    static double splitRHat(double[][] chains, int n) {
+        return rHat(new Split(chains, n));
+    }
+
+    /**
+     * Returns the effective sample size of the first <code>n</code> draws of each chain, which
+     * accounts for autocorrelation within chains. The autocorrelations are summed in pairs until a
+     * pair's sum is negative (Geyer's initial positive sequence).
+     */
+    static double ess(double[][] chains, int n) {
+        return ess(new Split(chains, n));
+    }
+
+    /**
+     * Computes the split R-hat and effective sample size of the first <code>n</code> draws of
+     * each chain of each parameter, indexed by parameter and chain, splitting the chains once per
+     * parameter.
+     */
+    static void diagnose(double[][][] draws, int n, double[] rHat, double[] ess) {
+        for (int p = 0; p < draws.length; p++) {
+            Split s = new Split(draws[p], n);
+            rHat[p] = rHat(s);
+            ess[p] = ess(s);
+        }
+    }
+
+    private static double rHat(Split s) {
+        if (s.varPlus == 0.0)
+            return 1.0;
+
+        return Math.sqrt(s.varPlus / s.w);
+    }
+
+    private static double ess(Split s) {
+        int total = s.m * s.n;
+        if (s.varPlus == 0.0)
+            return total;
+
+        double tau = -1.0;
+        for (int t = 0; t + 1 < s.n; t += 2) {
+            double pair = s.rho(t) + s.rho(t + 1);
+            if (pair < 0)
+                break;
+
+            tau += 2 * pair;
+        }
+
+        return total / Math.max(tau, 1.0 / Math.log10(Math.max(total, 10)));
+    }
+
+    /**
+     * The halves of the chains and their between- and within-chain variances.
+     */
+    private static class Split {
+        Split(double[][] chains, int len) {
+            m = 2 * chains.length;
+            n = len / 2;
+            halves = new double[m][];
+            starts = new int[m];
+            means = new double[m];
+
+            // the middle draw of an odd-length chain is dropped
+            for (int c = 0; c < chains.length; c++) {
+                halves[2 * c] = chains[c];
+                halves[2 * c + 1] = chains[c];
+                starts[2 * c + 1] = len - n;
+            }
+
+            double grand = 0.0;
+            for (int h = 0; h < m; h++) {
+                double sum = 0.0;
+                for (int i = 0; i < n; i++)
+                    sum += halves[h][starts[h] + i];
+
+                means[h] = sum / n;
+                grand += means[h];
+            }
+            grand /= m;
+
+            acov = autocovariances();
+
+            double b = 0.0;
+            for (int h = 0; h < m; h++)
+                b += (means[h] - grand) * (means[h] - grand);
+
+            // the mean biased autocovariance at lag 0 is (n - 1) / n times the within variance
+            w = acov[0] / m * n / (n - 1.0);
+            b *= n / (m - 1.0);
+            varPlus = (n - 1.0) / n * w + b / n;
+        }
+
+        /**
+         * Returns the autocorrelation at lag <code>t</code>, combined across halves.
+         */
+        double rho(int t) {
+            return 1.0 - (w - acov[t] / m) / varPlus;
+        }
+
+        /**
+         * Returns the biased autocovariances of each half at every lag, summed over the halves.
+         * Each half is zero-padded to at least twice its length, so that the circular
+         * autocorrelation computed through the transform equals the linear one.
+         */
+        private double[] autocovariances() {
+            int size = Integer.highestOneBit(Math.max(1, 2 * n - 1)) << 1;
+            double[] re = new double[size];
+            double[] im = new double[size];
+            double[] sums = new double[Math.max(n, 1)];
+
+            for (int h = 0; h < m; h++) {
+                Arrays.fill(re, 0.0);
+                Arrays.fill(im, 0.0);
+                for (int i = 0; i < n; i++)
+                    re[i] = halves[h][starts[h] + i] - means[h];
+
+                fft(re, im);
+                for (int i = 0; i < size; i++) {
+                    re[i] = re[i] * re[i] + im[i] * im[i];
+                    im[i] = 0.0;
+                }
+
+                // the power spectrum is real and even, so a forward transform inverts it
+                fft(re, im);
+                for (int t = 0; t < n; t++)
+                    sums[t] += re[t] / size / n;
+            }
+
+            return sums;
+        }
+
+        final int m, n;
+        final double[][] halves;
+        final int[] starts;
+        final double[] means, acov;
+        final double w, varPlus;
+    }
+
+    /**
+     * Replaces <code>re + i im</code>, whose length is a power of 2, by its discrete Fourier
+     * transform, with the iterative radix-2 Cooley-Tukey algorithm.
+     */
+    private static void fft(double[] re, double[] im) {
+        int size = re.length;
+
+        for (int i = 1, j = 0; i < size; i++) {
+            int bit = size >> 1;
+            for (; (j & bit) != 0; bit >>= 1)
+                j ^= bit;
+            j ^= bit;
+
+            if (i < j) {
+                double t = re[i];
+                re[i] = re[j];
+                re[j] = t;
+
+                t = im[i];
+                im[i] = im[j];
+                im[j] = t;
+            }
+        }
+
+        for (int len = 2; len <= size; len <<= 1) {
+            double angle = -2 * Math.PI / len;
+            double wRe = Math.cos(angle);
+            double wIm = Math.sin(angle);
+
+            for (int i = 0; i < size; i += len) {
+                double uRe = 1.0;
+                double uIm = 0.0;
+
+                for (int k = 0; k < len / 2; k++) {
+                    int a = i + k;
+                    int b = a + len / 2;
+                    double tRe = re[b] * uRe - im[b] * uIm;
+                    double tIm = re[b] * uIm + im[b] * uRe;
+
+                    re[b] = re[a] - tRe;
+                    im[b] = im[a] - tIm;
+                    re[a] += tRe;
+                    im[a] += tIm;
+
+                    double next = uRe * wRe - uIm * wIm;
+                    uIm = uRe * wIm + uIm * wRe;
+                    uRe = next;
+                }
+            }
+        }
+    }
+
+    private McmcDiagnostics() {}
+}
@@ -3,8 +3,24 @@ package torch.model;
 import torch.IModel;
 import torch.Record;
 import torch.RecordComparator;
+import torch.ScoreBound;
 import torch.counter.Counter;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
 /**
  * An object that represents a multinomial mixture model under the conditional independence (CI)
  * assumption. Under this model, comparison patterns are generated by a mixture of latent classes.
@@ -14,6 +30,13 @@ public class MixtureModel
     implements IModel
 {
 
+    /**
+     * The smallest score table that {@link #load} maps into memory rather than reading onto the
+     * heap (2MB of scores). Mapped tables are shared through the page cache by every process that
+     * loads the same file.
+     */
+    public final static int MIN_MAPPED_PATTERNS = 1 << 18;
+
     /**
      * Uses unsupervised learning to fit a two-class mixture model to unlabeled data. A mixture
      * model with two classes is fit, and the class with the lower class weight is declared to
@@ -56,6 +79,16 @@ public class MixtureModel
     }
 
     public MixtureModel(RecordComparator comparator, double[][][] mWeights, int nMatchClasses) {
+        this(comparator, mWeights, nMatchClasses, null);
+    }
+
+    /**
+     * Constructs a model whose score table is made from <code>scores</code>, or computed if it is
+     * null.
+     */
+    private MixtureModel(RecordComparator comparator, double[][][] mWeights, int nMatchClasses,
+                         DoubleBuffer scores)
+    {
         _cmp = comparator;
         _mWeights = mWeights;
         _nClasses = mWeights.length;
@@ -88,6 +121,201 @@ public class MixtureModel
                 }
             }
         }
+
+        if (scores == null)
+            _scores = new ScoreTable(_cmp, _logMWeights, _nMatchClasses);
+        else
+            _scores = new ScoreTable(_cmp, _logMWeights, _nMatchClasses, scores);
+    }
+
+    /**
+     * Reads a model written by {@link #write} for use with <code>cmp</code>. The score table is
+     * read onto the heap; use {@link #load} to map a large one.
+     *
+     * @throws IllegalArgumentException if the model was made with a comparator whose {@link
+     * RecordComparator#fingerprint} differs from that of <code>cmp</code>.
+     * @throws IOException if the input isn't a model or can't be read.
+     */
+    public static MixtureModel read(RecordComparator cmp, DataInput in)
+        throws IOException
+    {
+        int version = ModelIO.readHeader(in, MAGIC, VERSION, "model", cmp);
+        int[] classes = ModelIO.readClasses(in);
+        double[][][] mWeights = ModelIO.readWeights(in, cmp, classes[0]);
+
+        int nScores = readScoreCount(in, cmp);
+        ByteOrder order = readScoreOrder(in, version, nScores);
+        DoubleBuffer scores = readScores(in, cmp, classes[0], version, nScores, order);
+
+        return new MixtureModel(cmp, mWeights, classes[1], scores);
+    }
+
+    /**
+     * Reads a model saved by {@link #save} for use with <code>cmp</code>. A score table with at
+     * least <code>MIN_MAPPED_PATTERNS</code> patterns is memory-mapped rather than read, so
+     * loading takes about the same time however large the table is.
+     *
+     * @see #read
+     */
+    public static MixtureModel load(RecordComparator cmp, String filename)
+        throws IOException
+    {
+        return load(cmp, filename, MIN_MAPPED_PATTERNS);
+    }
+
+    static MixtureModel load(RecordComparator cmp, String filename, int minMappedPatterns)
+        throws IOException
+    {
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r")) {
+            FileChannel channel = file.getChannel();
+            DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Channels.newInputStream(channel)));
+
+            int version = ModelIO.readHeader(in, MAGIC, VERSION, "model", cmp);
+            int[] classes = ModelIO.readClasses(in);
+            double[][][] mWeights = ModelIO.readWeights(in, cmp, classes[0]);
+
+            int nScores = readScoreCount(in, cmp);
+            ByteOrder order = readScoreOrder(in, version, nScores);
+            if (nScores == 0 || nScores < minMappedPatterns) {
+                DoubleBuffer scores = readScores(in, cmp, classes[0], version, nScores, order);
+                return new MixtureModel(cmp, mWeights, classes[1], scores);
+            }
+
+            // the mapping stays valid after the file is closed
+            long offset = scoreOffset(cmp, classes[0], version);
+            if (channel.size() < offset + 8L * nScores)
+                throw new IOException("Truncated score table");
+
+            MappedByteBuffer buffer =
+                channel.map(FileChannel.MapMode.READ_ONLY, offset, 8L * nScores);
+            DoubleBuffer scores = buffer.order(order).asDoubleBuffer();
+
+            return new MixtureModel(cmp, mWeights, classes[1], scores);
+        }
+    }
+
+    /**
+     * Writes this model in a binary format: a header with the comparator's fingerprint and
+     * levels, the number of classes and of match classes, and the multinomial weights. A dense
+     * score table follows, aligned to 8 bytes so it can be mapped, so that loading needn't
+     * recompute it. The scores are written in the platform's byte order, which is recorded
+     * before them, so a mapped table is read without swapping bytes on the machine that wrote
+     * it. A table written on a machine with the other byte order still loads, but each lookup
+     * swaps.
+     */
+    public void write(DataOutput out)
+        throws IOException
+    {
+        ModelIO.writeHeader(out, MAGIC, VERSION, _cmp);
+        out.writeInt(_nClasses);
+        out.writeInt(_nMatchClasses);
+        ModelIO.writeWeights(out, _mWeights);
+
+        if (!_scores.isDense()) {
+            out.writeInt(0);
+            return;
+        }
+
+        int nScores = _cmp.nPatterns();
+        boolean bigEndian = (ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN);
+        out.writeInt(nScores);
+        out.writeInt(bigEndian ? BIG_ENDIAN : LITTLE_ENDIAN);
+        for (int i = padding(_cmp, _nClasses, VERSION); i > 0; i--)
+            out.writeByte(0);
+
+        // DataOutput writes big-endian, so reverse the bytes to write little-endian
+        for (int i = 0; i < nScores; i++) {
+            long bits = Double.doubleToRawLongBits(_scores.score(i));
+            out.writeLong(bigEndian ? bits : Long.reverseBytes(bits));
+        }
+    }
+
+    /**
+     * Writes this model to the named file.
+     *
+     * @see #write
+     */
+    public void save(String filename)
+        throws IOException
+    {
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(filename))))
+        {
+            write(out);
+        }
+    }
+
+    private static int readScoreCount(DataInput in, RecordComparator cmp)
+        throws IOException
+    {
+        int nScores = in.readInt();
+        if (nScores != 0 && nScores != cmp.nPatterns())
+            throw new IOException("Score table doesn't match the comparator");
+
+        return nScores;
+    }
+
+    /**
+     * Reads the byte order of the score table. Version 1 tables are always big-endian.
+     */
+    private static ByteOrder readScoreOrder(DataInput in, int version, int nScores)
+        throws IOException
+    {
+        if (version < 2 || nScores == 0)
+            return ByteOrder.BIG_ENDIAN;
+
+        int order = in.readInt();
+        if (order == BIG_ENDIAN)
+            return ByteOrder.BIG_ENDIAN;
+        if (order == LITTLE_ENDIAN)
+            return ByteOrder.LITTLE_ENDIAN;
+
+        throw new IOException("Unknown score table byte order: " + order);
+    }
+
+    /**
+     * Reads <code>nScores</code> scores onto the heap, or returns null if there are none.
+     */
+    private static DoubleBuffer readScores(DataInput in, RecordComparator cmp, int nClasses,
+                                           int version, int nScores, ByteOrder order)
+        throws IOException
+    {
+        if (nScores == 0)
+            return null;
+
+        in.readFully(new byte[padding(cmp, nClasses, version)]);
+        boolean bigEndian = (order == ByteOrder.BIG_ENDIAN);
+        double[] scores = new double[nScores];
+        for (int i = 0; i < nScores; i++) {
+            long bits = in.readLong();
+            scores[i] = Double.longBitsToDouble(bigEndian ? bits : Long.reverseBytes(bits));
+        }
+
+        return DoubleBuffer.wrap(scores);
+    }
+
+    /**
+     * Returns the offset in the file of the end of the fields before the score table.
+     */
+    private static long scoreHeaderEnd(RecordComparator cmp, int nClasses, int version) {
+        long end = ModelIO.headerBytes(cmp) + 8 + ModelIO.weightBytes(cmp, nClasses) + 4;
+        return (version < 2) ? end : end + 4;
+    }
+
+    /**
+     * Returns the offset in the file of the score table.
+     */
+    private static long scoreOffset(RecordComparator cmp, int nClasses, int version) {
+        return (scoreHeaderEnd(cmp, nClasses, version) + 7) & ~7L;
+    }
+
+    /**
+     * Returns the number of bytes of padding before the score table.
+     */
+    private static int padding(RecordComparator cmp, int nClasses, int version) {
+        long end = scoreHeaderEnd(cmp, nClasses, version);
+        return (int)(scoreOffset(cmp, nClasses, version) - end);
     }
 
     public int nClasses() {
@@ -102,22 +330,38 @@ public class MixtureModel
         return _mWeights;
     }
 
-    @Override
-    public double matchScore(Record rec1, Record rec2) {
-        double score = 0.0;
-        int[] pattern = _cmp.compare(rec1, rec2);
+    /**
+     * Returns the table of match scores indexed by comparison pattern.
+     */
+    public ScoreTable scoreTable() {
+        return _scores;
+    }
 
-        for (int j = 0; j < _nMatchClasses; j++) {
-            for (int k = 0; k < _cmp.nComparators(); k++)
-                score += _logMWeights[j][k][pattern[k]];
+    /**
+     * Returns bounds for giving up on pairs that can't score at least <code>cutoff</code>, made
+     * from each field's contribution to the score.
+     *
+     * @see RecordComparator#compareIndex(Record, Record, ScoreBound)
+     */
+    public ScoreBound scoreBound(double cutoff) {
+        double[][] fieldScores = new double[_cmp.nComparators()][];
+        for (int k = 0; k < fieldScores.length; k++) {
+            fieldScores[k] = new double[_cmp.nLevels(k)];
+            for (int x = 0; x < fieldScores[k].length; x++)
+                fieldScores[k][x] = _scores.fieldScore(k, x);
         }
 
-        for (int j = _nMatchClasses; j < _nClasses; j++) {
-            for (int k = 0; k < _cmp.nComparators(); k++)
-                score -= _logMWeights[j][k][pattern[k]];
-        }
+        return new ScoreBound(_cmp, fieldScores, cutoff);
+    }
 
-        return score;
+    @Override
+    public double matchScore(Record rec1, Record rec2) {
+        return _scores.score(_cmp.compareIndex(rec1, rec2));
+    }
+
+    @Override
+    public double matchScore(int patternIndex) {
+        return _scores.score(patternIndex);
     }
 
     @Override
@@ -147,7 +391,12 @@ public class MixtureModel
         return builder.toString();
     }
 
+    private final static int MAGIC = 0x544d444c; // "TMDL"
+    private final static int VERSION = 2;
+    private final static int BIG_ENDIAN = 0, LITTLE_ENDIAN = 1;
+
     private final RecordComparator _cmp;
     private final int _nClasses, _nMatchClasses;
     private final double[][][] _mWeights, _logMWeights;
+    private final ScoreTable _scores;
 }
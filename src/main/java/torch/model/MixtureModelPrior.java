@@ -2,6 +2,15 @@ package torch.model;
 
 import torch.RecordComparator;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -146,6 +155,7 @@ public class MixtureModelPrior {
     public MixtureModelPrior(RecordComparator cmp, double[][][] mWeightParam, 
                              double[] classWeightParam, int nMatchClasses) 
     {
+        _cmp = cmp;
         _mWeightParam = mWeightParam;
         _classWeightParam = classWeightParam;
         _nClasses = classWeightParam.length;
@@ -189,6 +199,77 @@ public class MixtureModelPrior {
         return _nMatchClasses;
     }
 
+    /**
+     * Reads a prior written by {@link #write} for use with <code>cmp</code>.
+     *
+     * @throws IllegalArgumentException if the prior was made with a comparator whose {@link
+     * RecordComparator#fingerprint} differs from that of <code>cmp</code>.
+     * @throws IOException if the input isn't a prior or can't be read.
+     */
+    public static MixtureModelPrior read(RecordComparator cmp, DataInput in)
+        throws IOException
+    {
+        ModelIO.readHeader(in, MAGIC, VERSION, "prior", cmp);
+        int[] classes = ModelIO.readClasses(in);
+
+        double[] classWeightParam = new double[classes[0]];
+        for (int j = 0; j < classWeightParam.length; j++)
+            classWeightParam[j] = in.readDouble();
+
+        double[][][] mWeightParam = ModelIO.readWeights(in, cmp, classes[0]);
+        return new MixtureModelPrior(cmp, mWeightParam, classWeightParam, classes[1]);
+    }
+
+    /**
+     * Reads a prior saved by {@link #save} for use with <code>cmp</code>.
+     */
+    public static MixtureModelPrior load(RecordComparator cmp, String filename)
+        throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(
+                 new BufferedInputStream(new FileInputStream(filename))))
+        {
+            return read(cmp, in);
+        }
+    }
+
+    /**
+     * Writes this prior in a binary format: a header with the comparator's fingerprint and
+     * levels, the number of classes and of match classes, the class weight parameter, and the
+     * multinomial weight parameter.
+     */
+    public void write(DataOutput out)
+        throws IOException
+    {
+        ModelIO.writeHeader(out, MAGIC, VERSION, _cmp);
+        out.writeInt(_nClasses);
+        out.writeInt(_nMatchClasses);
+
+        for (double x: _classWeightParam)
+            out.writeDouble(x);
+
+        ModelIO.writeWeights(out, _mWeightParam);
+    }
+
+    /**
+     * Writes this prior to the named file.
+     *
+     * @see #write
+     */
+    public void save(String filename)
+        throws IOException
+    {
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(filename))))
+        {
+            write(out);
+        }
+    }
+
+    private final static int MAGIC = 0x54505249; // "TPRI"
+    private final static int VERSION = 1;
+
+    private final RecordComparator _cmp;
     private final double[][][] _mWeightParam;
     private final double[]  _classWeightParam;
     private final int _nClasses, _nMatchClasses;
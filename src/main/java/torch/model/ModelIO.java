@@ -0,0 +1,122 @@
+package torch.model;
+
+import torch.RecordComparator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Reads and writes the parts shared by the binary formats of {@link MixtureModel} and {@link
+ * MixtureModelPrior}. Both start with a header giving the kind of file, its version, the
+ * fingerprint of the record comparator and the number of levels of each field, so that a file is
+ * only read back with a comparator that produces the same pattern indexes.
+ */
+class ModelIO {
+
+    static void writeHeader(DataOutput out, int magic, int version, RecordComparator cmp)
+        throws IOException
+    {
+        out.writeInt(magic);
+        out.writeInt(version);
+        out.writeLong(cmp.fingerprint());
+        out.writeInt(cmp.nComparators());
+
+        for (int k = 0; k < cmp.nComparators(); k++)
+            out.writeInt(cmp.nLevels(k));
+    }
+
+    /**
+     * Reads a header written by {@link #writeHeader} and returns its version.
+     *
+     * @throws IllegalArgumentException if the file was written with a comparator whose
+     * fingerprint differs from that of <code>cmp</code>.
+     * @throws IOException if the header isn't of the expected kind or version.
+     */
+    static int readHeader(DataInput in, int magic, int maxVersion, String kind,
+                          RecordComparator cmp)
+        throws IOException
+    {
+        if (in.readInt() != magic)
+            throw new IOException("Not a " + kind + " file");
+
+        int version = in.readInt();
+        if (version < 1 || version > maxVersion)
+            throw new IOException("Unsupported " + kind + " version: " + version);
+
+        if (in.readLong() != cmp.fingerprint())
+            throw new IllegalArgumentException(kind + " was made with a different comparator");
+
+        if (in.readInt() != cmp.nComparators())
+            throw new IOException("Number of fields doesn't match the comparator");
+
+        for (int k = 0; k < cmp.nComparators(); k++) {
+            if (in.readInt() != cmp.nLevels(k))
+                throw new IOException("Number of levels doesn't match the comparator");
+        }
+
+        return version;
+    }
+
+    /**
+     * Returns the length in bytes of the header for <code>cmp</code>.
+     */
+    static int headerBytes(RecordComparator cmp) {
+        return 20 + 4 * cmp.nComparators();
+    }
+
+    /**
+     * Writes weights indexed by class, field, and level, in that order.
+     */
+    static void writeWeights(DataOutput out, double[][][] weights)
+        throws IOException
+    {
+        for (double[][] w: weights)
+            for (double[] wk: w)
+                for (double x: wk)
+                    out.writeDouble(x);
+    }
+
+    static double[][][] readWeights(DataInput in, RecordComparator cmp, int nClasses)
+        throws IOException
+    {
+        double[][][] weights = new double[nClasses][cmp.nComparators()][];
+
+        for (int j = 0; j < nClasses; j++) {
+            for (int k = 0; k < cmp.nComparators(); k++) {
+                weights[j][k] = new double[cmp.nLevels(k)];
+                for (int x = 0; x < weights[j][k].length; x++)
+                    weights[j][k][x] = in.readDouble();
+            }
+        }
+
+        return weights;
+    }
+
+    /**
+     * Returns the length in bytes of weights for <code>nClasses</code> classes.
+     */
+    static long weightBytes(RecordComparator cmp, int nClasses) {
+        long n = 0;
+        for (int k = 0; k < cmp.nComparators(); k++)
+            n += cmp.nLevels(k);
+
+        return 8 * n * nClasses;
+    }
+
+    /**
+     * Reads the number of classes and of match classes, and checks that they are sensible.
+     */
+    static int[] readClasses(DataInput in)
+        throws IOException
+    {
+        int nClasses = in.readInt();
+        int nMatchClasses = in.readInt();
+        if (nClasses < 2 || nMatchClasses < 0 || nMatchClasses >= nClasses)
+            throw new IOException("Invalid number of classes");
+
+        return new int[] {nClasses, nMatchClasses};
+    }
+
+    private ModelIO() {}
+}
@@ -0,0 +1,401 @@
+package torch.model;
+
+import torch.RecordComparator;
+import torch.counter.Counter;
+import torch.util.Util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs several independent Gibbs sampling chains for the posterior of a mixture model, as {@link
+ * UnsupervisedBayes} does with one chain, and checks whether they have converged. Chains run
+ * concurrently, each with its own random number generator seeded from a stream split off the
+ * builder's seed. After burn-in, draws are kept in batches of <code>checkInterval</code>
+ * iterations, and after each batch the split R-hat and effective sample size of every class
+ * weight and m weight are computed over all the draws so far. With early stopping, sampling stops
+ * once every R-hat is below <code>maxRHat</code> and every effective sample size is at least
+ * <code>minEss</code>; otherwise it runs <code>nIter</code> iterations. The posterior means are
+ * pooled over the kept draws of all chains.
+ */
+public class MultiChainBayes {
+
+    public final static int DEFAULT_CHAINS = 4;
+    public final static int DEFAULT_CHECK_INTERVAL = 100;
+    public final static double DEFAULT_MAX_RHAT = 1.01;
+    public final static double DEFAULT_MIN_ESS = 400;
+
+    /**
+     * The phases that batches are timed in, for {@link IFitListener#started}.
+     */
+    public final static String[] PHASES = {"sampling", "diagnostics"};
+
+    public static class Builder {
+
+        public Builder() {
+            _nChains = DEFAULT_CHAINS;
+            _seed = System.nanoTime();
+            _burnIn = UnsupervisedBayes.BURN_IN;
+            _nIter = UnsupervisedBayes.N_ITER;
+            _checkInterval = DEFAULT_CHECK_INTERVAL;
+            _maxRHat = DEFAULT_MAX_RHAT;
+            _minEss = DEFAULT_MIN_ESS;
+            _earlyStop = false;
+            _nThreads = Runtime.getRuntime().availableProcessors();
+            _listener = FitListeners.NONE;
+        }
+
+        public Builder nChains(int n) {
+            _nChains = n;
+            return this;
+        }
+
+        public Builder seed(long seed) {
+            _seed = seed;
+            return this;
+        }
+
+        public Builder burnIn(int n) {
+            _burnIn = n;
+            return this;
+        }
+
+        /**
+         * Sets the number of iterations per chain after burn-in, the most that are run with
+         * early stopping.
+         */
+        public Builder nIter(int n) {
+            _nIter = n;
+            return this;
+        }
+
+        /**
+         * Sets the number of iterations between convergence checks.
+         */
+        public Builder checkInterval(int n) {
+            _checkInterval = n;
+            return this;
+        }
+
+        public Builder maxRHat(double rHat) {
+            _maxRHat = rHat;
+            return this;
+        }
+
+        public Builder minEss(double ess) {
+            _minEss = ess;
+            return this;
+        }
+
+        /**
+         * Sets whether to stop as soon as the diagnostics pass.
+         */
+        public Builder earlyStop(boolean earlyStop) {
+            _earlyStop = earlyStop;
+            return this;
+        }
+
+        public Builder nThreads(int n) {
+            _nThreads = n;
+            return this;
+        }
+
+        /**
+         * Sets the listener told about each batch of kept iterations, with the number of
+         * iterations per chain so far. There is no log-likelihood, so it reports NaN. By default
+         * there is none.
+         */
+        public Builder listener(IFitListener listener) {
+            _listener = listener;
+            return this;
+        }
+
+        /**
+         * Runs the chains.
+         *
+         * @throws IllegalArgumentException if there are fewer than two chains, fewer than four
+         * iterations between checks, or the other counts aren't positive.
+         */
+        public MultiChainBayes fit(MixtureModelPrior prior, Counter counter) {
+            if (_nChains < 2)
+                throw new IllegalArgumentException("need at least two chains");
+            if (_checkInterval < 4)
+                throw new IllegalArgumentException("'checkInterval' must be at least 4");
+            if (_burnIn < 0 || _nIter < _checkInterval || _nThreads < 1)
+                throw new IllegalArgumentException("invalid iteration or thread counts");
+            if (_listener == null)
+                throw new IllegalArgumentException("'listener' is required");
+
+            return new MultiChainBayes(this, prior, counter);
+        }
+
+        private int _nChains, _burnIn, _nIter, _checkInterval, _nThreads;
+        private long _seed;
+        private double _maxRHat, _minEss;
+        private boolean _earlyStop;
+        private IFitListener _listener;
+    }
+
+    /**
+     * Returns the model with the pooled posterior mean weights.
+     */
+    public MixtureModel model() {
+        return _model;
+    }
+
+    /**
+     * Returns the pooled posterior mean class weights.
+     */
+    public double[] classWeights() {
+        return _classWeights;
+    }
+
+    /**
+     * Returns the split R-hat of each class weight.
+     */
+    public double[] classWeightRHat() {
+        return _classWeightRHat;
+    }
+
+    /**
+     * Returns the split R-hat of each m weight, indexed like the weights.
+     */
+    public double[][][] mWeightRHat() {
+        return _mWeightRHat;
+    }
+
+    /**
+     * Returns the effective sample size of each class weight.
+     */
+    public double[] classWeightEss() {
+        return _classWeightEss;
+    }
+
+    /**
+     * Returns the effective sample size of each m weight, indexed like the weights.
+     */
+    public double[][][] mWeightEss() {
+        return _mWeightEss;
+    }
+
+    /**
+     * Returns the largest R-hat over all weights.
+     */
+    public double maxRHat() {
+        return _maxRHat;
+    }
+
+    /**
+     * Returns the smallest effective sample size over all weights.
+     */
+    public double minEss() {
+        return _minEss;
+    }
+
+    /**
+     * Returns true if the diagnostics passed at the last check.
+     */
+    public boolean converged() {
+        return _converged;
+    }
+
+    /**
+     * Returns the number of iterations per chain kept after burn-in.
+     */
+    public int nIterations() {
+        return _nIterations;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d chains x %d iterations: max R-hat %.4f, min ESS %.1f%s",
+                             _nChains, _nIterations, _maxRHat, _minEss,
+                             _converged ? "" : ", not converged");
+    }
+
+    private MultiChainBayes(Builder b, MixtureModelPrior prior, Counter counter) {
+        RecordComparator cmp = counter.recordComparator();
+        int nClasses = prior.nClasses();
+        _nChains = b._nChains;
+
+        int nParameters = nClasses;
+        for (int k = 0; k < cmp.nComparators(); k++)
+            nParameters += nClasses * cmp.nLevels(k);
+
+        final GibbsChain[] chains = new GibbsChain[_nChains];
+        for (int c = 0; c < _nChains; c++)
+            chains[c] = new GibbsChain(new Random(Util.splitSeed(b._seed, c)), prior, counter);
+
+        // draws[p][c][t] is parameter p in chain c at kept iteration t
+        double[][][] draws = new double[nParameters][_nChains][b._checkInterval];
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(b._nThreads, _nChains));
+        int nIter = 0;
+        boolean converged = false;
+        double[] rHat = new double[nParameters];
+        double[] ess = new double[nParameters];
+        long start = System.nanoTime();
+        long[] phaseNanos = new long[PHASES.length];
+
+        try {
+            b._listener.started(PHASES);
+            run(executor, chains, b._burnIn, null, 0);
+
+            while (nIter < b._nIter && !(b._earlyStop && converged)) {
+                int batch = Math.min(b._checkInterval, b._nIter - nIter);
+
+                if (nIter + batch > draws[0][0].length) {
+                    int capacity = Math.min(b._nIter, 2 * draws[0][0].length);
+                    for (int p = 0; p < nParameters; p++)
+                        for (int c = 0; c < _nChains; c++)
+                            draws[p][c] = Arrays.copyOf(draws[p][c], capacity);
+                }
+
+                long t0 = System.nanoTime();
+                run(executor, chains, batch, draws, nIter);
+                nIter += batch;
+                long t1 = System.nanoTime();
+
+                McmcDiagnostics.diagnose(draws, nIter, rHat, ess);
+
+                converged = true;
+                for (int p = 0; p < nParameters; p++) {
+                    if (!(rHat[p] < b._maxRHat && ess[p] >= b._minEss))
+                        converged = false;
+                }
+
+                long t2 = System.nanoTime();
+                phaseNanos[0] = t1 - t0;
+                phaseNanos[1] = t2 - t1;
+                b._listener.iteration(nIter, Double.NaN, Double.NaN, t2 - start, phaseNanos);
+            }
+
+            b._listener.finished(nIter, converged);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        _nIterations = nIter;
+        _converged = converged;
+        _classWeights = new double[nClasses];
+        _classWeightRHat = new double[nClasses];
+        _classWeightEss = new double[nClasses];
+        double[][][] mWeights = new double[nClasses][cmp.nComparators()][];
+        _mWeightRHat = new double[nClasses][cmp.nComparators()][];
+        _mWeightEss = new double[nClasses][cmp.nComparators()][];
+
+        double maxRHat = 0.0;
+        double minEss = Double.POSITIVE_INFINITY;
+        for (int p = 0; p < nParameters; p++) {
+            maxRHat = Math.max(maxRHat, rHat[p]);
+            minEss = Math.min(minEss, ess[p]);
+        }
+        _maxRHat = maxRHat;
+        _minEss = minEss;
+
+        int p = 0;
+        for (int j = 0; j < nClasses; j++, p++) {
+            _classWeights[j] = mean(draws[p], nIter);
+            _classWeightRHat[j] = rHat[p];
+            _classWeightEss[j] = ess[p];
+        }
+
+        for (int j = 0; j < nClasses; j++) {
+            for (int k = 0; k < cmp.nComparators(); k++) {
+                mWeights[j][k] = new double[cmp.nLevels(k)];
+                _mWeightRHat[j][k] = new double[cmp.nLevels(k)];
+                _mWeightEss[j][k] = new double[cmp.nLevels(k)];
+
+                for (int x = 0; x < cmp.nLevels(k); x++, p++) {
+                    mWeights[j][k][x] = mean(draws[p], nIter);
+                    _mWeightRHat[j][k][x] = rHat[p];
+                    _mWeightEss[j][k][x] = ess[p];
+                }
+            }
+        }
+
+        _model = new MixtureModel(cmp, mWeights, prior.nMatchClasses());
+    }
+
+    /**
+     * Runs <code>nSteps</code> steps of every chain concurrently. Unless <code>draws</code> is
+     * null, the weights after each step are stored in it starting at iteration
+     * <code>offset</code>.
+     */
+    private static void run(ExecutorService executor, GibbsChain[] chains, final int nSteps,
+                            final double[][][] draws, final int offset)
+    {
+        List<Future<?>> results = new ArrayList<>(chains.length);
+
+        for (int c = 0; c < chains.length; c++) {
+            final int chain = c;
+            final GibbsChain gibbs = chains[c];
+
+            results.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int t = 0; t < nSteps; t++) {
+                        gibbs.step();
+
+                        if (draws != null)
+                            record(gibbs, draws, chain, offset + t);
+                    }
+
+                    return null;
+                }
+            }));
+        }
+
+        try {
+            for (Future<?> result: results)
+                result.get();
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof Error)
+                throw (Error)e.getCause();
+
+            throw (RuntimeException)e.getCause();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while sampling", e);
+        }
+    }
+
+    private static void record(GibbsChain gibbs, double[][][] draws, int chain, int t) {
+        double[] classWeights = gibbs.classWeights();
+        double[][][] mWeights = gibbs.mWeights();
+        int p = 0;
+
+        for (int j = 0; j < classWeights.length; j++)
+            draws[p++][chain][t] = classWeights[j];
+
+        for (double[][] m: mWeights)
+            for (double[] mk: m)
+                for (int x = 0; x < mk.length; x++)
+                    draws[p++][chain][t] = mk[x];
+    }
+
+    private static double mean(double[][] chains, int n) {
+        double sum = 0.0;
+        for (double[] chain: chains)
+            for (int t = 0; t < n; t++)
+                sum += chain[t];
+
+        return sum / (chains.length * n);
+    }
+
+    private final int _nChains, _nIterations;
+    private final boolean _converged;
+    private final double[] _classWeights, _classWeightRHat, _classWeightEss;
+    private final double[][][] _mWeightRHat, _mWeightEss;
+    private final double _maxRHat, _minEss;
+    private final MixtureModel _model;
+}
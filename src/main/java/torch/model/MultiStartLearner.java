@@ -0,0 +1,273 @@
+package torch.model;
+
+import torch.RecordComparator;
+import torch.counter.Counter;
+import torch.util.Util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Fits several unsupervised mixture models from independent random starting points and keeps the
+ * best, so that a fit is less likely to end in a poor local optimum. Starts run concurrently, each
+ * with its own random number generator seeded from a stream split off the builder's seed, so the
+ * results depend only on the seed and not on the number of threads.
+ *
+ * <p>Optionally several numbers of classes are tried. Among fits with the same number of classes
+ * the one with the highest log-likelihood is best; across numbers of classes, the one with the
+ * lowest BIC, which charges each fit for its number of free parameters.
+ */
+public class MultiStartLearner {
+
+    public final static int DEFAULT_STARTS = 8;
+
+    public static class Builder {
+
+        public Builder() {
+            _nStarts = DEFAULT_STARTS;
+            _seed = System.nanoTime();
+            _nClasses = new int[] {2};
+            _options = new EMOptions.Builder().listener(FitListeners.NONE).build();
+            _nThreads = Runtime.getRuntime().availableProcessors();
+        }
+
+        /**
+         * Sets the number of starts for each number of classes.
+         */
+        public Builder nStarts(int n) {
+            _nStarts = n;
+            return this;
+        }
+
+        public Builder seed(long seed) {
+            _seed = seed;
+            return this;
+        }
+
+        /**
+         * Sets the numbers of classes to try. The default is 2.
+         */
+        public Builder nClasses(int... nClasses) {
+            _nClasses = nClasses;
+            return this;
+        }
+
+        /**
+         * Sets the options for each fit. Their number of threads is ignored in favor of
+         * {@link #nThreads}, which is divided among the concurrent starts. Their listener is
+         * shared by all the fits. By default there is none.
+         */
+        public Builder options(EMOptions options) {
+            _options = options;
+            return this;
+        }
+
+        public Builder nThreads(int n) {
+            _nThreads = n;
+            return this;
+        }
+
+        /**
+         * Fits the models.
+         *
+         * @throws IllegalArgumentException if the number of starts or threads isn't positive, or
+         * no numbers of classes were given.
+         */
+        public MultiStartLearner fit(Counter counter) {
+            if (_nStarts < 1 || _nThreads < 1)
+                throw new IllegalArgumentException("'nStarts' and 'nThreads' must be positive");
+            if (_nClasses == null || _nClasses.length == 0)
+                throw new IllegalArgumentException("'nClasses' is required");
+
+            return new MultiStartLearner(this, counter);
+        }
+
+        private int _nStarts, _nThreads;
+        private long _seed;
+        private int[] _nClasses;
+        private EMOptions _options;
+    }
+
+    /**
+     * The outcome of one start.
+     */
+    public static class Start {
+
+        public int nClasses() {
+            return _nClasses;
+        }
+
+        /**
+         * Returns the seed of this start's random number generator.
+         */
+        public long seed() {
+            return _seed;
+        }
+
+        public double logLikelihood() {
+            return _learner.fitStatistics().logLikelihood();
+        }
+
+        /**
+         * Returns the Bayesian information criterion, <code>-2 ll + p log(n)</code> for a fit with
+         * <code>p</code> free parameters to <code>n</code> pairs. Lower is better.
+         */
+        public double bic() {
+            return _bic;
+        }
+
+        public FitStatistics fitStatistics() {
+            return _learner.fitStatistics();
+        }
+
+        public UnsupervisedLearner learner() {
+            return _learner;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d classes, seed %d: log-likelihood %.7f, BIC %.3f, %d iterations",
+                                 _nClasses, _seed, logLikelihood(), _bic,
+                                 fitStatistics().nIterations());
+        }
+
+        private Start(int nClasses, long seed, UnsupervisedLearner learner, double bic) {
+            _nClasses = nClasses;
+            _seed = seed;
+            _learner = learner;
+            _bic = bic;
+        }
+
+        private final int _nClasses;
+        private final long _seed;
+        private final UnsupervisedLearner _learner;
+        private final double _bic;
+    }
+
+    /**
+     * Returns the best start.
+     */
+    public Start best() {
+        return _best;
+    }
+
+    /**
+     * Returns the best fit for each number of classes tried, in the order they were given.
+     */
+    public List<Start> bestByClasses() {
+        return _bestByClasses;
+    }
+
+    /**
+     * Returns every start, grouped by number of classes in the order they were given.
+     */
+    public List<Start> starts() {
+        return _starts;
+    }
+
+    /**
+     * Returns a table summarizing every start.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%8s%22s%16s%16s%10s%n",
+                                     "classes", "seed", "likelihood", "BIC", "iters"));
+
+        for (Start s: _starts) {
+            builder.append(String.format("%8d%22d%16.5f%16.3f%10d%s%n",
+                                         s.nClasses(), s.seed(), s.logLikelihood(), s.bic(),
+                                         s.fitStatistics().nIterations(),
+                                         (s == _best) ? " *" : ""));
+        }
+
+        return builder.toString();
+    }
+
+    private MultiStartLearner(Builder b, final Counter counter) {
+        int nFits = b._nStarts * b._nClasses.length;
+        int nWorkers = Math.min(b._nThreads, nFits);
+        final EMOptions options = new EMOptions.Builder(b._options)
+            .nThreads(Math.max(1, b._nThreads / nWorkers))
+            .build();
+
+        ExecutorService executor = Executors.newFixedThreadPool(nWorkers);
+        List<Future<UnsupervisedLearner>> results = new ArrayList<>(nFits);
+        long[] seeds = new long[nFits];
+        int[] nClasses = new int[nFits];
+
+        try {
+            for (int c = 0; c < b._nClasses.length; c++) {
+                for (int s = 0; s < b._nStarts; s++) {
+                    final int n = b._nClasses[c];
+                    final long seed = Util.splitSeed(b._seed, results.size());
+
+                    seeds[results.size()] = seed;
+                    nClasses[results.size()] = n;
+                    results.add(executor.submit(new Callable<UnsupervisedLearner>() {
+                        @Override
+                        public UnsupervisedLearner call() {
+                            return new UnsupervisedLearner(new Random(seed), counter, n, options);
+                        }
+                    }));
+                }
+            }
+
+            List<Start> starts = new ArrayList<>(nFits);
+            List<Start> bestByClasses = new ArrayList<>(b._nClasses.length);
+            Start best = null;
+
+            for (int i = 0; i < nFits; i++) {
+                Start start = new Start(nClasses[i], seeds[i], results.get(i).get(),
+                                        bic(counter, nClasses[i], results.get(i).get()));
+                starts.add(start);
+
+                if (i % b._nStarts == 0)
+                    bestByClasses.add(start);
+                else if (start.logLikelihood() > bestByClasses.get(i / b._nStarts).logLikelihood())
+                    bestByClasses.set(i / b._nStarts, start);
+            }
+
+            for (Start start: bestByClasses)
+                if (best == null || start.bic() < best.bic())
+                    best = start;
+
+            _starts = Collections.unmodifiableList(starts);
+            _bestByClasses = Collections.unmodifiableList(bestByClasses);
+            _best = best;
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof Error)
+                throw (Error)e.getCause();
+
+            throw (RuntimeException)e.getCause();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while fitting", e);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static double bic(Counter counter, int nClasses, UnsupervisedLearner learner) {
+        RecordComparator cmp = counter.recordComparator();
+        int nParameters = nClasses - 1;
+        for (int k = 0; k < cmp.nComparators(); k++)
+            nParameters += nClasses * (cmp.nLevels(k) - 1);
+
+        double ll = learner.fitStatistics().logLikelihood();
+        return -2 * ll + nParameters * Math.log(counter.totalWeight());
+    }
+
+    private final List<Start> _starts, _bestByClasses;
+    private final Start _best;
+}
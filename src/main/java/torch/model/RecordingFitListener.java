@@ -0,0 +1,96 @@
+package torch.model;
+
+import java.util.Arrays;
+
+/**
+ * A listener that keeps every iteration's progress in memory, for benchmarking fits or plotting
+ * their convergence. Thread-safe, but progress from concurrent fits is interleaved.
+ */
+public class RecordingFitListener implements IFitListener {
+
+    public RecordingFitListener() {
+        _phases = new String[0];
+        _logLikelihoods = new double[16];
+        _elapsedNanos = new long[16];
+        _phaseTotals = new long[0];
+    }
+
+    @Override
+    public synchronized void started(String[] phases) {
+        _phases = Arrays.copyOf(phases, phases.length);
+        _phaseTotals = new long[phases.length];
+        _nIterations = 0;
+        _finished = false;
+        _converged = false;
+    }
+
+    @Override
+    public synchronized void iteration(int iteration, double logLikelihood, double delta,
+                                       long elapsedNanos, long[] phaseNanos)
+    {
+        if (_nIterations == _logLikelihoods.length) {
+            _logLikelihoods = Arrays.copyOf(_logLikelihoods, 2 * _nIterations);
+            _elapsedNanos = Arrays.copyOf(_elapsedNanos, 2 * _nIterations);
+        }
+
+        _logLikelihoods[_nIterations] = logLikelihood;
+        _elapsedNanos[_nIterations] = elapsedNanos;
+        _nIterations++;
+
+        for (int i = 0; i < _phaseTotals.length && i < phaseNanos.length; i++)
+            _phaseTotals[i] += phaseNanos[i];
+    }
+
+    @Override
+    public synchronized void finished(int nIterations, boolean converged) {
+        _finished = true;
+        _converged = converged;
+    }
+
+    public synchronized int nIterations() {
+        return _nIterations;
+    }
+
+    /**
+     * Returns the log-likelihood reported for each iteration.
+     */
+    public synchronized double[] logLikelihoods() {
+        return Arrays.copyOf(_logLikelihoods, _nIterations);
+    }
+
+    /**
+     * Returns the time since the start of the fit at the end of each iteration, in nanoseconds.
+     */
+    public synchronized long[] elapsedNanos() {
+        return Arrays.copyOf(_elapsedNanos, _nIterations);
+    }
+
+    /**
+     * Returns the names of the phases.
+     */
+    public synchronized String[] phases() {
+        return Arrays.copyOf(_phases, _phases.length);
+    }
+
+    /**
+     * Returns the total time spent in each phase, in nanoseconds.
+     */
+    public synchronized long[] phaseNanos() {
+        return Arrays.copyOf(_phaseTotals, _phaseTotals.length);
+    }
+
+    public synchronized boolean finished() {
+        return _finished;
+    }
+
+    public synchronized boolean converged() {
+        return _converged;
+    }
+
+    private String[] _phases;
+    private double[] _logLikelihoods;
+    private long[] _elapsedNanos;
+    private long[] _phaseTotals;
+    private int _nIterations;
+    private boolean _finished, _converged;
+}
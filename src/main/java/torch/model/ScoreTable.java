@@ -0,0 +1,212 @@
+package torch.model;
+
+import torch.RecordComparator;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * The match score of every comparison pattern under a {@link MixtureModel}. When the comparator
+ * has at most <code>MAX_DENSE_PATTERNS</code> patterns the scores are kept in a dense array
+ * indexed by pattern index, and a lookup is a single array load. Larger pattern spaces fall back
+ * to a factored table: under the conditional independence assumption the score is a sum of one
+ * term per field, so only <code>nLevels(k)</code> values are stored for the <code>k</code>th
+ * field and a lookup decodes the pattern index one field at a time. A dense table read back from a
+ * saved model may instead live in a memory-mapped file.
+ *
+ * <p>{@link MixtureModel#load} maps tables of <code>MIN_MAPPED_PATTERNS</code> (2^18) up to
+ * <code>MAX_DENSE_PATTERNS</code> (2^22) patterns. A mapped lookup goes through a
+ * <code>DoubleBuffer</code> rather than an array load. Saved tables are in the byte order of the
+ * machine that saved them, so this is a plain load there; a table from a machine with the other
+ * byte order is still read correctly, but every lookup swaps bytes.
+ */
+public class ScoreTable {
+
+    /**
+     * The largest pattern space that is stored as a dense table (32MB of scores).
+     */
+    public final static int MAX_DENSE_PATTERNS = 1 << 22;
+
+    /**
+     * Constructs a score table for the given log-weights, using a dense table when the pattern
+     * space is small enough.
+     *
+     * @param logMWeights the log multinomial weights, indexed by class, field, and level.
+     * @param nMatchClasses the number of match classes; these are the first classes in
+     * <code>logMWeights</code>.
+     */
+    public ScoreTable(RecordComparator cmp, double[][][] logMWeights, int nMatchClasses) {
+        this(cmp, logMWeights, nMatchClasses, MAX_DENSE_PATTERNS);
+    }
+
+    ScoreTable(RecordComparator cmp, double[][][] logMWeights, int nMatchClasses,
+               int maxDensePatterns)
+    {
+        int nComparators = cmp.nComparators();
+
+        _levels = new int[nComparators];
+        _steps = new int[nComparators];
+        _fieldScores = new double[nComparators][];
+        _mapped = null;
+        fieldScores(cmp, logMWeights, nMatchClasses);
+
+        if (cmp.nPatterns() > maxDensePatterns) {
+            _dense = null;
+            return;
+        }
+
+        // Sum in the same order as the per-pair computation this table replaces, so that the
+        // stored scores are bit-for-bit what that computation returned.
+        _dense = new double[cmp.nPatterns()];
+        int[] pattern = new int[nComparators];
+
+        for (int i = 0; i < _dense.length; i++) {
+            for (int k = 0; k < nComparators; k++)
+                pattern[k] = (i / _steps[k]) % _levels[k];
+
+            double score = 0.0;
+
+            for (int j = 0; j < nMatchClasses; j++) {
+                for (int k = 0; k < nComparators; k++)
+                    score += logMWeights[j][k][pattern[k]];
+            }
+
+            for (int j = nMatchClasses; j < logMWeights.length; j++) {
+                for (int k = 0; k < nComparators; k++)
+                    score -= logMWeights[j][k][pattern[k]];
+            }
+
+            _dense[i] = score;
+        }
+    }
+
+    /**
+     * Constructs a score table from pattern scores stored by {@link MixtureModel#write}, rather
+     * than recomputing them. The scores are used in place: a heap buffer's array becomes the
+     * dense table, and any other buffer, such as a mapped file, is read on each lookup.
+     */
+    ScoreTable(RecordComparator cmp, double[][][] logMWeights, int nMatchClasses,
+               DoubleBuffer scores)
+    {
+        int nComparators = cmp.nComparators();
+
+        _levels = new int[nComparators];
+        _steps = new int[nComparators];
+        _fieldScores = new double[nComparators][];
+        fieldScores(cmp, logMWeights, nMatchClasses);
+
+        if (scores.capacity() != cmp.nPatterns())
+            throw new IllegalArgumentException("Number of scores doesn't match the comparator");
+
+        if (scores.hasArray() && scores.arrayOffset() == 0
+            && scores.array().length == scores.capacity())
+        {
+            _dense = scores.array();
+            _mapped = null;
+        } else {
+            _dense = null;
+            _mapped = scores;
+        }
+    }
+
+    private void fieldScores(RecordComparator cmp, double[][][] logMWeights, int nMatchClasses) {
+        int step = 1;
+        for (int k = 0; k < _levels.length; k++) {
+            _levels[k] = cmp.nLevels(k);
+            _steps[k] = step;
+            step *= _levels[k];
+
+            _fieldScores[k] = new double[_levels[k]];
+            for (int x = 0; x < _levels[k]; x++) {
+                double score = 0.0;
+                for (int j = 0; j < logMWeights.length; j++) {
+                    if (j < nMatchClasses)
+                        score += logMWeights[j][k][x];
+                    else
+                        score -= logMWeights[j][k][x];
+                }
+
+                _fieldScores[k][x] = score;
+            }
+        }
+    }
+
+    /**
+     * Returns the match score of the pattern with the given index.
+     *
+     * @see RecordComparator#compareIndex
+     */
+    public double score(int patternIndex) {
+        if (_dense != null)
+            return _dense[patternIndex];
+        if (_mapped != null)
+            return _mapped.get(patternIndex);
+
+        double score = 0.0;
+        for (int k = 0; k < _levels.length; k++)
+            score += _fieldScores[k][(patternIndex / _steps[k]) % _levels[k]];
+
+        return score;
+    }
+
+    /**
+     * Returns the contribution of level <code>x</code> of the <code>k</code>th field to the
+     * match score. The score of a pattern is (up to rounding) the sum of the contributions of
+     * its levels.
+     */
+    public double fieldScore(int k, int x) {
+        return _fieldScores[k][x];
+    }
+
+    /**
+     * Returns the highest score of any pattern. For a dense table this is the largest stored
+     * score, found on the first call. Otherwise it is the sum of the highest contribution of each
+     * field, added in the same order as {@link #score} adds them, so it is exactly the score of
+     * the best pattern.
+     */
+    public double maxScore() {
+        double max = _maxScore;
+        if (!Double.isNaN(max))
+            return max;
+
+        max = Double.NEGATIVE_INFINITY;
+        if (_dense != null) {
+            for (double score: _dense)
+                max = Math.max(max, score);
+        } else if (_mapped != null) {
+            for (int i = 0; i < _mapped.capacity(); i++)
+                max = Math.max(max, _mapped.get(i));
+        } else {
+            max = 0.0;
+            for (int k = 0; k < _levels.length; k++) {
+                double fieldMax = Double.NEGATIVE_INFINITY;
+                for (double score: _fieldScores[k])
+                    fieldMax = Math.max(fieldMax, score);
+
+                max += fieldMax;
+            }
+        }
+
+        _maxScore = max;
+        return max;
+    }
+
+    /**
+     * Indicates whether every pattern score is stored in a dense array.
+     */
+    public boolean isDense() {
+        return _dense != null || _mapped != null;
+    }
+
+    /**
+     * Indicates whether the pattern scores are read from a memory-mapped file.
+     */
+    public boolean isMapped() {
+        return _mapped != null;
+    }
+
+    private final int[] _levels, _steps;
+    private final double[][] _fieldScores;
+    private final double[] _dense;
+    private final DoubleBuffer _mapped;
+    private volatile double _maxScore = Double.NaN;
+}
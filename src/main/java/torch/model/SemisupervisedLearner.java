@@ -16,7 +16,7 @@ public class SemisupervisedLearner
 
     public SemisupervisedLearner(Random rng, Counter unlabeled,
                                  Counter[] labeled, int nMatchClasses,
-                                 double lambda)
+                                 double lambda, EMOptions options)
     {
         if (labeled.length < 2)
             throw new IllegalArgumentException("need at least two classes");
@@ -46,10 +46,17 @@ public class SemisupervisedLearner
 
         _classWeights = new double[_nClasses];
 
-        estimate(rng, labeled, unlabeled);
+        estimate(rng, labeled, unlabeled, options);
         _model = new MixtureModel(_cmp, _mWeights, _nMatchClasses);
     }
 
+    public SemisupervisedLearner(Random rng, Counter unlabeled,
+                                 Counter[] labeled, int nMatchClasses,
+                                 double lambda)
+    {
+        this(rng, unlabeled, labeled, nMatchClasses, lambda, new EMOptions.Builder().build());
+    }
+
     public SemisupervisedLearner(Counter unlabeled, 
                                  Counter[] labeled, int nMatchClasses, double lambda) 
     {
@@ -64,6 +71,13 @@ public class SemisupervisedLearner
         return _model;
     }
 
+    /**
+     * Returns a record of how the fit converged.
+     */
+    public FitStatistics fitStatistics() {
+        return _fitStatistics;
+    }
+
     /**
      * Initialize the weight arrays.
      */
@@ -80,14 +94,14 @@ public class SemisupervisedLearner
     /**
      * Approximate the ML estimate for the given counts.
      */
-    private void estimate(Random rng, Counter[] labeled, Counter unlabeled) {
-        int[] ucounts = unlabeled.nonzeroCounts();
+    private void estimate(Random rng, Counter[] labeled, Counter unlabeled, EMOptions options) {
+        double[] ucounts = unlabeled.nonzeroWeights();
         int[][] upats = unlabeled.nonzeroPatterns();
 
-        int[][] lcounts = new int[_nClasses][];
-        int[][][] lpats = new int[_nClasses][][];
-        double[][][] lmWeights = new double[_nClasses][_cmp.nComparators()][];
-        double[][][] umWeights = new double[_nClasses][_cmp.nComparators()][];
+        final double[][] lcounts = new double[_nClasses][];
+        final int[][][] lpats = new int[_nClasses][][];
+        final double[][][] lmWeights = new double[_nClasses][_cmp.nComparators()][];
+        final double[][][] umWeights = new double[_nClasses][_cmp.nComparators()][];
 
         for (int j = 0; j < _nClasses; j++) {
             for (int k = 0; k < _cmp.nComparators(); k++) {
@@ -97,41 +111,38 @@ public class SemisupervisedLearner
         }
 
         for (int j = 0; j < _nClasses; j++) {
-            lcounts[j] = labeled[j].nonzeroCounts();
+            lcounts[j] = labeled[j].nonzeroWeights();
             lpats[j] = labeled[j].nonzeroPatterns();
         }
 
         initWeights(rng);
 
-        double[][] expectedClass = new double[upats.length][_nClasses];
-        for (int i = 0; i < upats.length; i++)
-            UnsupervisedLearner.partitionOne(rng, expectedClass[i]);
-
-        double oldll = logLikelihood(lcounts, lpats, ucounts, upats, expectedClass);
-        double newll, delta;
+        final double[][] expectedClass = new double[upats.length][_nClasses];
+        final EMEngine engine =
+            new EMEngine(_cmp, upats, ucounts, _classWeights, _mWeights, options.nThreads());
 
-        System.out.format("%10s%16s%16s%n", "iteration", "likelihood", "delta");
-
-        for (int iter = 1; iter <= MAX_ITER; iter++) {
-            estep(upats, expectedClass);
-            mstep(lcounts, lpats, ucounts, upats, expectedClass, lmWeights, umWeights);
-
-            newll = logLikelihood(lcounts, lpats, ucounts, upats, expectedClass);
-            delta = newll - oldll;
-
-            if (iter < 101 && iter % 10 == 0 ||
-                iter < 1001 && iter % 100 == 0 ||
-                iter % 1000 == 0) 
-            {
-                System.out.format("%10d%16.7f%16.7f%n", iter, newll, delta);
-            }
+        try {
+            EMDriver driver = new EMDriver(_classWeights, _mWeights, options);
+            _fitStatistics = driver.run(new EMDriver.Update() {
+                @Override
+                void estep() {
+                    engine.estep(expectedClass);
+                }
 
-            if (delta >= 0 && delta < TOLERANCE) {
-                System.out.format("%10d%16.7f%16.7f%n", iter, newll, delta);
-                break;
-            }
+                @Override
+                void mstep() {
+                    SemisupervisedLearner.this.mstep(engine, lcounts, lpats, expectedClass,
+                                                     lmWeights, umWeights);
+                }
 
-            oldll = newll;
+                @Override
+                double logLikelihood() {
+                    return SemisupervisedLearner.this.logLikelihood(engine, lcounts, lpats);
+                }
+            });
+        }
+        finally {
+            engine.close();
         }
 
         for (int j = 0; j < _mWeights.length; j++)
@@ -140,11 +151,12 @@ public class SemisupervisedLearner
                     _logMWeights[j][k][x] = Math.log(_mWeights[j][k][x]);
     }
 
-    private double logLikelihood(int[][] lcounts, int[][][] lpats,
-                                 int[] ucounts, int[][] upats, double[][] expectedClass) 
-    {
+    private double logLikelihood(EMEngine engine, double[][] lcounts, int[][][] lpats) {
+        // log-likelihood of the unlabeled portion; this also takes the logs of the weights
+        double ull = engine.logLikelihood();
         double lll = 0.0; // log-likelihood of the labeled portion
-        double ull = 0.0; // log-likelihood of the unlabeled portion
+        double[] logClassWeights = engine.logClassWeights();
+        double[][][] logMWeights = engine.logMWeights();
         int patternLength = _cmp.nComparators();
 
         for (int j = 0; j < _nClasses; j++) {
@@ -152,72 +164,32 @@ public class SemisupervisedLearner
                 double patll = 0.0;
 
                 for (int k = 0; k < patternLength; k++)
-                    patll += Math.log(_mWeights[j][k][lpats[j][i][k]]);
+                    patll += logMWeights[j][k][lpats[j][i][k]];
 
-                patll += Math.log(_classWeights[j]);
+                patll += logClassWeights[j];
                 lll += patll * lcounts[j][i];
             }
         }
 
-        for (int i = 0; i < upats.length; i++) {
-            double patll = 0.0;
-
-            for (int j = 0; j < _nClasses; j++) {
-                if (expectedClass[i][j] == 0)
-                    continue;
-
-                for (int k = 0; k < patternLength; k++) {
-                    patll += Math.log(_mWeights[j][k][upats[i][k]]);
-                }
-
-                patll += Math.log(_classWeights[j]);
-                patll *= expectedClass[i][j];
-            }
-
-            ull += patll * ucounts[i];
-        }
-
         return _lambda * lll + (1 - _lambda) * ull;
     }
 
-    private void estep(int[][] upats, double[][] expectedClass) {
-        int patternLength = _cmp.nComparators();
-
-        for (int i = 0; i < upats.length; i++) {
-            double patternTotal = 0.0;
-
-            for (int j = 0; j < _nClasses; j++) {
-                expectedClass[i][j] = _classWeights[j];
-
-                for (int k = 0; k < patternLength; k++) {
-                    expectedClass[i][j] *= _mWeights[j][k][upats[i][k]];
-                }
-
-                patternTotal += expectedClass[i][j];
-            }
-
-            for (int j = 0; j < _nClasses; j++)
-                expectedClass[i][j] /= patternTotal;
-        }
-    }
-
-    private void mstep(int[][] lcounts, int[][][] lpats,
-                       int[] ucounts, int[][] upats, double[][] expectedClass,
-                       double[][][] lmWeights, double[][][] umWeights) 
+    private void mstep(EMEngine engine, double[][] lcounts, int[][][] lpats,
+                       double[][] expectedClass, double[][][] lmWeights, double[][][] umWeights) 
     {
         for (int j = 0; j < _nClasses; j++) {
             for (int k = 0; k < _cmp.nComparators(); k++) {
                 Arrays.fill(lmWeights[j][k], 0.0);
-                Arrays.fill(umWeights[j][k], 0.0);
             }
         }
 
         double[] lClassTotal = new double[_nClasses];
         double[] uClassTotal = new double[_nClasses];
-        double[] classTotal = new double[_nClasses];
         double lTotal = 0.0;
         double uTotal = 0.0;
 
+        engine.mstep(expectedClass, umWeights, uClassTotal);
+
         for (int j = 0; j < _nClasses; j++) {
             for (int i = 0; i < lpats[j].length; i++) {
                 lClassTotal[j] += lcounts[j][i];
@@ -228,15 +200,7 @@ public class SemisupervisedLearner
                 }
             }
 
-            for (int i = 0; i < upats.length; i++) {
-                double d = expectedClass[i][j] * ucounts[i];
-                uClassTotal[j] += d;
-                uTotal += d;
-
-                for (int k = 0; k < _cmp.nComparators(); k++) {
-                    umWeights[j][k][upats[i][k]] += d;
-                }
-            }
+            uTotal += uClassTotal[j];
 
             for (int k = 0; k < _cmp.nComparators(); k++) {
                 for (int x = 0; x < _mWeights[j][k].length; x++) {
@@ -260,4 +224,5 @@ public class SemisupervisedLearner
     private final double[][][] _mWeights, _logMWeights;
     private final double[] _classWeights;
     private final MixtureModel _model;
+    private FitStatistics _fitStatistics;
 }
@@ -0,0 +1,54 @@
+package torch.model;
+
+/**
+ * Standard stopping rules for EM fits.
+ */
+public class StoppingRules {
+
+    /**
+     * Stops when the log-likelihood changes by less than <code>tolerance</code>.
+     */
+    public static IStoppingRule absoluteLikelihood(final double tolerance) {
+        return new IStoppingRule() {
+            @Override
+            public boolean converged(int iteration, double oldLogLikelihood,
+                                     double newLogLikelihood, double parameterChange)
+            {
+                return Math.abs(newLogLikelihood - oldLogLikelihood) < tolerance;
+            }
+        };
+    }
+
+    /**
+     * Stops when the log-likelihood changes by less than <code>tolerance</code> times its
+     * magnitude. Unlike {@link #absoluteLikelihood}, this doesn't depend on the number of pairs.
+     */
+    public static IStoppingRule relativeLikelihood(final double tolerance) {
+        return new IStoppingRule() {
+            @Override
+            public boolean converged(int iteration, double oldLogLikelihood,
+                                     double newLogLikelihood, double parameterChange)
+            {
+                double delta = Math.abs(newLogLikelihood - oldLogLikelihood);
+                return delta < tolerance * Math.abs(oldLogLikelihood);
+            }
+        };
+    }
+
+    /**
+     * Stops when the weights change by less than <code>tolerance</code> relative to their
+     * length.
+     */
+    public static IStoppingRule relativeParameters(final double tolerance) {
+        return new IStoppingRule() {
+            @Override
+            public boolean converged(int iteration, double oldLogLikelihood,
+                                     double newLogLikelihood, double parameterChange)
+            {
+                return parameterChange < tolerance;
+            }
+        };
+    }
+
+    private StoppingRules() {}
+}
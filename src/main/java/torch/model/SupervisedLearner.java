@@ -52,7 +52,7 @@ public class SupervisedLearner
     private void estimate(Random rng, Counter[] counters) {
         for (int j = 0; j < _nClasses; j++) {
             double classTotal = 0.0;
-            int[] counts = counters[j].nonzeroCounts();
+            double[] counts = counters[j].nonzeroWeights();
             int[][] patterns = counters[j].nonzeroPatterns();
 
             for (int i = 0; i < patterns.length; i++) {
@@ -2,19 +2,24 @@ package torch.model;
 
 import torch.RecordComparator;
 import torch.counter.Counter;
-import torch.util.Util;
 
-import java.util.Arrays;
 import java.util.Random;
 
-import cc.mallet.types.Dirichlet;
-
 public class UnsupervisedBayes {
     public final static int BURN_IN = 500;
     public final static int N_ITER = 1000;
 
+    /**
+     * The phases that iterations are timed in, for {@link IFitListener#started}.
+     */
+    public final static String[] PHASES = {"weights", "classes", "means"};
+
+    /**
+     * Computes posterior mean parameters by Gibbs sampling, reporting each iteration, including
+     * burn-in, to <code>listener</code>. There is no log-likelihood, so it reports NaN.
+     */
     public UnsupervisedBayes(Random rng, MixtureModelPrior prior, Counter counter,
-                             int burnIn, int nIter) 
+                             int burnIn, int nIter, IFitListener listener)
     {
         _prior = prior;
         _cmp = counter.recordComparator();
@@ -24,30 +29,29 @@ public class UnsupervisedBayes {
         // TODO there should be a test to ensure that the prior is compatible 
         // with the record comparator
 
-        // Naming scheme:
-        // _mWeights will store the posterior mean weights
-        // _mWeightsStep will store a draw of weights during a single step
-        
         int nClasses = _prior.nClasses();
         int nComparators = _cmp.nComparators();
         _mWeights = new double[nClasses][nComparators][];
-        _mWeightsStep = new double[nClasses][nComparators][];
 
         for (int j = 0; j < nClasses; j++) {
             for (int k = 0; k < nComparators; k++) {
                 _mWeights[j][k] = new double[_cmp.nLevels(k)];
-                _mWeightsStep[j][k] = new double[_cmp.nLevels(k)];
             }
         }
 
         _classWeights = new double[nClasses];
-        _classWeightsStep = new double[nClasses];
 
-        mcmc(rng, counter);
+        mcmc(rng, counter, listener);
 
         _model = new MixtureModel(_cmp, _mWeights, _prior.nMatchClasses());
     }
 
+    public UnsupervisedBayes(Random rng, MixtureModelPrior prior, Counter counter,
+                             int burnIn, int nIter) 
+    {
+        this(rng, prior, counter, burnIn, nIter, FitListeners.NONE);
+    }
+
 
     public UnsupervisedBayes(Random rng, MixtureModelPrior prior, Counter counter) {
         this(rng, prior, counter, BURN_IN, N_ITER);
@@ -72,121 +76,45 @@ public class UnsupervisedBayes {
     /**
      * Compute posterior mean parameters.
      */
-    private void mcmc(Random rng, Counter counter) {
-        int[] counts = counter.nonzeroCounts();
-        int[][] patterns = counter.nonzeroPatterns();
-
-        int[][] classAssign = new int[patterns.length][_prior.nClasses()];
-        double[][] classWeightsCond = new double[patterns.length][_prior.nClasses()];
-
-        // draw initial match weights from the prior
-        drawWeights(rng, _prior.multinomialWeightParameter(), _prior.classWeightParameter());
-
-        // draw initial class assignments
-        drawClasses(rng, classAssign, classWeightsCond, counts, patterns);
-
-        for (int n = 0; n < _burnIn; n++) {
-            drawWeights(rng, counts, patterns, classAssign);
-            drawClasses(rng, classAssign, classWeightsCond, counts, patterns);
-        }
-
-        for (int n = 1; n <= _nIter; n++) {
-            drawWeights(rng, counts, patterns, classAssign);
-            drawClasses(rng, classAssign, classWeightsCond, counts, patterns);
-            updateMeans(n);
-        }
-    }
-
-    private void drawClasses(Random rng, int[][] classAssign, double[][] classWeightsCond,
-                             int[] counts, int[][] patterns)
-    {
-        int nClasses = _prior.nClasses();
-
-        for (int i = 0; i < patterns.length; i++) {
-            double classTotal = 0.0;
-
-            for (int j = 0; j < _prior.nClasses(); j++) {
-                classWeightsCond[i][j] = _classWeightsStep[j];
-
-                for (int k = 0; k < _cmp.nComparators(); k++) {
-                    classWeightsCond[i][j] *= _mWeightsStep[j][k][patterns[j][k]];
-                }
-                classTotal += classWeightsCond[i][j] ;
-            }
-
-            for (int j = 0; j < _prior.nClasses(); j++) {
-                classWeightsCond[i][j] /= classTotal;
-            }
-        }
-
-        for (int i = 0; i < patterns.length; i++) {
-            Arrays.fill(classAssign[i], 0);
-
-            for (int n = 0; n < counts[i]; n++) {
-                int draw = Util.sampleMultinomial(rng, classWeightsCond[i]);
-                classAssign[i][draw]++;
-            }
-        }
-    }
-
-    /**
-     * Draw match weights from a Dirichlet distribution with the given parameter.
-     */
-    private void drawWeights(Random rng, double[][][] mParam, double[] classParam) 
-    {
-
-        double[] newClassWeights = new Dirichlet(classParam).nextDistribution();
-        for (int j = 0; j < _prior.nClasses(); j++) {
-            _classWeightsStep[j] = newClassWeights[j];
-
-            for (int k = 0; k < _cmp.nComparators(); k++) {
-                double[] newWeights = new Dirichlet(mParam[j][k]).nextDistribution();
-                for (int x = 0; x < _cmp.nLevels(k); x++)
-                    _mWeightsStep[j][k][x] = newWeights[x];
-            }
-        }
-    }
-
-    /**
-     * Compute posterior parameters and draw new weights.
-     */
-    private void drawWeights(Random rng, int[] counts, int[][] patterns, int[][] classAssign) 
-    {
-        double[][][] mPrior = _prior.multinomialWeightParameter();
-        double[] classPrior = _prior.classWeightParameter();
-
-        double[] classParam = Arrays.copyOf(classPrior, classPrior.length);
-        double[][][] mParam = new double[classPrior.length][_cmp.nComparators()][];
-
-        for (int j = 0; j < _prior.nClasses(); j++) {
-            for (int k = 0; k < _cmp.nComparators(); k++) {
-                mParam[j][k] = Arrays.copyOf(mPrior[j][k], _cmp.nLevels(k));
-            }
-        }
-
-        for (int i = 0; i < patterns.length; i++) {
-            for (int j = 0; j < _prior.nClasses(); j++) {
-                classParam[j] += classAssign[i][j];
-
-                for (int k = 0; k < _cmp.nComparators(); k++) {
-                    mParam[j][k][patterns[i][k]] += classAssign[i][j];
-                }
-            }
+    private void mcmc(Random rng, Counter counter, IFitListener listener) {
+        long start = System.nanoTime();
+        long[] phaseNanos = new long[PHASES.length];
+        GibbsChain chain = new GibbsChain(rng, _prior, counter);
+
+        listener.started(PHASES);
+
+        for (int n = 1; n <= _burnIn + _nIter; n++) {
+            long t0 = System.nanoTime();
+            chain.drawWeights();
+            long t1 = System.nanoTime();
+            chain.drawClasses();
+            long t2 = System.nanoTime();
+
+            if (n > _burnIn)
+                updateMeans(n - _burnIn, chain);
+
+            long t3 = System.nanoTime();
+            phaseNanos[0] = t1 - t0;
+            phaseNanos[1] = t2 - t1;
+            phaseNanos[2] = t3 - t2;
+            listener.iteration(n, Double.NaN, Double.NaN, t3 - start, phaseNanos);
         }
 
-        drawWeights(rng, mParam, classParam);
+        listener.finished(_burnIn + _nIter, true);
     }
 
-    private void updateMeans(int nStep) {
+    private void updateMeans(int nStep, GibbsChain chain) {
         double a = (nStep - 1.0) / nStep;
         double b = 1.0 / nStep;
+        double[] classWeightsStep = chain.classWeights();
+        double[][][] mWeightsStep = chain.mWeights();
 
         for (int j = 0; j < _prior.nClasses(); j++) {
-            _classWeights[j] = a * _classWeights[j] + b * _classWeightsStep[j];
+            _classWeights[j] = a * _classWeights[j] + b * classWeightsStep[j];
 
             for (int k = 0; k < _cmp.nComparators(); k++) {
                 for (int x = 0; x < _cmp.nLevels(k); x++) {
-                    _mWeights[j][k][x] = a * _mWeights[j][k][x] + b * _mWeightsStep[j][k][x];
+                    _mWeights[j][k][x] = a * _mWeights[j][k][x] + b * mWeightsStep[j][k][x];
                 }
             }
         }
@@ -195,7 +123,7 @@ public class UnsupervisedBayes {
     private final int _burnIn, _nIter;
     private final MixtureModelPrior _prior;
     private final RecordComparator _cmp;
-    private final double[][][] _mWeights, _mWeightsStep;
-    private final double[] _classWeights, _classWeightsStep;
+    private final double[][][] _mWeights;
+    private final double[] _classWeights;
     private final MixtureModel _model;
 }
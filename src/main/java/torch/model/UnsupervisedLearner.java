@@ -17,7 +17,7 @@ public class UnsupervisedLearner
      * to the user to declare which of the classes correspond to matches for the purpose of
      * computing match weights.
      */
-    public UnsupervisedLearner(Random rng, Counter counter, int nClasses)
+    public UnsupervisedLearner(Random rng, Counter counter, int nClasses, EMOptions options)
     {
         if (nClasses < 2)
             throw new IllegalArgumentException("'nClasses' must be greater than 1");
@@ -35,11 +35,15 @@ public class UnsupervisedLearner
 
         _classWeights = new double[nClasses];
 
-        estimate(rng, counter);
+        estimate(rng, counter, options);
 
         _model = null;
     }
 
+    public UnsupervisedLearner(Random rng, Counter counter, int nClasses) {
+        this(rng, counter, nClasses, new EMOptions.Builder().build());
+    }
+
     public UnsupervisedLearner(Counter counter, int nClasses) {
         this(new Random(), counter, nClasses);
     }
@@ -73,6 +77,13 @@ public class UnsupervisedLearner
         return _classWeights;
     }
 
+    /**
+     * Returns a record of how the fit converged.
+     */
+    public FitStatistics fitStatistics() {
+        return _fitStatistics;
+    }
+
     public void setMatchClass(int j, boolean isMatchClass) {
         _matchClass[j] = isMatchClass;
     }
@@ -120,117 +131,49 @@ public class UnsupervisedLearner
         }
     }
 
-    private void estimate(Random rng, Counter counter) {
+    private void estimate(Random rng, Counter counter, EMOptions options) {
 
-        int[] counts = counter.nonzeroCounts();
+        double[] counts = counter.nonzeroWeights();
         int[][] patterns = counter.nonzeroPatterns();
 
         initWeights(rng);
 
-        double[][] expectedClass = new double[patterns.length][_nClasses];
-        for (int i = 0; i < patterns.length; i++)
-            partitionOne(rng, expectedClass[i]);
-
-        double oldll = logLikelihood(counts, patterns, expectedClass);
-        double newll, delta;
-
-        System.out.format("%10s%16s%16s%n", "iteration", "likelihood", "delta");
-
-        for (int iter = 1; iter <= MAX_ITER; iter++) {
-            estep(patterns, expectedClass);
-            mstep(counts, patterns, expectedClass);
-
-            newll = logLikelihood(counts, patterns, expectedClass);
-            delta = newll - oldll;
-
-            if (iter < 101 && iter % 10 == 0 ||
-                iter < 1001 && iter % 100 == 0 ||
-                iter % 1000 == 0) 
-            {
-                System.out.format("%10d%16.7f%16.7f%n", iter, newll, delta);
-            }
-
-            // TODO: should the first test be necessary?
-            if (delta >= 0 && delta < TOLERANCE) {
-                System.out.format("%10d%16.7f%16.7f%n", iter, newll, delta);
-                break;
-            }
-
-            oldll = newll;
-        }
-    }
-
-    private double logLikelihood(int[] counts, int[][] patterns, double[][] expectedClass) 
-    {
-        double ll = 0.0;
-        int patternLength = _cmp.nComparators();
-
-        for (int i = 0; i < patterns.length; i++) {
-            if (counts[i] == 0)
-                continue;
-
-            double patll = 0.0;
-
-            for (int j = 0; j < _nClasses; j++) {
-                if (expectedClass[i][j] == 0)
-                    continue;
+        final double[][] expectedClass = new double[patterns.length][_nClasses];
+        final EMEngine engine =
+            new EMEngine(_cmp, patterns, counts, _classWeights, _mWeights, options.nThreads());
 
-                for (int k = 0; k < patternLength; k++) {
-                    patll += Math.log(_mWeights[j][k][patterns[i][k]]);
+        try {
+            EMDriver driver = new EMDriver(_classWeights, _mWeights, options);
+            _fitStatistics = driver.run(new EMDriver.Update() {
+                @Override
+                void estep() {
+                    engine.estep(expectedClass);
                 }
 
-                patll += Math.log(_classWeights[j]);
-                patll *= expectedClass[i][j];
-            }
-
-            ll += patll * counts[i];
-        }
-
-        return ll;
-    }
-
-    private void estep(int[][] patterns, double[][] expectedClass) 
-    {
-        int patternLength = _cmp.nComparators();
-
-        for (int i = 0; i < patterns.length; i++) {
-            double patternTotal = 0.0;
-
-            for (int j = 0; j < _nClasses; j++) {
-                expectedClass[i][j] = _classWeights[j];
-
-                for (int k = 0; k < patternLength; k++) {
-                    expectedClass[i][j] *= _mWeights[j][k][patterns[i][k]];
+                @Override
+                void mstep() {
+                    UnsupervisedLearner.this.mstep(engine, expectedClass);
                 }
 
-                patternTotal += expectedClass[i][j];
-            }
-
-            for (int j = 0; j < _nClasses; j++)
-                expectedClass[i][j] /= patternTotal;
+                @Override
+                double logLikelihood() {
+                    return engine.logLikelihood();
+                }
+            });
+        }
+        finally {
+            engine.close();
         }
     }
 
-    private void mstep(int[] counts, int[][] patterns, double[][] expectedClass) 
+    private void mstep(EMEngine engine, double[][] expectedClass) 
     {
-        for (int i = 0; i < _nClasses; i++) {
-            for (int j = 0; j < _cmp.nComparators(); j++)
-                Arrays.fill(_mWeights[i][j], 0.0);
-        }
-
         double[] classTotal = new double[_nClasses];
+        engine.mstep(expectedClass, _mWeights, classTotal);
+
         double countTotal = 0.0;
         for (int j = 0; j < _nClasses; j++) {
-
-            for (int u = 0; u < patterns.length; u++) {
-                double d = expectedClass[u][j] * counts[u];
-                classTotal[j] += d;
-                countTotal += d;
-
-                for (int k = 0; k < _cmp.nComparators(); k++) {
-                    _mWeights[j][k][patterns[u][k]] += d;
-                }
-            }
+            countTotal += classTotal[j];
 
             for (int k = 0; k < _cmp.nComparators(); k++) {
                 for (int x = 0; x < _mWeights[j][k].length; x++)
@@ -247,5 +190,6 @@ public class UnsupervisedLearner
     private final RecordComparator _cmp;
     private final double[][][] _mWeights;
     private final double[] _classWeights;
+    private FitStatistics _fitStatistics;
     private MixtureModel _model;
 }
@@ -12,4 +12,186 @@ public class Util {
 
         return i;
     }
+
+    /**
+     * Draws the number of times each outcome occurs in <code>n</code> independent draws from the
+     * multinomial distribution <code>p</code>, and stores them in <code>counts</code>. This takes
+     * one binomial draw per outcome, conditional on the draws for the outcomes before it, so it
+     * costs the same for any <code>n</code> and allocates nothing.
+     */
+    public static void sampleMultinomial(Random rng, long n, double[] p, long[] counts) {
+        double rest = 1.0;
+
+        for (int j = 0; j < p.length - 1; j++) {
+            double q = (rest > 0) ? Math.min(1.0, p[j] / rest) : 1.0;
+            counts[j] = sampleBinomial(rng, n, q);
+            n -= counts[j];
+            rest -= p[j];
+        }
+
+        counts[p.length - 1] = n;
+    }
+
+    /**
+     * Draws from the binomial distribution with <code>n</code> trials and success probability
+     * <code>p</code>. Small means are drawn by inversion and large ones by the BTPE algorithm of
+     * Kachitvichyanukul and Schmeiser (1988), so the cost doesn't grow with <code>n</code>.
+     *
+     * @throws IllegalArgumentException if <code>p</code> is NaN or not between 0 and 1.
+     */
+    public static long sampleBinomial(Random rng, long n, double p) {
+        if (!(p >= 0.0 && p <= 1.0))
+            throw new IllegalArgumentException("'p' must be between 0 and 1: " + p);
+
+        if (n <= 0 || p == 0.0)
+            return 0;
+        if (p >= 1.0)
+            return n;
+
+        double r = Math.min(p, 1.0 - p);
+        long y = (n * r < 30.0) ? binomialInversion(rng, n, r) : binomialBtpe(rng, n, r);
+
+        return (p > 0.5) ? n - y : y;
+    }
+
+    private static long binomialInversion(Random rng, long n, double p) {
+        double q = 1.0 - p;
+        double qn = Math.exp(n * Math.log(q));
+        double np = n * p;
+        double bound = Math.min(n, np + 10.0 * Math.sqrt(np * q + 1));
+
+        long x = 0;
+        double px = qn;
+        double u = rng.nextDouble();
+
+        while (u > px) {
+            x++;
+            if (x > bound) {
+                x = 0;
+                px = qn;
+                u = rng.nextDouble();
+            } else {
+                u -= px;
+                px = ((n - x + 1) * p * px) / (x * q);
+            }
+        }
+
+        return x;
+    }
+
+    private static long binomialBtpe(Random rng, long n, double r) {
+        double q = 1.0 - r;
+        double fm = n * r + r;
+        long m = (long)Math.floor(fm);
+        double nrq = n * r * q;
+        double p1 = Math.floor(2.195 * Math.sqrt(nrq) - 4.6 * q) + 0.5;
+        double xm = m + 0.5;
+        double xl = xm - p1;
+        double xr = xm + p1;
+        double c = 0.134 + 20.5 / (15.3 + m);
+        double a = (fm - xl) / (fm - xl * r);
+        double laml = a * (1.0 + a / 2.0);
+        a = (xr - fm) / (xr * q);
+        double lamr = a * (1.0 + a / 2.0);
+        double p2 = p1 * (1.0 + 2.0 * c);
+        double p3 = p2 + c / laml;
+        double p4 = p3 + c / lamr;
+
+        while (true) {
+            double u = rng.nextDouble() * p4;
+            double v = rng.nextDouble();
+            long y;
+
+            // triangular region: accept immediately
+            if (u <= p1)
+                return (long)Math.floor(xm - p1 * v + u);
+
+            if (u <= p2) {
+                // parallelograms
+                double x = xl + (u - p1) / c;
+                v = v * c + 1.0 - Math.abs(m - x + 0.5) / p1;
+                if (v > 1.0)
+                    continue;
+
+                y = (long)Math.floor(x);
+            } else if (u <= p3) {
+                // left exponential tail
+                y = (long)Math.floor(xl + Math.log(v) / laml);
+                if (y < 0 || v == 0.0)
+                    continue;
+
+                v = v * (u - p2) * laml;
+            } else {
+                // right exponential tail
+                y = (long)Math.floor(xr - Math.log(v) / lamr);
+                if (y > n || v == 0.0)
+                    continue;
+
+                v = v * (u - p3) * lamr;
+            }
+
+            long k = Math.abs(y - m);
+
+            if (k <= 20 || k >= nrq / 2.0 - 1) {
+                // evaluate the ratio of probabilities explicitly
+                double s = r / q;
+                double aa = s * (n + 1);
+                double f = 1.0;
+
+                if (m < y) {
+                    for (long i = m + 1; i <= y; i++)
+                        f *= (aa / i - s);
+                } else if (m > y) {
+                    for (long i = y + 1; i <= m; i++)
+                        f /= (aa / i - s);
+                }
+
+                if (v <= f)
+                    return y;
+
+                continue;
+            }
+
+            // squeeze using upper and lower bounds on log(f(y))
+            double rho = (k / nrq) * ((k * (k / 3.0 + 0.625) + 0.16666666666666666) / nrq + 0.5);
+            double t = -(double)k * k / (2 * nrq);
+            double logv = Math.log(v);
+
+            if (logv < t - rho)
+                return y;
+            if (logv > t + rho)
+                continue;
+
+            // final test, using Stirling's formula
+            double x1 = y + 1;
+            double f1 = m + 1;
+            double z = n + 1 - m;
+            double w = n - y + 1;
+
+            if (logv <= xm * Math.log(f1 / x1)
+                    + (n - m + 0.5) * Math.log(z / w)
+                    + (y - m) * Math.log(w * r / (x1 * q))
+                    + stirlingTail(f1) + stirlingTail(z) + stirlingTail(x1) + stirlingTail(w))
+            {
+                return y;
+            }
+        }
+    }
+
+    private static double stirlingTail(double x) {
+        double x2 = x * x;
+        return (13680. - (462. - (132. - (99. - 140. / x2) / x2) / x2) / x2) / x / 166320.;
+    }
+
+    /**
+     * Returns the seed of stream number <code>stream</code> split from <code>seed</code>. The
+     * seeds are well mixed (by the SplitMix64 finalizer), so generators seeded with them are
+     * effectively independent even for consecutive streams.
+     */
+    public static long splitSeed(long seed, long stream) {
+        long z = seed + (stream + 1) * 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
 }
@@ -80,6 +80,17 @@ ScriptSchema = {
                 "type": "array",
                 "items": {"type": "string"}
             },
+            "blockingPasses": {
+                "type": "array",
+                "items": {
+                    "type": "array",
+                    "items": {"type": "string"}
+                }
+            },
+            "subBlockingFields": {
+                "type": "array",
+                "items": {"type": "string"}
+            },
             "seqField": {"type": "string"},
             "idField": {"type": "string"}
         },
@@ -98,6 +109,17 @@ ScriptSchema = {
                 "type": "array",
                 "items": {"type": "string"}
             },
+            "blockingPasses": {
+                "type": "array",
+                "items": {
+                    "type": "array",
+                    "items": {"type": "string"}
+                }
+            },
+            "subBlockingFields": {
+                "type": "array",
+                "items": {"type": "string"}
+            },
             "seqField": {"type": "string"},
             "idField": {"type": "string"},
             "delimiter": {"type": "string"},
@@ -122,7 +144,8 @@ ScriptSchema = {
                     "type": "array",
                     "items": [
                         {"type": "string"},
-                        {"type": "object"}
+                        {"type": "object"},
+                        {"type": "integer"}
                     ]
                 }
             },
@@ -163,6 +186,25 @@ Script = {
             }
         }
 
+        var blockingPasses = obj['blockingPasses'];
+        if (__isDefined(blockingPasses)) {
+            for (var i = 0; i < blockingPasses.length; i++) {
+                var pass = java.lang.reflect.Array.newInstance(
+                        java.lang.String, blockingPasses[i].length);
+                for (var j = 0; j < blockingPasses[i].length; j++) {
+                    pass[j] = blockingPasses[i][j];
+                }
+                b.blockingPass(pass);
+            }
+        }
+
+        var subBlockingFields = obj['subBlockingFields'];
+        if (__isDefined(subBlockingFields)) {
+            for (var i = 0; i < subBlockingFields.length; i++) {
+                b.subBlockingField(subBlockingFields[i]);
+            }
+        }
+
         var seqField = obj['seqField'];
         if (__isDefined(seqField)) {
             b.seqField(seqField);
@@ -194,6 +236,25 @@ Script = {
             }
         }
 
+        var blockingPasses = obj['blockingPasses'];
+        if (__isDefined(blockingPasses)) {
+            for (var i = 0; i < blockingPasses.length; i++) {
+                var pass = java.lang.reflect.Array.newInstance(
+                        java.lang.String, blockingPasses[i].length);
+                for (var j = 0; j < blockingPasses[i].length; j++) {
+                    pass[j] = blockingPasses[i][j];
+                }
+                b.blockingPass(pass);
+            }
+        }
+
+        var subBlockingFields = obj['subBlockingFields'];
+        if (__isDefined(subBlockingFields)) {
+            for (var i = 0; i < subBlockingFields.length; i++) {
+                b.subBlockingField(subBlockingFields[i]);
+            }
+        }
+
         var seqField = obj['seqField'];
         if (__isDefined(seqField)) {
             b.seqField(seqField);
@@ -240,7 +301,10 @@ Script = {
         var ary = obj['compare'];
         for (var i = 0; i < ary.length; i++) {
             c = ary[i];
-            b.compare(c[0], c[1]);
+            if (c.length > 2)
+                b.compare(c[0], c[1], c[2]);
+            else
+                b.compare(c[0], c[1]);
         }
 
         return b.build();
@@ -267,6 +331,26 @@ Script = {
                 result.blockingFields.push(String(blockingFields[i]));
             }
 
+            var blockingPasses = __reflect(rs, "_blockingPasses");
+            if (blockingPasses.length > 1) {
+                result.blockingPasses = [];
+                for (var i = 1; i < blockingPasses.length; i++) {
+                    var pass = [];
+                    for (var j = 0; j < blockingPasses[i].length; j++) {
+                        pass.push(String(blockingPasses[i][j]));
+                    }
+                    result.blockingPasses.push(pass);
+                }
+            }
+
+            var subBlockingFields = __reflect(rs, "_subBlockingFields");
+            if (subBlockingFields.length > 0) {
+                result.subBlockingFields = [];
+                for (var i = 0; i < subBlockingFields.length; i++) {
+                    result.subBlockingFields.push(String(subBlockingFields[i]));
+                }
+            }
+
             if (rs.hasId()) {
                 var idFields = __reflect(rs, "_idFields");
                 result.idFields = [];
@@ -288,6 +372,26 @@ Script = {
                 result.blockingFields.push(String(blockingFields[i]));
             }
 
+            var blockingPasses = __reflect(rs, "_blockingPasses");
+            if (blockingPasses.length > 1) {
+                result.blockingPasses = [];
+                for (var i = 1; i < blockingPasses.length; i++) {
+                    var pass = [];
+                    for (var j = 0; j < blockingPasses[i].length; j++) {
+                        pass.push(String(blockingPasses[i][j]));
+                    }
+                    result.blockingPasses.push(pass);
+                }
+            }
+
+            var subBlockingFields = __reflect(rs, "_subBlockingFields");
+            if (subBlockingFields.length > 0) {
+                result.subBlockingFields = [];
+                for (var i = 0; i < subBlockingFields.length; i++) {
+                    result.subBlockingFields.push(String(subBlockingFields[i]));
+                }
+            }
+
             if (rs.hasId()) {
                 var idFields = __reflect(rs, "_idFields");
                 result.idFields = [];
@@ -0,0 +1,93 @@
+package torch;
+
+import torch.comparators.StandardComparators;
+import torch.counter.Counter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.*;
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.*;
+
+public class BlockPairsTest {
+
+    private RecordSchema schema;
+    private List<Record> list1, list2;
+    private RecordComparator cmp;
+
+    @Before
+    public void setUp() {
+        schema = new RecordSchema(
+                new String[] {"key", "first", "last", "year"},
+                new String[] {"key"},
+                new String[] {"year"},
+                null, null);
+
+        String[] names = {"SMITH", "SMYTH", "JONES"};
+        String[] keys = {"a", "a", "a", "a", "b", "c"};
+        Random rng = new Random(13);
+
+        list1 = new ArrayList<>();
+        list2 = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            List<Record> list = (i % 2 == 0) ? list1 : list2;
+            list.add(schema.newRecord(new String[] {
+                keys[rng.nextInt(keys.length)],
+                names[rng.nextInt(names.length)],
+                names[rng.nextInt(names.length)],
+                Integer.toString(1990 + rng.nextInt(4))
+            }));
+        }
+
+        cmp = new RecordComparator.Builder(schema)
+            .compare("first", StandardComparators.EXACT)
+            .compare("last", StandardComparators.STRING)
+            .build();
+    }
+
+    @Test
+    public void testSubBlockingKey() {
+        assertThat(schema.hasSubBlockingKey(), is(true));
+        assertThat(list1.get(0).subBlockingKey(), is(list1.get(0).field(2).stringValue()));
+    }
+
+    @Test
+    public void testUnderBudget() throws RecordIteratorException {
+        BlockPairs blocks = BlockPairs.block(new RecordIterator(list1), new RecordIterator(list2));
+
+        assertThat(blocks.report().oversized().isEmpty(), is(true));
+        assertThat(blocks.nPairs(), is(blocks.report().pairsBeforeSplit()));
+
+        Counter expected = Counter.count(cmp, new RecordIterator(list1), new RecordIterator(list2));
+        assertThat(Counter.count(cmp, blocks).toString(), is(expected.toString()));
+    }
+
+    @Test
+    public void testSplit() throws RecordIteratorException {
+        BlockPairs blocks =
+            BlockPairs.block(new RecordIterator(list1), new RecordIterator(list2), 2000);
+        BlockReport report = blocks.report();
+
+        assertThat(report.oversized().size(), is(1));
+        assertThat(report.oversized().get(0).key(), is("a"));
+        assertThat(report.oversized().get(0).nSubBlocks(), is(4));
+        assertThat(report.pairs() < report.pairsBeforeSplit(), is(true));
+
+        long pairs = 0;
+        for (String key: blocks.keys()) {
+            for (Record rec1: blocks.block1(key)) {
+                for (Record rec2: blocks.block2(key)) {
+                    assertThat(rec1.blockingKey(), is(rec2.blockingKey()));
+                    if (rec1.blockingKey().equals("a"))
+                        assertThat(rec1.subBlockingKey(), is(rec2.subBlockingKey()));
+                    pairs++;
+                }
+            }
+        }
+
+        assertThat(pairs, is(blocks.nPairs()));
+        assertThat(report.toString().contains("Oversized blocks"), is(true));
+    }
+}
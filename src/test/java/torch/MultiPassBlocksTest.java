@@ -0,0 +1,100 @@
+package torch;
+
+import torch.comparators.StandardComparators;
+import torch.counter.Counter;
+import torch.matcher.DefaultMatchingAlgo;
+import torch.matcher.IMatchingFormatter;
+import torch.model.MixtureModel;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.*;
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.*;
+
+public class MultiPassBlocksTest {
+
+    private static class SetFormatter implements IMatchingFormatter {
+        @Override
+        public void format(Record rec1, Record rec2, double score) {
+            pairs.add(rec1.seq() + ":" + rec2.seq());
+            n++;
+        }
+
+        final Set<String> pairs = new HashSet<>();
+        int n = 0;
+    }
+
+    private List<Record> list1, list2;
+    private RecordComparator cmp;
+
+    @Before
+    public void setUp() {
+        RecordSchema schema = new RecordSchema(
+                new String[] {"zip", "year", "first", "last"},
+                new String[][] {{"zip"}, {"year", "last"}},
+                new String[0],
+                null, null);
+
+        String[] names = {"SMITH", "SMYTH", "JONES"};
+        Random rng = new Random(17);
+
+        list1 = new ArrayList<>();
+        list2 = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            List<Record> list = (i % 2 == 0) ? list1 : list2;
+            list.add(schema.newRecord(new String[] {
+                "z" + rng.nextInt(5),
+                Integer.toString(1990 + rng.nextInt(3)),
+                names[rng.nextInt(names.length)],
+                names[rng.nextInt(names.length)]
+            }));
+        }
+
+        cmp = new RecordComparator.Builder(schema)
+            .compare("first", StandardComparators.EXACT)
+            .compare("last", StandardComparators.STRING)
+            .build();
+    }
+
+    @Test
+    public void testKeys() {
+        Record rec = list1.get(0);
+
+        assertThat(rec.schema().nBlockingPasses(), is(2));
+        assertThat(rec.blockingKey(), is(rec.blockingKey(0)));
+        assertThat(rec.blockingKey(1), is(rec.field(0).stringValue() + rec.field(2).stringValue()));
+    }
+
+    @Test
+    public void testMatch() throws Exception {
+        Set<String> expected = new HashSet<>();
+        for (Record rec1: list1)
+            for (Record rec2: list2)
+                if (rec1.blockingKey(0).equals(rec2.blockingKey(0)) ||
+                    rec1.blockingKey(1).equals(rec2.blockingKey(1)))
+                    expected.add(rec1.seq() + ":" + rec2.seq());
+
+        double[][][] mWeights = {
+            {{0.1, 0.1, 0.8}, {0.1, 0.1, 0.1, 0.2, 0.5}},
+            {{0.1, 0.8, 0.1}, {0.1, 0.5, 0.2, 0.1, 0.1}}
+        };
+        MixtureModel model = new MixtureModel(cmp, mWeights, 1);
+
+        MultiPassBlocks blocks =
+            MultiPassBlocks.block(new RecordIterator(list1), new RecordIterator(list2));
+        SetFormatter formatter = new SetFormatter();
+        DefaultMatchingAlgo algo = new DefaultMatchingAlgo(model, formatter);
+        algo.computeScores(blocks);
+
+        assertThat(formatter.pairs, is(expected));
+        assertThat(formatter.n, is(expected.size()));
+        assertThat(algo.nComparisons(), is((long)expected.size()));
+
+        assertThat(Counter.count(cmp, blocks).total(), is((long)expected.size()));
+    }
+}
@@ -0,0 +1,83 @@
+package torch;
+
+import torch.comparators.StandardComparators;
+import torch.counter.Counter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.*;
+
+public class PartitionedBlocksTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<Record> list1, list2;
+    private RecordComparator cmp;
+    private PartitionedBlocks partitions;
+
+    @Before
+    public void setUp() throws RecordIteratorException {
+        RecordSchema schema = new RecordSchema(
+                new String[] {"key", "first", "last", "id"},
+                new String[] {"key"},
+                null, "id");
+
+        String[] names = {"SMITH", "SMYTH", "JONES", "JOHNSON", "Jürgen", ""};
+        Random rng = new Random(5);
+
+        list1 = new ArrayList<>();
+        list2 = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            List<Record> list = (i % 2 == 0) ? list1 : list2;
+            list.add(schema.newRecord(new String[] {
+                "k" + rng.nextInt(20),
+                names[rng.nextInt(names.length)],
+                names[rng.nextInt(names.length)],
+                Integer.toString(i)
+            }));
+        }
+
+        cmp = new RecordComparator.Builder(schema)
+            .compare("first", StandardComparators.EXACT)
+            .compare("last", StandardComparators.STRING)
+            .build();
+
+        partitions = PartitionedBlocks.partition(
+                new RecordIterator(list1), new RecordIterator(list2), 7, folder.getRoot());
+    }
+
+    @After
+    public void tearDown() {
+        partitions.close();
+    }
+
+    @Test
+    public void testPartitions() throws RecordIteratorException {
+        int n1 = 0, n2 = 0;
+        for (int p = 0; p < partitions.nPartitions(); p++) {
+            n1 += partitions.size(1, p);
+            n2 += partitions.size(2, p);
+
+            for (List<Record> block: partitions.blocks(p).values())
+                for (Record rec: block)
+                    assertThat(list1.get(Integer.parseInt(rec.id()) / 2), is(rec));
+        }
+
+        assertThat(n1, is(list1.size()));
+        assertThat(n2, is(list2.size()));
+    }
+
+    @Test
+    public void testCount() throws RecordIteratorException {
+        Counter expected = Counter.count(cmp, new RecordIterator(list1), new RecordIterator(list2));
+        Counter actual = Counter.count(cmp, partitions, 3);
+
+        assertThat(actual.toString(), is(expected.toString()));
+    }
+}
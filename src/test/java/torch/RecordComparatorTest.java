@@ -1,5 +1,6 @@
 package torch;
 
+import torch.comparators.CachingComparator;
 import torch.comparators.StandardComparators;
 import torch.io.FixedWidthFileSchema;
 
@@ -62,6 +63,11 @@ public class RecordComparatorTest {
         assertThat(cmpBlanks.nPatterns(), is(5 * 5 * 5));
     }
 
+    @Test
+    public void testCostOrder() {
+        assertThat(cmp.costOrder(), is(new int[] {1, 0, 2}));
+    }
+
     @Test
     public void testPatternIndex() {
         int[] pattern = new int[3];
@@ -140,4 +146,52 @@ public class RecordComparatorTest {
         assertThat(cmp.comparisonFields(rec1), is(fields1));
         assertThat(cmp.comparisonFields(rec2), is(fields2));
     }
+
+    @Test
+    public void testCompareIndex() {
+        Record rec = schema2.schema().newRecord(new String[] {
+            "11", "smith", "john", "54321"
+        });
+
+        Record[] block = new Record[] {
+            schema1.schema().newRecord(new String[] {"54321", "john", "smith", "11"}),
+            schema1.schema().newRecord(new String[] {"54321", "jon", "smythe", "12"}),
+            schema1.schema().newRecord(new String[] {"54321", "jane", "", "40"}),
+            schema1.schema().newRecord(new String[] {"54321", "", "jones", "11"})
+        };
+
+        int[] patterns = new int[block.length];
+        cmpBlanks.compareIndex(block, 0, block.length, rec, patterns);
+
+        for (int i = 0; i < block.length; i++) {
+            int expected = cmpBlanks.patternIndex(cmpBlanks.compare(block[i], rec));
+            assertThat(cmpBlanks.compareIndex(block[i], rec), is(expected));
+            assertThat(patterns[i], is(expected));
+        }
+
+        int[] shifted = new int[block.length + 1];
+        cmpBlanks.compareIndex(block, 1, block.length, rec, shifted, 2);
+        for (int i = 1; i < block.length; i++)
+            assertThat(shifted[i + 1], is(patterns[i]));
+
+        cmpBlanks.compareIndex(java.util.Arrays.asList(block), rec, patterns);
+        assertThat(patterns[3], is(cmpBlanks.compareIndex(block[3], rec)));
+    }
+
+    @Test
+    public void testCachedExact() {
+        CachingComparator cache = new CachingComparator(StandardComparators.EXACT, 16);
+        RecordComparator cached =
+            new RecordComparator.Builder(schema1, schema2)
+            .compare("first", cache)
+            .compare("last", StandardComparators.STRING)
+            .build();
+
+        Record rec1 = schema1.schema().newRecord(new String[] {"54321", "john", "smith", "11"});
+        Record rec2 = schema2.schema().newRecord(new String[] {"11", "smith", "jon", "54321"});
+
+        assertThat(cached.compare(rec1, rec2)[0], is(1));
+        assertThat(cached.costOrder()[0], is(0));
+        assertThat(cache.misses(), is(0L));
+    }
 }
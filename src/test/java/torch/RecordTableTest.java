@@ -0,0 +1,81 @@
+package torch;
+
+import torch.comparators.StandardComparators;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.*;
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.*;
+
+public class RecordTableTest {
+    private RecordSchema schema;
+    private List<Record> records;
+    private RecordTable table;
+
+    @Before
+    public void setup() throws RecordIteratorException {
+        schema = new RecordSchema(
+                new String[] {"key", "first", "last", "id"},
+                new String[] {"key"},
+                null, "id");
+
+        records = new ArrayList<>();
+        records.add(schema.newRecord(new String[] {"asdf", "George", "Washington", "1"}));
+        records.add(schema.newRecord(new String[] {"qwer", "John", "Adams", "2"}));
+        records.add(schema.newRecord(new String[] {"asdf", "Thomas", "Jefferson", "3"}));
+        records.add(schema.newRecord(new String[] {"qwer", "John", "Adams", "4"}));
+        records.add(schema.newRecord(new String[] {"asdf", "Jürgen", "Straße", "5"}));
+        records.add(schema.newRecord(new String[] {"asdf", "Γιώργος", "", "6"}));
+
+        table = RecordTable.load(schema, new RecordIterator(records));
+    }
+
+    @Test
+    public void testRows() {
+        assertThat(table.size(), is(records.size()));
+
+        for (int i = 0; i < records.size(); i++) {
+            Record row = table.row(i);
+            assertThat(row.equals(records.get(i)), is(true));
+            assertThat(row.seq(), is(records.get(i).seq()));
+            assertThat(row.schema(), is(schema));
+            assertThat(row.field(1).empty(), is(records.get(i).field(1).empty()));
+        }
+
+        // "John" and "Adams" are stored once each
+        assertThat(table.pool().size(), is(10));
+    }
+
+    @Test
+    public void testBlocking() {
+        Map<String, List<Record>> blocks = table.block();
+
+        assertThat(blocks.size(), is(2));
+        assertThat(blocks.get("asdf").size(), is(4));
+        assertThat(blocks.get("qwer").size(), is(2));
+        assertThat(blocks.get("qwer").get(1).id(), is("4"));
+    }
+
+    @Test
+    public void testCompare() throws RecordIteratorException {
+        RecordComparator cmp =
+            new RecordComparator.Builder(schema)
+            .compare("first", StandardComparators.EXACT)
+            .compare("last", StandardComparators.STRING)
+            .build();
+
+        RecordTable other = RecordTable.load(schema, table.pool(), new RecordIterator(records));
+
+        for (int i = 0; i < records.size(); i++) {
+            for (int j = 0; j < records.size(); j++) {
+                int expected = cmp.compareIndex(records.get(i), records.get(j));
+                assertThat(cmp.compareIndex(table.row(i), other.row(j)), is(expected));
+                assertThat(cmp.compare(table.row(i), other.row(j)),
+                           is(cmp.compare(records.get(i), records.get(j))));
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package torch;
+
+import torch.comparators.StandardComparators;
+import torch.counter.Counter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.*;
+
+public class SortedNeighborhoodTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<Record> list1, list2;
+    private RecordComparator cmp;
+
+    @Before
+    public void setUp() {
+        RecordSchema schema = new RecordSchema(
+                new String[] {"key", "first", "last"},
+                new String[] {"key"},
+                null, null);
+
+        String[] names = {"SMITH", "SMYTH", "SMITHE", "JONES", "JONAS", "JOHNSON"};
+        Random rng = new Random(19);
+
+        list1 = new ArrayList<>();
+        list2 = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            List<Record> list = (i % 3 == 0) ? list1 : list2;
+            list.add(schema.newRecord(new String[] {
+                "k" + rng.nextInt(4),
+                names[rng.nextInt(names.length)],
+                names[rng.nextInt(names.length)]
+            }));
+        }
+
+        cmp = new RecordComparator.Builder(schema)
+            .compare("first", StandardComparators.EXACT)
+            .compare("last", StandardComparators.STRING)
+            .build();
+    }
+
+    private Set<String> expected(int window) {
+        final ISortKey key = SortedNeighborhood.fields("last", "first");
+        final List<Record> all = new ArrayList<>(list1);
+        all.addAll(list2);
+
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < all.size(); i++)
+            order.add(i);
+
+        Collections.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i, Integer j) {
+                int c = key.sortKey(all.get(i)).compareTo(key.sortKey(all.get(j)));
+                return (c != 0) ? c : i.compareTo(j);
+            }
+        });
+
+        Set<String> pairs = new HashSet<>();
+        for (int j = 0; j < order.size(); j++) {
+            for (int i = Math.max(0, j - window + 1); i < j; i++) {
+                int a = Math.min(order.get(i), order.get(j));
+                int b = Math.max(order.get(i), order.get(j));
+
+                if (a < list1.size() && b >= list1.size())
+                    pairs.add(all.get(a).seq() + ":" + all.get(b).seq());
+            }
+        }
+
+        return pairs;
+    }
+
+    private Set<String> pairs(SortedNeighborhood sn) throws RecordIteratorException {
+        Set<String> pairs = new HashSet<>();
+
+        try (SortedNeighborhood.Segments segments =
+                 sn.segments(new RecordIterator(list1), new RecordIterator(list2)))
+        {
+            SortedNeighborhood.Segment s;
+            while ((s = segments.next()) != null) {
+                for (int k = 0; k < s.nPairs(); k++)
+                    assertThat(pairs.add(s.record1(k).seq() + ":" + s.record2(k).seq()), is(true));
+            }
+        }
+
+        return pairs;
+    }
+
+    @Test
+    public void testInMemory() throws RecordIteratorException {
+        SortedNeighborhood sn =
+            new SortedNeighborhood.Builder()
+            .sortKey(SortedNeighborhood.fields("last", "first"))
+            .window(5)
+            .build();
+
+        assertThat(pairs(sn), is(expected(5)));
+    }
+
+    @Test
+    public void testExternal() throws RecordIteratorException {
+        SortedNeighborhood sn =
+            new SortedNeighborhood.Builder()
+            .sortKey(SortedNeighborhood.fields("last", "first"))
+            .window(4)
+            .runSize(37)
+            .segmentSize(23)
+            .tempDir(folder.getRoot())
+            .build();
+
+        assertThat(pairs(sn), is(expected(4)));
+        assertThat(folder.getRoot().list().length, is(0));
+    }
+
+    @Test
+    public void testCount() throws RecordIteratorException {
+        SortedNeighborhood sn =
+            new SortedNeighborhood.Builder()
+            .sortKey(SortedNeighborhood.fields("last", "first"))
+            .window(6)
+            .segmentSize(17)
+            .nThreads(3)
+            .build();
+
+        Counter counter =
+            Counter.count(cmp, sn, new RecordIterator(list1), new RecordIterator(list2));
+        assertThat(counter.total(), is((long)expected(6).size()));
+    }
+}
@@ -0,0 +1,87 @@
+package torch.comparators;
+
+import torch.Field;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.*;
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.*;
+
+public class CachingComparatorTest {
+
+    private final static String[] NAMES = {
+        "SMITH", "SMYTH", "SMITHE", "JONES", "JOHNSON", "JOHNSTON", "WILLIAMS", "WILLIAMSON"
+    };
+
+    private StringComparator cmp;
+
+    @Before
+    public void setUp() {
+        cmp = new StringComparator(StandardComparators.STR_LEVELS);
+    }
+
+    @Test
+    public void testCounters() {
+        CachingComparator cache = new CachingComparator(cmp, 1024);
+
+        for (int n = 0; n < 3; n++) {
+            for (String a: NAMES) {
+                for (String b: NAMES) {
+                    Field f1 = new Field(a);
+                    Field f2 = new Field(b);
+                    assertThat(cache.compare(f1, f2), is(cmp.compare(f1, f2)));
+                }
+            }
+        }
+
+        long total = 3 * NAMES.length * NAMES.length;
+        assertThat(cache.hits() + cache.misses(), is(total));
+        assertThat(cache.misses() - cache.evictions() <= cache.capacity(), is(true));
+        assertThat(cache.hits() > 0, is(true));
+        assertThat(cache.nLevels(), is(cmp.nLevels()));
+    }
+
+    @Test
+    public void testEviction() {
+        CachingComparator cache = new CachingComparator(cmp, 2);
+        assertThat(cache.capacity(), is(2));
+
+        for (String a: NAMES)
+            for (String b: NAMES)
+                cache.compare(new Field(a), new Field(b));
+
+        assertThat(cache.evictions() > 0, is(true));
+        assertThat(cache.misses() - cache.evictions() <= 2, is(true));
+    }
+
+    @Test
+    public void testConcurrent() throws InterruptedException {
+        final CachingComparator cache = new CachingComparator(cmp, 16);
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        Thread[] threads = new Thread[4];
+
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int n = 0; n < 50; n++)
+                        for (String a: NAMES)
+                            for (String b: NAMES) {
+                                Field f1 = new Field(a);
+                                Field f2 = new Field(b);
+                                if (cache.compare(f1, f2) != cmp.compare(f1, f2))
+                                    failed.set(true);
+                            }
+                }
+            };
+            threads[t].start();
+        }
+
+        for (Thread t: threads)
+            t.join();
+
+        assertThat(failed.get(), is(false));
+        assertThat(cache.hits() + cache.misses(), is(4L * 50 * NAMES.length * NAMES.length));
+    }
+}
@@ -0,0 +1,223 @@
+package torch.counter;
+
+import torch.Record;
+import torch.RecordComparator;
+import torch.RecordIterator;
+import torch.RecordSchema;
+import torch.TupleBlock;
+import torch.comparators.StandardComparators;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.*;
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.*;
+
+public class CounterTest {
+
+    private List<Record> list1, list2;
+    private RecordComparator cmp;
+
+    @Before
+    public void setUp() {
+        RecordSchema schema = new RecordSchema(
+                new String[] {"key", "first", "last"},
+                new String[] {"key"},
+                null, null);
+
+        String[] names = {"SMITH", "SMYTH", "JONES"};
+        String[] keys = {"a", "a", "b", "c"};
+        Random rng = new Random(3);
+
+        list1 = new ArrayList<>();
+        list2 = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            List<Record> list = (i % 2 == 0) ? list1 : list2;
+            list.add(schema.newRecord(new String[] {
+                keys[rng.nextInt(keys.length)],
+                names[rng.nextInt(names.length)],
+                names[rng.nextInt(names.length)]
+            }));
+        }
+
+        cmp = new RecordComparator.Builder(schema)
+            .compare("first", StandardComparators.EXACT)
+            .compare("last", StandardComparators.STRING)
+            .build();
+    }
+
+    @Test
+    public void testCollapse() throws Exception {
+        Counter plain = Counter.count(cmp, new RecordIterator(list1), new RecordIterator(list2));
+        Counter collapsed =
+            Counter.count(cmp, new RecordIterator(list1), new RecordIterator(list2), true);
+
+        assertThat(collapsed.toString(), is(plain.toString()));
+    }
+
+    @Test
+    public void testThreads() throws Exception {
+        Counter plain = Counter.count(cmp, new RecordIterator(list1), new RecordIterator(list2));
+        Counter threaded =
+            Counter.count(cmp, new RecordIterator(list1), new RecordIterator(list2), 4);
+
+        assertThat(threaded.toString(), is(plain.toString()));
+        assertThat(threaded.total(), is(plain.total()));
+        assertThat(threaded.nonzeroPatternIndexes().length, is(plain.nonzeroCounts().length));
+    }
+
+    @Test
+    public void testStripes() throws Exception {
+        final IncrementalCounter inc = new IncrementalCounter(cmp);
+        Thread[] threads = new Thread[4];
+
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (Record rec: list2)
+                        inc.add(list1, rec);
+                }
+            };
+            threads[t].start();
+        }
+
+        for (Thread t: threads)
+            t.join();
+
+        Counter counter = inc.toCounter();
+        assertThat(counter.total(), is(4L * list1.size() * list2.size()));
+    }
+
+    @Test
+    public void testSparseCounts() {
+        PatternCounts dense = new PatternCounts(1000);
+        PatternCounts sparse = new PatternCounts(1000, 4);
+        Random rng = new Random(1);
+
+        for (int n = 0; n < 5000; n++) {
+            int pattern = rng.nextInt(1000);
+            dense.add(pattern, n);
+            sparse.add(pattern, n);
+        }
+
+        int[] patterns = dense.patterns();
+        assertThat(sparse.patterns(), is(patterns));
+
+        for (int i: patterns)
+            assertThat(sparse.get(i), is(dense.get(i)));
+    }
+
+    @Test
+    public void testMerge() throws Exception {
+        Counter all = Counter.count(cmp, new RecordIterator(list1), new RecordIterator(list2));
+        Counter first = Counter.count(cmp, new RecordIterator(list1),
+                                      new RecordIterator(list2.subList(0, 40)));
+        Counter second = Counter.count(cmp, new RecordIterator(list1),
+                                       new RecordIterator(list2.subList(40, list2.size())));
+
+        assertThat(first.merge(second).toString(), is(all.toString()));
+        assertThat(second.merge(first).toString(), is(all.toString()));
+    }
+
+    @Test
+    public void testReadWrite() throws Exception {
+        Counter counter = Counter.count(cmp, new RecordIterator(list1), new RecordIterator(list2));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        counter.write(new DataOutputStream(bytes));
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        Counter copy = Counter.read(cmp, in);
+
+        assertThat(copy.toString(), is(counter.toString()));
+        assertThat(copy.nonzeroPatternIndexes(), is(counter.nonzeroPatternIndexes()));
+    }
+
+    @Test
+    public void testSampleAll() throws Exception {
+        PairSampler sampler = new PairSampler.Builder().rate(1.0).seed(1).build();
+        Counter plain = Counter.count(cmp, new RecordIterator(list1), new RecordIterator(list2));
+        Counter sampled =
+            Counter.count(cmp, new RecordIterator(list1), new RecordIterator(list2), sampler);
+
+        assertThat(sampled.sampled(), is(true));
+        assertThat(sampled.nonzeroCounts(), is(plain.nonzeroCounts()));
+        assertThat(sampled.totalWeight(), is((double)plain.total()));
+        assertThat(sampled.totalVariance(), is(0.0));
+    }
+
+    @Test
+    public void testSample() throws Exception {
+        PairSampler sampler = new PairSampler.Builder()
+            .rate(0.05)
+            .minPerBlock(50)
+            .seed(7)
+            .build();
+        Counter plain = Counter.count(cmp, new RecordIterator(list1), new RecordIterator(list2));
+        Counter sampled =
+            Counter.count(cmp, new RecordIterator(list1), new RecordIterator(list2), sampler);
+        Counter again =
+            Counter.count(cmp, new RecordIterator(list1), new RecordIterator(list2), sampler);
+
+        assertThat(sampled.total() < plain.total(), is(true));
+        assertThat(sampled.totalVariance() > 0, is(true));
+        assertThat(again.toString(), is(sampled.toString()));
+
+        // within four standard errors of the exact total
+        double error = Math.abs(sampled.totalWeight() - plain.total());
+        assertThat(error < 4 * Math.sqrt(sampled.totalVariance()), is(true));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sampled.write(new DataOutputStream(bytes));
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        Counter copy = Counter.read(cmp, in);
+
+        assertThat(copy.sampled(), is(true));
+        assertThat(copy.nonzeroWeights(), is(sampled.nonzeroWeights()));
+        assertThat(copy.nonzeroVariances(), is(sampled.nonzeroVariances()));
+        assertThat(copy.merge(plain).totalWeight(), is(sampled.totalWeight() + plain.total()));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testFingerprint() throws Exception {
+        Counter counter = Counter.count(cmp, new RecordIterator(list1), new RecordIterator(list2));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        counter.write(new DataOutputStream(bytes));
+
+        RecordComparator other =
+            new RecordComparator.Builder(list1.get(0).schema())
+            .compare("last", StandardComparators.STRING)
+            .compare("first", StandardComparators.EXACT)
+            .build();
+
+        Counter.read(other, new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    @Test
+    public void testTupleBlock() {
+        TupleBlock block = TupleBlock.collapse(cmp, list1);
+
+        assertThat(block.nRecords(), is(list1.size()));
+        assertThat(block.nTuples() <= 9, is(true));
+
+        int n = 0;
+        for (int i = 0; i < block.nTuples(); i++) {
+            for (int j = 0; j < block.weight(i); j++) {
+                assertThat(cmp.comparisonFields(block.member(i, j)),
+                           is(cmp.comparisonFields(block.representative(i))));
+            }
+            n += block.weight(i);
+        }
+
+        assertThat(n, is(list1.size()));
+    }
+}
@@ -0,0 +1,136 @@
+package torch.matcher;
+
+import torch.FormatterException;
+import torch.Record;
+import torch.matcher.MatchingFixture.ListFormatter;
+
+import java.io.Flushable;
+import java.io.StringWriter;
+import java.util.List;
+
+import org.junit.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.hamcrest.CoreMatchers.*;
+
+public class AsyncFormatterTest {
+
+    /**
+     * Also counts the pairs formatted when it was last flushed, and fails after
+     * <code>failAfter</code> pairs.
+     */
+    private static class FlushingFormatter extends ListFormatter implements Flushable {
+        @Override
+        public void format(Record rec1, Record rec2, double score)
+            throws FormatterException
+        {
+            if (pairs.size() == failAfter)
+                throw new FormatterException("full");
+
+            super.format(rec1, rec2, score);
+        }
+
+        @Override
+        public void flush() {
+            nFlushed = pairs.size();
+        }
+
+        volatile int nFlushed;
+        int failAfter = -1;
+    }
+
+    private List<Record> records;
+
+    @Before
+    public void setUp() {
+        records = new MatchingFixture().list1;
+    }
+
+    @Test
+    public void testOrder() throws Exception {
+        ListFormatter expected = new ListFormatter();
+        FlushingFormatter actual = new FlushingFormatter();
+        AsyncFormatter async = new AsyncFormatter(actual, 0.0, 7, 2, 1000);
+
+        for (int i = 0; i < records.size(); i++) {
+            for (int j = 0; j < records.size(); j++) {
+                double score = (i + j) % 5 - 1.0;
+                async.format(records.get(i), records.get(j), score);
+                if (score >= 0.0)
+                    expected.format(records.get(i), records.get(j), score);
+            }
+        }
+
+        async.flush();
+        assertThat(actual.pairs, is(expected.pairs));
+        assertThat(actual.nFlushed, is(expected.pairs.size()));
+
+        async.close();
+        async.close();
+        assertThat(actual.pairs, is(expected.pairs));
+    }
+
+    @Test
+    public void testDelay() throws Exception {
+        FlushingFormatter actual = new FlushingFormatter();
+        AsyncFormatter async = new AsyncFormatter(actual, 0.0, 1000, 2, 0);
+
+        // only pairs below the cutoff follow the first, but the batch is still handed off
+        async.format(records.get(0), records.get(1), 1.0);
+        Thread.sleep(1);
+        for (int i = 0; i < 1000; i++)
+            async.format(records.get(0), records.get(1), -1.0);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (actual.nFlushed == 0 && System.currentTimeMillis() < deadline)
+            Thread.sleep(1);
+
+        assertThat(actual.nFlushed, is(1));
+        async.close();
+    }
+
+    @Test
+    public void testError() throws Exception {
+        FlushingFormatter failing = new FlushingFormatter();
+        failing.failAfter = 10;
+        AsyncFormatter async = new AsyncFormatter(failing, 0.0, 4, 2, 1000);
+
+        try {
+            for (int i = 0; i < 10000; i++)
+                async.format(records.get(0), records.get(1), 1.0);
+
+            async.close();
+            fail("expected a FormatterException");
+        }
+        catch (FormatterException e) {
+            assertThat(e.getCause().getMessage(), is("full"));
+        }
+
+        assertThat(failing.pairs.size(), is(10));
+    }
+
+    @Test
+    public void testCloseWithWriter() throws Exception {
+        final boolean[] closed = {false};
+        FlushingFormatter failing = new FlushingFormatter();
+        failing.failAfter = 0;
+
+        try (StringWriter writer = new StringWriter() {
+                 @Override
+                 public void close() {
+                     closed[0] = true;
+                 }
+             };
+             AsyncFormatter async = new AsyncFormatter(failing, 0.0, 4, 2, 1000))
+        {
+            async.format(records.get(0), records.get(1), 1.0);
+            throw new IllegalStateException("matching failed");
+        }
+        catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("matching failed"));
+            assertThat(e.getSuppressed()[0] instanceof FormatterException, is(true));
+        }
+
+        assertThat(closed[0], is(true));
+    }
+}
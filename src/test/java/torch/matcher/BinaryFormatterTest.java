@@ -0,0 +1,130 @@
+package torch.matcher;
+
+import torch.Record;
+import torch.RecordComparator;
+import torch.RecordIterator;
+import torch.matcher.MatchingFixture.ListFormatter;
+import torch.model.MixtureModel;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.*;
+
+public class BinaryFormatterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<Record> list1, list2;
+    private RecordComparator cmp;
+    private MixtureModel model;
+
+    @Before
+    public void setUp() {
+        MatchingFixture fixture = new MatchingFixture();
+        list1 = fixture.list1;
+        list2 = fixture.list2;
+        cmp = fixture.cmp;
+        model = fixture.model;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        String filename = new File(folder.getRoot(), "results.bin").getPath();
+        ListFormatter expected = new ListFormatter(0.0);
+
+        try (BinaryFormatter binary = new BinaryFormatter(filename, cmp, 0.0)) {
+            new DefaultMatchingAlgo(model, binary).computeScores(new RecordIterator(list1),
+                                                                 new RecordIterator(list2));
+        }
+        new DefaultMatchingAlgo(model, expected).computeScores(new RecordIterator(list1),
+                                                               new RecordIterator(list2));
+
+        List<String> rows = new ArrayList<>();
+        try (BinaryResultReader reader = new BinaryResultReader(filename, cmp)) {
+            while (reader.next()) {
+                rows.add(reader.seq1() + ":" + reader.seq2() + ":" + reader.score());
+                assertThat(model.matchScore(reader.patternIndex()), is(reader.score()));
+            }
+        }
+
+        assertThat(rows, is(expected.pairs));
+        assertThat(new File(filename).length(),
+                   is(16L + BinaryFormatter.ROW_BYTES * rows.size()));
+    }
+
+    @Test
+    public void testMaterialize() throws Exception {
+        String filename = new File(folder.getRoot(), "results.bin").getPath();
+
+        try (BinaryFormatter binary = new BinaryFormatter(filename, cmp, 0.0)) {
+            new DefaultMatchingAlgo(model, binary).computeScores(new RecordIterator(list1),
+                                                                 new RecordIterator(list2));
+        }
+
+        ListFormatter expected = new ListFormatter(2.0);
+        new DefaultMatchingAlgo(model, expected).computeScores(new RecordIterator(list1),
+                                                               new RecordIterator(list2));
+
+        ListFormatter materialized = new ListFormatter(Double.NEGATIVE_INFINITY);
+        long n = ResultMaterializer.materialize(filename, cmp, new RecordIterator(list1),
+                                                new RecordIterator(list2), 2.0, materialized);
+
+        assertThat(n > 0, is(true));
+        assertThat(n, is((long)expected.pairs.size()));
+        assertThat(materialized.pairs, is(expected.pairs));
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        String filename = new File(folder.getRoot(), "results.bin").getPath();
+        ListFormatter expected = new ListFormatter(1.0);
+
+        try (BinaryFormatter binary = new BinaryFormatter(filename, cmp, 1.0)) {
+            new ParallelMatchingAlgo(model, binary, 4, true, 7)
+                .computeScores(new RecordIterator(list1), new RecordIterator(list2));
+        }
+        new DefaultMatchingAlgo(model, expected).computeScores(new RecordIterator(list1),
+                                                               new RecordIterator(list2));
+
+        List<String> rows = new ArrayList<>();
+        try (BinaryResultReader reader = new BinaryResultReader(filename, cmp)) {
+            while (reader.next()) {
+                rows.add(reader.seq1() + ":" + reader.seq2() + ":" + reader.score());
+                assertThat(model.matchScore(reader.patternIndex()), is(reader.score()));
+            }
+        }
+
+        assertThat(rows, is(expected.pairs));
+    }
+
+    @Test
+    public void testTopK() throws Exception {
+        String filename = new File(folder.getRoot(), "results.bin").getPath();
+        ListFormatter expected = new ListFormatter(0.0);
+
+        // TopKMatchingAlgo doesn't pass pattern indexes, so the formatter computes them
+        try (BinaryFormatter binary = new BinaryFormatter(filename, cmp, 0.0)) {
+            new TopKMatchingAlgo(model, binary, 2).computeScores(new RecordIterator(list1),
+                                                                  new RecordIterator(list2));
+        }
+        new TopKMatchingAlgo(model, expected, 2).computeScores(new RecordIterator(list1),
+                                                               new RecordIterator(list2));
+
+        List<String> rows = new ArrayList<>();
+        try (BinaryResultReader reader = new BinaryResultReader(filename, cmp)) {
+            while (reader.next()) {
+                rows.add(reader.seq1() + ":" + reader.seq2() + ":" + reader.score());
+                assertThat(model.matchScore(reader.patternIndex()), is(reader.score()));
+            }
+        }
+
+        assertThat(rows.isEmpty(), is(false));
+        assertThat(rows, is(expected.pairs));
+    }
+}
@@ -0,0 +1,146 @@
+package torch.matcher;
+
+import torch.PartitionedBlocks;
+import torch.Record;
+import torch.RecordComparator;
+import torch.RecordIterator;
+import torch.matcher.MatchingFixture.ListFormatter;
+import torch.model.MixtureModel;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.*;
+
+public class DefaultMatchingAlgoTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<Record> list1, list2;
+    private RecordComparator cmp;
+    private MixtureModel model;
+
+    @Before
+    public void setUp() {
+        MatchingFixture fixture = new MatchingFixture();
+        list1 = fixture.list1;
+        list2 = fixture.list2;
+        cmp = fixture.cmp;
+        model = fixture.model;
+    }
+
+    @Test
+    public void testCollapse() throws Exception {
+        ListFormatter f1 = new ListFormatter();
+        ListFormatter f2 = new ListFormatter();
+
+        DefaultMatchingAlgo plain = new DefaultMatchingAlgo(model, f1);
+        DefaultMatchingAlgo collapsed = new DefaultMatchingAlgo(model, f2, true);
+
+        plain.computeScores(new RecordIterator(list1), new RecordIterator(list2));
+        collapsed.computeScores(new RecordIterator(list1), new RecordIterator(list2));
+
+        assertThat(f2.pairs.size(), is(f1.pairs.size()));
+        assertThat(new HashSet<>(f2.pairs), is(new HashSet<>(f1.pairs)));
+        assertThat(collapsed.nComparisons(), is(plain.nComparisons()));
+    }
+
+    @Test
+    public void testCollapseBlocks() throws Exception {
+        ListFormatter f1 = new ListFormatter();
+        ListFormatter f2 = new ListFormatter();
+
+        DefaultMatchingAlgo plain = new DefaultMatchingAlgo(model, f1);
+        DefaultMatchingAlgo collapsed = new DefaultMatchingAlgo(model, f2, true);
+
+        plain.computeScores(Record.block(new RecordIterator(list1)), new RecordIterator(list2));
+        collapsed.computeScores(Record.block(new RecordIterator(list1)), new RecordIterator(list2));
+
+        assertThat(f2.pairs.size(), is(f1.pairs.size()));
+        assertThat(new HashSet<>(f2.pairs), is(new HashSet<>(f1.pairs)));
+    }
+
+    @Test
+    public void testScoreBound() throws Exception {
+        double maxScore = model.scoreTable().maxScore();
+
+        for (double cutoff: new double[] {Double.NEGATIVE_INFINITY, 0.0, 2.0, maxScore}) {
+            ListFormatter f1 = new ListFormatter();
+            ListFormatter f2 = new ListFormatter();
+
+            DefaultMatchingAlgo plain = new DefaultMatchingAlgo(model, f1);
+            DefaultMatchingAlgo pruned =
+                new DefaultMatchingAlgo(model, f2, model.scoreBound(cutoff));
+
+            plain.computeScores(new RecordIterator(list1), new RecordIterator(list2));
+            pruned.computeScores(new RecordIterator(list1), new RecordIterator(list2));
+
+            List<String> expected = new ArrayList<>();
+            for (String pair: f1.pairs)
+                if (ListFormatter.score(pair) >= cutoff)
+                    expected.add(pair);
+
+            List<String> actual = new ArrayList<>();
+            for (String pair: f2.pairs)
+                if (ListFormatter.score(pair) >= cutoff)
+                    actual.add(pair);
+
+            assertThat(actual, is(expected));
+            assertThat(pruned.nComparisons(), is(plain.nComparisons()));
+            assertThat(pruned.nPruned(), is((long)(f1.pairs.size() - f2.pairs.size())));
+            assertThat(pruned.nPruned() > 0, is(!Double.isInfinite(cutoff)));
+            assertThat(pruned.prunes(), is(true));
+            assertThat(plain.prunes(), is(false));
+        }
+    }
+
+    @Test
+    public void testScoreBoundZeroWeight() throws Exception {
+        // level 0 of the first name never occurs, as when EM sees no blanks, so its weights are
+        // 0; the last name's level 4 has weight 0 in the match class only
+        double[][][] mWeights = {
+            {{0.0, 0.2, 0.8}, {0.1, 0.1, 0.2, 0.6, 0.0}},
+            {{0.0, 0.8, 0.2}, {0.1, 0.5, 0.2, 0.1, 0.1}}
+        };
+        MixtureModel zeros = new MixtureModel(cmp, mWeights, 1);
+
+        for (double cutoff: new double[] {Double.NEGATIVE_INFINITY, 0.0, 2.0}) {
+            ListFormatter f1 = new ListFormatter(cutoff);
+            ListFormatter f2 = new ListFormatter(cutoff);
+
+            DefaultMatchingAlgo plain = new DefaultMatchingAlgo(zeros, f1);
+            DefaultMatchingAlgo pruned =
+                new DefaultMatchingAlgo(zeros, f2, zeros.scoreBound(cutoff));
+
+            plain.computeScores(new RecordIterator(list1), new RecordIterator(list2));
+            pruned.computeScores(new RecordIterator(list1), new RecordIterator(list2));
+
+            assertThat(f2.pairs, is(f1.pairs));
+            assertThat(pruned.nPruned() > 0, is(!Double.isInfinite(cutoff)));
+        }
+    }
+
+    @Test
+    public void testPartitions() throws Exception {
+        ListFormatter f1 = new ListFormatter();
+        ListFormatter f2 = new ListFormatter();
+        DefaultMatchingAlgo plain = new DefaultMatchingAlgo(model, f1);
+        DefaultMatchingAlgo partitioned = new DefaultMatchingAlgo(model, f2);
+
+        plain.computeScores(new RecordIterator(list1), new RecordIterator(list2));
+        try (PartitionedBlocks partitions = PartitionedBlocks.partition(
+                 new RecordIterator(list1), new RecordIterator(list2), 3, folder.getRoot()))
+        {
+            partitioned.computeScores(partitions);
+        }
+
+        assertThat(f2.pairs.size(), is(f1.pairs.size()));
+        assertThat(new HashSet<>(f2.pairs), is(new HashSet<>(f1.pairs)));
+        assertThat(partitioned.nComparisons(), is(plain.nComparisons()));
+    }
+}
@@ -0,0 +1,106 @@
+package torch.matcher;
+
+import torch.FormatterException;
+import torch.Record;
+import torch.RecordComparator;
+import torch.RecordSchema;
+import torch.comparators.StandardComparators;
+import torch.model.MixtureModel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Two random lists of records with a blocking key and first and last names, a comparator for
+ * the names, and a two-class mixture model over the comparisons, shared by the matching tests.
+ */
+class MatchingFixture {
+
+    /**
+     * A formatter that records each pair scoring at least the cutoff as
+     * <code>seq1:seq2:score</code>.
+     */
+    static class ListFormatter implements IMatchingFormatter {
+        ListFormatter() {
+            this(Double.NEGATIVE_INFINITY);
+        }
+
+        ListFormatter(double cutoff) {
+            this.cutoff = cutoff;
+        }
+
+        @Override
+        public void format(Record rec1, Record rec2, double score)
+            throws FormatterException
+        {
+            if (score >= cutoff)
+                pairs.add(rec1.seq() + ":" + rec2.seq() + ":" + score);
+        }
+
+        /**
+         * Returns the sequence value of the <code>list2</code> record of a recorded pair.
+         */
+        static String seq2(String pair) {
+            return pair.substring(pair.indexOf(':') + 1, pair.lastIndexOf(':'));
+        }
+
+        /**
+         * Returns the score of a recorded pair.
+         */
+        static double score(String pair) {
+            return Double.parseDouble(pair.substring(pair.lastIndexOf(':') + 1));
+        }
+
+        final List<String> pairs = new ArrayList<>();
+        final double cutoff;
+    }
+
+    /**
+     * Constructs <code>nRecords</code> records, split alternately between the lists, with keys
+     * and names drawn at random from the given ones.
+     */
+    MatchingFixture(long seed, int nRecords, String[] names, String[] keys) {
+        RecordSchema schema = new RecordSchema(
+                new String[] {"key", "first", "last"},
+                new String[] {"key"},
+                null, null);
+
+        Random rng = new Random(seed);
+
+        list1 = new ArrayList<>();
+        list2 = new ArrayList<>();
+        for (int i = 0; i < nRecords; i++) {
+            List<Record> list = (i % 2 == 0) ? list1 : list2;
+            list.add(schema.newRecord(new String[] {
+                keys[rng.nextInt(keys.length)],
+                names[rng.nextInt(names.length)],
+                names[rng.nextInt(names.length)]
+            }));
+        }
+
+        cmp =
+            new RecordComparator.Builder(schema)
+            .compare("first", StandardComparators.EXACT)
+            .compare("last", StandardComparators.STRING)
+            .build();
+
+        double[][][] mWeights = {
+            {{0.1, 0.1, 0.8}, {0.1, 0.1, 0.1, 0.2, 0.5}},
+            {{0.1, 0.8, 0.1}, {0.1, 0.5, 0.2, 0.1, 0.1}}
+        };
+
+        model = new MixtureModel(cmp, mWeights, 1);
+    }
+
+    /**
+     * Constructs 200 records in blocks of uneven size, with three names.
+     */
+    MatchingFixture() {
+        this(11, 200, new String[] {"SMITH", "SMYTH", "JONES"}, new String[] {"a", "a", "b", "c"});
+    }
+
+    final List<Record> list1, list2;
+    final RecordComparator cmp;
+    final MixtureModel model;
+}
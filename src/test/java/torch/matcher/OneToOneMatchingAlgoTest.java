@@ -0,0 +1,153 @@
+package torch.matcher;
+
+import torch.FormatterException;
+import torch.PartitionedBlocks;
+import torch.Record;
+import torch.RecordIterator;
+import torch.matcher.MatchingFixture.ListFormatter;
+import torch.model.MixtureModel;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.*;
+
+public class OneToOneMatchingAlgoTest {
+
+    /**
+     * Also records the linked records and the total score above the cutoff.
+     */
+    private static class LinkFormatter extends ListFormatter {
+        @Override
+        public void format(Record rec1, Record rec2, double score)
+            throws FormatterException
+        {
+            super.format(rec1, rec2, score);
+            recs1.add(rec1);
+            recs2.add(rec2);
+            total += score - CUTOFF;
+        }
+
+        final Set<Record> recs1 = new HashSet<>();
+        final Set<Record> recs2 = new HashSet<>();
+        double total;
+    }
+
+    private final static double CUTOFF = -2.0;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<Record> list1, list2;
+    private MixtureModel model;
+
+    @Before
+    public void setUp() {
+        MatchingFixture fixture = new MatchingFixture(
+                11, 200,
+                new String[] {"SMITH", "SMYTH", "JONES", "JONAS"},
+                new String[] {"a", "a", "b", "c"});
+        list1 = fixture.list1;
+        list2 = fixture.list2;
+        model = fixture.model;
+    }
+
+    private LinkFormatter link(boolean optimal, int nThreads) throws Exception {
+        LinkFormatter f = new LinkFormatter();
+        OneToOneMatchingAlgo algo = new OneToOneMatchingAlgo(model, f, CUTOFF, optimal, nThreads);
+        algo.computeScores(new RecordIterator(list1), new RecordIterator(list2));
+
+        assertThat(algo.nLinks(), is((long)f.pairs.size()));
+        return f;
+    }
+
+    @Test
+    public void testOneToOne() throws Exception {
+        for (boolean optimal: new boolean[] {false, true}) {
+            LinkFormatter f = link(optimal, 1);
+
+            assertThat(f.pairs.isEmpty(), is(false));
+            assertThat(f.recs1.size(), is(f.pairs.size()));
+            assertThat(f.recs2.size(), is(f.pairs.size()));
+            assertThat(link(optimal, 4).pairs, is(f.pairs));
+        }
+    }
+
+    @Test
+    public void testOptimalBeatsGreedy() throws Exception {
+        LinkFormatter greedy = link(false, 2);
+        LinkFormatter optimal = link(true, 2);
+
+        assertThat(optimal.total >= greedy.total - 1e-9, is(true));
+    }
+
+    @Test
+    public void testPartitions() throws Exception {
+        for (boolean optimal: new boolean[] {false, true}) {
+            LinkFormatter f1 = link(optimal, 2);
+            LinkFormatter f2 = new LinkFormatter();
+            OneToOneMatchingAlgo algo =
+                new OneToOneMatchingAlgo(model, f2, CUTOFF, optimal, 2);
+
+            try (PartitionedBlocks partitions = PartitionedBlocks.partition(
+                     new RecordIterator(list1), new RecordIterator(list2), 3, folder.getRoot()))
+            {
+                algo.computeScores(partitions);
+            }
+
+            assertThat(new HashSet<>(f2.pairs), is(new HashSet<>(f1.pairs)));
+            assertThat(algo.nLinks(), is((long)f1.pairs.size()));
+        }
+    }
+
+    /**
+     * Returns the best total weight of any assignment of rows to distinct columns, by trying
+     * them all.
+     */
+    private static double bruteForce(double[][] w, int i, boolean[] used) {
+        if (i == w.length)
+            return 0.0;
+
+        double best = bruteForce(w, i + 1, used);
+        for (int j = 0; j < w[i].length; j++) {
+            if (!used[j]) {
+                used[j] = true;
+                best = Math.max(best, w[i][j] + bruteForce(w, i + 1, used));
+                used[j] = false;
+            }
+        }
+
+        return best;
+    }
+
+    @Test
+    public void testOptimalAssignment() {
+        Random rng = new Random(3);
+
+        for (int trial = 0; trial < 50; trial++) {
+            double[][] w = new double[1 + rng.nextInt(5)][1 + rng.nextInt(5)];
+            for (double[] row: w)
+                for (int j = 0; j < row.length; j++)
+                    row[j] = rng.nextBoolean() ? rng.nextDouble() : 0.0;
+
+            int[] assign = OptimalAssignment.solve(w);
+            Set<Integer> cols = new HashSet<>();
+            double total = 0.0;
+
+            for (int i = 0; i < w.length; i++) {
+                if (assign[i] >= 0) {
+                    assertThat(cols.add(assign[i]), is(true));
+                    total += w[i][assign[i]];
+                }
+            }
+
+            assertEquals(bruteForce(w, 0, new boolean[w[0].length]), total, 1e-12);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package torch.matcher;
+
+import torch.Record;
+import torch.RecordIterator;
+import torch.matcher.MatchingFixture.ListFormatter;
+import torch.model.MixtureModel;
+
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.*;
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.*;
+
+public class ParallelMatchingAlgoTest {
+
+    private List<Record> list1, list2;
+    private MixtureModel model;
+
+    @Before
+    public void setUp() {
+        MatchingFixture fixture = new MatchingFixture(
+                7, 400,
+                new String[] {"SMITH", "SMYTH", "JONES", "JOHNSON", ""},
+                new String[] {"a", "a", "a", "a", "a", "a", "b", "c", "d"});
+        list1 = fixture.list1;
+        list2 = fixture.list2;
+        model = fixture.model;
+    }
+
+    private List<String> run(IMatchingAlgorithm algo, ListFormatter formatter)
+        throws Exception
+    {
+        algo.computeScores(new RecordIterator(list1), new RecordIterator(list2));
+        return formatter.pairs;
+    }
+
+    @Test
+    public void testOrderedMatchesSerial() throws Exception {
+        ListFormatter f1 = new ListFormatter();
+        ListFormatter f2 = new ListFormatter();
+
+        DefaultMatchingAlgo serial = new DefaultMatchingAlgo(model, f1);
+        ParallelMatchingAlgo parallel = new ParallelMatchingAlgo(model, f2, 4, true, 37);
+
+        List<String> expected = run(serial, f1);
+        List<String> actual = run(parallel, f2);
+
+        assertThat(actual, is(expected));
+        assertThat(parallel.nComparisons(), is(serial.nComparisons()));
+    }
+
+    @Test
+    public void testUnorderedMatchesSerial() throws Exception {
+        ListFormatter f1 = new ListFormatter();
+        ListFormatter f2 = new ListFormatter();
+
+        DefaultMatchingAlgo serial = new DefaultMatchingAlgo(model, f1);
+        ParallelMatchingAlgo parallel = new ParallelMatchingAlgo(model, f2, 4, false, 37);
+
+        List<String> expected = run(serial, f1);
+        List<String> actual = run(parallel, f2);
+
+        assertThat(actual.size(), is(expected.size()));
+        assertThat(new HashSet<>(actual), is(new HashSet<>(expected)));
+    }
+}
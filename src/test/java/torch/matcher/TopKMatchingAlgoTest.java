@@ -0,0 +1,106 @@
+package torch.matcher;
+
+import torch.Record;
+import torch.RecordIterator;
+import torch.matcher.MatchingFixture.ListFormatter;
+import torch.model.MixtureModel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.*;
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.*;
+
+public class TopKMatchingAlgoTest {
+
+    private List<Record> list1, list2;
+    private MixtureModel model;
+
+    @Before
+    public void setUp() {
+        MatchingFixture fixture = new MatchingFixture();
+        list1 = fixture.list1;
+        list2 = fixture.list2;
+        model = fixture.model;
+    }
+
+    /**
+     * Returns the best <code>k</code> pairs for each record in <code>list2</code>, found by
+     * sorting every pair.
+     */
+    private List<String> bruteForce(int k) throws Exception {
+        ListFormatter all = new ListFormatter();
+        new DefaultMatchingAlgo(model, all).computeScores(new RecordIterator(list1),
+                                                          new RecordIterator(list2));
+
+        Map<String, List<String>> byRecord = new LinkedHashMap<>();
+        for (String pair: all.pairs) {
+            String seq2 = ListFormatter.seq2(pair);
+            if (!byRecord.containsKey(seq2))
+                byRecord.put(seq2, new ArrayList<String>());
+
+            byRecord.get(seq2).add(pair);
+        }
+
+        List<String> best = new ArrayList<>();
+        for (List<String> pairs: byRecord.values()) {
+            Collections.sort(pairs, new Comparator<String>() {
+                @Override
+                public int compare(String p1, String p2) {
+                    return Double.compare(ListFormatter.score(p2), ListFormatter.score(p1));
+                }
+            });
+
+            best.addAll(pairs.subList(0, Math.min(k, pairs.size())));
+        }
+
+        return best;
+    }
+
+    @Test
+    public void testTopK() throws Exception {
+        for (int k: new int[] {1, 3, 1000}) {
+            ListFormatter f = new ListFormatter();
+            TopKMatchingAlgo algo =
+                new TopKMatchingAlgo(model, f, k, Double.POSITIVE_INFINITY);
+            algo.computeScores(new RecordIterator(list1), new RecordIterator(list2));
+
+            assertThat(f.pairs, is(bruteForce(k)));
+            assertThat(algo.nSkipped(), is(0L));
+        }
+    }
+
+    @Test
+    public void testEarlyStop() throws Exception {
+        ListFormatter f1 = new ListFormatter();
+        ListFormatter f2 = new ListFormatter();
+
+        TopKMatchingAlgo full = new TopKMatchingAlgo(model, f1, 2, Double.POSITIVE_INFINITY);
+        TopKMatchingAlgo early = new TopKMatchingAlgo(model, f2, 2);
+        full.computeScores(new RecordIterator(list1), new RecordIterator(list2));
+        early.computeScores(new RecordIterator(list1), new RecordIterator(list2));
+
+        assertThat(f2.pairs, is(f1.pairs));
+        assertThat(early.nSkipped() > 0, is(true));
+        assertThat(early.nComparisons() + early.nSkipped(), is(full.nComparisons()));
+    }
+
+    @Test
+    public void testHeap() {
+        TopKHeap heap = new TopKHeap(3);
+        double[] scores = {1.0, 5.0, 2.0, 5.0, 7.0, 2.0, 5.0};
+        for (int i = 0; i < scores.length; i++)
+            heap.offer(scores[i], i);
+
+        heap.sort();
+        assertThat(heap.size(), is(3));
+        assertThat(heap.index(0), is(4));
+        assertThat(heap.index(1), is(1));
+        assertThat(heap.index(2), is(3));
+    }
+}
@@ -0,0 +1,49 @@
+package torch.model;
+
+import torch.RecordComparator;
+import torch.counter.Counter;
+
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Counters over every pattern of a comparator, with made-up counts, shared by the model tests.
+ */
+class Counters {
+
+    /**
+     * The count of each pattern.
+     */
+    interface ICount {
+        long count(int[] pattern);
+    }
+
+    /**
+     * Returns a counter whose count of each pattern is given by <code>count</code>, called on
+     * the patterns in index order.
+     */
+    static Counter counter(RecordComparator cmp, ICount count) {
+        SortedMap<Integer, Long> counts = new TreeMap<>();
+        for (int i = 0; i < cmp.nPatterns(); i++)
+            counts.put(i, count.count(cmp.patternFor(i)));
+
+        return new Counter(cmp, counts);
+    }
+
+    /**
+     * Returns a counter whose counts are drawn uniformly from 1 to <code>maxCount</code>.
+     */
+    static Counter random(RecordComparator cmp, long seed, final int maxCount) {
+        final Random rng = new Random(seed);
+
+        return counter(cmp, new ICount() {
+            @Override
+            public long count(int[] pattern) {
+                return 1L + rng.nextInt(maxCount);
+            }
+        });
+    }
+
+    private Counters() {}
+}
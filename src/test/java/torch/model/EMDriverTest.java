@@ -0,0 +1,53 @@
+package torch.model;
+
+import org.junit.*;
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.*;
+
+public class EMDriverTest {
+
+    /**
+     * An update that halves the distance of the first class weight to 0.9, under a
+     * log-likelihood that peaks at 0.6, so that extrapolating overshoots and is rejected.
+     */
+    private static class Overshoot extends EMDriver.Update {
+        Overshoot(double[] classWeights) {
+            _classWeights = classWeights;
+        }
+
+        @Override
+        void estep() {}
+
+        @Override
+        void mstep() {
+            _classWeights[0] += 0.5 * (0.9 - _classWeights[0]);
+            _classWeights[1] = 1.0 - _classWeights[0];
+        }
+
+        @Override
+        double logLikelihood() {
+            double d = _classWeights[0] - 0.6;
+            return -d * d;
+        }
+
+        private final double[] _classWeights;
+    }
+
+    @Test
+    public void testRejectedStep() {
+        double[] classWeights = {0.5, 0.5};
+        EMOptions options =
+            new EMOptions.Builder()
+            .accelerate(true)
+            .maxIterations(1)
+            .build();
+
+        EMDriver driver = new EMDriver(classWeights, new double[0][][], options);
+        FitStatistics stats = driver.run(new Overshoot(classWeights));
+
+        // two updates, one to stabilize the rejected extrapolation, and one from t2
+        assertThat(stats.nIterations(), is(1));
+        assertThat(stats.nUpdates(), is(4));
+        assertThat(Math.abs(classWeights[0] - 0.85) < 1e-12, is(true));
+    }
+}
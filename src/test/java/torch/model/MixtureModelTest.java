@@ -0,0 +1,175 @@
+package torch.model;
+
+import torch.RecordComparator;
+import torch.RecordSchema;
+import torch.comparators.StandardComparators;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.*;
+
+public class MixtureModelTest {
+
+    private RecordSchema schema;
+    private RecordComparator cmp;
+    private MixtureModel model;
+    private double[][][] mWeights;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() {
+        schema = new RecordSchema(
+                new String[] {"key", "first", "last", "age"},
+                new String[] {"key"},
+                null, null);
+
+        cmp =
+            new RecordComparator.Builder(schema)
+            .compare("first", StandardComparators.EXACT)
+            .compare("last", StandardComparators.STRING)
+            .compare("age", StandardComparators.YEAR)
+            .build();
+
+        mWeights = new double[][][] {
+            {{0.1, 0.1, 0.8}, {0.1, 0.1, 0.1, 0.2, 0.5}, {0.1, 0.1, 0.2, 0.2, 0.4}},
+            {{0.1, 0.2, 0.7}, {0.1, 0.2, 0.2, 0.2, 0.3}, {0.1, 0.2, 0.2, 0.2, 0.3}},
+            {{0.1, 0.8, 0.1}, {0.1, 0.5, 0.2, 0.1, 0.1}, {0.1, 0.4, 0.3, 0.1, 0.1}}
+        };
+
+        model = new MixtureModel(cmp, mWeights, 2);
+    }
+
+    /**
+     * The score computed directly from the weights, the way the model used to score each pair.
+     */
+    private double directScore(int[] pattern) {
+        double score = 0.0;
+
+        for (int j = 0; j < 2; j++)
+            for (int k = 0; k < pattern.length; k++)
+                score += Math.log(mWeights[j][k][pattern[k]]);
+
+        for (int k = 0; k < pattern.length; k++)
+            score -= Math.log(mWeights[2][k][pattern[k]]);
+
+        return score;
+    }
+
+    @Test
+    public void testDenseScoreTable() {
+        assertThat(model.scoreTable().isDense(), is(true));
+
+        for (int i = 0; i < cmp.nPatterns(); i++)
+            assertThat(model.matchScore(i), is(directScore(cmp.patternFor(i))));
+    }
+
+    @Test
+    public void testFactoredScoreTable() {
+        double[][][] logMWeights = new double[3][3][];
+        for (int j = 0; j < 3; j++)
+            for (int k = 0; k < 3; k++) {
+                logMWeights[j][k] = new double[mWeights[j][k].length];
+                for (int x = 0; x < logMWeights[j][k].length; x++)
+                    logMWeights[j][k][x] = Math.log(mWeights[j][k][x]);
+            }
+
+        ScoreTable table = new ScoreTable(cmp, logMWeights, 2, 10);
+        assertThat(table.isDense(), is(false));
+
+        for (int i = 0; i < cmp.nPatterns(); i++)
+            assertEquals(directScore(cmp.patternFor(i)), table.score(i), 1e-12);
+    }
+
+    @Test
+    public void testSaveLoad() throws Exception {
+        String filename = new File(folder.getRoot(), "model.bin").getPath();
+        model.save(filename);
+
+        for (int minMapped: new int[] {MixtureModel.MIN_MAPPED_PATTERNS, 1}) {
+            MixtureModel loaded = MixtureModel.load(cmp, filename, minMapped);
+
+            assertThat(loaded.nClasses(), is(3));
+            assertThat(loaded.nMatchClasses(), is(2));
+            assertThat(loaded.multinomialWeights(), is(mWeights));
+            assertThat(loaded.scoreTable().isMapped(), is(minMapped == 1));
+
+            for (int i = 0; i < cmp.nPatterns(); i++)
+                assertThat(loaded.matchScore(i), is(model.matchScore(i)));
+        }
+    }
+
+    @Test
+    public void testLoadVersion1() throws Exception {
+        String filename = new File(folder.getRoot(), "model1.bin").getPath();
+
+        // version 1 has no byte order, and its scores are big-endian
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(filename))))
+        {
+            ModelIO.writeHeader(out, 0x544d444c, 1, cmp);
+            out.writeInt(3);
+            out.writeInt(2);
+            ModelIO.writeWeights(out, mWeights);
+            out.writeInt(cmp.nPatterns());
+
+            long end = ModelIO.headerBytes(cmp) + 8 + ModelIO.weightBytes(cmp, 3) + 4;
+            for (long i = end; (i & 7) != 0; i++)
+                out.writeByte(0);
+
+            for (int i = 0; i < cmp.nPatterns(); i++)
+                out.writeDouble(model.matchScore(i));
+        }
+
+        for (int minMapped: new int[] {MixtureModel.MIN_MAPPED_PATTERNS, 1}) {
+            MixtureModel loaded = MixtureModel.load(cmp, filename, minMapped);
+
+            assertThat(loaded.scoreTable().isMapped(), is(minMapped == 1));
+            for (int i = 0; i < cmp.nPatterns(); i++)
+                assertThat(loaded.matchScore(i), is(model.matchScore(i)));
+        }
+    }
+
+    @Test
+    public void testSavePrior() throws Exception {
+        MixtureModelPrior prior =
+            new MixtureModelPrior.Builder(cmp)
+            .withField("first").matchClass(1, 1, 10).nonmatchClass(1, 10, 1)
+            .withField("last").matchClass(1, 1, 1, 1, 10).nonmatchClass(1, 10, 1, 1, 1)
+            .withField("age").matchClass(1, 1, 1, 1, 10).nonmatchClass(1, 10, 1, 1, 1)
+            .classWeights(1, 10)
+            .build();
+
+        String filename = new File(folder.getRoot(), "prior.bin").getPath();
+        prior.save(filename);
+        MixtureModelPrior loaded = MixtureModelPrior.load(cmp, filename);
+
+        assertThat(loaded.nClasses(), is(2));
+        assertThat(loaded.nMatchClasses(), is(1));
+        assertThat(loaded.classWeightParameter(), is(prior.classWeightParameter()));
+        assertThat(loaded.multinomialWeightParameter(), is(prior.multinomialWeightParameter()));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testLoadOtherComparator() throws Exception {
+        String filename = new File(folder.getRoot(), "model.bin").getPath();
+        model.save(filename);
+
+        RecordComparator other =
+            new RecordComparator.Builder(schema)
+            .compare("first", StandardComparators.EXACT)
+            .compare("last", StandardComparators.EXACT)
+            .compare("age", StandardComparators.YEAR)
+            .build();
+
+        MixtureModel.load(other, filename);
+    }
+}
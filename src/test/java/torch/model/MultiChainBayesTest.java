@@ -0,0 +1,178 @@
+package torch.model;
+
+import torch.RecordComparator;
+import torch.RecordSchema;
+import torch.comparators.StandardComparators;
+import torch.counter.Counter;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.*;
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.*;
+
+public class MultiChainBayesTest {
+
+    private Counter counter;
+    private MixtureModelPrior prior;
+
+    @Before
+    public void setUp() {
+        RecordSchema schema = new RecordSchema(
+                new String[] {"key", "first", "last", "city"},
+                new String[] {"key"},
+                null, null);
+
+        RecordComparator cmp = new RecordComparator.Builder(schema)
+            .compare("first", StandardComparators.EXACT)
+            .compare("last", StandardComparators.EXACT)
+            .compare("city", StandardComparators.EXACT)
+            .build();
+
+        // levels are blank, disagree, agree
+        final double[] match = {0.02, 0.08, 0.9};
+        final double[] nonmatch = {0.02, 0.9, 0.08};
+        final double matchWeight = 0.1;
+
+        counter = Counters.counter(cmp, new Counters.ICount() {
+            @Override
+            public long count(int[] pattern) {
+                double pm = matchWeight;
+                double pu = 1.0 - matchWeight;
+                for (int k = 0; k < pattern.length; k++) {
+                    pm *= match[pattern[k]];
+                    pu *= nonmatch[pattern[k]];
+                }
+
+                return Math.max(1L, Math.round(100000 * (pm + pu)));
+            }
+        });
+
+        MixtureModelPrior.Builder builder = new MixtureModelPrior.Builder(cmp);
+        for (String field: cmp.compareFields()) {
+            builder.withField(field)
+                .matchClass(1.0, 1.0, 10.0)
+                .nonmatchClass(1.0, 10.0, 1.0);
+        }
+        prior = builder.classWeights(1.0, 10.0).build();
+    }
+
+    @Test
+    public void testUnderflow() {
+        GibbsChain chain = new GibbsChain(new Random(1), prior, counter);
+
+        // every class's probability of every pattern underflows to 0 as a plain product
+        for (double[][] m: chain.mWeights())
+            for (double[] mk: m)
+                Arrays.fill(mk, 1e-120);
+
+        chain.drawClasses();
+        chain.drawWeights();
+
+        double total = 0.0;
+        for (double w: chain.classWeights()) {
+            assertThat(w >= 0.0, is(true));
+            total += w;
+        }
+
+        assertThat(Math.abs(total - 1.0) < 1e-9, is(true));
+    }
+
+    @Test
+    public void testDiagnostics() {
+        MultiChainBayes bayes = new MultiChainBayes.Builder()
+            .nChains(3)
+            .seed(3)
+            .burnIn(50)
+            .nIter(200)
+            .checkInterval(50)
+            .nThreads(3)
+            .fit(prior, counter);
+
+        assertThat(bayes.nIterations(), is(200));
+        assertThat(bayes.maxRHat() < 1.1, is(true));
+        assertThat(bayes.minEss() > 0, is(true));
+        assertThat(bayes.classWeightRHat().length, is(2));
+
+        double total = 0.0;
+        for (double w: bayes.classWeights())
+            total += w;
+
+        assertThat(Math.abs(total - 1.0) < 1e-9, is(true));
+    }
+
+    @Test
+    public void testSeed() {
+        MultiChainBayes.Builder builder = new MultiChainBayes.Builder()
+            .nChains(2)
+            .seed(11)
+            .burnIn(20)
+            .nIter(40)
+            .checkInterval(20);
+
+        MultiChainBayes bayes1 = builder.nThreads(1).fit(prior, counter);
+        MultiChainBayes bayes2 = builder.nThreads(2).fit(prior, counter);
+
+        assertThat(bayes2.classWeights(), is(bayes1.classWeights()));
+        assertThat(bayes2.maxRHat(), is(bayes1.maxRHat()));
+    }
+
+    @Test
+    public void testEarlyStop() {
+        MultiChainBayes bayes = new MultiChainBayes.Builder()
+            .nChains(4)
+            .seed(5)
+            .burnIn(50)
+            .nIter(5000)
+            .checkInterval(100)
+            .maxRHat(1.05)
+            .minEss(100)
+            .earlyStop(true)
+            .fit(prior, counter);
+
+        assertThat(bayes.converged(), is(true));
+        assertThat(bayes.nIterations() < 5000, is(true));
+    }
+
+    @Test
+    public void testRHat() {
+        // two chains stuck at different values
+        double[][] stuck = new double[2][100];
+        Arrays.fill(stuck[1], 1.0);
+        Random rng = new Random(1);
+        for (int t = 0; t < 100; t++) {
+            stuck[0][t] += 0.01 * rng.nextGaussian();
+            stuck[1][t] += 0.01 * rng.nextGaussian();
+        }
+        assertThat(McmcDiagnostics.splitRHat(stuck, 100) > 2, is(true));
+
+        // independent draws
+        double[][] mixed = new double[4][1000];
+        for (int c = 0; c < 4; c++)
+            for (int t = 0; t < 1000; t++)
+                mixed[c][t] = rng.nextGaussian();
+
+        assertThat(McmcDiagnostics.splitRHat(mixed, 1000) < 1.01, is(true));
+        assertThat(McmcDiagnostics.ess(mixed, 1000) > 3000, is(true));
+    }
+
+    @Test
+    public void testEss() {
+        // AR(1) chains with coefficient 0.5, whose ESS is about n (1 - 0.5) / (1 + 0.5)
+        Random rng = new Random(2);
+        double[][] ar = new double[4][10000];
+        for (int c = 0; c < 4; c++)
+            for (int t = 1; t < 10000; t++)
+                ar[c][t] = 0.5 * ar[c][t - 1] + rng.nextGaussian();
+
+        double ess = McmcDiagnostics.ess(ar, 10000);
+        assertThat(Math.abs(ess - 40000 / 3.0) < 0.2 * 40000 / 3.0, is(true));
+
+        double[] rHats = new double[1];
+        double[] esses = new double[1];
+        McmcDiagnostics.diagnose(new double[][][] {ar}, 9999, rHats, esses);
+        assertThat(rHats[0], is(McmcDiagnostics.splitRHat(ar, 9999)));
+        assertThat(esses[0], is(McmcDiagnostics.ess(ar, 9999)));
+    }
+}
@@ -0,0 +1,79 @@
+package torch.model;
+
+import torch.RecordComparator;
+import torch.RecordSchema;
+import torch.comparators.StandardComparators;
+import torch.counter.Counter;
+
+import java.util.Random;
+
+import org.junit.*;
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.*;
+
+public class MultiStartLearnerTest {
+
+    private Counter counter;
+
+    @Before
+    public void setUp() {
+        RecordSchema schema = new RecordSchema(
+                new String[] {"key", "first", "last", "age"},
+                new String[] {"key"},
+                null, null);
+
+        RecordComparator cmp = new RecordComparator.Builder(schema)
+            .compare("first", StandardComparators.STRING)
+            .compare("last", StandardComparators.STRING)
+            .compare("age", StandardComparators.EXACT)
+            .build();
+
+        counter = Counters.random(cmp, 23, 500);
+    }
+
+    @Test
+    public void testBest() {
+        MultiStartLearner lr = new MultiStartLearner.Builder()
+            .nStarts(4)
+            .seed(99)
+            .nThreads(2)
+            .fit(counter);
+
+        assertThat(lr.starts().size(), is(4));
+        for (MultiStartLearner.Start s: lr.starts())
+            assertThat(s.logLikelihood() <= lr.best().logLikelihood(), is(true));
+    }
+
+    @Test
+    public void testSeed() {
+        MultiStartLearner lr1 = new MultiStartLearner.Builder()
+            .nStarts(3)
+            .seed(7)
+            .nThreads(1)
+            .fit(counter);
+        MultiStartLearner lr3 = new MultiStartLearner.Builder()
+            .nStarts(3)
+            .seed(7)
+            .nThreads(3)
+            .fit(counter);
+
+        assertThat(lr3.best().seed(), is(lr1.best().seed()));
+        assertThat(lr3.best().learner().classWeights(), is(lr1.best().learner().classWeights()));
+    }
+
+    @Test
+    public void testNClasses() {
+        MultiStartLearner lr = new MultiStartLearner.Builder()
+            .nStarts(2)
+            .nClasses(2, 3)
+            .seed(5)
+            .fit(counter);
+
+        assertThat(lr.starts().size(), is(4));
+        assertThat(lr.bestByClasses().size(), is(2));
+        assertThat(lr.bestByClasses().get(0).nClasses(), is(2));
+        assertThat(lr.bestByClasses().get(1).nClasses(), is(3));
+        assertThat(lr.best().bic() <= lr.bestByClasses().get(0).bic(), is(true));
+        assertThat(lr.best().bic() <= lr.bestByClasses().get(1).bic(), is(true));
+    }
+}
@@ -2,6 +2,7 @@ package torch.model;
 
 import torch.RecordComparator;
 import torch.comparators.StandardComparators;
+import torch.counter.Counter;
 import torch.io.FixedWidthFileSchema;
 
 import java.util.Arrays;
@@ -61,4 +62,145 @@ public class UnsupervisedLearnerTest {
 
         assertThat(total, is(1.0));
     }
+
+    @Test
+    public void testThreads() {
+        Counter counter = Counters.random(cmp, 11, 1000);
+        UnsupervisedLearner lr1 = new UnsupervisedLearner(
+                new Random(5), counter, 2, new EMOptions.Builder().nThreads(1).build());
+        UnsupervisedLearner lr4 = new UnsupervisedLearner(
+                new Random(5), counter, 2, new EMOptions.Builder().nThreads(4).build());
+
+        assertThat(lr4.classWeights(), is(lr1.classWeights()));
+    }
+
+    @Test
+    public void testEngineChunks() {
+        Random rng = new Random(13);
+        int[][] patterns = new int[cmp.nPatterns()][];
+        double[] counts = new double[patterns.length];
+        for (int i = 0; i < patterns.length; i++) {
+            patterns[i] = cmp.patternFor(i);
+            counts[i] = rng.nextInt(100);
+        }
+
+        double[] classWeights = new double[3];
+        double[][][] mWeights = new double[3][cmp.nComparators()][];
+        UnsupervisedLearner.partitionOne(rng, classWeights);
+        for (int j = 0; j < 3; j++) {
+            for (int k = 0; k < cmp.nComparators(); k++) {
+                mWeights[j][k] = new double[cmp.nLevels(k)];
+                UnsupervisedLearner.partitionOne(rng, mWeights[j][k]);
+            }
+        }
+
+        double[][] expected1 = new double[patterns.length][3];
+        double[][] expected4 = new double[patterns.length][3];
+        double[][][] mTotals1 = new double[3][cmp.nComparators()][];
+        double[][][] mTotals4 = new double[3][cmp.nComparators()][];
+        for (int j = 0; j < 3; j++) {
+            for (int k = 0; k < cmp.nComparators(); k++) {
+                mTotals1[j][k] = new double[cmp.nLevels(k)];
+                mTotals4[j][k] = new double[cmp.nLevels(k)];
+            }
+        }
+        double[] classTotals1 = new double[3];
+        double[] classTotals4 = new double[3];
+
+        EMEngine engine1 = new EMEngine(cmp, patterns, counts, classWeights, mWeights, 1, 5);
+        EMEngine engine4 = new EMEngine(cmp, patterns, counts, classWeights, mWeights, 4, 5);
+
+        try {
+            engine1.estep(expected1);
+            engine4.estep(expected4);
+            engine1.mstep(expected1, mTotals1, classTotals1);
+            engine4.mstep(expected4, mTotals4, classTotals4);
+
+            assertThat(expected4, is(expected1));
+            assertThat(mTotals4, is(mTotals1));
+            assertThat(classTotals4, is(classTotals1));
+            assertThat(engine4.logLikelihood(), is(engine1.logLikelihood()));
+        }
+        finally {
+            engine1.close();
+            engine4.close();
+        }
+
+        double total = 0.0;
+        for (int i = 0; i < counts.length; i++)
+            total += counts[i];
+
+        assertThat(Math.abs(classTotals1[0] + classTotals1[1] + classTotals1[2] - total) < 1e-6,
+                   is(true));
+    }
+
+    @Test
+    public void testAccelerate() {
+        final Random rng = new Random(17);
+        Counter counter = Counters.counter(cmp, new Counters.ICount() {
+            @Override
+            public long count(int[] pattern) {
+                int agree = 0;
+                for (int k = 0; k < pattern.length; k++)
+                    if (pattern[k] == 0)
+                        agree++;
+
+                // a lump of near-exact agreements on top of a diffuse background
+                return 1L + rng.nextInt(50) + ((agree == pattern.length) ? 5000L : 0L);
+            }
+        });
+        UnsupervisedLearner plain = new UnsupervisedLearner(
+                new Random(5), counter, 2, new EMOptions.Builder().build());
+        UnsupervisedLearner fast = new UnsupervisedLearner(
+                new Random(5), counter, 2, new EMOptions.Builder().accelerate(true).build());
+
+        FitStatistics plainStats = plain.fitStatistics();
+        FitStatistics fastStats = fast.fitStatistics();
+
+        assertThat(fastStats.converged(), is(true));
+        assertThat(fastStats.nUpdates() >= 3 * fastStats.nIterations(), is(true));
+        assertThat(fastStats.nIterations() <= plainStats.nIterations(), is(true));
+        assertThat(fastStats.logLikelihood() >= plainStats.logLikelihood() - 1e-3, is(true));
+
+        double[] ll = fastStats.logLikelihoods();
+        for (int i = 1; i < ll.length; i++)
+            assertThat(ll[i] >= ll[i - 1] - 1e-9, is(true));
+    }
+
+    @Test
+    public void testStoppingRule() {
+        Counter counter = Counters.random(cmp, 19, 1000);
+        EMOptions options = new EMOptions.Builder()
+            .stoppingRule(StoppingRules.relativeParameters(1e-2))
+            .maxIterations(20)
+            .build();
+        FitStatistics stats =
+            new UnsupervisedLearner(new Random(5), counter, 2, options)
+            .fitStatistics();
+
+        assertThat(stats.converged(), is(true));
+        assertThat(stats.nIterations() < 20, is(true));
+        assertThat(stats.iterationNanos().length, is(stats.nIterations()));
+        assertThat(stats.nUpdates(), is(stats.nIterations()));
+    }
+
+    @Test
+    public void testListener() {
+        Counter counter = Counters.random(cmp, 23, 1000);
+        RecordingFitListener listener = new RecordingFitListener();
+        EMOptions options = new EMOptions.Builder()
+            .listener(listener)
+            .accelerate(true)
+            .build();
+        FitStatistics stats =
+            new UnsupervisedLearner(new Random(5), counter, 2, options)
+            .fitStatistics();
+
+        assertThat(listener.finished(), is(true));
+        assertThat(listener.converged(), is(stats.converged()));
+        assertThat(listener.nIterations(), is(stats.nIterations()));
+        assertThat(listener.logLikelihoods(), is(stats.logLikelihoods()));
+        assertThat(listener.phases().length, is(3));
+        assertThat(listener.phaseNanos()[0] > 0, is(true));
+    }
 }
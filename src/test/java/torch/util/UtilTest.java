@@ -0,0 +1,86 @@
+package torch.util;
+
+import java.util.Random;
+
+import org.junit.*;
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.*;
+
+public class UtilTest {
+
+    @Test
+    public void testBinomialEdges() {
+        Random rng = new Random(1);
+
+        assertThat(Util.sampleBinomial(rng, 0, 0.5), is(0L));
+        assertThat(Util.sampleBinomial(rng, 10, 0.0), is(0L));
+        assertThat(Util.sampleBinomial(rng, 10, 1.0), is(10L));
+    }
+
+    @Test(expected = IllegalArgumentException.class, timeout = 5000)
+    public void testBinomialNaN() {
+        Util.sampleBinomial(new Random(1), 1000, Double.NaN);
+    }
+
+    @Test
+    public void testBinomialInversion() {
+        checkBinomial(new Random(2), 50, 0.3);
+        checkBinomial(new Random(3), 40, 0.9);
+    }
+
+    @Test
+    public void testBinomialBtpe() {
+        checkBinomial(new Random(4), 1000, 0.4);
+        checkBinomial(new Random(5), 3000000000L, 0.01);
+        checkBinomial(new Random(6), 100000, 0.75);
+    }
+
+    @Test
+    public void testMultinomial() {
+        Random rng = new Random(7);
+        double[] p = {0.5, 0.0, 0.2, 0.3};
+        long[] counts = new long[p.length];
+        double[] totals = new double[p.length];
+        long n = 1000000000L;
+
+        for (int t = 0; t < 200; t++) {
+            Util.sampleMultinomial(rng, n, p, counts);
+
+            long sum = 0;
+            for (int j = 0; j < p.length; j++) {
+                assertThat(counts[j] >= 0, is(true));
+                sum += counts[j];
+                totals[j] += counts[j];
+            }
+
+            assertThat(sum, is(n));
+            assertThat(counts[1], is(0L));
+        }
+
+        for (int j = 0; j < p.length; j++)
+            assertThat(Math.abs(totals[j] / 200 / n - p[j]) < 1e-4, is(true));
+    }
+
+    /**
+     * Checks the sample mean and variance of many draws against the binomial's.
+     */
+    private static void checkBinomial(Random rng, long n, double p) {
+        int nDraws = 20000;
+        double sum = 0.0, sumSq = 0.0;
+
+        for (int t = 0; t < nDraws; t++) {
+            long x = Util.sampleBinomial(rng, n, p);
+            assertThat(x >= 0 && x <= n, is(true));
+
+            sum += x;
+            sumSq += (double)x * x;
+        }
+
+        double mean = sum / nDraws;
+        double var = sumSq / nDraws - mean * mean;
+        double trueVar = n * p * (1 - p);
+
+        assertThat(Math.abs(mean - n * p) < 5 * Math.sqrt(trueVar / nDraws), is(true));
+        assertThat(Math.abs(var / trueVar - 1) < 0.05, is(true));
+    }
+}